@@ -1,14 +1,49 @@
 package com.project.login.config;
 
+import com.project.login.model.dataobject.RemarkDO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.config.EnableMongoAuditing;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
 
+import java.util.List;
+
+@Slf4j
 @Configuration
 // 开启审计功能，这样实体类上的 @CreatedDate 和 @LastModifiedDate 才会生效
 @EnableMongoAuditing
 public class MongoConfig {
 
+    /** 已被带 _id 的新索引取代的旧索引（新索引的前缀），启动时删除 */
+    private static final List<String> SUPERSEDED_REMARK_INDEXES = List.of("note_reply_created", "parent_created");
+
     // application.yml 中已经配置了 uri，
     // Spring Boot 会自动配置 MongoTemplate
     // 除非需要自定义类型转换器 (Converters) 或者配置事务管理器
-}
\ No newline at end of file
+
+    /**
+     * 未开启 auto-index-creation，评论集合的分页索引（RemarkDO 上的 @CompoundIndex）在启动时显式创建；
+     * 已存在的同名索引不会重复创建，被取代的旧索引随后删除
+     */
+    @Bean
+    public ApplicationRunner remarkIndexInitializer(MongoTemplate mongoTemplate, MongoMappingContext mappingContext) {
+        return args -> {
+            try {
+                IndexOperations ops = mongoTemplate.indexOps(RemarkDO.class);
+                new MongoPersistentEntityIndexResolver(mappingContext)
+                        .resolveIndexFor(RemarkDO.class)
+                        .forEach(ops::ensureIndex);
+                ops.getIndexInfo().stream()
+                        .filter(index -> SUPERSEDED_REMARK_INDEXES.contains(index.getName()))
+                        .forEach(index -> ops.dropIndex(index.getName()));
+            } catch (Exception e) {
+                log.warn("Failed to ensure remark indexes", e);
+            }
+        };
+    }
+}
@@ -2,12 +2,15 @@ package com.project.login.config;
 
 import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.config.RetryInterceptorBuilder;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.retry.RepublishMessageRecoverer;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -49,11 +52,31 @@ public class RabbitConfig {
         return new Queue("note.redis.queue", true);
     }
 
+    @Bean
+    public Queue noteStatsDeltaQueue() {
+        return new Queue("note.stats.delta.queue", true);
+    }
+
+    @Bean
+    public Queue noteStatsDeltaDeadLetterQueue() {
+        return new Queue("note.stats.delta.dlq", true);
+    }
+
     @Bean
     public Queue noteEsQueue() {
         return new Queue("note.es.queue", true);
     }
 
+    @Bean
+    public Queue noteEsDeadLetterQueue() {
+        return new Queue("note.es.dlq", true);
+    }
+
+    @Bean
+    public Queue noteContentQueue() {
+        return new Queue("note.content.queue", true);
+    }
+
     @Bean
     public Queue noteMongoQueue() {
         return new Queue("note.mongo.queue", true);
@@ -69,11 +92,22 @@ public class RabbitConfig {
     public Queue questionEsQueue() {
         return new Queue("question.es.queue", true); // durable queue
     }
+
+    @Bean
+    public Queue questionEsDeadLetterQueue() {
+        return new Queue("question.es.dlq", true);
+    }
     @Bean
     public Queue remarkLikeUsersQueue() {
         return new Queue("remarkLikeUsers.redis.queue", true); // true 表示持久化
     }
 
+    public static final String REMARK_LIKE_USERS_DLQ = "remarkLikeUsers.redis.dlq";
+    @Bean
+    public Queue remarkLikeUsersDeadLetterQueue() {
+        return new Queue(REMARK_LIKE_USERS_DLQ, true);
+    }
+
     @Bean
     public Queue remarkLikeCountQueue() {
         return new Queue("remarkLikeCount.redis.queue", true);
@@ -106,4 +140,67 @@ public class RabbitConfig {
         factory.setMessageConverter(converter);
         return factory;
     }
+
+    /**
+     * 评论点赞用户消费（remarkLikeUsers.redis.queue）：监听方法抛异常时整条消息按指数退避重试，
+     * 耗尽后转发到 remarkLikeUsers.redis.dlq 再确认，增量不会被静默丢弃
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory remarkLikeUsersListenerFactory(ConnectionFactory connectionFactory,
+                                                                               Jackson2JsonMessageConverter converter,
+                                                                               RabbitTemplate rabbitTemplate) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setAcknowledgeMode(AcknowledgeMode.AUTO);
+        factory.setDefaultRequeueRejected(false);
+        factory.setMessageConverter(converter);
+        factory.setAdviceChain(RetryInterceptorBuilder.stateless()
+                .maxAttempts(3)
+                .backOffOptions(1000, 2.0, 10_000)
+                .recoverer(new RepublishMessageRecoverer(rabbitTemplate, "", REMARK_LIKE_USERS_DLQ))
+                .build());
+        return factory;
+    }
+
+    /**
+     * note_stats 增量批量消费：一次拉取至多 batch-size 条消息（或等待 receive-timeout 后凑不满即交付），
+     * 监听方法接收 List<Message>，整批合并为一条多行 upsert
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory noteStatsBatchListenerFactory(
+            ConnectionFactory connectionFactory,
+            @Value("${note-stats.consumer.batch-size:200}") int batchSize,
+            @Value("${note-stats.consumer.receive-timeout-ms:1000}") long receiveTimeoutMs) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setAcknowledgeMode(AcknowledgeMode.AUTO);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setPrefetchCount(batchSize);
+        factory.setReceiveTimeout(receiveTimeoutMs);
+        factory.setDefaultRequeueRejected(false);
+        return factory;
+    }
+
+    /**
+     * ES 索引事件批量消费（note.es.queue / question.es.queue）：一次拉取至多 batch-size 条，
+     * 凑不满时等待 receive-timeout 后交付，消费者合并为一次 _bulk
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory esBatchListenerFactory(
+            ConnectionFactory connectionFactory,
+            @Value("${es-indexing.batch-size:500}") int batchSize,
+            @Value("${es-indexing.receive-timeout-ms:500}") long receiveTimeoutMs) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setAcknowledgeMode(AcknowledgeMode.AUTO);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setPrefetchCount(batchSize);
+        factory.setReceiveTimeout(receiveTimeoutMs);
+        factory.setDefaultRequeueRejected(false);
+        return factory;
+    }
 }
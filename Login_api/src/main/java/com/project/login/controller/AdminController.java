@@ -42,6 +42,10 @@ import com.project.login.model.dataobject.UserDO;
 import com.project.login.model.entity.NoteEntity;
 import com.project.login.repository.NoteRepository;
 import com.project.login.service.minio.MinioService;
+import com.project.login.model.vo.ReindexProgressVO;
+import com.project.login.service.search.SearchReindexService;
+import com.project.login.model.vo.SlowQueryVO;
+import com.project.login.service.search.InstrumentedSearchClient;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
@@ -82,6 +86,38 @@ public class AdminController {
     private final UserFollowMapper userFollowMapper;
     private final NoteRepository noteRepository;
     private final MinioService minioService;
+    private final SearchReindexService searchReindexService;
+    private final InstrumentedSearchClient instrumentedSearchClient;
+
+    @Operation(summary = "重建搜索索引（notes / questions），完成后原子切换别名")
+    @PostMapping("/search/reindex/{alias}")
+    public StandardResponse<ReindexProgressVO> startReindex(@PathVariable String alias) {
+        return StandardResponse.success("已启动", searchReindexService.start(alias));
+    }
+
+    @Operation(summary = "查询重建索引进度（已处理数、速率、ETA）")
+    @GetMapping("/search/reindex/{alias}")
+    public StandardResponse<ReindexProgressVO> getReindexProgress(@PathVariable String alias) {
+        ReindexProgressVO progress = searchReindexService.progress(alias);
+        if (progress == null) {
+            return StandardResponse.error("没有该索引的重建任务");
+        }
+        return StandardResponse.success("获取成功", progress);
+    }
+
+    @Operation(summary = "最近的 ES 慢查询（DSL 与耗时，新的在前）")
+    @GetMapping("/search/slow-queries")
+    public StandardResponse<List<SlowQueryVO>> getSlowQueries(
+            @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        return StandardResponse.success("获取成功", instrumentedSearchClient.recentSlowQueries(Math.max(limit, 1)));
+    }
+
+    @Operation(summary = "清空 ES 慢查询记录")
+    @DeleteMapping("/search/slow-queries")
+    public StandardResponse<Void> clearSlowQueries() {
+        instrumentedSearchClient.clearSlowQueries();
+        return StandardResponse.success("已清空", null);
+    }
 
     @Operation(summary = "获取当前所有在线用户")
     @GetMapping("/online-users")
@@ -1,12 +1,14 @@
 package com.project.login.controller;
 
 import com.project.login.model.response.StandardResponse;
+import com.project.login.model.vo.HotNotePageVO;
 import com.project.login.model.vo.NoteSearchVO;
 import com.project.login.service.hot.HotService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
@@ -28,4 +30,28 @@ public class HotController {
         List<NoteSearchVO> hotNotes = hotService.getHotNotesDetail();
         return StandardResponse.success(hotNotes);
     }
+
+    /**
+     * 分页获取热榜（全站榜或标签榜）
+     * @param tag 标签，为空时返回全站榜
+     * @param offset 起始名次（从 0 开始）
+     * @param limit 每页条数（最大 100）
+     * @return StandardResponse 包装的热榜分页
+     */
+    @GetMapping("/notes/page")
+    public StandardResponse<HotNotePageVO> getHotNotesPage(
+            @RequestParam(value = "tag", required = false) String tag,
+            @RequestParam(value = "offset", defaultValue = "0") int offset,
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return StandardResponse.success(hotService.getHotNotes(tag, offset, limit));
+    }
+
+    /**
+     * 获取当前有热榜的标签
+     * @return StandardResponse 包装的标签列表
+     */
+    @GetMapping("/tags")
+    public StandardResponse<List<String>> getHotTags() {
+        return StandardResponse.success(hotService.getHotTags());
+    }
 }
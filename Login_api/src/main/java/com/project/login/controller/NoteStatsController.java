@@ -1,9 +1,11 @@
 package com.project.login.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.project.login.mapper.UserFavoriteNoteMapper;
 import com.project.login.model.dataobject.UserFavoriteNoteDO;
 import com.project.login.model.dto.userbehavior.BehaviorType;
 import com.project.login.model.dto.userbehavior.UserBehaviorDTO;
+import com.project.login.model.request.notestats.NoteStatsBatchRequest;
 import com.project.login.model.response.StandardResponse;
 import com.project.login.model.vo.NoteStatsVO;
 import com.project.login.service.notestats.NoteStatsService;
@@ -13,8 +15,14 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
+import java.util.Map;
 
 @Tag(name = "Note Stats", description = "High-frequency note statistics")
 @RestController
@@ -26,6 +34,9 @@ public class NoteStatsController {
     private final UserBehaviorService userBehaviorService;
     private final UserFavoriteNoteMapper userFavoriteNoteMapper;
     private final NotificationService notificationService;
+    private final ObjectMapper objectMapper;
+
+    private static final int BATCH_MAX_IDS = 500;
 
     @Operation(summary = "Increment/Decrement a note statistic field")
     @PostMapping("/change")
@@ -95,4 +106,33 @@ public class NoteStatsController {
         NoteStatsVO vo = noteStatsService.getStats(noteId);
         return StandardResponse.success(vo);
     }
+
+    @Operation(summary = "Get statistics of multiple notes in one call (max 500 ids)")
+    @PostMapping("/batch")
+    public StandardResponse<Map<Long, NoteStatsVO>> batch(@Valid @RequestBody NoteStatsBatchRequest request) {
+        if (request.getNoteIds().size() > BATCH_MAX_IDS) {
+            return StandardResponse.error("noteIds cannot exceed " + BATCH_MAX_IDS + ", use /batch/stream instead");
+        }
+        return StandardResponse.success(noteStatsService.getStatsBatch(request.getNoteIds()));
+    }
+
+    @Operation(summary = "Stream statistics of a large id list as NDJSON (one NoteStatsVO per line)")
+    @PostMapping(value = "/batch/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> batchStream(@Valid @RequestBody NoteStatsBatchRequest request) {
+        List<Long> noteIds = request.getNoteIds();
+        StreamingResponseBody body = out -> {
+            // 分段解析，每段一次 pipeline + 一次 IN 查询，边查边写，避免整表驻留内存
+            for (int from = 0; from < noteIds.size(); from += BATCH_MAX_IDS) {
+                List<Long> chunk = noteIds.subList(from, Math.min(noteIds.size(), from + BATCH_MAX_IDS));
+                for (NoteStatsVO vo : noteStatsService.getStatsBatch(chunk).values()) {
+                    out.write(objectMapper.writeValueAsBytes(vo));
+                    out.write('\n');
+                }
+                out.flush();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
 }
@@ -2,6 +2,7 @@ package com.project.login.controller;
 
 import com.project.login.model.response.StandardResponse;
 import com.project.login.model.vo.NoteSearchVO;
+import com.project.login.model.vo.RecommendNotePageVO;
 import com.project.login.model.vo.qa.QuestionVO;
 import com.project.login.service.recommend.UserProfileQueryService;
 import lombok.RequiredArgsConstructor;
@@ -29,6 +30,15 @@ public class RecommendController {
 
     }
 
+    @GetMapping("/notes/page")
+    public StandardResponse<RecommendNotePageVO> pageRecommendNotes(
+            @RequestParam("userId") Long userId,
+            @RequestParam(value = "topN", defaultValue = "10") int topN,
+            @RequestParam(value = "offset", required = false) Integer offset,
+            @RequestParam(value = "limit", required = false) Integer limit) throws Exception {
+        return StandardResponse.success(userProfileQueryService.pageNotes(userId, topN, offset, limit));
+    }
+
     @GetMapping("/QAs")
     public StandardResponse<List<QuestionVO>> recommendQAs(
             @RequestParam("userId") Long userId,
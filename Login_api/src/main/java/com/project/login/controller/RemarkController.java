@@ -4,6 +4,7 @@ import com.project.login.model.dto.remark.RemarkDeleteDTO;
 import com.project.login.model.dto.remark.RemarkInsertDTO;
 import com.project.login.model.dto.remark.RemarkSelectByNoteDTO;
 import com.project.login.model.response.StandardResponse;
+import com.project.login.model.vo.RemarkPageVO;
 import com.project.login.model.vo.RemarkVO;
 import com.project.login.service.remark.RemarkService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -38,6 +39,35 @@ public class RemarkController {
         return StandardResponse.success(voList);
     }
 
+    @Operation(summary = "Page top-level comments of a note with truncated reply subtrees")
+    @GetMapping("/note/page")
+    public StandardResponse<RemarkPageVO> pageRemarksByNote(
+            @RequestParam Long noteId,
+            @RequestParam Long loginUserId,
+            @RequestParam(defaultValue = RemarkService.SORT_TIME) String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Integer replyDepth,
+            @RequestParam(required = false) Integer replyLimit
+    ) {
+        return StandardResponse.success(
+                remarkService.pageRemarks(noteId, loginUserId, sort, cursor, limit, replyDepth, replyLimit));
+    }
+
+    @Operation(summary = "Expand replies of a comment")
+    @GetMapping("/replies")
+    public StandardResponse<RemarkPageVO> pageReplies(
+            @RequestParam String parentId,
+            @RequestParam Long loginUserId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Integer replyDepth,
+            @RequestParam(required = false) Integer replyLimit
+    ) {
+        return StandardResponse.success(
+                remarkService.pageReplies(parentId, loginUserId, cursor, limit, replyDepth, replyLimit));
+    }
+
     @Operation(summary = "Insert a new comment")
     @PostMapping("/insert")
     public StandardResponse<Boolean> insertRemark(@Valid @RequestBody RemarkInsertDTO dto) {
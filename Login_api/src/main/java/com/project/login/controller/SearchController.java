@@ -4,12 +4,15 @@ import com.project.login.convert.SearchConvert;
 import com.project.login.model.dto.search.NoteSearchDTO;
 import com.project.login.model.request.search.NoteSearchRequest;
 import com.project.login.model.response.StandardResponse;
+import com.project.login.model.vo.NoteSearchPageVO;
 import com.project.login.model.vo.NoteSearchVO;
 import com.project.login.model.vo.NoteShowVO;
+import com.project.login.model.vo.SuggestionVO;
 import com.project.login.model.vo.qa.QuestionVO;
 import com.project.login.service.noting.NoteService;
 import com.project.login.service.search.SearchQAService;
 import com.project.login.service.search.SearchService;
+import com.project.login.service.search.SuggestService;
 import com.project.login.service.flink.userbahavior.UserSearchService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -29,6 +32,7 @@ public class SearchController {
 
     private final SearchService searchService;
     private final SearchQAService searchQAService;
+    private final SuggestService suggestService;
     private final NoteService noteService;
 
     @Qualifier("searchConvert")
@@ -44,7 +48,7 @@ public class SearchController {
         NoteSearchDTO dto = convert.toSearchDTO(request);
 
         // 2. 调用 Service 执行搜索
-        List<NoteSearchVO> results = searchService.searchNotes(dto);
+        List<NoteSearchVO> results = searchService.searchNotes(dto).getNotes();
 
         // 3. 记录用户搜索行为
         if (request.getUserId() != null && request.getKeyword() != null) {
@@ -54,6 +58,21 @@ public class SearchController {
         return StandardResponse.success(results);
     }
 
+    @Operation(summary = "Search notes with search_after pagination")
+    @PostMapping("/notes/page")
+    public StandardResponse<NoteSearchPageVO> searchNotesPage(
+            @Valid @RequestBody NoteSearchRequest request
+    ) {
+        NoteSearchPageVO page = searchService.searchNotes(convert.toSearchDTO(request));
+
+        // 只在第一页记录搜索行为，翻页不重复计数
+        if (request.getCursor() == null && request.getUserId() != null) {
+            userSearchService.recordSearch(request.getUserId(), request.getKeyword());
+        }
+
+        return StandardResponse.success(page);
+    }
+
     @Operation(summary = "Search questions (QA) by keyword with score ranking")
     @GetMapping("/questions")
     public StandardResponse<List<QuestionVO>> searchQuestions(
@@ -71,6 +90,15 @@ public class SearchController {
         return StandardResponse.success(results);
     }
 
+    @Operation(summary = "Search-as-you-type suggestions from popular queries and note / question titles")
+    @GetMapping("/suggest")
+    public StandardResponse<List<SuggestionVO>> suggest(
+            @RequestParam String prefix,
+            @RequestParam(required = false) Integer size
+    ) {
+        return StandardResponse.success(suggestService.suggest(prefix, size));
+    }
+
     @Operation(summary = "List published notes for site catalog (AI broad-list retrieval)")
     @GetMapping("/notes/catalog")
     public StandardResponse<List<NoteSearchVO>> catalogNotes(
@@ -2,6 +2,7 @@ package com.project.login.convert;
 
 import com.project.login.mapper.UserMapper;
 import com.project.login.model.dataobject.QuestionDO;
+import com.project.login.model.dataobject.QuestionSummary;
 import com.project.login.model.vo.qa.AnswerVO;
 import com.project.login.model.vo.qa.CommentVO;
 import com.project.login.model.vo.qa.QuestionVO;
@@ -10,6 +11,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -53,6 +55,27 @@ public class QuestionConvert {
         return vo;
     }
 
+    /**
+     * 列表用：由摘要构建 VO，不含回答列表；用户名由调用方批量查询后传入
+     */
+    public QuestionVO toQuestionVO(QuestionSummary s, String authorName) {
+        if (s == null) return null;
+
+        QuestionVO vo = new QuestionVO();
+        vo.setQuestionId(s.getQuestionId());
+        vo.setAuthorId(s.getAuthorId());
+        vo.setAuthorName(authorName != null ? authorName : "用户 #" + s.getAuthorId());
+        vo.setTitle(s.getTitle());
+        vo.setContent(s.getContent());
+        vo.setTags(s.getTags());
+        vo.setCreatedAt(s.getCreatedAt());
+        vo.setLikeCount(s.getLikeCount());
+        vo.setFavoriteCount(s.getFavoriteCount());
+        vo.setAnswerCount(s.getAnswerCount());
+        vo.setAnswers(new ArrayList<>());
+        return vo;
+    }
+
     public AnswerVO toAnswerVO(QuestionDO.AnswerDO a) {
         AnswerVO vo = new AnswerVO();
         vo.setAnswerId(a.getAnswerId());
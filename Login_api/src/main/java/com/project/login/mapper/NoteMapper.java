@@ -103,6 +103,26 @@ public interface NoteMapper {
     @ResultMap("NoteBaseResultMap")
     List<NoteDO> selectAll();
 
+    /**
+     * 按 id 键集分页扫描已发布的笔记（重建索引用），条件与 selectPublished 相同：
+     * 在 note_stats 中有记录，且不在未处理的 FLAGGED 审核记录中。草稿 / 私有 / 审核中的笔记不进入索引
+     */
+    @Select("""
+            SELECT n.id, n.title, n.filename, n.file_type, n.notebook_id, n.created_at, n.updated_at
+            FROM notes n
+            INNER JOIN note_stats ns ON n.id = ns.note_id
+            WHERE n.id > #{afterId}
+              AND n.id NOT IN (
+                SELECT note_id
+                FROM note_moderation
+                WHERE status = 'FLAGGED' AND is_handled = FALSE
+            )
+            ORDER BY n.id ASC
+            LIMIT #{limit}
+            """)
+    @ResultMap("NoteBaseResultMap")
+    List<NoteDO> selectPublishedAfterId(@Param("afterId") long afterId, @Param("limit") int limit);
+
     /**
      * 查询已发布的笔记列表（排除审核中的笔记）
      * 已发布的笔记：在note_stats表中有记录
@@ -121,4 +141,16 @@ public interface NoteMapper {
             """)
     @ResultMap("NoteBaseResultMap")
     List<NoteDO> selectPublished();
+
+    /**
+     * 用户自己的全部笔记 id（笔记 → 笔记本 → 笔记空间 → user_id），推荐时排除
+     */
+    @Select("""
+            SELECT n.id
+            FROM notes n
+            INNER JOIN notebooks nb ON n.notebook_id = nb.id
+            INNER JOIN note_spaces sp ON nb.space_id = sp.id
+            WHERE sp.user_id = #{userId}
+            """)
+    List<Long> selectIdsByUserId(Long userId);
 }
@@ -3,6 +3,7 @@ package com.project.login.mapper;
 import com.project.login.model.dataobject.NoteStatsDO;
 import org.apache.ibatis.annotations.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Mapper
@@ -28,6 +29,13 @@ public interface NoteStatsMapper {
     @Select("SELECT * FROM note_stats ORDER BY last_activity_at DESC LIMIT #{limit}")
     List<NoteStatsDO> getRecentUpdated(@Param("limit") int limit);
 
+    /** 按 (updated_at, note_id) 键集分页读取变更行（统计同步到 ES 使用） */
+    @Select("SELECT * FROM note_stats WHERE (updated_at, note_id) > (#{since}, #{afterNoteId}) " +
+            "ORDER BY updated_at, note_id LIMIT #{limit}")
+    List<NoteStatsDO> getUpdatedAfter(@Param("since") LocalDateTime since,
+                                      @Param("afterNoteId") long afterNoteId,
+                                      @Param("limit") int limit);
+
     @Select({
             "<script>",
             "SELECT * FROM note_stats WHERE note_id IN ",
@@ -61,4 +69,31 @@ public interface NoteStatsMapper {
             "version = version + 1 " +
             "WHERE note_id = #{noteId} AND version = #{version}")
     int updateTotalsIfVersion(NoteStatsDO noteStats);
+
+    /**
+     * 批量增量 upsert（一条多行 INSERT ... SELECT ... ON DUPLICATE KEY UPDATE），使用GREATEST防止负数。
+     * 行通常已由 changeField 冷启动时插入，这里的 INSERT 分支只兜底缺失的行。
+     * 增量与 notes 内连接：积压期间已删除的笔记（note_stats → notes 外键）直接跳过，不会让整段语句失败。
+     * 派生表的列名与 note_stats 不同，UPDATE 子句中的裸列名只指向 note_stats。
+     */
+    @Insert({
+            "<script>",
+            "INSERT INTO note_stats(note_id, author_name, views, likes, favorites, comments, last_activity_at, version) ",
+            "SELECT d.nid, d.aname, d.dv, d.dl, d.df, d.dc, d.lat, 0 FROM (",
+            "<foreach collection='rows' item='r' separator=' UNION ALL '>",
+            "SELECT #{r.noteId} AS nid, #{r.authorName} AS aname, #{r.views} AS dv, #{r.likes} AS dl, ",
+            "#{r.favorites} AS df, #{r.comments} AS dc, #{r.lastActivityAt} AS lat",
+            "</foreach>",
+            ") d INNER JOIN notes n ON n.id = d.nid",
+            " ON DUPLICATE KEY UPDATE ",
+            "author_name = IF(VALUES(author_name) = '', author_name, VALUES(author_name)), ",
+            "views = GREATEST(0, views + VALUES(views)), ",
+            "likes = GREATEST(0, likes + VALUES(likes)), ",
+            "favorites = GREATEST(0, favorites + VALUES(favorites)), ",
+            "comments = GREATEST(0, comments + VALUES(comments)), ",
+            "last_activity_at = GREATEST(COALESCE(last_activity_at, VALUES(last_activity_at)), VALUES(last_activity_at)), ",
+            "version = version + 1",
+            "</script>"
+    })
+    int upsertDeltas(@Param("rows") List<NoteStatsDO> rows);
 }
@@ -4,6 +4,9 @@ import com.project.login.model.dataobject.UserDO;
 import com.project.login.model.entity.UserEntity;
 import org.apache.ibatis.annotations.*;
 
+import java.util.Collection;
+import java.util.List;
+
 @Mapper
 public interface UserMapper {
 
@@ -16,6 +19,14 @@ public interface UserMapper {
             "FROM users WHERE id = #{id}")
     String selectNameById(Long id);
 
+    @Select({
+            "<script>",
+            "SELECT id, username, avatar_url AS avatarUrl FROM users WHERE id IN ",
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"
+    })
+    List<UserDO> selectBriefByIds(@Param("ids") Collection<Long> ids);
+
     @Select("SELECT id, username, password_hash AS passwordHash, enabled, role, studentNumber, email, " +
             "created_at AS createdAt, updated_at AS updatedAt, avatar_url AS avatarUrl " +
             "FROM users WHERE email = #{email}")
@@ -0,0 +1,65 @@
+package com.project.login.model.dataobject;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 问题列表（搜索 / 推荐）使用的轻量缓存项（question:summary:{questionId}）：
+ * 只保留列表展示与排序需要的字段，回答 / 评论树折叠为回答数与最新活跃时间。
+ */
+@Data
+public class QuestionSummary {
+
+    private String questionId;
+    private Long authorId;
+    private String title;
+    private String content;
+    private List<String> tags = new ArrayList<>();
+    private LocalDateTime createdAt;
+
+    private int likeCount;
+    private int favoriteCount;
+    private int answerCount;
+
+    /** 提问、回答、评论、回复中最晚的时间 */
+    private LocalDateTime lastActivityAt;
+
+    public static QuestionSummary from(QuestionDO q) {
+        QuestionSummary s = new QuestionSummary();
+        s.setQuestionId(q.getQuestionId());
+        s.setAuthorId(q.getAuthorId());
+        s.setTitle(q.getTitle());
+        s.setContent(q.getContent());
+        if (q.getTags() != null) s.setTags(q.getTags());
+        s.setCreatedAt(q.getCreatedAt());
+        s.setLikeCount(q.getLikes() != null ? q.getLikes().size() : 0);
+        s.setFavoriteCount(q.getFavorites() != null ? q.getFavorites().size() : 0);
+        s.setAnswerCount(q.getAnswers() != null ? q.getAnswers().size() : 0);
+
+        LocalDateTime latest = q.getCreatedAt();
+        if (q.getAnswers() != null) {
+            for (QuestionDO.AnswerDO ans : q.getAnswers()) {
+                latest = max(latest, ans.getCreatedAt());
+                if (ans.getComments() == null) continue;
+                for (QuestionDO.CommentDO c : ans.getComments()) {
+                    latest = max(latest, c.getCreatedAt());
+                    if (c.getReplies() == null) continue;
+                    for (QuestionDO.ReplyDO r : c.getReplies()) {
+                        latest = max(latest, r.getCreatedAt());
+                    }
+                }
+            }
+        }
+        s.setLastActivityAt(latest);
+        return s;
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return a.isAfter(b) ? a : b;
+    }
+}
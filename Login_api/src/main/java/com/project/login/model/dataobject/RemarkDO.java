@@ -5,7 +5,8 @@ import lombok.*;
 import org.bson.types.ObjectId;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
-import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -17,12 +18,17 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Builder
 @Document(collection="remark")
+@CompoundIndexes({
+        // 一级评论按 (created_at, _id) 键集分页；前缀 note_id 同时覆盖按笔记取全部评论
+        @CompoundIndex(name = "note_reply_created_id", def = "{'note_id': 1, 'is_reply': 1, 'created_at': 1, '_id': 1}"),
+        // 按父评论 (created_at, _id) 分页 / 取每个父评论的前 n 条回复
+        @CompoundIndex(name = "parent_created_id", def = "{'parent_id': 1, 'created_at': 1, '_id': 1}")
+})
 public class RemarkDO {
     @Id// MongoDB 中的主键字段为 id
     private String _id; // MongoDB 文档主键，对应 id
 
     @Field("note_id") // 将 noteId 映射为 note_id
-    @Indexed
     private Long noteId; // 属于哪篇笔记
 
     @Field("user_id") // 将 userId 映射为 user_id
@@ -20,9 +20,14 @@ public class RemarkLikeByUsersDO {
     @Id
     private String remarkId;
 
+    /** 旧格式：用户 id 数组，仅读取兼容，下一次写回时由 likers 取代 */
     @Field("user_list")
     private Set<Long> userList;
 
+    /** 点赞用户的紧凑编码（Roaring64NavigableMap portable 序列化，BSON Binary，见 RemarkLikers） */
+    @Field("likers")
+    private byte[] likers;
+
     @Version
     private Long version;
 }
\ No newline at end of file
@@ -5,4 +5,6 @@ import lombok.Data;
 @Data
 public class NoteSearchDTO {
     private String keyword;
+    private Integer size;
+    private String cursor;
 }
@@ -2,10 +2,13 @@ package com.project.login.model.entity;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.DateFormat;
 import org.springframework.data.elasticsearch.annotations.Document;
 import org.springframework.data.elasticsearch.annotations.Field;
 import org.springframework.data.elasticsearch.annotations.FieldType;
 
+import java.time.LocalDateTime;
+
 @Data
 @Document(indexName = "notes")
 public class NoteEntity {
@@ -19,4 +22,23 @@ public class NoteEntity {
     @Field(type = FieldType.Text)
     private String contentSummary; // 对应 content_summary
 
+    // ---- 以下为冗余的统计字段，由 NoteStatsIndexSyncService 定期部分更新，供 function_score 排序 ----
+
+    @Field(type = FieldType.Keyword)
+    private String authorName;
+
+    @Field(type = FieldType.Long)
+    private Long views;
+
+    @Field(type = FieldType.Long)
+    private Long likes;
+
+    @Field(type = FieldType.Long)
+    private Long favorites;
+
+    @Field(type = FieldType.Long)
+    private Long comments;
+
+    @Field(type = FieldType.Date, format = DateFormat.date_hour_minute_second_millis)
+    private LocalDateTime updatedAt; // 最近活跃时间
 }
@@ -0,0 +1,16 @@
+package com.project.login.model.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 笔记正文全文索引任务：由 NoteContentIndexConsumer 异步从 MinIO 读取 filename 并分块写入 ES
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NoteContentEvent {
+    private Long noteId;
+    private String filename; // 发布时的 MinIO 对象名，消费时与数据库不一致说明已被新版本替换
+}
@@ -2,10 +2,12 @@ package com.project.login.model.event;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.util.List;
 
 @Data
+@NoArgsConstructor
 @AllArgsConstructor
 public class QuestionEvent {
     private String questionId;    // Mongo 主键
@@ -0,0 +1,15 @@
+package com.project.login.model.request.notestats;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class NoteStatsBatchRequest {
+
+    @NotEmpty(message = "noteIds cannot be empty")
+    @Size(max = 10000, message = "noteIds cannot exceed 10000")
+    private List<Long> noteIds;
+}
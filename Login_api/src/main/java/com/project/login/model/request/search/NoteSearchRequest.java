@@ -1,5 +1,7 @@
 package com.project.login.model.request.search;
 
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
@@ -10,4 +12,8 @@ public class NoteSearchRequest {
     private String keyword;
     @NotNull
     private Long userId;
+    @Min(1)
+    @Max(100)
+    private Integer size;     // 每页条数，默认 30
+    private String cursor;    // 上一页返回的 nextCursor（search_after），为空表示第一页
 }
@@ -0,0 +1,20 @@
+package com.project.login.model.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class HotNotePageVO {
+    private String tag;                 // 标签榜的标签，全站榜为 null
+    private int offset;
+    private int limit;
+    private long total;                 // 榜单总条数
+    private List<NoteSearchVO> notes;   // 按热度降序
+}
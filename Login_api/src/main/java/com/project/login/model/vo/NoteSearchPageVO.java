@@ -0,0 +1,17 @@
+package com.project.login.model.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class NoteSearchPageVO {
+    private List<NoteSearchVO> notes;   // 按综合得分降序
+    private String nextCursor;          // 下一页游标，为 null 表示没有更多
+}
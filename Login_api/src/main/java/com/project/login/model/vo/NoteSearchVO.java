@@ -22,4 +22,8 @@ public class NoteSearchVO {
 
     private LocalDateTime updatedAt;
 
+    private Double hotScore; // 热榜分数（仅热榜接口返回）
+
+    private List<String> highlights; // 正文命中片段（仅搜索接口返回，<em> 标记关键词）
+
 }
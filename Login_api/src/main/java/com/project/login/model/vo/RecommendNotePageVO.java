@@ -0,0 +1,20 @@
+package com.project.login.model.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RecommendNotePageVO {
+    private String source;              // feed：流式作业预物化的候选；realtime：无候选时实时计算
+    private int offset;
+    private int limit;
+    private long total;                 // 候选总条数（已排除自己的笔记与最近看过的笔记）
+    private List<NoteSearchVO> notes;   // 按推荐分降序
+}
@@ -0,0 +1,26 @@
+package com.project.login.model.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReindexProgressVO {
+    private String alias;               // notes / questions
+    private String newIndex;            // 正在写入的版本化索引，如 notes_v20260101120000
+    private String status;              // RUNNING / SWAPPED / FAILED
+    private long total;                 // 源数据总条数（开始时统计）
+    private long processed;             // 已处理条数
+    private long failed;                // 写入失败（进入死信）条数
+    private double docsPerSecond;
+    private Long etaSeconds;            // 预计剩余秒数，未知时为 null
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String error;
+}
@@ -0,0 +1,18 @@
+package com.project.login.model.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RemarkPageVO {
+    private List<RemarkVO> items;       // 本页评论，各自带按深度 / 数量截断的回复子树
+    private String nextCursor;          // 下一页游标，没有更多时为 null
+    private boolean hasMore;
+}
@@ -45,6 +45,9 @@ public class RemarkVO {
     /** 子评论（仅一层） */
     private List<RemarkVO> replies;
 
+    /** 分页接口中：还有未返回的子评论时，传给 /remark/replies 继续展开的游标；已全部返回时为 null */
+    private String repliesCursor;
+
     /** 当前用户是否已经点赞 **/
     private Boolean likedOrNot;
 }
@@ -0,0 +1,25 @@
+package com.project.login.model.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SlowQueryVO {
+    private String queryType;           // 调用点，如 notes.search / questions.recommend
+    private String indices;             // 查询的索引（逗号分隔）
+    private String dsl;                 // 请求体 JSON（超长截断）
+    private long elapsedMs;             // 客户端观测耗时（含网络与反序列化）
+    private Long tookMs;                // ES 返回的 took，请求失败时为 null
+    private Long totalHits;
+    private boolean timedOut;
+    private Integer failedShards;
+    private String error;               // 请求失败时的异常信息
+    private LocalDateTime at;
+}
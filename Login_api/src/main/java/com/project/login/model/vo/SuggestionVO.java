@@ -0,0 +1,16 @@
+package com.project.login.model.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SuggestionVO {
+    private String text;    // 补全后的文本
+    private String type;    // query（热门搜索词）/ note（笔记标题）/ question（问题标题或标签）
+    private String id;      // note / question 的 id，query 为 null
+}
@@ -18,6 +18,9 @@ public interface RemarkRepository extends MongoRepository<RemarkDO, String> {
     List<RemarkDO> findRemarksByParentIdAndIsReplyTrue(String parentId);
     List<RemarkDO> findByUserId(Long userId);
 
+    /** 一篇笔记下的全部评论（各层回复都带 noteId），用于一次性组装评论树 */
+    List<RemarkDO> findByNoteId(Long noteId);
+
 
 
     void deleteByParentId(String parentId);      // 按 parentId 删除
@@ -0,0 +1,157 @@
+package com.project.login.service.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 延时双删（评论 / 问答 / 笔记缓存共用）：写库后立即删除一次，delay 之后再删除一次，
+ * 覆盖"写库前读到旧值、写库后才回填缓存"的并发读。
+ *  - 所有延时删除由一个调度线程执行，不再每次写入新建线程
+ *  - 待删除 key 有上限（max-pending），超出时放弃第二次删除并计数，第一次删除不受影响
+ *  - 同一 key 在延时窗口内重复提交合并为一次删除，删除时间顺延到最后一次提交之后 delay
+ *  - 每轮把已到期的 key 合并成一条 DEL 发送
+ * 指标：cache.invalidation.queue_depth、cache.invalidation.lag（实际删除相对预定时间的滞后）、
+ * cache.invalidation.coalesced、cache.invalidation.dropped
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DelayedCacheInvalidator {
+
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${cache.delayed-invalidation.delay-ms:50}")
+    private long delayMs;
+
+    @Value("${cache.delayed-invalidation.max-pending:10000}")
+    private int maxPending;
+
+    private record Pending(String key, long dueAt) {}
+
+    /** 延时相同，入队顺序即（近似的）到期顺序 */
+    private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+    /** 待删除的 key → 最后一次提交对应的到期时间 */
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private ScheduledExecutorService executor;
+    private Timer lag;
+    private Counter coalesced;
+    private Counter dropped;
+
+    @PostConstruct
+    void init() {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cache-invalidator");
+            t.setDaemon(true);
+            return t;
+        });
+        meterRegistry.gauge("cache.invalidation.queue_depth", pending, Map::size);
+        lag = Timer.builder("cache.invalidation.lag")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        coalesced = meterRegistry.counter("cache.invalidation.coalesced");
+        dropped = meterRegistry.counter("cache.invalidation.dropped");
+    }
+
+    /**
+     * 立即删除这些 key，并在 delay 之后再删除一次
+     */
+    public void doubleDelete(Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) return;
+        try {
+            redisTemplate.delete(keys);
+        } catch (Exception e) {
+            log.warn("缓存删除失败 keys={}", keys, e);
+        }
+        deleteLater(keys);
+    }
+
+    /**
+     * 仅在 delay 之后删除
+     */
+    public void deleteLater(Collection<String> keys) {
+        long dueAt = System.currentTimeMillis() + delayMs;
+        for (String key : keys) {
+            if (pending.size() >= maxPending && !pending.containsKey(key)) {
+                dropped.increment();
+                continue;
+            }
+            if (pending.put(key, dueAt) != null) {
+                coalesced.increment();
+                continue;
+            }
+            queue.add(new Pending(key, dueAt));
+        }
+        scheduleIfIdle(delayMs);
+    }
+
+    private void scheduleIfIdle(long delay) {
+        if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+            try {
+                executor.schedule(this::drain, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // 应用关闭中，剩余 key 由 shutdown 统一删除
+                scheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * 取出所有已到期的 key，一条 DEL 删除；队列里还有未到期的 key 时按队首的到期时间再调度
+     */
+    private void drain() {
+        long now = System.currentTimeMillis();
+        List<String> due = new ArrayList<>();
+        Pending head;
+        while ((head = queue.peek()) != null && head.dueAt() <= now) {
+            queue.poll();
+            Long latest = pending.get(head.key());
+            if (latest == null) continue;
+            if (latest > head.dueAt() || !pending.remove(head.key(), latest)) {
+                // 窗口内又提交过：顺延到最后一次提交的到期时间
+                queue.add(new Pending(head.key(), pending.getOrDefault(head.key(), latest)));
+                continue;
+            }
+            due.add(head.key());
+            lag.record(now - head.dueAt(), TimeUnit.MILLISECONDS);
+        }
+
+        if (!due.isEmpty()) {
+            try {
+                redisTemplate.delete(due);
+            } catch (Exception e) {
+                log.warn("延时删除缓存失败, {} 个 key", due.size(), e);
+            }
+        }
+
+        scheduled.set(false);
+        head = queue.peek();
+        if (head != null) scheduleIfIdle(Math.max(0, head.dueAt() - System.currentTimeMillis()));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+        List<String> rest = new ArrayList<>(pending.keySet());
+        if (rest.isEmpty()) return;
+        try {
+            redisTemplate.delete(rest);
+        } catch (Exception e) {
+            log.warn("关闭时删除剩余缓存失败, {} 个 key", rest.size(), e);
+        }
+    }
+}
@@ -1,29 +1,24 @@
 package com.project.login.service.favorites;
 
-import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import com.project.login.convert.QuestionConvert;
 import com.project.login.convert.SearchConvert;
-import com.project.login.mapper.NoteStatsMapper;
 import com.project.login.mapper.UserFavoriteNoteMapper;
 import com.project.login.model.dataobject.NoteStatsDO;
 import com.project.login.model.dataobject.QuestionDO;
 import com.project.login.model.vo.NoteSearchVO;
 import com.project.login.model.vo.qa.QuestionVO;
+import com.project.login.service.notestats.NoteStatsReader;
+import com.project.login.service.search.InstrumentedSearchClient;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
-import org.springframework.data.redis.core.HashOperations;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -34,16 +29,12 @@ public class FavoritesService {
     private final QuestionConvert questionConvert;
     private final MongoTemplate mongoTemplate;
     private final UserFavoriteNoteMapper userFavoriteNoteMapper;
-    private final ElasticsearchClient esClient;
+    private final InstrumentedSearchClient searchClient;
     
     @Qualifier("searchConvert")
     private final SearchConvert searchConvert;
     
-    private final NoteStatsMapper noteStatsMapper;
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final StringRedisTemplate redis;
-
-    private static final String REDIS_KEY_PREFIX = "note_stats:";
+    private final NoteStatsReader noteStatsReader;
 
     /**
      * 获取用户收藏的问题列表
@@ -79,7 +70,7 @@ public class FavoritesService {
             List<NoteSearchVO> notes = new ArrayList<>();
             try {
                 // 使用 ids 查询来批量获取笔记
-                var response = esClient.search(s -> s
+                var response = searchClient.search("favorites.notes", s -> s
                                 .index("notes")
                                 .size(noteIds.size())
                                 .query(q -> q
@@ -111,20 +102,18 @@ public class FavoritesService {
                 return Collections.emptyList();
             }
 
-            // 3. 批量加载 Redis 统计数据
-            Map<Long, NoteStatsDO> statsMap = loadStatsFromRedisThenMySQL(noteIds);
+            // 3. 批量加载统计数据（近端缓存 → Redis pipeline → MySQL IN 查询）
+            Map<Long, NoteStatsDO> statsMap = noteStatsReader.loadStats(noteIds);
 
             // 4. 将统计数据写入 VO
             notes.forEach(vo -> {
-                NoteStatsDO stats = statsMap.get(vo.getNoteId());
-                if (stats != null) {
-                    vo.setAuthorName(stats.getAuthorName());
-                    vo.setViewCount(stats.getViews().intValue());
-                    vo.setLikeCount(stats.getLikes().intValue());
-                    vo.setFavoriteCount(stats.getFavorites().intValue());
-                    vo.setCommentCount(stats.getComments().intValue());
-                    vo.setUpdatedAt(stats.getUpdatedAt());
-                }
+                NoteStatsDO stats = statsMap.getOrDefault(vo.getNoteId(), NoteStatsReader.defaultStats(vo.getNoteId()));
+                vo.setAuthorName(stats.getAuthorName());
+                vo.setViewCount(stats.getViews().intValue());
+                vo.setLikeCount(stats.getLikes().intValue());
+                vo.setFavoriteCount(stats.getFavorites().intValue());
+                vo.setCommentCount(stats.getComments().intValue());
+                vo.setUpdatedAt(stats.getUpdatedAt());
             });
 
             // 5. 按收藏时间倒序排序（最新的在前）
@@ -145,75 +134,4 @@ public class FavoritesService {
             throw new RuntimeException("获取收藏笔记列表失败", e);
         }
     }
-
-    /**
-     * 批量从 Redis 加载统计数据，如果 Redis 没有则从 MySQL 取并写入 Redis
-     */
-    private Map<Long, NoteStatsDO> loadStatsFromRedisThenMySQL(List<Long> ids) {
-        Map<Long, NoteStatsDO> result = new HashMap<>();
-        HashOperations<String, Object, Object> ops = redis.opsForHash();
-
-        for (Long id : ids) {
-            String key = REDIS_KEY_PREFIX + id;
-            Map<Object, Object> map = ops.entries(key);
-
-            if (map == null || map.isEmpty()) {
-                // Redis 未命中 → 查询 MySQL
-                NoteStatsDO db = noteStatsMapper.getById(id);
-                if (db == null) {
-                    db = defaultStats(id);
-                }
-                writeStatsToRedis(key, ops, db);
-                map = ops.entries(key);
-            }
-
-            result.put(id, mapToStats(id, map));
-        }
-
-        return result;
-    }
-
-    private void writeStatsToRedis(String key, HashOperations<String, Object, Object> ops, NoteStatsDO db) {
-        ops.put(key, "authorName", db.getAuthorName());
-        ops.put(key, "views", String.valueOf(db.getViews()));
-        ops.put(key, "likes", String.valueOf(db.getLikes()));
-        ops.put(key, "favorites", String.valueOf(db.getFavorites()));
-        ops.put(key, "comments", String.valueOf(db.getComments()));
-        ops.put(key, "last_activity_at", db.getLastActivityAt() == null ? "" : db.getLastActivityAt().toString());
-        redisTemplate.expire(key, 7, TimeUnit.DAYS);
-    }
-
-    private NoteStatsDO mapToStats(Long id, Map<Object, Object> map) {
-        NoteStatsDO stats = new NoteStatsDO();
-        stats.setNoteId(id);
-        stats.setAuthorName(map.get("authorName") != null ? map.get("authorName").toString() : "未知作者");
-        stats.setViews(Long.parseLong(map.getOrDefault("views", "0").toString()));
-        stats.setLikes(Long.parseLong(map.getOrDefault("likes", "0").toString()));
-        stats.setFavorites(Long.parseLong(map.getOrDefault("favorites", "0").toString()));
-        stats.setComments(Long.parseLong(map.getOrDefault("comments", "0").toString()));
-
-        String updatedStr = map.getOrDefault("updatedAt", "").toString();
-        if (updatedStr.isEmpty()) {
-            String lastActivityAt = map.getOrDefault("last_activity_at", "").toString();
-            stats.setUpdatedAt(lastActivityAt.isEmpty() ? null : LocalDateTime.parse(lastActivityAt));
-        } else {
-            stats.setUpdatedAt(LocalDateTime.parse(updatedStr));
-        }
-
-        stats.setVersion(Long.parseLong(map.getOrDefault("version", "0").toString()));
-        return stats;
-    }
-
-    private NoteStatsDO defaultStats(Long noteId) {
-        NoteStatsDO stats = new NoteStatsDO();
-        stats.setNoteId(noteId);
-        stats.setAuthorName("未知作者");
-        stats.setViews(0L);
-        stats.setLikes(0L);
-        stats.setFavorites(0L);
-        stats.setComments(0L);
-        stats.setVersion(0L);
-        stats.setUpdatedAt(null);
-        return stats;
-    }
 }
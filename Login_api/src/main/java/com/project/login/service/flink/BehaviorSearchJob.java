@@ -1,31 +1,34 @@
 
 package com.project.login.service.flink;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.project.login.model.event.UserBehaviorEvent;
 import com.project.login.model.event.UserSearchEvent;
-import org.apache.flink.api.common.state.ListState;
-import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.eventtime.WatermarkStrategy;
 import org.apache.flink.api.common.typeinfo.TypeHint;
 import org.apache.flink.api.common.typeinfo.TypeInformation;
 import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
-import org.apache.flink.streaming.api.functions.KeyedProcessFunction;
+import org.apache.flink.streaming.api.windowing.assigners.SlidingEventTimeWindows;
+import org.apache.flink.streaming.api.windowing.time.Time;
 import org.apache.flink.configuration.Configuration;
-import org.apache.flink.util.Collector;
-import redis.clients.jedis.Jedis;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.time.Duration;
 
 public class BehaviorSearchJob {
 
-    private static final ObjectMapper objectMapper = new ObjectMapper();
     private static final String REDIS_HOST = "localhost";
     private static final int REDIS_PORT = 6379;
-    private static final int TOP_N = 10;
+    private static final int TOP_N = 100;
+    private static final String HOT_NOTE_KEY = "hot_notes";
+    private static final long MAX_OUT_OF_ORDER_SECONDS = 5;
+
+    private static final String ES_HOST = "localhost";
+    private static final int ES_PORT = 9200;
+    private static final String USER_FEED_KEY_PREFIX = "user_feed:";
+    private static final int FEED_SIZE = 200;                    // 每个用户物化的候选数（ZSET 上限）
+    private static final int FEED_TOP_KEYWORDS = 10;             // 参与召回的画像关键词数
+    private static final double FEED_MIN_DISTANCE = 0.1;         // 画像余弦距离低于此值不重算
+    private static final long FEED_MIN_INTERVAL_MS = 5 * 60_000; // 同一用户两次重算的最小间隔
 
     public static void main(String[] args) throws Exception {
 
@@ -75,71 +78,35 @@ public class BehaviorSearchJob {
         searchStream.map(tuple -> "SearchEvent: " + tuple.f1).print();
 
         // -------------------- 用户画像融合 --------------------
-        behaviorStream
+        var profileStream = behaviorStream
                 .keyBy(tuple -> tuple.f0)
                 .connect(searchStream.keyBy(tuple -> tuple.f0))
-                .process(new UserProfileFusionFunction())
-                .map(fused -> "FusedProfile: " + fused)
-                .print();
+                .process(new UserProfileFusionFunction());
+
+        profileStream.map(fused -> "FusedProfile: " + fused).print();
+
+        // -------------------- 个人推荐候选物化 --------------------
+        // 画像变化超过阈值且满足限流间隔时重算候选，写入 user_feed:{userId}
+        profileStream
+                .keyBy(UserProfileSnapshot::userId)
+                .process(new UserFeedMaterializer(ES_HOST, ES_PORT, REDIS_HOST, REDIS_PORT,
+                        FEED_SIZE, FEED_TOP_KEYWORDS, FEED_MIN_DISTANCE, FEED_MIN_INTERVAL_MS))
+                .addSink(new UserFeedRedisSink(REDIS_HOST, REDIS_PORT, USER_FEED_KEY_PREFIX));
 
         // -------------------- Top-N 热点计算 --------------------
+        // 两阶段：① 事件时间滑动窗口内按 noteId 增量累加权重（可并行）；② 按 (标签, 窗口) 汇总，只保留 Top-N
         topNStream
-                // 不按 noteId keyBy，而是使用全局 key（所有事件合并计算 Top-N）
-                .keyBy(e -> 0) // 所有事件在同一个 key 上
-                .process(new KeyedProcessFunction<Integer, UserBehaviorEvent, Void>() {
-
-                    private ListState<UserBehaviorEvent> state;
-
-                    @Override
-                    public void open(org.apache.flink.configuration.Configuration parameters) {
-                        ListStateDescriptor<UserBehaviorEvent> desc =
-                                new ListStateDescriptor<>("behaviorListState", UserBehaviorEvent.class);
-                        state = getRuntimeContext().getListState(desc);
-                    }
-
-                    @Override
-                    public void processElement(UserBehaviorEvent value, Context ctx, Collector<Void> out) throws Exception {
-                        state.add(value);
-                        // 每 10 秒更新一次 Top-N
-                        ctx.timerService().registerProcessingTimeTimer(ctx.timerService().currentProcessingTime() + 10000);
-                    }
-
-                    @Override
-                    public void onTimer(long timestamp, OnTimerContext ctx, Collector<Void> out) throws Exception {
-                        long oneHourAgo = System.currentTimeMillis() - 3600_000L; // 1小时
-
-                        List<UserBehaviorEvent> recentEvents = new ArrayList<>();
-                        for (UserBehaviorEvent e : state.get()) {
-                            if (e.timestamp() >= oneHourAgo) {
-                                recentEvents.add(e);
-                            }
-                        }
-
-                        // 更新状态，只保留最近1小时事件
-                        state.update(recentEvents);
-
-                        // 累加笔记权重
-                        Map<Long, Integer> scoreMap = recentEvents.stream()
-                                .collect(Collectors.groupingBy(UserBehaviorEvent::noteId,
-                                        Collectors.summingInt(UserBehaviorEvent::weight)));
-
-                        // Top-N
-                        List<Long> topN = scoreMap.entrySet().stream()
-                                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed())
-                                .limit(TOP_N)
-                                .map(Map.Entry::getKey)
-                                .collect(Collectors.toList());
-
-                        // 打印 Top-N 笔记 ID
-                        System.out.println("Writing Top-N to Redis: " + topN);
-
-                        // 写入 Redis
-                        try (Jedis jedis = new Jedis(REDIS_HOST, REDIS_PORT)) {
-                            jedis.set("hot_notes", objectMapper.writeValueAsString(topN));
-                        }
-                    }
-
-                });
+                .assignTimestampsAndWatermarks(WatermarkStrategy
+                        .<UserBehaviorEvent>forBoundedOutOfOrderness(Duration.ofSeconds(MAX_OUT_OF_ORDER_SECONDS))
+                        .withTimestampAssigner((event, ts) -> event.timestamp()))
+                .keyBy(UserBehaviorEvent::noteId)
+                .window(SlidingEventTimeWindows.of(Time.hours(1), Time.minutes(1)))
+                .aggregate(new NoteWeightAggregate(), new NoteWeightAggregate.WindowResult())
+                .keyBy(HotNoteTopNFunction::rankingKey)
+                .process(new HotNoteTopNFunction(TOP_N))
+                .keyBy(HotNotesRedisSink::tagOf)
+                .addSink(new HotNotesRedisSink(REDIS_HOST, REDIS_PORT, HOT_NOTE_KEY))
+                .setParallelism(1);
 
         env.execute("Behavior + Search Stream with Fusion and Real-time Top-N Hot Notes");
     }
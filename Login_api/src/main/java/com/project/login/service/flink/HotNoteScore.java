@@ -0,0 +1,14 @@
+package com.project.login.service.flink;
+
+/**
+ * 单篇笔记在一个滑动窗口内的热度（行为权重之和）。
+ * tag 为空串表示全站榜，否则为该标签下的榜单。
+ */
+public record HotNoteScore(
+        Long noteId,
+        String tag,
+        long windowEnd,
+        long score
+) {
+    public static final String GLOBAL = "";
+}
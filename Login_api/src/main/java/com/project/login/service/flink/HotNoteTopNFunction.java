@@ -0,0 +1,75 @@
+package com.project.login.service.flink;
+
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.streaming.api.functions.KeyedProcessFunction;
+import org.apache.flink.util.Collector;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 第二阶段：按 (标签, 窗口结束时间) keyBy，每个榜单每个窗口只保留当前最大的 topN 条（超过即淘汰最小者），
+ * 水位线越过窗口结束时间后按分数降序输出并清空状态。状态大小 O(topN) / 榜单 / 窗口。
+ */
+public class HotNoteTopNFunction extends KeyedProcessFunction<String, HotNoteScore, List<HotNoteScore>> {
+
+    private final int topN;
+
+    private MapState<Long, Long> topScores;
+
+    public HotNoteTopNFunction(int topN) {
+        this.topN = topN;
+    }
+
+    /** 第二阶段的 key：标签 + 窗口结束时间 */
+    public static String rankingKey(HotNoteScore score) {
+        return score.tag() + "|" + score.windowEnd();
+    }
+
+    @Override
+    public void open(Configuration parameters) {
+        topScores = getRuntimeContext().getMapState(
+                new MapStateDescriptor<>("hotNoteTopN", Long.class, Long.class));
+    }
+
+    @Override
+    public void processElement(HotNoteScore value, Context ctx, Collector<List<HotNoteScore>> out) throws Exception {
+        topScores.put(value.noteId(), value.score());
+
+        // 超过 topN 时淘汰最小者（遍历 topN + 1 条）
+        int size = 0;
+        Long minId = null;
+        long minScore = Long.MAX_VALUE;
+        for (Map.Entry<Long, Long> e : topScores.entries()) {
+            size++;
+            if (e.getValue() < minScore) {
+                minScore = e.getValue();
+                minId = e.getKey();
+            }
+        }
+        if (size > topN) {
+            topScores.remove(minId);
+        }
+
+        // 同一窗口的所有笔记结果都带相同时间戳，windowEnd 后的第一个水位线触发输出
+        ctx.timerService().registerEventTimeTimer(value.windowEnd());
+    }
+
+    @Override
+    public void onTimer(long timestamp, OnTimerContext ctx, Collector<List<HotNoteScore>> out) throws Exception {
+        String key = ctx.getCurrentKey();
+        String tag = key.substring(0, key.lastIndexOf('|'));
+        List<HotNoteScore> ranked = new ArrayList<>(topN);
+        for (Map.Entry<Long, Long> e : topScores.entries()) {
+            ranked.add(new HotNoteScore(e.getKey(), tag, timestamp, e.getValue()));
+        }
+        topScores.clear();
+
+        ranked.sort(Comparator.comparingLong(HotNoteScore::score).reversed());
+        out.collect(ranked);
+    }
+}
@@ -0,0 +1,90 @@
+package com.project.login.service.flink;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.flink.api.common.state.StateTtlConfig;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.time.Time;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.streaming.api.functions.sink.RichSinkFunction;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Transaction;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把每个窗口的 Top-N 写成 Redis ZSET（member = noteId，score = 热度）：
+ * 全站榜写 {key}，标签榜写 {key}:tag:{标签}，出现过的标签记入 {key}:tags。
+ * 先写临时 key，再 MULTI 内 RENAME 覆盖正式 key，读者始终看到完整的一份榜单。
+ * 早于该榜单已发布窗口的结果（乱序到达）直接丢弃：输入按标签 keyBy，已发布窗口记在 keyed state 中，
+ * 标签长时间无新榜单时随 TTL 清除（与标签榜单 key 的过期时间一致）。
+ */
+@Slf4j
+public class HotNotesRedisSink extends RichSinkFunction<List<HotNoteScore>> {
+
+    private static final long TAG_RANKING_TTL_SECONDS = 3600;
+
+    private final String host;
+    private final int port;
+    private final String key;
+
+    private transient Jedis jedis;
+    private transient ValueState<Long> lastWindowEnd;
+
+    public HotNotesRedisSink(String host, int port, String key) {
+        this.host = host;
+        this.port = port;
+        this.key = key;
+    }
+
+    /** sink 输入的 key：榜单所属标签（onTimer 只输出非空榜单） */
+    public static String tagOf(List<HotNoteScore> ranked) {
+        return ranked.isEmpty() ? HotNoteScore.GLOBAL : ranked.get(0).tag();
+    }
+
+    @Override
+    public void open(Configuration parameters) {
+        jedis = new Jedis(host, port);
+        ValueStateDescriptor<Long> descriptor = new ValueStateDescriptor<>("hotNoteLastWindowEnd", Long.class);
+        descriptor.enableTimeToLive(StateTtlConfig.newBuilder(Time.seconds(TAG_RANKING_TTL_SECONDS)).build());
+        lastWindowEnd = getRuntimeContext().getState(descriptor);
+    }
+
+    @Override
+    public void invoke(List<HotNoteScore> ranked, Context context) throws Exception {
+        if (ranked.isEmpty()) return;
+        String tag = ranked.get(0).tag();
+        long windowEnd = ranked.get(0).windowEnd();
+        Long published = lastWindowEnd.value();
+        if (published != null && windowEnd < published) return;
+
+        String rankingKey = HotNoteScore.GLOBAL.equals(tag) ? key : key + ":tag:" + tag;
+
+        Map<String, Double> members = new HashMap<>();
+        for (HotNoteScore s : ranked) {
+            members.put(String.valueOf(s.noteId()), (double) s.score());
+        }
+
+        String tmpKey = rankingKey + ":tmp";
+        Transaction tx = jedis.multi();
+        tx.del(tmpKey);
+        tx.zadd(tmpKey, members);
+        tx.rename(tmpKey, rankingKey);
+        if (!HotNoteScore.GLOBAL.equals(tag)) {
+            // 标签一个窗口内无行为时不会再有新榜单，过期后自然消失
+            tx.expire(rankingKey, TAG_RANKING_TTL_SECONDS);
+            tx.sadd(key + ":tags", tag);
+        }
+        tx.exec();
+
+        lastWindowEnd.update(windowEnd);
+        log.debug("Writing Top-N to Redis: {}, window={}, size={}", rankingKey, windowEnd, ranked.size());
+    }
+
+    @Override
+    public void close() {
+        if (jedis != null) jedis.close();
+    }
+}
@@ -0,0 +1,57 @@
+package com.project.login.service.flink;
+
+import com.project.login.model.event.UserBehaviorEvent;
+import org.apache.flink.api.common.functions.AggregateFunction;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.streaming.api.functions.windowing.ProcessWindowFunction;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
+import org.apache.flink.util.Collector;
+
+/**
+ * 第一阶段：按 noteId 增量累加窗口内的行为权重，每个 (笔记, 窗口) 只保存 (权重和, 最近一次事件的标签)，不保存原始事件
+ */
+public class NoteWeightAggregate implements AggregateFunction<UserBehaviorEvent, Tuple2<Long, String>, Tuple2<Long, String>> {
+
+    @Override
+    public Tuple2<Long, String> createAccumulator() {
+        return Tuple2.of(0L, "");
+    }
+
+    @Override
+    public Tuple2<Long, String> add(UserBehaviorEvent event, Tuple2<Long, String> acc) {
+        acc.f0 += event.weight();
+        if (event.tags() != null && !event.tags().isEmpty()) acc.f1 = event.tags();
+        return acc;
+    }
+
+    @Override
+    public Tuple2<Long, String> getResult(Tuple2<Long, String> acc) {
+        return acc;
+    }
+
+    @Override
+    public Tuple2<Long, String> merge(Tuple2<Long, String> a, Tuple2<Long, String> b) {
+        return Tuple2.of(a.f0 + b.f0, b.f1.isEmpty() ? a.f1 : b.f1);
+    }
+
+    /**
+     * 窗口触发时带上 noteId 与窗口结束时间，供第二阶段按窗口汇总；
+     * 每篇笔记输出一条全站榜记录，并为其每个标签各输出一条标签榜记录
+     */
+    public static class WindowResult extends ProcessWindowFunction<Tuple2<Long, String>, HotNoteScore, Long, TimeWindow> {
+
+        @Override
+        public void process(Long noteId, Context ctx, Iterable<Tuple2<Long, String>> results, Collector<HotNoteScore> out) {
+            Tuple2<Long, String> result = results.iterator().next();
+            long score = result.f0;
+            if (score <= 0) return;
+
+            long windowEnd = ctx.window().getEnd();
+            out.collect(new HotNoteScore(noteId, HotNoteScore.GLOBAL, windowEnd, score));
+            for (String tag : result.f1.split(",")) {
+                tag = tag.trim();
+                if (!tag.isEmpty()) out.collect(new HotNoteScore(noteId, tag, windowEnd, score));
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.project.login.service.flink;
+
+import java.util.LinkedHashMap;
+
+/**
+ * 物化后的个人推荐候选：noteId → 分数（按分数降序），由 UserFeedRedisSink 写成 ZSET
+ */
+public record UserFeed(
+        Long userId,
+        LinkedHashMap<Long, Double> scores
+) {}
@@ -0,0 +1,201 @@
+package com.project.login.service.flink;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.query_dsl.FieldValueFactorModifier;
+import co.elastic.clients.elasticsearch._types.query_dsl.FunctionBoostMode;
+import co.elastic.clients.elasticsearch._types.query_dsl.FunctionScore;
+import co.elastic.clients.elasticsearch._types.query_dsl.FunctionScoreMode;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.rest_client.RestClientTransport;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeinfo.TypeHint;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.streaming.api.functions.KeyedProcessFunction;
+import org.apache.flink.util.Collector;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import redis.clients.jedis.Jedis;
+
+import java.util.*;
+
+/**
+ * 个人推荐候选物化：按 userId keyBy，画像变化足够大时重算该用户的候选笔记。
+ *  - 与上次物化时的画像余弦距离 < minDistance 时跳过（画像只是微调）
+ *  - 每个用户两次重算至少间隔 minIntervalMs；间隔内的变化只保留最新画像，
+ *    在间隔结束时由处理时间定时器补算一次，画像频繁抖动也不会形成重算风暴
+ *  - 候选：权重最高的 topKeywords 个关键词组成一次 bool should 查询（权重为子句 boost），
+ *    叠加 log1p(统计) 热度（权重与 SearchService 默认值一致），排除最近交互过的笔记，取前 feedSize 条
+ */
+@Slf4j
+public class UserFeedMaterializer extends KeyedProcessFunction<Long, UserProfileSnapshot, UserFeed> {
+
+    private static final String INDEX = "notes";
+    private static final String SEEN_KEY_PREFIX = "user_seen_notes:";
+
+    private final String esHost;
+    private final int esPort;
+    private final String redisHost;
+    private final int redisPort;
+    private final int feedSize;
+    private final int topKeywords;
+    private final double minDistance;
+    private final long minIntervalMs;
+
+    private transient ValueState<Map<String, Double>> materializedProfile;
+    private transient ValueState<Map<String, Double>> pendingProfile;
+    private transient ValueState<Long> lastComputedAt;
+    private transient ValueState<Long> timerAt;
+
+    private transient RestClient restClient;
+    private transient ElasticsearchClient esClient;
+    private transient Jedis jedis;
+
+    public UserFeedMaterializer(String esHost, int esPort, String redisHost, int redisPort,
+                                int feedSize, int topKeywords, double minDistance, long minIntervalMs) {
+        this.esHost = esHost;
+        this.esPort = esPort;
+        this.redisHost = redisHost;
+        this.redisPort = redisPort;
+        this.feedSize = feedSize;
+        this.topKeywords = topKeywords;
+        this.minDistance = minDistance;
+        this.minIntervalMs = minIntervalMs;
+    }
+
+    @Override
+    public void open(Configuration parameters) {
+        TypeInformation<Map<String, Double>> profileType = TypeInformation.of(new TypeHint<Map<String, Double>>() {});
+        materializedProfile = getRuntimeContext().getState(new ValueStateDescriptor<>("feedMaterializedProfile", profileType));
+        pendingProfile = getRuntimeContext().getState(new ValueStateDescriptor<>("feedPendingProfile", profileType));
+        lastComputedAt = getRuntimeContext().getState(new ValueStateDescriptor<>("feedLastComputedAt", Long.class));
+        timerAt = getRuntimeContext().getState(new ValueStateDescriptor<>("feedTimerAt", Long.class));
+
+        restClient = RestClient.builder(new HttpHost(esHost, esPort, "http")).build();
+        esClient = new ElasticsearchClient(new RestClientTransport(restClient, new JacksonJsonpMapper()));
+        jedis = new Jedis(redisHost, redisPort);
+    }
+
+    @Override
+    public void processElement(UserProfileSnapshot snapshot, Context ctx, Collector<UserFeed> out) throws Exception {
+        Map<String, Double> profile = snapshot.profile();
+        if (profile == null || profile.isEmpty()) return;
+        if (cosineDistance(materializedProfile.value(), profile) < minDistance) return;
+
+        long now = ctx.timerService().currentProcessingTime();
+        Long last = lastComputedAt.value();
+        if (last == null || now - last >= minIntervalMs) {
+            materialize(ctx.getCurrentKey(), profile, now, out);
+            return;
+        }
+
+        // 限流：记下最新画像，间隔结束时补算一次
+        pendingProfile.update(new HashMap<>(profile));
+        if (timerAt.value() == null) {
+            long fireAt = last + minIntervalMs;
+            ctx.timerService().registerProcessingTimeTimer(fireAt);
+            timerAt.update(fireAt);
+        }
+    }
+
+    @Override
+    public void onTimer(long timestamp, OnTimerContext ctx, Collector<UserFeed> out) throws Exception {
+        timerAt.clear();
+        Map<String, Double> pending = pendingProfile.value();
+        pendingProfile.clear();
+        if (pending != null && cosineDistance(materializedProfile.value(), pending) >= minDistance) {
+            materialize(ctx.getCurrentKey(), pending, timestamp, out);
+        }
+    }
+
+    private void materialize(Long userId, Map<String, Double> profile, long now, Collector<UserFeed> out) {
+        try {
+            out.collect(new UserFeed(userId, queryCandidates(userId, profile)));
+            materializedProfile.update(new HashMap<>(profile));
+            lastComputedAt.update(now);
+        } catch (Exception e) {
+            // 失败不更新状态，下一次画像变化时重试
+            log.error("Materialize feed failed for user {}", userId, e);
+        }
+    }
+
+    private LinkedHashMap<Long, Double> queryCandidates(Long userId, Map<String, Double> profile) throws Exception {
+        List<Map.Entry<String, Double>> top = profile.entrySet().stream()
+                .filter(e -> e.getKey() != null && !e.getKey().isBlank() && e.getValue() != null && e.getValue() > 0)
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(topKeywords)
+                .toList();
+        LinkedHashMap<Long, Double> scores = new LinkedHashMap<>();
+        if (top.isEmpty()) return scores;
+
+        double maxWeight = top.get(0).getValue();
+        List<String> seen = jedis.zrange(SEEN_KEY_PREFIX + userId, 0, -1);
+
+        Query recall = Query.of(q -> q.bool(b -> {
+            for (Map.Entry<String, Double> e : top) {
+                b.should(sh -> sh.multiMatch(m -> m
+                        .query(e.getKey())
+                        .fields("title^2", "contentSummary")
+                        .boost((float) (e.getValue() / maxWeight))));
+            }
+            if (!seen.isEmpty()) b.mustNot(mn -> mn.ids(i -> i.values(seen)));
+            return b.minimumShouldMatch("1");
+        }));
+
+        var response = esClient.search(s -> s
+                        .index(INDEX)
+                        .size(feedSize)
+                        .source(src -> src.fetch(false))
+                        .query(q -> q.functionScore(fs -> fs
+                                .query(recall)
+                                .functions(popularity("views", 1.0))
+                                .functions(popularity("likes", 1.5))
+                                .functions(popularity("favorites", 2.0))
+                                .functions(popularity("comments", 1.5))
+                                .scoreMode(FunctionScoreMode.Sum)
+                                .boostMode(FunctionBoostMode.Sum))),
+                Void.class);
+
+        for (Hit<Void> hit : response.hits().hits()) {
+            try {
+                scores.put(Long.valueOf(hit.id()), hit.score() == null ? 0.0 : hit.score());
+            } catch (NumberFormatException ignored) {
+                // 非笔记 id 的文档忽略
+            }
+        }
+        return scores;
+    }
+
+    private static FunctionScore popularity(String field, double weight) {
+        return FunctionScore.of(f -> f
+                .fieldValueFactor(v -> v.field(field).modifier(FieldValueFactorModifier.Log1p).missing(0.0))
+                .weight(weight));
+    }
+
+    /** 1 - cos(a, b)；任一为空时视为完全不同 */
+    static double cosineDistance(Map<String, Double> a, Map<String, Double> b) {
+        if (a == null || b == null || a.isEmpty() || b.isEmpty()) return 1.0;
+        double dot = 0, normA = 0, normB = 0;
+        for (Map.Entry<String, Double> e : a.entrySet()) {
+            double v = e.getValue();
+            normA += v * v;
+            Double w = b.get(e.getKey());
+            if (w != null) dot += v * w;
+        }
+        for (double w : b.values()) {
+            normB += w * w;
+        }
+        if (normA == 0 || normB == 0) return 1.0;
+        return 1.0 - dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (jedis != null) jedis.close();
+        if (restClient != null) restClient.close();
+    }
+}
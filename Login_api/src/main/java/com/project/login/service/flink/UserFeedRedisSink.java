@@ -0,0 +1,65 @@
+package com.project.login.service.flink;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.streaming.api.functions.sink.RichSinkFunction;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Transaction;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 把物化的推荐候选写成 ZSET {keyPrefix}{userId}（member = noteId，score = 候选分数），
+ * 与热榜相同：先写临时 key，再 MULTI 内 RENAME 覆盖，读者不会看到半份列表。
+ * 长期不活跃的用户 TTL 到期后回退到实时计算。
+ */
+@Slf4j
+public class UserFeedRedisSink extends RichSinkFunction<UserFeed> {
+
+    private static final long FEED_TTL_SECONDS = 7 * 24 * 3600;
+
+    private final String host;
+    private final int port;
+    private final String keyPrefix;
+
+    private transient Jedis jedis;
+
+    public UserFeedRedisSink(String host, int port, String keyPrefix) {
+        this.host = host;
+        this.port = port;
+        this.keyPrefix = keyPrefix;
+    }
+
+    @Override
+    public void open(Configuration parameters) {
+        jedis = new Jedis(host, port);
+    }
+
+    @Override
+    public void invoke(UserFeed feed, Context context) {
+        String feedKey = keyPrefix + feed.userId();
+        if (feed.scores().isEmpty()) {
+            jedis.del(feedKey);
+            return;
+        }
+
+        Map<String, Double> members = new HashMap<>();
+        feed.scores().forEach((noteId, score) -> members.put(String.valueOf(noteId), score));
+
+        String tmpKey = feedKey + ":tmp";
+        Transaction tx = jedis.multi();
+        tx.del(tmpKey);
+        tx.zadd(tmpKey, members);
+        tx.rename(tmpKey, feedKey);
+        tx.expire(feedKey, FEED_TTL_SECONDS);
+        tx.exec();
+
+        log.debug("Writing user feed to Redis: {}, size={}", feedKey, members.size());
+    }
+
+    @Override
+    public void close() {
+        if (jedis != null) jedis.close();
+    }
+}
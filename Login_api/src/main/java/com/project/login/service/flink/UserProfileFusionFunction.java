@@ -18,7 +18,7 @@ public class UserProfileFusionFunction
         extends KeyedCoProcessFunction<Long,
         Tuple2<Long, UserBehaviorEvent>,
         Tuple2<Long, UserSearchEvent>,
-        String> {
+        UserProfileSnapshot> {
 
     private MapState<String, Integer> behaviorProfile;
     private MapState<String, Integer> searchProfile;
@@ -43,7 +43,7 @@ public class UserProfileFusionFunction
     public void processElement1(
             Tuple2<Long, UserBehaviorEvent> tuple,
             Context ctx,
-            Collector<String> out) throws Exception {
+            Collector<UserProfileSnapshot> out) throws Exception {
 
         UserBehaviorEvent event = tuple.f1;
 
@@ -56,7 +56,7 @@ public class UserProfileFusionFunction
         Map<String, Double> fused = fuseProfile();
         writeToRedis(ctx.getCurrentKey(), fused);
 
-        out.collect("Updated fused profile for user " + ctx.getCurrentKey());
+        out.collect(new UserProfileSnapshot(ctx.getCurrentKey(), fused));
     }
 
 
@@ -64,7 +64,7 @@ public class UserProfileFusionFunction
     public void processElement2(
             Tuple2<Long, UserSearchEvent> tuple,
             Context ctx,
-            Collector<String> out) throws Exception {
+            Collector<UserProfileSnapshot> out) throws Exception {
 
         UserSearchEvent event = tuple.f1;
 
@@ -75,7 +75,7 @@ public class UserProfileFusionFunction
         Map<String, Double> fused = fuseProfile();
         writeToRedis(ctx.getCurrentKey(), fused);
 
-        out.collect("Updated fused profile for user " + ctx.getCurrentKey());
+        out.collect(new UserProfileSnapshot(ctx.getCurrentKey(), fused));
     }
 
     // 融合行为画像和搜索画像
@@ -0,0 +1,11 @@
+package com.project.login.service.flink;
+
+import java.util.Map;
+
+/**
+ * 一次融合后的用户画像（关键词 → 权重），由 UserProfileFusionFunction 在写入 Redis 的同时输出
+ */
+public record UserProfileSnapshot(
+        Long userId,
+        Map<String, Double> profile
+) {}
@@ -7,13 +7,16 @@ import com.project.login.mapper.TagMapper;
 import com.project.login.model.dto.userbehavior.UserBehaviorDTO;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 @Slf4j
@@ -29,6 +32,11 @@ public class UserBehaviorService {
 
     private static final String STREAM_KEY = "user_behavior_stream";
 
+    /** 用户最近交互过的笔记（ZSET，score 为时间戳），推荐时排除 */
+    public static final String SEEN_KEY_PREFIX = "user_seen_notes:";
+    private static final int SEEN_MAX = 500;
+    private static final long SEEN_TTL_SECONDS = TimeUnit.DAYS.toSeconds(30);
+
     public void recordBehavior(UserBehaviorDTO dto) {
 
         if (dto == null || dto.getUserId() == null || dto.getBehaviorType() == null) {
@@ -88,7 +96,20 @@ public class UserBehaviorService {
         map.put("weight", String.valueOf(weight));   // 行为强度
 
         redisTemplate.opsForStream().add(STREAM_KEY, map);
+        markSeen(dto.getUserId(), dto.getTargetId(), ts);
 
         log.info("User behavior recorded for Flink: {}", map);
     }
+
+    // 只保留最近 SEEN_MAX 篇，一次 pipeline 写入
+    private void markSeen(Long userId, Long noteId, long ts) {
+        byte[] key = (SEEN_KEY_PREFIX + userId).getBytes(StandardCharsets.UTF_8);
+        byte[] member = String.valueOf(noteId).getBytes(StandardCharsets.UTF_8);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.zSetCommands().zAdd(key, ts, member);
+            connection.zSetCommands().zRemRange(key, 0, -SEEN_MAX - 1);
+            connection.keyCommands().expire(key, SEEN_TTL_SECONDS);
+            return null;
+        });
+    }
 }
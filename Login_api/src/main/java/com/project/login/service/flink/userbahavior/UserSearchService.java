@@ -15,7 +15,7 @@ public class UserSearchService {
 
     private final StringRedisTemplate redisTemplate;
 
-    private static final String STREAM_KEY = "user_search_stream";
+    public static final String STREAM_KEY = "user_search_stream";
 
     public void recordSearch(Long userId, String keyword) {
 
@@ -1,182 +1,216 @@
 package com.project.login.service.hot;
 
+import com.project.login.model.vo.HotNotePageVO;
 import com.project.login.model.vo.NoteSearchVO;
-import com.project.login.repository.NoteRepository;
-import com.project.login.mapper.NoteStatsMapper;
-import com.project.login.model.dataobject.NoteStatsDO;
+import com.project.login.service.search.NoteCardRenderer;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.springframework.stereotype.Service;
-import org.springframework.data.redis.core.HashOperations;
-import org.springframework.data.redis.core.RedisTemplate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.stream.Collectors;
-
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 热榜读取。榜单由 Flink 作业（BehaviorSearchJob）以 ZSET 整体替换（临时 key + RENAME）：
+ *  - 全站榜 hot_notes，标签榜 hot_notes:tag:{标签}，有榜单的标签集合 hot_notes:tags
+ *  - 按 ZREVRANGE ... WITHSCORES 分页读取，渲染后的整页结果短时缓存在 hot_notes:page:*
+ *  - 滚动升级期间 hot_notes 可能仍是旧版作业写入的 String（JSON id 数组），读取时遇到类型不符就地迁移为 ZSET
+ */
+@Slf4j
 @Service
 public class HotService {
 
     private final StringRedisTemplate redisTemplate;
-    private final RedisTemplate<String, Object> redis;
     private final ObjectMapper objectMapper;
-    private final NoteStatsMapper noteStatsMapper;
-    private final NoteRepository noteRepository; // 注入 NoteRepository
+    private final NoteCardRenderer noteCardRenderer;
 
     private static final String HOT_NOTE_KEY = "hot_notes";
-    private static final String REDIS_KEY_PREFIX = "note_stats:";
+    private static final String HOT_TAG_KEY_PREFIX = "hot_notes:tag:";
+    private static final String HOT_TAGS_KEY = "hot_notes:tags";
+    private static final String HOT_PAGE_KEY_PREFIX = "hot_notes:page:";
+
+    /**
+     * 旧版 String 榜单迁移为 ZSET：仍为 String 时才替换（避免覆盖新作业刚 RENAME 进来的 ZSET），
+     * 按原顺序给出递减分数。KEYS[1] = 榜单 key；ARGV = 按热度排好序的 noteId。返回 1 = 已迁移
+     */
+    private static final RedisScript<Long> MIGRATE_LEGACY_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('TYPE', KEYS[1]).ok ~= 'string' then
+                return 0
+            end
+            redis.call('DEL', KEYS[1])
+            for i = 1, #ARGV do
+                redis.call('ZADD', KEYS[1], #ARGV - i + 1, ARGV[i])
+            end
+            return 1
+            """, Long.class);
+
+    public static final int DEFAULT_LIMIT = 10;
+    public static final int MAX_LIMIT = 100;
+
+    @Value("${hot.page-cache-ttl-seconds:10}")
+    private long pageCacheTtlSeconds;
 
     public HotService(StringRedisTemplate redisTemplate,
-                      RedisTemplate<String, Object> redis,
                       ObjectMapper objectMapper,
-                      NoteStatsMapper noteStatsMapper,
-                      NoteRepository noteRepository) {
+                      NoteCardRenderer noteCardRenderer) {
         this.redisTemplate = redisTemplate;
-        this.redis = redis;
         this.objectMapper = objectMapper;
-        this.noteStatsMapper = noteStatsMapper;
-        this.noteRepository = noteRepository;
+        this.noteCardRenderer = noteCardRenderer;
     }
 
+    /**
+     * 全站榜前 DEFAULT_LIMIT 条（兼容旧接口）
+     */
     public List<NoteSearchVO> getHotNotesDetail() {
-        List<Long> hotNoteIds = getHotNoteIds();
-        System.out.println(hotNoteIds);
-        if (hotNoteIds.isEmpty()) return Collections.emptyList();
-
-        Map<Long, NoteSearchVO> voMap = new LinkedHashMap<>();
-
-        // 使用 NoteRepository 批量查询
-        for (Long noteId : hotNoteIds) {
-            noteRepository.findById(noteId).ifPresent(entity -> {
-                NoteSearchVO vo = new NoteSearchVO();
-                vo.setNoteId(noteId);
-                vo.setTitle(entity.getTitle());
-                vo.setContentSummary(entity.getContentSummary());
-                voMap.put(noteId, vo);
-            });
+        return getHotNotes(null, 0, DEFAULT_LIMIT).getNotes();
+    }
+
+    /**
+     * 分页读取热榜；tag 为空时读全站榜
+     */
+    public HotNotePageVO getHotNotes(String tag, int offset, int limit) {
+        String normalizedTag = (tag == null || tag.isBlank()) ? null : tag.trim();
+        int from = Math.max(0, offset);
+        int size = Math.min(Math.max(1, limit), MAX_LIMIT);
+
+        // === 1) 渲染结果缓存 ===
+        String pageKey = HOT_PAGE_KEY_PREFIX + Objects.toString(normalizedTag, "") + ":" + from + ":" + size;
+        HotNotePageVO cached = readPageCache(pageKey);
+        if (cached != null) return cached;
+
+        // === 2) ZREVRANGE WITHSCORES + ZCARD ===
+        String rankingKey = normalizedTag == null ? HOT_NOTE_KEY : HOT_TAG_KEY_PREFIX + normalizedTag;
+        Set<ZSetOperations.TypedTuple<String>> range;
+        Long total;
+        try {
+            range = redisTemplate.opsForZSet().reverseRangeWithScores(rankingKey, from, from + size - 1L);
+            total = redisTemplate.opsForZSet().zCard(rankingKey);
+        } catch (DataAccessException e) {
+            // WRONGTYPE：旧版 String 榜单，迁移后重读一次；迁移不了的照常抛出
+            if (!migrateLegacyRanking(rankingKey)) throw e;
+            range = redisTemplate.opsForZSet().reverseRangeWithScores(rankingKey, from, from + size - 1L);
+            total = redisTemplate.opsForZSet().zCard(rankingKey);
         }
 
-        // 批量加载状态
-        Map<Long, NoteStatsDO> statsMap = loadStatsFromRedisThenDB(hotNoteIds);
-
-        // 写入 VO
-        voMap.forEach((id, vo) -> {
-            NoteStatsDO stats = statsMap.get(id);
-            if (stats != null) {
-                vo.setAuthorName(stats.getAuthorName());
-                vo.setViewCount(stats.getViews().intValue());
-                vo.setLikeCount(stats.getLikes().intValue());
-                vo.setFavoriteCount(stats.getFavorites().intValue());
-                vo.setCommentCount(stats.getComments().intValue());
+        LinkedHashMap<Long, Double> scores = new LinkedHashMap<>();
+        if (range != null) {
+            for (ZSetOperations.TypedTuple<String> t : range) {
+                if (t.getValue() == null) continue;
+                try {
+                    scores.put(Long.valueOf(t.getValue()), t.getScore());
+                } catch (NumberFormatException e) {
+                    log.warn("Invalid hot note member {} in {}", t.getValue(), rankingKey);
+                }
             }
-        });
+        }
 
-        // 保持热门顺序
-        return hotNoteIds.stream()
-                .map(voMap::get)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+        HotNotePageVO page = HotNotePageVO.builder()
+                .tag(normalizedTag)
+                .offset(from)
+                .limit(size)
+                .total(total == null ? 0 : total)
+                .notes(render(scores))
+                .build();
+
+        writePageCache(pageKey, page);
+        return page;
     }
 
+    /**
+     * 当前有榜单的标签：一次 pipeline EXISTS 全部标签榜，已过期的一次 SREM 移出标签集合
+     */
+    public List<String> getHotTags() {
+        Set<String> members = redisTemplate.opsForSet().members(HOT_TAGS_KEY);
+        if (members == null || members.isEmpty()) return Collections.emptyList();
+
+        List<String> tags = new ArrayList<>(members);
+        List<Object> exists = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String tag : tags) {
+                connection.keyCommands().exists(bytes(HOT_TAG_KEY_PREFIX + tag));
+            }
+            return null;
+        });
 
-    private List<Long> getHotNoteIds() {
-        try {
-            String json = redisTemplate.opsForValue().get(HOT_NOTE_KEY);
-            if (json != null && !json.isEmpty()) {
-                // 清理可能的格式问题：去除前后空白
-                json = json.trim();
-                
-                // 处理多个 JSON 值连接的情况（如 [1,2][3,4] 或 [1,2]-[3,4]）
-                if (json.startsWith("[")) {
-                    // 找到第一个完整的 JSON 数组的结束位置
-                    int bracketCount = 0;
-                    int endIndex = -1;
-                    for (int i = 0; i < json.length(); i++) {
-                        char c = json.charAt(i);
-                        if (c == '[') bracketCount++;
-                        if (c == ']') bracketCount--;
-                        if (bracketCount == 0 && i > 0) {
-                            endIndex = i;
-                            break;
-                        }
-                    }
-                    if (endIndex > 0 && endIndex < json.length() - 1) {
-                        // 如果后面还有内容，只取第一个完整的 JSON 数组
-                        json = json.substring(0, endIndex + 1);
-                    }
-                }
-                
-                // 验证 JSON 格式：必须是有效的数组格式
-                if (!json.startsWith("[") || !json.endsWith("]")) {
-                    throw new IllegalArgumentException("Redis 中的数据不是有效的 JSON 数组格式: " + json);
-                }
-                
-                return objectMapper.readValue(json, new TypeReference<List<Long>>() {});
+        List<String> live = new ArrayList<>();
+        List<Object> expired = new ArrayList<>();
+        for (int i = 0; i < tags.size(); i++) {
+            Object r = i < exists.size() ? exists.get(i) : null;
+            if (Boolean.FALSE.equals(r)) {
+                expired.add(tags.get(i)); // 标签榜已过期
+            } else {
+                live.add(tags.get(i));
             }
-        } catch (Exception e) {
-            // 记录详细的错误信息，包括原始 JSON 数据
-            String json = redisTemplate.opsForValue().get(HOT_NOTE_KEY);
-            System.err.println("========== 解析热榜数据失败 ==========");
-            System.err.println("原始数据: " + json);
-            System.err.println("数据长度: " + (json != null ? json.length() : 0));
-            System.err.println("错误类型: " + e.getClass().getName());
-            System.err.println("错误信息: " + e.getMessage());
-            e.printStackTrace();
-            System.err.println("=====================================");
         }
-        return Collections.emptyList();
-    }
-
-    private Map<Long, NoteStatsDO> loadStatsFromRedisThenDB(List<Long> noteIds) {
-        Map<Long, NoteStatsDO> result = new HashMap<>();
-        HashOperations<String, Object, Object> ops = redis.opsForHash();
+        if (!expired.isEmpty()) redisTemplate.opsForSet().remove(HOT_TAGS_KEY, expired.toArray());
 
-        for (Long id : noteIds) {
-            String key = REDIS_KEY_PREFIX + id;
-            Map<Object, Object> map = ops.entries(key);
+        Collections.sort(live);
+        return live;
+    }
 
-            if (map == null || map.isEmpty()) {
-                // Redis 未命中 → 查询 MySQL
-                NoteStatsDO db = noteStatsMapper.getById(id);
-                if (db == null) db = defaultStats(id);
-                writeStatsToRedis(key, ops, db);
-                map = ops.entries(key);
+    /**
+     * 榜单 key 仍为旧版 String（JSON id 数组，可能有多个数组首尾相接）时就地迁移为 ZSET。
+     * 分数只保留顺序，下一次作业窗口 RENAME 后即为真实热度分
+     */
+    private boolean migrateLegacyRanking(String rankingKey) {
+        if (redisTemplate.type(rankingKey) != DataType.STRING) return false;
+
+        List<String> ids = new ArrayList<>();
+        String json = redisTemplate.opsForValue().get(rankingKey);
+        if (json != null && !json.isBlank()) {
+            try (MappingIterator<List<Long>> it = objectMapper.readerFor(new TypeReference<List<Long>>() {})
+                    .readValues(json.trim())) {
+                if (it.hasNext()) it.next().stream().filter(Objects::nonNull).map(String::valueOf).forEach(ids::add);
+            } catch (Exception e) {
+                log.warn("Unparseable legacy hot ranking {}, replacing with empty ranking", rankingKey, e);
             }
-
-            result.put(id, mapToStats(id, map));
         }
 
-        return result;
+        Long migrated = redisTemplate.execute(MIGRATE_LEGACY_SCRIPT, List.of(rankingKey), ids.toArray());
+        log.info("Legacy hot ranking {} migrated to sorted set ({} notes, migrated={})", rankingKey, ids.size(), migrated);
+        return true;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
     }
 
-    private void writeStatsToRedis(String key, HashOperations<String, Object, Object> ops, NoteStatsDO db) {
-        ops.put(key, "authorName", db.getAuthorName());
-        ops.put(key, "views", String.valueOf(db.getViews()));
-        ops.put(key, "likes", String.valueOf(db.getLikes()));
-        ops.put(key, "favorites", String.valueOf(db.getFavorites()));
-        ops.put(key, "comments", String.valueOf(db.getComments()));
-        redis.expire(key, 7, java.util.concurrent.TimeUnit.DAYS);
+    /**
+     * 按榜单顺序组装 VO，并带上榜单分数
+     */
+    private List<NoteSearchVO> render(LinkedHashMap<Long, Double> scores) {
+        List<NoteSearchVO> notes = noteCardRenderer.render(scores.keySet());
+        notes.forEach(vo -> vo.setHotScore(scores.get(vo.getNoteId())));
+        return notes;
     }
 
-    private NoteStatsDO mapToStats(Long id, Map<Object, Object> map) {
-        NoteStatsDO stats = new NoteStatsDO();
-        stats.setNoteId(id);
-        stats.setAuthorName(map.getOrDefault("authorName", "未知作者").toString());
-        stats.setViews(Long.parseLong(map.getOrDefault("views", "0").toString()));
-        stats.setLikes(Long.parseLong(map.getOrDefault("likes", "0").toString()));
-        stats.setFavorites(Long.parseLong(map.getOrDefault("favorites", "0").toString()));
-        stats.setComments(Long.parseLong(map.getOrDefault("comments", "0").toString()));
-        return stats;
+    private HotNotePageVO readPageCache(String pageKey) {
+        if (pageCacheTtlSeconds <= 0) return null;
+        try {
+            String json = redisTemplate.opsForValue().get(pageKey);
+            return json == null ? null : objectMapper.readValue(json, HotNotePageVO.class);
+        } catch (Exception e) {
+            log.warn("Failed to read hot page cache {}", pageKey, e);
+            return null;
+        }
     }
 
-    private NoteStatsDO defaultStats(Long noteId) {
-        NoteStatsDO stats = new NoteStatsDO();
-        stats.setNoteId(noteId);
-        stats.setAuthorName("未知作者");
-        stats.setViews(0L);
-        stats.setLikes(0L);
-        stats.setFavorites(0L);
-        stats.setComments(0L);
-        return stats;
+    private void writePageCache(String pageKey, HotNotePageVO page) {
+        if (pageCacheTtlSeconds <= 0) return;
+        try {
+            redisTemplate.opsForValue().set(pageKey, objectMapper.writeValueAsString(page), pageCacheTtlSeconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("Failed to write hot page cache {}", pageKey, e);
+        }
     }
 }
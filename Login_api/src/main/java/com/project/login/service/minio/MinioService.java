@@ -7,6 +7,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
@@ -144,6 +145,20 @@ public class MinioService {
         }
     }
 
+    // 以流的方式读取文件（调用方负责关闭），大文件不整体载入内存
+    public InputStream openStream(String fileName) {
+        try {
+            return minioClient.getObject(
+                    GetObjectArgs.builder()
+                            .bucket(bucket)
+                            .object(fileName)
+                            .build()
+            );
+        } catch (Exception e) {
+            throw new RuntimeException("Download failed", e);
+        }
+    }
+
     // 根据文件名删除文件
     public void deleteFile(String fileName) {
         try {
@@ -0,0 +1,118 @@
+package com.project.login.service.notestats;
+
+import com.project.login.model.dataobject.NoteStatsDO;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * note_stats:{id} Hash 的版本化编解码。
+ *  - v1 LEGACY：长字段名 + 字符串值（last_activity_at 为 ISO 时间）
+ *  - v2 COMPACT：单字母字段名 + 整数值（t 为 epoch 秒），小 Hash 以 listpack 整数编码存储
+ * 写入格式由 note-stats.encoding 决定；读取始终兼容两种格式（在线迁移期间新旧 key 共存），
+ * changeField 脚本在写入时把旧格式 key 就地转换为当前格式。
+ */
+@Component
+public class NoteStatsCodec {
+
+    public static final int LEGACY = 1;
+    public static final int COMPACT = 2;
+
+    /** 逻辑字段顺序，与 COMPACT_FIELDS 一一对应（changeField 脚本按下标使用） */
+    public static final List<String> LEGACY_FIELDS =
+            List.of("authorName", "views", "likes", "favorites", "comments", "last_activity_at", "version");
+    public static final List<String> COMPACT_FIELDS =
+            List.of("a", "v", "l", "f", "c", "t", "r");
+
+    private static final int IDX_LAST_ACTIVITY = 5;
+
+    @Getter
+    private final int encoding;
+
+    public NoteStatsCodec(@Value("${note-stats.encoding:legacy}") String encoding) {
+        this.encoding = "compact".equalsIgnoreCase(encoding) ? COMPACT : LEGACY;
+    }
+
+    /** 当前写入格式下逻辑字段对应的 Hash 字段名 */
+    public String field(String logical) {
+        int idx = LEGACY_FIELDS.indexOf(logical);
+        if (idx < 0) throw new IllegalArgumentException("Unknown note stats field: " + logical);
+        return encoding == COMPACT ? COMPACT_FIELDS.get(idx) : logical;
+    }
+
+    /** 当前写入格式下的活跃时间值 */
+    public String formatActivity(LocalDateTime at) {
+        if (at == null) return "";
+        return encoding == COMPACT
+                ? String.valueOf(at.atZone(ZoneId.systemDefault()).toEpochSecond())
+                : at.toString();
+    }
+
+    /** 按当前写入格式编码整条统计 */
+    public Map<String, String> encode(NoteStatsDO stats) {
+        List<String> names = encoding == COMPACT ? COMPACT_FIELDS : LEGACY_FIELDS;
+        Map<String, String> hash = new HashMap<>();
+        hash.put(names.get(0), Objects.toString(stats.getAuthorName(), ""));
+        hash.put(names.get(1), String.valueOf(stats.getViews()));
+        hash.put(names.get(2), String.valueOf(stats.getLikes()));
+        hash.put(names.get(3), String.valueOf(stats.getFavorites()));
+        hash.put(names.get(4), String.valueOf(stats.getComments()));
+        hash.put(names.get(IDX_LAST_ACTIVITY), formatActivity(stats.getLastActivityAt()));
+        hash.put(names.get(6), String.valueOf(stats.getVersion()));
+        return hash;
+    }
+
+    /**
+     * 解码任意格式的 Hash（不存在的字段按 0 / null）。authorName 缺失时返回 null，由调用方决定默认值。
+     */
+    public static NoteStatsDO decode(Long noteId, Map<?, ?> hash) {
+        NoteStatsDO stats = new NoteStatsDO();
+        stats.setNoteId(noteId);
+        Object author = get(hash, "authorName");
+        stats.setAuthorName(author == null ? null : author.toString());
+        stats.setViews(parseLong(get(hash, "views")));
+        stats.setLikes(parseLong(get(hash, "likes")));
+        stats.setFavorites(parseLong(get(hash, "favorites")));
+        stats.setComments(parseLong(get(hash, "comments")));
+        stats.setVersion(parseLong(get(hash, "version")));
+        LocalDateTime at = parseActivity(get(hash, "last_activity_at"));
+        stats.setLastActivityAt(at);
+        stats.setUpdatedAt(at);
+        return stats;
+    }
+
+    /** 读取逻辑字段：优先 compact 字段名，其次旧字段名 */
+    public static Object get(Map<?, ?> hash, String logical) {
+        int idx = LEGACY_FIELDS.indexOf(logical);
+        Object v = idx < 0 ? null : hash.get(COMPACT_FIELDS.get(idx));
+        return v != null ? v : hash.get(logical);
+    }
+
+    /** 两种格式的活跃时间：纯数字为 epoch 秒，否则按 ISO 解析；非法返回 null */
+    public static LocalDateTime parseActivity(Object value) {
+        if (value == null) return null;
+        String s = value.toString();
+        if (s.isEmpty()) return null;
+        try {
+            if (s.chars().allMatch(Character::isDigit)) {
+                return LocalDateTime.ofInstant(Instant.ofEpochSecond(Long.parseLong(s)), ZoneId.systemDefault());
+            }
+            return LocalDateTime.parse(s);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static long parseLong(Object o) {
+        if (o == null) return 0L;
+        try { return Math.max(0, Long.parseLong(o.toString())); } catch (Exception ex) { return 0L; }
+    }
+}
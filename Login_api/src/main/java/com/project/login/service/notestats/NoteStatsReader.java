@@ -0,0 +1,228 @@
+package com.project.login.service.notestats;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.project.login.mapper.NoteStatsMapper;
+import com.project.login.model.dataobject.NoteStatsDO;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 笔记统计的统一读路径（热榜 / 搜索 / 收藏 / getStats 共用）：
+ *  1) 进程内近端缓存（Caffeine，容量上限 + 短 TTL）
+ *  2) 未命中的 id 一次 pipeline HGETALL
+ *  3) Redis 仍未命中的 id 一次 SELECT ... WHERE note_id IN (...)，再 pipeline 回写 Redis（仅在 key 仍不存在时写入）
+ * 近端缓存由 NoteStatsService.changeField 发布到 INVALIDATE_CHANNEL 的 noteId 失效；
+ * views 不发布失效消息，最多落后一个 TTL。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class NoteStatsReader {
+
+    public static final String INVALIDATE_CHANNEL = "note_stats_invalidate";
+
+    private static final String REDIS_KEY_PREFIX = "note_stats:";
+    private static final long STATS_TTL_SECONDS = TimeUnit.DAYS.toSeconds(7);
+
+    /**
+     * DB 回写脚本：key 已存在时不写（读 DB 到回写之间，changeField 可能已初始化并累加了这篇笔记，
+     * 直接 HSET 会用旧的 DB 值覆盖这些增量）。KEYS[1] = note_stats:{id}；ARGV[1] = ttl 秒，ARGV[2..] = field, value 成对
+     * 返回 1 = 已写入，0 = key 已存在
+     */
+    private static final RedisScript<Long> WRITE_BACK_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 1 then
+                return 0
+            end
+            redis.call('HSET', KEYS[1], unpack(ARGV, 2))
+            redis.call('EXPIRE', KEYS[1], ARGV[1])
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate redis;
+    private final NoteStatsMapper noteStatsMapper;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final NoteStatsCodec noteStatsCodec;
+    private final NoteStatsShardManager noteStatsShardManager;
+
+    @Value("${note-stats.near-cache.max-size:10000}")
+    private long nearCacheMaxSize;
+
+    @Value("${note-stats.near-cache.ttl-ms:2000}")
+    private long nearCacheTtlMs;
+
+    private Cache<Long, NoteStatsDO> nearCache;
+
+    @PostConstruct
+    void init() {
+        nearCache = Caffeine.newBuilder()
+                .maximumSize(nearCacheMaxSize)
+                .expireAfterWrite(Duration.ofMillis(nearCacheTtlMs))
+                .build();
+
+        listenerContainer.addMessageListener((message, pattern) -> {
+            try {
+                invalidate(Long.parseLong(new String(message.getBody(), StandardCharsets.UTF_8)));
+            } catch (NumberFormatException e) {
+                log.warn("Invalid note stats invalidation message: {}", message);
+            }
+        }, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    public void invalidate(Long noteId) {
+        nearCache.invalidate(noteId);
+    }
+
+    /**
+     * 批量读取统计。只返回 Redis 或 MySQL 中存在的笔记，不存在的由调用方用 {@link #defaultStats} 兜底。
+     */
+    public Map<Long, NoteStatsDO> loadStats(Collection<Long> noteIds) {
+        Map<Long, NoteStatsDO> result = loadBaseStats(noteIds);
+
+        // 分片笔记：叠加尚未合并的分片增量（拷贝后叠加，不污染近端缓存）
+        noteStatsShardManager.pendingShardDeltas(result.keySet()).forEach((id, sums) -> {
+            NoteStatsDO base = result.get(id);
+            NoteStatsDO merged = base.toBuilder()
+                    .views(Math.max(0, base.getViews() + sums[0]))
+                    .likes(Math.max(0, base.getLikes() + sums[1]))
+                    .build();
+            result.put(id, merged);
+        });
+        return result;
+    }
+
+    private Map<Long, NoteStatsDO> loadBaseStats(Collection<Long> noteIds) {
+        Map<Long, NoteStatsDO> result = new HashMap<>();
+        if (noteIds == null || noteIds.isEmpty()) return result;
+
+        // === 1) 近端缓存 ===
+        List<Long> redisIds = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(noteIds)) {
+            if (id == null) continue;
+            NoteStatsDO cached = nearCache.getIfPresent(id);
+            if (cached != null) {
+                result.put(id, cached);
+            } else {
+                redisIds.add(id);
+            }
+        }
+        if (redisIds.isEmpty()) return result;
+
+        // === 2) 一次 pipeline HGETALL ===
+        List<Object> hashes = redis.executePipelined((RedisCallback<Object>) connection -> {
+            for (Long id : redisIds) {
+                connection.hashCommands().hGetAll(keyBytes(id));
+            }
+            return null;
+        });
+
+        List<Long> dbIds = new ArrayList<>();
+        for (int i = 0; i < redisIds.size(); i++) {
+            Long id = redisIds.get(i);
+            Object map = i < hashes.size() ? hashes.get(i) : null;
+            if (map instanceof Map<?, ?> m && !m.isEmpty()) {
+                NoteStatsDO stats = mapToStats(id, m);
+                result.put(id, stats);
+                nearCache.put(id, stats);
+            } else {
+                dbIds.add(id);
+            }
+        }
+        if (dbIds.isEmpty()) return result;
+
+        // === 3) 一次 IN 查询 + pipeline 回写 ===
+        List<NoteStatsDO> rows = noteStatsMapper.getByIds(dbIds);
+        if (rows == null || rows.isEmpty()) return result;
+
+        Set<Long> written = writeBackIfAbsent(rows);
+
+        for (NoteStatsDO db : rows) {
+            if (db.getUpdatedAt() == null) db.setUpdatedAt(db.getLastActivityAt());
+            result.put(db.getNoteId(), db);
+            // 未写入说明 Redis 中已有更新的值，不把 DB 值放进近端缓存
+            if (written.contains(db.getNoteId())) nearCache.put(db.getNoteId(), db);
+        }
+        return result;
+    }
+
+    /**
+     * 一次 pipeline 把 DB 行回写 Redis，已存在的 key 保持不变；返回实际写入的 noteId
+     */
+    public Set<Long> writeBackIfAbsent(List<NoteStatsDO> rows) {
+        Set<Long> written = new HashSet<>();
+        if (rows == null || rows.isEmpty()) return written;
+
+        List<Object> results = redis.executePipelined((RedisCallback<Object>) connection -> {
+            connection.scriptingCommands().scriptLoad(bytes(WRITE_BACK_SCRIPT.getScriptAsString()));
+            for (NoteStatsDO db : rows) {
+                writeStatsToRedis(connection, db);
+            }
+            return null;
+        });
+
+        // results[0] 为 SCRIPT LOAD 的返回值
+        for (int i = 0; i < rows.size(); i++) {
+            Object r = i + 1 < results.size() ? results.get(i + 1) : null;
+            if (r instanceof Long n && n == 1L) written.add(rows.get(i).getNoteId());
+        }
+        return written;
+    }
+
+    private void writeStatsToRedis(RedisConnection connection, NoteStatsDO db) {
+        List<byte[]> keysAndArgs = new ArrayList<>();
+        keysAndArgs.add(keyBytes(db.getNoteId()));
+        keysAndArgs.add(bytes(String.valueOf(STATS_TTL_SECONDS)));
+        noteStatsCodec.encode(db).forEach((field, value) -> {
+            keysAndArgs.add(bytes(field));
+            keysAndArgs.add(bytes(value));
+        });
+        connection.scriptingCommands().evalSha(WRITE_BACK_SCRIPT.getSha1(), ReturnType.INTEGER, 1,
+                keysAndArgs.toArray(byte[][]::new));
+    }
+
+    /**
+     * Redis Hash → DO（兼容两种编码，updatedAt 取活跃时间）
+     */
+    private NoteStatsDO mapToStats(Long id, Map<?, ?> map) {
+        NoteStatsDO stats = NoteStatsCodec.decode(id, map);
+        if (stats.getAuthorName() == null) stats.setAuthorName("未知作者");
+        return stats;
+    }
+
+    public static NoteStatsDO defaultStats(Long noteId) {
+        NoteStatsDO stats = new NoteStatsDO();
+        stats.setNoteId(noteId);
+        stats.setAuthorName("未知作者");
+        stats.setViews(0L);
+        stats.setLikes(0L);
+        stats.setFavorites(0L);
+        stats.setComments(0L);
+        stats.setVersion(0L);
+        stats.setUpdatedAt(null);
+        return stats;
+    }
+
+    private static byte[] keyBytes(Long noteId) {
+        return bytes(REDIS_KEY_PREFIX + noteId);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -3,14 +3,21 @@ package com.project.login.service.notestats;
 import com.project.login.mapper.NoteStatsMapper;
 import com.project.login.model.dataobject.NoteStatsDO;
 import com.project.login.model.vo.NoteStatsVO;
+import com.project.login.service.cache.DelayedCacheInvalidator;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
-import org.springframework.data.redis.core.HashOperations;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
@@ -20,18 +27,118 @@ import java.util.concurrent.TimeUnit;
 @RequiredArgsConstructor
 public class NoteStatsService {
 
-    private final RedisTemplate<String, Object> redisTemplate;
     private final NoteStatsMapper noteStatsMapper;
     private final RabbitTemplate rabbitTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final NoteStatsReader noteStatsReader;
+    private final NoteStatsCodec noteStatsCodec;
+    private final NoteStatsShardManager noteStatsShardManager;
+    private final NoteStatsViewBuffer noteStatsViewBuffer;
+    private final DelayedCacheInvalidator cacheInvalidator;
 
     private static final String REDIS_KEY_PREFIX = "note_stats:";
-    private static final String MQ_QUEUE = "note.redis.queue";
+    private static final String DELTA_KEY_PREFIX = "note_stats_delta:";
+    private static final String DIRTY_SET_KEY = "note_stats_dirty";
+    private static final String DELTA_MQ_QUEUE = "note.stats.delta.queue";
+    private static final int FLUSH_BATCH_SIZE = 500;
+    private static final long STATS_TTL_SECONDS = TimeUnit.DAYS.toSeconds(7);
 
     private static final Set<String> ALLOWED_FIELDS =
             Set.of("views", "likes", "favorites", "comments");
 
+    /** CHANGE_FIELD_SCRIPT 返回的字段顺序 */
+    private static final List<String> COUNTER_FIELDS =
+            List.of("authorName", "views", "likes", "favorites", "comments");
+
+    /**
+     * changeField 的服务端脚本（EVALSHA，NOSCRIPT 时 Spring 自动回退 EVAL）。
+     * KEYS[1] = note_stats:{id}, KEYS[2] = note_stats_delta:{id}, KEYS[3] = note_stats_dirty
+     * ARGV[1] = 字段下标（NoteStatsCodec.LEGACY_FIELDS 的 Lua 下标，2..5）, ARGV[2] = delta,
+     * ARGV[3] = now（已按当前格式编码）, ARGV[4] = ttl 秒, ARGV[5] = noteId, ARGV[6] = 写入格式（NoteStatsCodec.LEGACY / COMPACT）,
+     * ARGV[7] = 是否携带初始化值（"1" 时 ARGV[8..13] = authorName, views, likes, favorites, comments, version）
+     * 若 key 为另一种格式，先就地转换为当前格式（在线迁移，last_activity 直接取 now）。
+     * 实际生效的增量（归零后）按逻辑字段名累加到 delta Hash，并把 noteId 记入脏集合，供 flushToMQ 增量落库；
+     * 非 views 的变更同时 PUBLISH 到 NoteStatsReader.INVALIDATE_CHANNEL 失效各节点的近端缓存。
+     * 返回：key 不存在且未携带初始化值 → 空列表；否则 COUNTER_FIELDS 对应的当前值
+     */
+    private static final RedisScript<List> CHANGE_FIELD_SCRIPT = new DefaultRedisScript<>("""
+            local legacy = {'authorName', 'views', 'likes', 'favorites', 'comments', 'last_activity_at', 'version'}
+            local compact = {'a', 'v', 'l', 'f', 'c', 't', 'r'}
+            local dst, src = legacy, compact
+            if ARGV[6] == '2' then dst, src = compact, legacy end
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                if ARGV[7] ~= '1' then
+                    return {}
+                end
+                redis.call('HSET', KEYS[1],
+                    dst[1], ARGV[8], dst[2], ARGV[9], dst[3], ARGV[10],
+                    dst[4], ARGV[11], dst[5], ARGV[12], dst[7], ARGV[13])
+            elseif redis.call('HEXISTS', KEYS[1], src[2]) == 1 then
+                for i = 1, 7 do
+                    local old = redis.call('HGET', KEYS[1], src[i])
+                    if old and i ~= 6 then
+                        redis.call('HSET', KEYS[1], dst[i], old)
+                    end
+                    redis.call('HDEL', KEYS[1], src[i])
+                end
+            end
+            local idx = tonumber(ARGV[1])
+            local applied = tonumber(ARGV[2])
+            local v = redis.call('HINCRBY', KEYS[1], dst[idx], applied)
+            if v < 0 then
+                redis.call('HSET', KEYS[1], dst[idx], '0')
+                applied = applied - v
+            end
+            redis.call('HSET', KEYS[1], dst[6], ARGV[3])
+            redis.call('EXPIRE', KEYS[1], ARGV[4])
+            if applied ~= 0 then
+                redis.call('HINCRBY', KEYS[2], legacy[idx], applied)
+                redis.call('EXPIRE', KEYS[2], ARGV[4])
+                redis.call('SADD', KEYS[3], ARGV[5])
+                if idx ~= 2 then
+                    redis.call('PUBLISH', 'note_stats_invalidate', ARGV[5])
+                end
+            end
+            return redis.call('HMGET', KEYS[1], dst[1], dst[2], dst[3], dst[4], dst[5])
+            """, List.class);
+
+    /**
+     * 单篇笔记出队脚本：从脏集合移除 noteId，取出并删除其 delta Hash，同时带上 authorName / last_activity_at
+     * （两种编码都读取，由 NoteStatsCodec 解码）。用到的 key 全部经 KEYS 传入：
+     * KEYS[1] = note_stats_dirty, KEYS[2] = note_stats_delta:{id}, KEYS[3] = note_stats:{id}；ARGV[1] = noteId
+     * 返回 views, likes, favorites, comments, authorName, last_activity_at；noteId 已被其他节点出队时返回空列表。
+     * 与 CHANGE_FIELD_SCRIPT 一样跨多个 key，按单节点 Redis 部署；迁移到 Cluster 需给每篇笔记的 key 加 {noteId} 哈希标签
+     * 并把脏集合按槽拆分。
+     */
+    private static final RedisScript<List> DRAIN_NOTE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('SREM', KEYS[1], ARGV[1]) == 0 then
+                return {}
+            end
+            local d = redis.call('HMGET', KEYS[2], 'views', 'likes', 'favorites', 'comments')
+            redis.call('DEL', KEYS[2])
+            local s = redis.call('HMGET', KEYS[3], 'a', 't', 'authorName', 'last_activity_at')
+            return {d[1] or '0', d[2] or '0', d[3] or '0', d[4] or '0', s[1] or s[3] or '', s[2] or s[4] or ''}
+            """, List.class);
+
+    /**
+     * 把出队后未能落库的增量加回增量日志（原子执行，避免部分字段加回后失败导致重复）。
+     * KEYS[1] = note_stats_delta:{id}, KEYS[2] = note_stats_dirty；ARGV[1..4] = views, likes, favorites, comments，
+     * ARGV[5] = noteId, ARGV[6] = ttl 秒
+     */
+    private static final RedisScript<Long> RESTORE_DELTA_SCRIPT = new DefaultRedisScript<>("""
+            local fields = {'views', 'likes', 'favorites', 'comments'}
+            for i = 1, 4 do
+                local v = tonumber(ARGV[i])
+                if v ~= 0 then redis.call('HINCRBY', KEYS[1], fields[i], v) end
+            end
+            redis.call('EXPIRE', KEYS[1], ARGV[6])
+            redis.call('SADD', KEYS[2], ARGV[5])
+            return 1
+            """, Long.class);
+
     /**
-     * 高频写入（写 Redis 总量）。若 Redis 无数据则从 DB 读并回写（包含 version）。
+     * 高频写入（写 Redis 总量）。单次 EVALSHA 完成：增量、负数归零、刷新 last_activity_at、续期 TTL 并返回计数；
+     * 仅当脚本报告冷 key 时才查 DB（包含 version）并带初始化参数重放脚本。
      */
     public NoteStatsVO changeField(Long noteId, String field, long delta) {
         if (noteId == null || noteId < 1) {
@@ -44,36 +151,88 @@ public class NoteStatsService {
             return getStats(noteId);
         }
 
+        // === views 写合并：进程内累加，由 drainViewBuffer 定期批量写 Redis；返回值叠加本地未排空增量 ===
+        if ("views".equals(field) && noteStatsViewBuffer.isEnabled() && noteStatsViewBuffer.add(noteId, delta)) {
+            NoteStatsVO vo = getStats(noteId);
+            vo.setViews(Math.max(0, vo.getViews() + noteStatsViewBuffer.pendingDelta(noteId)));
+            return vo;
+        }
+
+        // === 爆款笔记：views / likes 写随机分片，避免单 key 争用；返回值为近端缓存 + 本节点缓存的分片合计（已含本次增量），
+        //     不逐次读取全部分片 ===
+        if (noteStatsShardManager.routeToShard(noteId, field)) {
+            noteStatsShardManager.incrementShard(noteId, field, delta);
+            return getStats(noteId);
+        }
+
+        return applyToRedis(noteId, field, delta);
+    }
+
+    /**
+     * 严格路径：主 Hash 增量 + 增量日志（changeField 与分片合并共用）
+     */
+    private NoteStatsVO applyToRedis(Long noteId, String field, long delta) {
         String key = REDIS_KEY_PREFIX + noteId;
-        HashOperations<String, Object, Object> ops = redisTemplate.opsForHash();
-
-        // === Redis 初始化 ===
-        initRedisIfNeeded(noteId, ops, key);
-
-        // === 原子增量 ===
-        Long newValue = ops.increment(key, field, delta);
-        
-        // 防止负数：如果操作后值小于0，则设置为0
-        if (newValue != null && newValue < 0) {
-            ops.put(key, field, "0");
-            newValue = 0L;
+
+        // === 热 key：一次往返 ===
+        List<?> counters = runChangeScript(key, field, delta, null);
+
+        // === 冷 key：DB 回填后重放（脚本内 EXISTS 再判一次，避免并发初始化覆盖别人的增量） ===
+        if (counters == null || counters.isEmpty()) {
+            counters = runChangeScript(key, field, delta, loadOrInitFromDB(noteId));
         }
-        
-        ops.put(key, "last_activity_at", LocalDateTime.now().toString());
 
-        // 返回当前值
-        Map<Object, Object> map = ops.entries(key);
-        return toVO(noteId, map);
+        return toVO(noteId, countersToMap(counters));
     }
 
     /**
-     * 如果 Redis 中没有数据，则从 DB 初始化回写 Redis
+     * 执行 CHANGE_FIELD_SCRIPT。init 为 null 时 key 不存在直接返回空列表（冷 key 标记）。
      */
-    private void initRedisIfNeeded(Long noteId, HashOperations<String, Object, Object> ops, String key) {
-        if (redisTemplate.hasKey(key) && ops.size(key) > 0) {
-            return;
+    private List<?> runChangeScript(String key, String field, long delta, NoteStatsDO init) {
+        String noteId = key.substring(REDIS_KEY_PREFIX.length());
+        return stringRedisTemplate.execute(CHANGE_FIELD_SCRIPT, changeScriptKeys(noteId), changeScriptArgs(noteId, field, delta, init).toArray());
+    }
+
+    private List<String> changeScriptKeys(String noteId) {
+        return List.of(REDIS_KEY_PREFIX + noteId, DELTA_KEY_PREFIX + noteId, DIRTY_SET_KEY);
+    }
+
+    private List<String> changeScriptArgs(String noteId, String field, long delta, NoteStatsDO init) {
+        List<String> args = new ArrayList<>(13);
+        args.add(String.valueOf(NoteStatsCodec.LEGACY_FIELDS.indexOf(field) + 1));
+        args.add(String.valueOf(delta));
+        args.add(noteStatsCodec.formatActivity(LocalDateTime.now()));
+        args.add(String.valueOf(STATS_TTL_SECONDS));
+        args.add(noteId);
+        args.add(String.valueOf(noteStatsCodec.getEncoding()));
+        if (init == null) {
+            args.add("0");
+        } else {
+            args.add("1");
+            args.add(Objects.toString(init.getAuthorName(), ""));
+            args.add(String.valueOf(init.getViews()));
+            args.add(String.valueOf(init.getLikes()));
+            args.add(String.valueOf(init.getFavorites()));
+            args.add(String.valueOf(init.getComments()));
+            args.add(String.valueOf(init.getVersion()));
+        }
+        return args;
+    }
+
+    /** 脚本返回值按 COUNTER_FIELDS 顺序排列，转成与 HGETALL 一致的 Map 复用 toVO */
+    private Map<Object, Object> countersToMap(List<?> counters) {
+        Map<Object, Object> map = new HashMap<>();
+        for (int i = 0; i < COUNTER_FIELDS.size() && i < counters.size(); i++) {
+            Object v = counters.get(i);
+            if (v != null) map.put(COUNTER_FIELDS.get(i), v);
         }
+        return map;
+    }
 
+    /**
+     * 读取 DB 统计；不存在则插入 version=0 的初始行
+     */
+    private NoteStatsDO loadOrInitFromDB(Long noteId) {
         NoteStatsDO db = noteStatsMapper.getById(noteId);
         if (db == null) {
             // DB 初始化（version=0）
@@ -89,49 +248,70 @@ public class NoteStatsService {
                     .build();
             noteStatsMapper.insert(db);
         }
-
-        writeStatsToRedis(key, ops, db);
-    }
-
-    /**
-     * 写入 Redis（安全版，Hash 的 value 全部转为 String）
-     */
-    private void writeStatsToRedis(String key, HashOperations<String, Object, Object> ops, NoteStatsDO db) {
-        // 将所有字段值统一转成 String，保证 StringRedisSerializer 不会报错
-        ops.put(key, "authorName", db.getAuthorName());
-        ops.put(key, "views", String.valueOf(db.getViews()));
-        ops.put(key, "likes", String.valueOf(db.getLikes()));
-        ops.put(key, "favorites", String.valueOf(db.getFavorites()));
-        ops.put(key, "comments", String.valueOf(db.getComments()));
-        ops.put(key, "last_activity_at", db.getLastActivityAt().toString());
-        ops.put(key, "version", String.valueOf(db.getVersion()));
-
-        // 设置过期时间
-        redisTemplate.expire(key, 7, TimeUnit.DAYS);
+        return db;
     }
 
 
     /**
-     * 获取 Redis 状态
+     * 获取统计（经 NoteStatsReader：近端缓存 → Redis → MySQL）
      */
     public NoteStatsVO getStats(Long noteId) {
         if (noteId == null || noteId < 1) {
             return emptyStats(noteId);
         }
 
-        String key = REDIS_KEY_PREFIX + noteId;
-        HashOperations<String, Object, Object> ops = redisTemplate.opsForHash();
-        Map<Object, Object> map = ops.entries(key);
+        NoteStatsDO stats = noteStatsReader.loadStats(List.of(noteId)).get(noteId);
+        return stats == null ? emptyStats(noteId) : toVO(stats);
+    }
 
-        if (map.isEmpty()) {
-            NoteStatsDO db = noteStatsMapper.getById(noteId);
-            if (db == null) return emptyStats(noteId);
+    /**
+     * 笔记已删除：统计 Hash、未落库的增量与分片计数 key 延时双删，移出脏集合与分片注册表，并通知各节点失效近端缓存
+     */
+    public void evict(Long noteId) {
+        if (noteId == null || noteId < 1) return;
+        String id = String.valueOf(noteId);
+        List<String> keys = new ArrayList<>(noteStatsShardManager.shardKeys(noteId));
+        keys.add(REDIS_KEY_PREFIX + id);
+        keys.add(DELTA_KEY_PREFIX + id);
+        cacheInvalidator.doubleDelete(keys);
+        try {
+            noteStatsShardManager.evict(noteId);
+            stringRedisTemplate.opsForSet().remove(DIRTY_SET_KEY, id);
+            stringRedisTemplate.convertAndSend(NoteStatsReader.INVALIDATE_CHANNEL, id);
+        } catch (Exception e) {
+            log.warn("evict note stats failed for noteId={}", noteId, e);
+        }
+    }
 
-            writeStatsToRedis(key, ops, db);
-            map = ops.entries(key);
+    /**
+     * 批量获取统计：一次 pipeline 读 Redis + 一次 IN 查询回源，按请求顺序返回 noteId → 统计（缺失为 0）
+     */
+    public Map<Long, NoteStatsVO> getStatsBatch(List<Long> noteIds) {
+        Map<Long, NoteStatsVO> result = new LinkedHashMap<>();
+        if (noteIds == null || noteIds.isEmpty()) return result;
+
+        List<Long> valid = noteIds.stream()
+                .filter(id -> id != null && id > 0)
+                .distinct()
+                .toList();
+        Map<Long, NoteStatsDO> statsMap = noteStatsReader.loadStats(valid);
+
+        for (Long id : valid) {
+            NoteStatsDO stats = statsMap.get(id);
+            result.put(id, stats == null ? emptyStats(id) : toVO(stats));
         }
+        return result;
+    }
 
-        return toVO(noteId, map);
+    private NoteStatsVO toVO(NoteStatsDO stats) {
+        NoteStatsVO vo = new NoteStatsVO();
+        vo.setNoteId(stats.getNoteId());
+        vo.setAuthorName(Objects.toString(stats.getAuthorName(), ""));
+        vo.setViews(stats.getViews());
+        vo.setLikes(stats.getLikes());
+        vo.setFavorites(stats.getFavorites());
+        vo.setComments(stats.getComments());
+        return vo;
     }
 
     private NoteStatsVO toVO(Long noteId, Map<Object, Object> map) {
@@ -163,55 +343,217 @@ public class NoteStatsService {
     }
 
     /**
-     * Flush Redis → MQ
+     * Flush Redis → MQ（增量）。只处理脏集合中的 noteId：每批 SRANDMEMBER 取至多 FLUSH_BATCH_SIZE 个，
+     * 一次 pipeline 逐篇执行 DRAIN_NOTE_SCRIPT 出队，每批发送一条紧凑的 delta 消息。
+     * 不再 KEYS 全量扫描、也不再为未变化的笔记发送全量 totals。
      */
     public void flushToMQ() {
-        Set<String> keys = redisTemplate.keys(REDIS_KEY_PREFIX + "*");
-        if (keys == null || keys.isEmpty()) return;
+        mergeShards();
+        while (true) {
+            List<String> ids = new ArrayList<>(Objects.requireNonNullElse(
+                    stringRedisTemplate.opsForSet().distinctRandomMembers(DIRTY_SET_KEY, FLUSH_BATCH_SIZE), Set.of()));
+            if (ids.isEmpty()) return;
+
+            List<Object> results;
+            try {
+                results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    connection.scriptingCommands().scriptLoad(bytes(DRAIN_NOTE_SCRIPT.getScriptAsString()));
+                    for (String id : ids) {
+                        connection.scriptingCommands().evalSha(DRAIN_NOTE_SCRIPT.getSha1(), ReturnType.MULTI, 3,
+                                bytes(DIRTY_SET_KEY), bytes(DELTA_KEY_PREFIX + id), bytes(REDIS_KEY_PREFIX + id), bytes(id));
+                    }
+                    return null;
+                });
+            } catch (RedisPipelineException ex) {
+                // 部分脚本已执行（增量已出队），照常发送已取得的结果
+                log.warn("flushToMQ drain pipeline partially failed: {}", ex.getMessage());
+                results = ex.getPipelineResult();
+            }
+
+            // results[0] 为 SCRIPT LOAD 的返回值；本轮一篇都没出队（均被其他节点取走或执行失败）时结束，避免空转
+            List<Map<String, Object>> deltas = new ArrayList<>(ids.size());
+            boolean drainedAny = false;
+            for (int i = 0; i < ids.size(); i++) {
+                Object r = i + 1 < results.size() ? results.get(i + 1) : null;
+                if (!(r instanceof List<?> drained) || drained.size() < 6) continue;
+                drainedAny = true;
+
+                long noteId = parseLong(ids.get(i));
+                if (noteId < 1) continue;
+
+                long views = parseLong(text(drained.get(0)));
+                long likes = parseLong(text(drained.get(1)));
+                long favorites = parseLong(text(drained.get(2)));
+                long comments = parseLong(text(drained.get(3)));
+                if (views == 0 && likes == 0 && favorites == 0 && comments == 0) continue;
+
+                LocalDateTime lastActivity = NoteStatsCodec.parseActivity(text(drained.get(5)));
+                Map<String, Object> delta = new HashMap<>();
+                delta.put("note_id", noteId);
+                delta.put("authorName", text(drained.get(4)));
+                delta.put("views", views);
+                delta.put("likes", likes);
+                delta.put("favorites", favorites);
+                delta.put("comments", comments);
+                delta.put("last_activity_at", (lastActivity == null ? LocalDateTime.now() : lastActivity).toString());
+                deltas.add(delta);
+            }
+            if (!drainedAny) return;
+            if (deltas.isEmpty()) continue;
+
+            try {
+                Map<String, Object> msg = new HashMap<>();
+                msg.put("deltas", deltas);
+                rabbitTemplate.convertAndSend(DELTA_MQ_QUEUE, msg);
+            } catch (Exception ex) {
+                log.error("flushToMQ publish failed, restoring {} deltas to journal", deltas.size(), ex);
+                restoreDeltas(deltas);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 把分片计数合并回主 Hash（经严格路径，同时记入增量日志）。
+     * 先读快照、写入成功后再从分片减去快照值；写入失败的字段留在分片里，下一轮重试。
+     * 写入成功但确认前崩溃时，该部分会在下一轮重复合并（至少一次）。
+     */
+    public void mergeShards() {
+        Set<Long> failed = new HashSet<>();
+        noteStatsShardManager.snapshotShards().forEach((noteId, perShard) -> {
+            long views = 0, likes = 0;
+            for (long[] s : perShard) {
+                views += s[0];
+                likes += s[1];
+            }
+            boolean viewsMerged = false, likesMerged = false;
+            try {
+                if (views != 0) applyToRedis(noteId, "views", views);
+                viewsMerged = true;
+                if (likes != 0) applyToRedis(noteId, "likes", likes);
+                likesMerged = true;
+            } catch (Exception ex) {
+                failed.add(noteId);
+                log.error("mergeShards failed for noteId={}, views={}, likes={}, keeping unmerged shards",
+                        noteId, views, likes, ex);
+            }
+            try {
+                noteStatsShardManager.ackShards(noteId, perShard, viewsMerged, likesMerged);
+            } catch (Exception ex) {
+                failed.add(noteId);
+                log.error("mergeShards ack failed for noteId={}, merged part may be applied again", noteId, ex);
+            }
+        });
+        noteStatsShardManager.expireRegistry(failed);
+    }
+
+    /**
+     * 排空 views 写合并缓冲：一次 pipeline（SCRIPT LOAD + 每篇笔记一个 EVALSHA）写入主 Hash 与增量日志；
+     * 冷 key 再逐个走严格路径回填。整批失败时增量放回缓冲，单条命令失败只放回该条。
+     */
+    public void drainViewBuffer() {
+        if (!noteStatsViewBuffer.isEnabled()) return;
+
+        Map<Long, Long> deltas = noteStatsViewBuffer.drain();
+        if (deltas.isEmpty()) return;
 
-        for (String key : keys) {
+        noteStatsViewBuffer.drainTimer().record(() -> {
+            List<Long> ids = new ArrayList<>(deltas.keySet());
+            List<Object> results;
             try {
-                Long noteId = Long.parseLong(key.substring(REDIS_KEY_PREFIX.length()));
-                if (noteId < 1) {
+                results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    connection.scriptingCommands().scriptLoad(bytes(CHANGE_FIELD_SCRIPT.getScriptAsString()));
+                    for (Long id : ids) {
+                        String noteId = String.valueOf(id);
+                        List<String> keysAndArgs = new ArrayList<>(changeScriptKeys(noteId));
+                        keysAndArgs.addAll(changeScriptArgs(noteId, "views", deltas.get(id), null));
+                        connection.scriptingCommands().evalSha(CHANGE_FIELD_SCRIPT.getSha1(), ReturnType.MULTI, 3,
+                                keysAndArgs.stream().map(NoteStatsService::bytes).toArray(byte[][]::new));
+                    }
+                    return null;
+                });
+            } catch (RedisPipelineException ex) {
+                results = ex.getPipelineResult();
+            } catch (Exception ex) {
+                log.error("drainViewBuffer pipeline failed, restoring {} notes to buffer", deltas.size(), ex);
+                noteStatsViewBuffer.restore(deltas);
+                return;
+            }
+
+            // results[0] 为 SCRIPT LOAD 的返回值
+            Map<Long, Long> failed = new HashMap<>();
+            for (int i = 0; i < ids.size(); i++) {
+                Long id = ids.get(i);
+                Object r = i + 1 < results.size() ? results.get(i + 1) : null;
+                if (r instanceof List<?> counters && !counters.isEmpty()) continue;
+                if (r instanceof Exception ex) {
+                    log.warn("drainViewBuffer failed for noteId={}: {}", id, ex.getMessage());
+                    failed.put(id, deltas.get(id));
                     continue;
                 }
+                try {
+                    applyToRedis(id, "views", deltas.get(id));
+                } catch (Exception ex) {
+                    log.error("drainViewBuffer cold key init failed for noteId={}", id, ex);
+                    failed.put(id, deltas.get(id));
+                }
+            }
+            if (!failed.isEmpty()) noteStatsViewBuffer.restore(failed);
+        });
+    }
 
-                Map<Object, Object> map = redisTemplate.opsForHash().entries(key);
-                if (map.isEmpty()) continue;
+    @PreDestroy
+    public void drainViewBufferOnShutdown() {
+        drainViewBuffer();
+    }
 
-                Map<String, Object> msg = new HashMap<>();
-                msg.put("note_id", noteId);
-                msg.put("authorName", map.getOrDefault("authorName", ""));
-                // 确保值不为负数
-                msg.put("views", Math.max(0, parseLong(map.get("views"))));
-                msg.put("likes", Math.max(0, parseLong(map.get("likes"))));
-                msg.put("favorites", Math.max(0, parseLong(map.get("favorites"))));
-                msg.put("comments", Math.max(0, parseLong(map.get("comments"))));
-                msg.put("last_activity_at", map.getOrDefault("last_activity_at",
-                        LocalDateTime.now().toString()));
-                msg.put("version", map.getOrDefault("version", 0L));
-
-                rabbitTemplate.convertAndSend(MQ_QUEUE, msg);
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** pipeline 中脚本返回的元素可能是 byte[] 或已反序列化的 String */
+    private static String text(Object o) {
+        if (o == null) return "";
+        if (o instanceof byte[] b) return new String(b, StandardCharsets.UTF_8);
+        return o.toString();
+    }
 
+    /**
+     * 发送失败时把已出队的增量加回 delta Hash 与脏集合，等待下一轮 flush
+     */
+    private void restoreDeltas(List<Map<String, Object>> deltas) {
+        for (Map<String, Object> delta : deltas) {
+            try {
+                restoreDelta(parseLong(delta.get("note_id")), parseLong(delta.get("views")), parseLong(delta.get("likes")),
+                        parseLong(delta.get("favorites")), parseLong(delta.get("comments")));
             } catch (Exception ex) {
-                log.error("flushToMQ error for key={}", key, ex);
+                log.error("restoreDeltas failed for delta={}", delta, ex);
             }
         }
     }
 
+    /**
+     * 单条增量加回增量日志（NoteStatsConsumer 落库失败时也经此重新入队）。Redis 不可用时抛出异常，由调用方兜底
+     */
+    public void restoreDelta(long noteId, long views, long likes, long favorites, long comments) {
+        String id = String.valueOf(noteId);
+        stringRedisTemplate.execute(RESTORE_DELTA_SCRIPT, List.of(DELTA_KEY_PREFIX + id, DIRTY_SET_KEY),
+                String.valueOf(views), String.valueOf(likes), String.valueOf(favorites), String.valueOf(comments),
+                id, String.valueOf(STATS_TTL_SECONDS));
+    }
+
     /**
      * 异步预热
      */
     @Async
     public void preloadRecent(int n) {
         List<NoteStatsDO> list = noteStatsMapper.getRecentUpdated(n);
-        HashOperations<String, Object, Object> ops = redisTemplate.opsForHash();
 
         for (NoteStatsDO item : list) {
             if (item.getNoteId() < 1) continue;
 
-            String key = REDIS_KEY_PREFIX + item.getNoteId();
-            writeStatsToRedis(key, ops, item);
+            // 已在 Redis 中的 key 可能含未落库的增量，不用 DB 值覆盖（也避免与另一种编码混写）；判断与写入在同一脚本内完成
+            noteStatsReader.writeBackIfAbsent(List.of(item));
 
             try { Thread.sleep(30); } catch (Exception ignored) {}
         }
@@ -0,0 +1,321 @@
+package com.project.login.service.notestats;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 爆款笔记的分片计数（可选，note-stats.sharding.enabled）：
+ *  - 本地按秒统计每篇笔记的写入速率，超过 promote-writes-per-second 即晋升为分片模式，
+ *    写入注册表 ZSET note_stats_sharded（score = 分片截止时间，持续热时续期）
+ *  - 分片模式下 views / likes 写到 note_stats_shard:{id}:{n}（n 随机），不再争用同一个 note_stats:{id}
+ *  - 读路径把各分片增量叠加到主 Hash；分片合计在本节点缓存 sum-cache-ms，本节点写入直接累加到缓存，
+ *    热笔记每次写入不再 pipeline 读全部分片
+ *  - 定时合并任务先读取分片快照，交回 changeField 严格路径（主 Hash + 增量日志）成功后，
+ *    再按快照值 HINCRBY 负增量确认（期间的新写入保留在分片中）；过期后再保留 GRACE_MS 以合并迟到的写入
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class NoteStatsShardManager {
+
+    public static final Set<String> SHARDABLE_FIELDS = Set.of("views", "likes");
+
+    private static final String REGISTRY_KEY = "note_stats_sharded";
+    private static final String SHARD_KEY_PREFIX = "note_stats_shard:";
+    private static final long GRACE_MS = 60_000;
+
+    /** 确认一个分片已合并的部分：减去快照值，两个字段都归零时删除分片 Hash */
+    private static final RedisScript<Long> ACK_SHARD_SCRIPT = new DefaultRedisScript<>("""
+            local v = redis.call('HINCRBY', KEYS[1], 'views', -tonumber(ARGV[1]))
+            local l = redis.call('HINCRBY', KEYS[1], 'likes', -tonumber(ARGV[2]))
+            if v == 0 and l == 0 then redis.call('DEL', KEYS[1]) end
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate redis;
+
+    @Value("${note-stats.sharding.enabled:false}")
+    private boolean enabled;
+
+    @Value("${note-stats.sharding.shards:8}")
+    private int shards;
+
+    @Value("${note-stats.sharding.promote-writes-per-second:200}")
+    private long promoteWritesPerSecond;
+
+    @Value("${note-stats.sharding.hold-seconds:600}")
+    private long holdSeconds;
+
+    @Value("${note-stats.sharding.sum-cache-ms:1000}")
+    private long sumCacheMs;
+
+    /** 本节点视角的分片笔记 → 分片截止时间（毫秒），由 refreshRegistry 定期从 Redis 同步 */
+    private volatile Map<Long, Long> sharded = Map.of();
+
+    /** 本地写入速率：noteId → [秒, 计数] */
+    private final ConcurrentHashMap<Long, RateWindow> rates = new ConcurrentHashMap<>();
+
+    /** 本节点缓存的分片合计：noteId → {读取时间, views, likes}，其他节点的写入最多落后 sum-cache-ms */
+    private final ConcurrentHashMap<Long, ShardSum> sums = new ConcurrentHashMap<>();
+
+    public boolean isSharded(Long noteId) {
+        Long until = sharded.get(noteId);
+        return until != null && until > System.currentTimeMillis();
+    }
+
+    /**
+     * 记录一次写入并判断是否走分片路径；超过阈值时晋升（或续期）
+     */
+    public boolean routeToShard(Long noteId, String field) {
+        if (!enabled || !SHARDABLE_FIELDS.contains(field)) return false;
+
+        long now = System.currentTimeMillis();
+        long count = rates.computeIfAbsent(noteId, id -> new RateWindow()).hit(now / 1000);
+        if (count == promoteWritesPerSecond) {
+            promote(noteId, now);
+        }
+        return isSharded(noteId);
+    }
+
+    private void promote(Long noteId, long now) {
+        long until = now + holdSeconds * 1000;
+        redis.opsForZSet().add(REGISTRY_KEY, String.valueOf(noteId), until);
+        Map<Long, Long> copy = new HashMap<>(sharded);
+        copy.put(noteId, until);
+        sharded = copy;
+        log.info("note {} promoted to sharded counters until {}", noteId, until);
+    }
+
+    /** 写入随机分片（HINCRBY，单命令），并累加到本节点的分片合计缓存 */
+    public void incrementShard(Long noteId, String field, long delta) {
+        String key = SHARD_KEY_PREFIX + noteId + ":" + ThreadLocalRandom.current().nextInt(shards);
+        redis.opsForHash().increment(key, field, delta);
+
+        ShardSum cached = sums.get(noteId);
+        if (cached != null) cached.add(field, delta);
+    }
+
+    /**
+     * 读路径：返回给定笔记中分片笔记的 noteId → {views, likes} 增量合计。
+     * 缓存未过期的直接返回；其余一次 pipeline 读取全部分片后写入缓存。
+     */
+    public Map<Long, long[]> pendingShardDeltas(Collection<Long> noteIds) {
+        Map<Long, long[]> result = new HashMap<>();
+        if (!enabled || sharded.isEmpty()) return result;
+
+        long now = System.currentTimeMillis();
+        List<Long> stale = new ArrayList<>();
+        for (Long id : noteIds) {
+            if (!sharded.containsKey(id)) continue;
+            ShardSum cached = sums.get(id);
+            if (cached != null && now - cached.fetchedAt < sumCacheMs) {
+                putIfNonZero(result, id, cached.toArray());
+            } else {
+                stale.add(id);
+            }
+        }
+        if (stale.isEmpty()) return result;
+
+        Map<Long, long[][]> fetched = readShards(stale);
+        for (Long id : stale) {
+            long[] sum = total(fetched.get(id));
+            sums.put(id, new ShardSum(now, sum));
+            putIfNonZero(result, id, sum);
+        }
+        return result;
+    }
+
+    /**
+     * 合并第一步：刷新注册表后一次 pipeline 读取所有分片笔记的分片快照（不删除），
+     * 返回 noteId → 每个分片的 {views, likes}
+     */
+    public Map<Long, long[][]> snapshotShards() {
+        if (!enabled) return new HashMap<>();
+
+        refreshRegistry();
+        Map<Long, long[][]> result = readShards(new ArrayList<>(sharded.keySet()));
+        result.values().removeIf(perShard -> {
+            long[] sum = total(perShard);
+            return sum[0] == 0 && sum[1] == 0;
+        });
+        return result;
+    }
+
+    /**
+     * 合并第二步：快照已成功写入严格路径后，按快照值从各分片减去已合并的字段（未合并的字段传 false 保留）
+     */
+    public void ackShards(Long noteId, long[][] perShard, boolean views, boolean likes) {
+        for (int n = 0; n < perShard.length; n++) {
+            long v = views ? perShard[n][0] : 0;
+            long l = likes ? perShard[n][1] : 0;
+            if (v == 0 && l == 0) continue;
+            redis.execute(ACK_SHARD_SCRIPT, List.of(SHARD_KEY_PREFIX + noteId + ":" + n),
+                    String.valueOf(v), String.valueOf(l));
+        }
+        sums.remove(noteId);
+    }
+
+    /**
+     * 合并第三步：清理已过宽限期的注册项；合并失败的笔记保留，下一轮继续合并
+     */
+    public void expireRegistry(Set<Long> failed) {
+        if (!enabled) return;
+
+        Set<String> expired = redis.opsForZSet().rangeByScore(REGISTRY_KEY, 0, System.currentTimeMillis() - GRACE_MS);
+        if (expired == null || expired.isEmpty()) return;
+        Object[] removable = expired.stream()
+                .filter(id -> !failed.contains(Long.parseLong(id)))
+                .toArray();
+        if (removable.length > 0) redis.opsForZSet().remove(REGISTRY_KEY, removable);
+    }
+
+    /** 给定笔记的全部分片 key（不论当前是否开启分片，供删除笔记时清理历史分片） */
+    public List<String> shardKeys(Long noteId) {
+        List<String> keys = new ArrayList<>(shards);
+        for (int n = 0; n < shards; n++) {
+            keys.add(SHARD_KEY_PREFIX + noteId + ":" + n);
+        }
+        return keys;
+    }
+
+    /**
+     * 笔记删除：从注册表与本节点的注册表视图、分片合计缓存、速率窗口中移除；分片 key 由调用方随统计 key 一起双删。
+     * 其他节点的注册表视图在下一次 refreshRegistry 时同步
+     */
+    public void evict(Long noteId) {
+        redis.opsForZSet().remove(REGISTRY_KEY, String.valueOf(noteId));
+        if (sharded.containsKey(noteId)) {
+            Map<Long, Long> copy = new HashMap<>(sharded);
+            copy.remove(noteId);
+            sharded = copy;
+        }
+        sums.remove(noteId);
+        rates.remove(noteId);
+    }
+
+    /** 一次 pipeline HMGET 给定笔记的全部分片 */
+    private Map<Long, long[][]> readShards(List<Long> ids) {
+        Map<Long, long[][]> result = new HashMap<>();
+        if (ids.isEmpty()) return result;
+
+        List<Object> values = redis.executePipelined((RedisCallback<Object>) connection -> {
+            for (Long id : ids) {
+                for (int n = 0; n < shards; n++) {
+                    connection.hashCommands().hMGet(bytes(SHARD_KEY_PREFIX + id + ":" + n), bytes("views"), bytes("likes"));
+                }
+            }
+            return null;
+        });
+
+        for (int i = 0; i < ids.size(); i++) {
+            long[][] perShard = new long[shards][2];
+            for (int n = 0; n < shards; n++) {
+                Object v = values.get(i * shards + n);
+                if (v instanceof List<?> pair) {
+                    perShard[n][0] = parseLong(pair.get(0));
+                    perShard[n][1] = parseLong(pair.get(1));
+                }
+            }
+            result.put(ids.get(i), perShard);
+        }
+        return result;
+    }
+
+    private static long[] total(long[][] perShard) {
+        long[] sum = new long[2];
+        if (perShard == null) return sum;
+        for (long[] s : perShard) {
+            sum[0] += s[0];
+            sum[1] += s[1];
+        }
+        return sum;
+    }
+
+    private static void putIfNonZero(Map<Long, long[]> result, Long id, long[] sum) {
+        if (sum[0] != 0 || sum[1] != 0) result.put(id, sum);
+    }
+
+    /**
+     * 从 Redis 同步分片注册表（含宽限期内的项，保证迟到写入也会被合并），并清理本地过期速率窗口
+     */
+    public void refreshRegistry() {
+        if (!enabled) return;
+
+        long now = System.currentTimeMillis();
+        Set<ZSetOperations.TypedTuple<String>> entries =
+                redis.opsForZSet().rangeByScoreWithScores(REGISTRY_KEY, now - GRACE_MS, Double.MAX_VALUE);
+        Map<Long, Long> copy = new HashMap<>();
+        if (entries != null) {
+            for (var e : entries) {
+                if (e.getValue() == null || e.getScore() == null) continue;
+                copy.put(Long.parseLong(e.getValue()), e.getScore().longValue());
+            }
+        }
+        sharded = copy;
+        sums.keySet().retainAll(copy.keySet());
+
+        long second = now / 1000;
+        rates.entrySet().removeIf(e -> e.getValue().second < second - 1);
+    }
+
+    private static long parseLong(Object o) {
+        if (o == null) return 0L;
+        try { return Long.parseLong(o.toString()); } catch (Exception ex) { return 0L; }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** 分片合计缓存项：读取时间之后本节点的写入直接累加 */
+    private static final class ShardSum {
+        private final long fetchedAt;
+        private final AtomicLong views;
+        private final AtomicLong likes;
+
+        ShardSum(long fetchedAt, long[] sum) {
+            this.fetchedAt = fetchedAt;
+            this.views = new AtomicLong(sum[0]);
+            this.likes = new AtomicLong(sum[1]);
+        }
+
+        void add(String field, long delta) {
+            ("views".equals(field) ? views : likes).addAndGet(delta);
+        }
+
+        long[] toArray() {
+            return new long[]{views.get(), likes.get()};
+        }
+    }
+
+    /** 单秒计数窗口，跨秒时重置 */
+    private static final class RateWindow {
+        private volatile long second;
+        private final AtomicLong count = new AtomicLong();
+
+        long hit(long nowSecond) {
+            if (second != nowSecond) {
+                synchronized (this) {
+                    if (second != nowSecond) {
+                        second = nowSecond;
+                        count.set(0);
+                    }
+                }
+            }
+            return count.incrementAndGet();
+        }
+    }
+}
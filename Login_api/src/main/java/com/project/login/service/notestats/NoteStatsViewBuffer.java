@@ -0,0 +1,101 @@
+package com.project.login.service.notestats;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * views 的进程内写合并缓冲（可选，note-stats.view-buffer.enabled）：
+ *  - 每篇笔记一个 LongAdder，请求线程只做无锁累加
+ *  - NoteStatsService.drainViewBuffer 每 drain-interval-ms 取出全部增量，一次 pipeline 写 Redis
+ *  - 进程崩溃最多丢失一个排空周期内的浏览量；likes / favorites / comments 仍走严格路径
+ * 空闲满一个周期的条目才移除，移除瞬间并发写入同一篇笔记的个别 view 可能丢失（可接受）。
+ */
+@Component
+@RequiredArgsConstructor
+public class NoteStatsViewBuffer {
+
+    private final MeterRegistry meterRegistry;
+
+    @Getter
+    @Value("${note-stats.view-buffer.enabled:false}")
+    private boolean enabled;
+
+    @Value("${note-stats.view-buffer.max-notes:100000}")
+    private int maxNotes;
+
+    private final ConcurrentHashMap<Long, LongAdder> pending = new ConcurrentHashMap<>();
+
+    private Counter bypassed;
+    private Counter dropped;
+    private Timer drainTimer;
+
+    @PostConstruct
+    void initMetrics() {
+        meterRegistry.gauge("note_stats.view_buffer.size", pending, Map::size);
+        bypassed = meterRegistry.counter("note_stats.view_buffer.bypassed");
+        dropped = meterRegistry.counter("note_stats.view_buffer.dropped");
+        drainTimer = meterRegistry.timer("note_stats.view_buffer.drain");
+    }
+
+    /**
+     * 累加一次浏览；缓冲已满且为新笔记时返回 false，由调用方直接写 Redis
+     */
+    public boolean add(Long noteId, long delta) {
+        LongAdder adder = pending.get(noteId);
+        if (adder == null) {
+            if (pending.size() >= maxNotes) {
+                bypassed.increment();
+                return false;
+            }
+            adder = pending.computeIfAbsent(noteId, id -> new LongAdder());
+        }
+        adder.add(delta);
+        return true;
+    }
+
+    /** 尚未排空的本地增量（用于返回值叠加） */
+    public long pendingDelta(Long noteId) {
+        LongAdder adder = pending.get(noteId);
+        return adder == null ? 0L : adder.sum();
+    }
+
+    /**
+     * 取出并清零全部增量；上一周期已为 0 的条目移除
+     */
+    public Map<Long, Long> drain() {
+        Map<Long, Long> deltas = new HashMap<>();
+        pending.forEach((noteId, adder) -> {
+            long d = adder.sumThenReset();
+            if (d != 0) {
+                deltas.put(noteId, d);
+            } else {
+                pending.remove(noteId, adder);
+            }
+        });
+        return deltas;
+    }
+
+    /**
+     * 写 Redis 失败时把增量放回缓冲；缓冲已满则计为丢弃
+     */
+    public void restore(Map<Long, Long> deltas) {
+        deltas.forEach((noteId, d) -> {
+            if (!add(noteId, d)) dropped.increment(d);
+        });
+    }
+
+    public Timer drainTimer() {
+        return drainTimer;
+    }
+}
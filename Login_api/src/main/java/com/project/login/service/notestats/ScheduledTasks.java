@@ -11,12 +11,24 @@ public class ScheduledTasks {
     private final NoteStatsService noteStatsService;
     private final CompensationService compensationService;
 
-    // 每5分钟批量 flush Redis -> MQ（可根据负载调节）
-    @Scheduled(cron = "0 */30 * * * *")
+    // 每5分钟批量 flush 脏集合增量 -> MQ（只处理变更过的笔记，可根据负载调节）
+    @Scheduled(cron = "0 */5 * * * *")
     public void flushRedisToMQ() {
         noteStatsService.flushToMQ();
     }
 
+    // 每秒合并爆款笔记的分片计数（未开启分片时为空操作）
+    @Scheduled(fixedDelay = 1000)
+    public void mergeShardedCounters() {
+        noteStatsService.mergeShards();
+    }
+
+    // 排空 views 写合并缓冲（未开启时为空操作）
+    @Scheduled(fixedDelayString = "${note-stats.view-buffer.drain-interval-ms:200}")
+    public void drainViewBuffer() {
+        noteStatsService.drainViewBuffer();
+    }
+
     // 每分钟处理补偿表
     @Scheduled(cron = "0 */1 * * * *")
     public void processCompensation() {
@@ -25,6 +25,14 @@ public class ContentSummaryService {
         }
     }
 
+    /**
+     * 从已下载的文件内容提取摘要（重建索引时使用），规则与上传时一致：全文前 200 字
+     */
+    public String extractContentSummary(byte[] bytes, String filename) {
+        String text = extractFullText(bytes, filename);
+        return text.length() > 200 ? text.substring(0, 200) : text;
+    }
+
     /**
      * 提取 Markdown 文件摘要
      */
@@ -0,0 +1,118 @@
+package com.project.login.service.noting;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 笔记正文分块提取（全文索引使用）：
+ *  - PDF：以流方式加载，超过 max-memory-mb 的部分落临时文件，逐页提取文本，不整体持有 byte[] 或全文 String
+ *  - Markdown：逐行读取，去标记规则与 ContentSummaryService 一致
+ * 文本按 chunk-size 字符切块（尽量在空白处断开），最多 max-chunks 块，超出部分不再索引。
+ */
+@Slf4j
+@Component
+public class NoteContentExtractor {
+
+    /** 一个正文块；page 为 PDF 页码（从 1 开始），Markdown 为 0 */
+    public record Chunk(int page, int seq, String text) {}
+
+    @Value("${note-content.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${note-content.max-chunks:2000}")
+    private int maxChunks;
+
+    @Value("${note-content.max-memory-mb:64}")
+    private long maxMemoryMb;
+
+    public List<Chunk> extract(InputStream in, String filename) throws IOException {
+        if (filename == null) {
+            throw new IllegalArgumentException("文件名不能为空");
+        }
+        String lower = filename.toLowerCase();
+        if (lower.endsWith(".pdf")) {
+            return extractPdf(in);
+        } else if (lower.endsWith(".md")) {
+            return extractMarkdown(in);
+        } else {
+            throw new IllegalArgumentException("不支持的文件类型: " + filename);
+        }
+    }
+
+    private List<Chunk> extractPdf(InputStream in) throws IOException {
+        Chunker chunker = new Chunker();
+        try (PDDocument document = PDDocument.load(in, MemoryUsageSetting.setupMixed(maxMemoryMb * 1024 * 1024))) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            int pages = document.getNumberOfPages();
+            for (int page = 1; page <= pages && !chunker.full(); page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                chunker.append(page, stripper.getText(document));
+                chunker.flush(page); // 块不跨页，便于命中后定位页码
+            }
+        }
+        return chunker.chunks;
+    }
+
+    private List<Chunk> extractMarkdown(InputStream in) throws IOException {
+        Chunker chunker = new Chunker();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null && !chunker.full()) {
+                line = line.replaceAll("^#+\\s*", "");           // 去掉标题标记
+                line = line.replaceAll("\\*|_|`|~", "");         // 去掉强调符号
+                line = line.replaceAll("!\\[.*?\\]\\(.*?\\)", ""); // 去掉图片
+                line = line.replaceAll("\\[.*?\\]\\(.*?\\)", "");  // 去掉链接
+                chunker.append(0, line);
+            }
+            chunker.flush(0);
+        }
+        return chunker.chunks;
+    }
+
+    /** 增量切块：空白归一化后累加，满 chunkSize 即在最近的空白处切出一块 */
+    private final class Chunker {
+        private final List<Chunk> chunks = new ArrayList<>();
+        private final StringBuilder buf = new StringBuilder();
+
+        boolean full() {
+            return chunks.size() >= maxChunks;
+        }
+
+        void append(int page, String text) {
+            String normalized = text.replaceAll("\\s+", " ").trim();
+            if (normalized.isEmpty()) return;
+            if (!buf.isEmpty()) buf.append(' ');
+            buf.append(normalized);
+
+            while (buf.length() >= chunkSize && !full()) {
+                int cut = buf.lastIndexOf(" ", chunkSize);
+                if (cut < chunkSize / 2) cut = chunkSize; // 无合适空白（如中文长段）时硬切
+                emit(page, buf.substring(0, cut));
+                buf.delete(0, Math.min(buf.length(), cut + (cut < buf.length() && buf.charAt(cut) == ' ' ? 1 : 0)));
+            }
+        }
+
+        void flush(int page) {
+            if (!buf.isEmpty() && !full()) emit(page, buf.toString());
+            buf.setLength(0);
+        }
+
+        private void emit(int page, String text) {
+            String t = text.trim();
+            if (!t.isEmpty()) chunks.add(new Chunk(page, chunks.size(), t));
+        }
+    }
+}
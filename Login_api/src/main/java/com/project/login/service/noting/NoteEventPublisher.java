@@ -1,6 +1,7 @@
 package com.project.login.service.noting;
 
 import com.project.login.model.event.EsNoteEvent;
+import com.project.login.model.event.NoteContentEvent;
 import jakarta.annotation.Resource;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
@@ -15,6 +16,10 @@ public class NoteEventPublisher {
         rabbitTemplate.convertAndSend("note.es.queue", event);
     }
 
+    public void sendNoteContentEvent(NoteContentEvent event) {
+        rabbitTemplate.convertAndSend("note.content.queue", event);
+    }
+
     public void sendRedisNoteEvent(EsNoteEvent event) {
         rabbitTemplate.convertAndSend("note.redis.queue", event);
     }
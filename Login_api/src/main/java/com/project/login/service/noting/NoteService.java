@@ -6,11 +6,13 @@ import com.project.login.mapper.*;
 import com.project.login.model.dataobject.*;
 import com.project.login.model.dto.note.*;
 import com.project.login.model.event.EsNoteEvent;
+import com.project.login.model.event.NoteContentEvent;
 import com.project.login.model.event.NoteActionType;
 import com.project.login.model.vo.NoteShowVO;
 import com.project.login.model.vo.NoteVO;
 import com.project.login.service.minio.MinioService;
 import com.project.login.service.notification.NotificationService;
+import com.project.login.service.notestats.NoteStatsService;
 import com.project.login.repository.NoteRepository;
 import com.project.login.model.entity.NoteEntity;
 import lombok.RequiredArgsConstructor;
@@ -41,6 +43,7 @@ public class NoteService {
     private final NotificationService notificationService;
     private final NoteModerationMapper noteModerationMapper;
     private final NoteRepository noteRepository;
+    private final NoteStatsService noteStatsService;
 
     @Qualifier("noteConvert")
     private final NoteConvert convert;
@@ -155,6 +158,7 @@ public class NoteService {
         noteMapper.deleteById(dto.getNoteId());
 
         noteStatsMapper.deleteById(dto.getNoteId());
+        noteStatsService.evict(dto.getNoteId());
 
         // --- 发布异步更新 ES 事件 ---
         EsNoteEvent event = new EsNoteEvent();
@@ -362,6 +366,9 @@ public class NoteService {
 
         eventPublisher.sendEsNoteEvent(event);
 
+        // --- 正文全文索引（异步分块，不阻塞发布） ---
+        eventPublisher.sendNoteContentEvent(new NoteContentEvent(existing.getId(), existing.getFilename()));
+
         // 向关注该用户的粉丝发送“我关注的人发布了笔记”通知
         notificationService.createNotePublishNotifications(existing.getId());
 
@@ -13,7 +13,9 @@ import com.project.login.model.vo.qa.QACommentDetailVO;
 import com.project.login.mapper.UserMapper;
 import com.project.login.repository.QuestionRepository;
 
+import com.project.login.service.cache.DelayedCacheInvalidator;
 import com.project.login.service.notification.NotificationService;
+import com.project.login.service.search.SearchQAService;
 import jakarta.annotation.Resource;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -37,6 +39,7 @@ public class QuestionService {
     private final ObjectMapper objectMapper;
     private final NotificationService notificationService;
     private final UserMapper userMapper;
+    private final DelayedCacheInvalidator cacheInvalidator;
     @Resource
     private StringRedisTemplate redis;
 
@@ -44,6 +47,9 @@ public class QuestionService {
     private void updateRedisCacheIfExists(String questionId, QuestionDO updated) {
         String key = "question:detail:" + questionId;
 
+        // 列表摘要延时双删，下次搜索时批量重建
+        cacheInvalidator.doubleDelete(List.of(SearchQAService.SUMMARY_KEY_PREFIX + questionId));
+
         Boolean exists = redis.hasKey(key);
         if (Boolean.TRUE.equals(exists)) {
             try {
@@ -416,7 +422,7 @@ public class QuestionService {
         // 2. 删除 MongoDB 中的记录
         repo.deleteByQuestionId(questionId);
 
-        redis.delete("question:detail:" + questionId);
+        cacheInvalidator.doubleDelete(List.of("question:detail:" + questionId, SearchQAService.SUMMARY_KEY_PREFIX + questionId));
 
         // 3. 异步发送删除事件到 Elasticsearch
         String tagsStr = String.join(",", q.getTags());
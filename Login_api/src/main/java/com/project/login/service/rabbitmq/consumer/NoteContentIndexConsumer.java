@@ -0,0 +1,81 @@
+package com.project.login.service.rabbitmq.consumer;
+
+import co.elastic.clients.elasticsearch._types.mapping.Property;
+import com.project.login.mapper.NoteMapper;
+import com.project.login.model.event.NoteContentEvent;
+import com.project.login.service.minio.MinioService;
+import com.project.login.service.noting.NoteContentExtractor;
+import com.project.login.service.search.EsBulkIndexer;
+import com.project.login.service.search.EsMappingManager;
+import com.project.login.service.search.SearchResultCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * 笔记正文全文索引（发布后异步执行，不占用上传 / 发布请求的时间）：
+ * 从 MinIO 流式读取文件 → NoteContentExtractor 分块 → 以 nested 字段 chunks 写入 notes 索引。
+ * chunks 整体替换（partial update 只覆盖该字段），不影响标题、摘要与统计字段。
+ * 不带 upsert：提取期间笔记被删除时文档已不存在（404 视为笔记已删除），不会重建出只有正文的残缺文档。
+ * 重建索引（SearchReindexService）发出的正文事件走同一路径。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class NoteContentIndexConsumer {
+
+    /** 旧索引没有 chunks 映射时补上（新索引见 es/notes-index.json） */
+    private static final Property CHUNKS_MAPPING = Property.of(p -> p.nested(n -> n
+            .properties("page", Property.of(pp -> pp.integer(i -> i)))
+            .properties("seq", Property.of(pp -> pp.integer(i -> i)))
+            .properties("text", Property.of(pp -> pp.text(t -> t)))));
+
+    private final NoteMapper noteMapper;
+    private final MinioService minioService;
+    private final NoteContentExtractor noteContentExtractor;
+    private final EsBulkIndexer esBulkIndexer;
+    private final SearchResultCache searchResultCache;
+    private final EsMappingManager esMappingManager;
+
+    @RabbitListener(queues = "note.content.queue")
+    public void process(NoteContentEvent event) {
+        if (event == null || event.getNoteId() == null) return;
+
+        // 事件积压期间笔记被删除或重新上传：跳过旧文件，由新事件负责
+        String current = noteMapper.selectFileNameByNoteId(event.getNoteId());
+        if (current == null || !current.equals(event.getFilename())) {
+            log.info("Skip stale note content event: noteId={}, filename={}", event.getNoteId(), event.getFilename());
+            return;
+        }
+
+        try (InputStream in = minioService.openStream(event.getFilename())) {
+            long start = System.currentTimeMillis();
+            List<NoteContentExtractor.Chunk> chunks = noteContentExtractor.extract(in, event.getFilename());
+
+            List<Map<String, Object>> docs = new ArrayList<>(chunks.size());
+            for (NoteContentExtractor.Chunk chunk : chunks) {
+                Map<String, Object> c = new HashMap<>();
+                c.put("page", chunk.page());
+                c.put("seq", chunk.seq());
+                c.put("text", chunk.text());
+                docs.add(c);
+            }
+
+            Map<String, Object> doc = new HashMap<>();
+            doc.put("chunks", docs);
+
+            esMappingManager.ensure(NoteEsConsumer.INDEX, "chunks", CHUNKS_MAPPING);
+            esBulkIndexer.apply(NoteEsConsumer.INDEX, NoteEsConsumer.DEAD_LETTER_QUEUE,
+                    List.of(EsBulkIndexer.Action.update(String.valueOf(event.getNoteId()), doc)));
+            searchResultCache.bump(NoteEsConsumer.INDEX);
+            log.info("Indexed note content: noteId={}, chunks={}, took={}ms",
+                    event.getNoteId(), chunks.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("Index note content failed: noteId={}, filename={}", event.getNoteId(), event.getFilename(), e);
+        }
+    }
+}
@@ -1,58 +1,79 @@
 package com.project.login.service.rabbitmq.consumer;
 
-import com.project.login.model.entity.NoteEntity;
 import com.project.login.model.event.EsNoteEvent;
-import com.project.login.model.event.NoteActionType;
-import com.project.login.repository.NoteRepository;
-import jakarta.annotation.Resource;
-import org.springframework.amqp.rabbit.annotation.RabbitHandler;
+import com.project.login.service.search.EsBulkIndexer;
+import com.project.login.service.search.EsMappingManager;
+import com.project.login.service.search.SearchResultCache;
+import com.project.login.service.search.SuggestService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDateTime;
-import java.util.Optional;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+@Slf4j
 @Component
-@RabbitListener(queues = "note.es.queue")
+@RequiredArgsConstructor
 public class NoteEsConsumer {
 
-    @Resource
-    private NoteRepository esRepository;
+    public static final String INDEX = "notes";
+    public static final String DEAD_LETTER_QUEUE = "note.es.dlq";
 
-    @RabbitHandler
-    public void process(EsNoteEvent event) {
+    private final EsBulkIndexer esBulkIndexer;
+    private final SearchResultCache searchResultCache;
+    private final EsMappingManager esMappingManager;
+    private final Jackson2JsonMessageConverter messageConverter;
 
-        switch (event.getAction()) {
-            case NoteActionType.CREATE:
-            case NoteActionType.UPDATE:
-                esRepository.save(buildNoteEntity(event));
-                break;
-
-            case NoteActionType.DELETE:
-                esRepository.deleteById(event.getNoteId());
-                break;
-
-            default:
-                System.out.println("Unknown action: " + event.getAction());
+    /**
+     * 批量监听：一次交付至多 es-indexing.batch-size 条事件（或等待 receive-timeout 后凑不满即交付），
+     * 同一笔记的多条事件合并为一个操作，整批一次 _bulk。
+     * 只写事件中给出的字段（partial update），不覆盖 NoteStatsIndexSyncService 冗余的统计字段。
+     */
+    @RabbitListener(queues = "note.es.queue", containerFactory = "esBatchListenerFactory")
+    public void process(List<Message> messages) {
+        Map<Long, EsBulkIndexer.Action> actions = new LinkedHashMap<>();
+        for (Message message : messages) {
+            try {
+                if (messageConverter.fromMessage(message) instanceof EsNoteEvent event && event.getNoteId() != null) {
+                    EsBulkIndexer.Action action = toAction(event);
+                    if (action != null) actions.merge(event.getNoteId(), action, EsBulkIndexer.Action::then);
+                }
+            } catch (Exception ex) {
+                log.error("Unreadable note ES event: {}", message, ex);
+            }
         }
+        if (actions.isEmpty()) return;
+        esMappingManager.ensure(INDEX, SuggestService.SUGGEST_FIELD, SuggestService.SUGGEST_MAPPING);
+        esBulkIndexer.apply(INDEX, DEAD_LETTER_QUEUE, actions.values());
+        searchResultCache.bump(INDEX);
     }
 
-    // 确保部分更新时正确
-    private NoteEntity buildNoteEntity(EsNoteEvent event) {
-        Optional<NoteEntity> opt = esRepository.findById(event.getNoteId());
-        NoteEntity entity = opt.orElse(new NoteEntity());
-
-        // 设置ID（新建时需要）
-        entity.setId(event.getNoteId());
+    private EsBulkIndexer.Action toAction(EsNoteEvent event) {
+        String id = String.valueOf(event.getNoteId());
+        switch (event.getAction()) {
+            case CREATE:
+            case UPDATE:
+                Map<String, Object> doc = new HashMap<>();
+                doc.put("id", event.getNoteId());
+                if (event.getTitle() != null) {
+                    doc.put("title", event.getTitle());
+                    doc.put(SuggestService.SUGGEST_FIELD, SuggestService.suggestInput(event.getTitle(), null));
+                }
+                if (event.getContentSummary() != null) doc.put("contentSummary", event.getContentSummary());
+                return EsBulkIndexer.Action.upsert(id, doc);
 
-        // 基本信息
-        if (event.getTitle() != null) entity.setTitle(event.getTitle());
-        if (event.getContentSummary() != null) entity.setContentSummary(event.getContentSummary());
+            case DELETE:
+                return EsBulkIndexer.Action.delete(id);
 
-        event.setUpdatedAt(LocalDateTime.now());
-        return entity;
+            default:
+                log.warn("Unknown note ES action: {}", event.getAction());
+                return null;
+        }
     }
-
-
-
 }
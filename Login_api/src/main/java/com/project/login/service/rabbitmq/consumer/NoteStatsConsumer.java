@@ -4,14 +4,29 @@ import com.project.login.mapper.NoteStatsCompensationMapper;
 import com.project.login.mapper.NoteStatsMapper;
 import com.project.login.model.dataobject.NoteStatsCompensationDO;
 import com.project.login.model.dataobject.NoteStatsDO;
+import com.project.login.service.notestats.NoteStatsCodec;
+import com.project.login.service.notestats.NoteStatsService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Component
@@ -21,9 +36,174 @@ public class NoteStatsConsumer {
     private final NoteStatsMapper noteStatsMapper;
     private final NoteStatsCompensationMapper compensationMapper;
     private final RedisTemplate<String, Object> redisTemplate;
+    private final Jackson2JsonMessageConverter messageConverter;
+    private final MeterRegistry meterRegistry;
+    private final NoteStatsService noteStatsService;
+    private final RabbitTemplate rabbitTemplate;
 
     private static final String REDIS_KEY_PREFIX = "note_stats:";
+    /** 落库失败且无法加回 Redis 增量日志的行，格式与 note.stats.delta.queue 相同，可人工回放 */
+    public static final String DEAD_LETTER_QUEUE = "note.stats.delta.dlq";
 
+    @Value("${note-stats.consumer.max-rows-per-statement:1000}")
+    private int maxRowsPerStatement;
+
+    // 落库吞吐按行计（rate(note_stats.flush.rows) 即 rows/s），而不是按消息计
+    private Counter flushRows;
+    private Counter flushFailedRows;
+    private Timer flushBatchTimer;
+
+    @PostConstruct
+    void initMetrics() {
+        flushRows = meterRegistry.counter("note_stats.flush.rows");
+        flushFailedRows = meterRegistry.counter("note_stats.flush.failed_rows");
+        flushBatchTimer = meterRegistry.timer("note_stats.flush.batch");
+    }
+
+    /**
+     * 增量消息：{"deltas": [{note_id, authorName, views, likes, favorites, comments, last_activity_at}, ...]}
+     * 批量监听：一次交付至多 note-stats.consumer.batch-size 条消息，按 noteId 合并后分段多行 upsert
+     * （已删除笔记的增量在语句内被跳过，不会拖垮整段）；
+     * 某段失败时逐行重试，仍失败的行加回 Redis 增量日志（note_stats_delta + note_stats_dirty），由下一轮 flush 重发；
+     * Redis 也不可用时投递到 note.stats.delta.dlq。不写补偿表：补偿表按总量计算，而 Redis 总量含未落库的增量。
+     * 增量可交换，因此无需 version 乐观锁，upsert 中只做 version+1。
+     */
+    @RabbitListener(queues = "note.stats.delta.queue", containerFactory = "noteStatsBatchListenerFactory")
+    public void processDeltas(List<Message> messages) {
+        long start = System.nanoTime();
+
+        Map<Long, NoteStatsDO> merged = new LinkedHashMap<>();
+        for (Message message : messages) {
+            try {
+                Object payload = messageConverter.fromMessage(message);
+                if (payload instanceof Map<?, ?> data) {
+                    parseDeltas(data.get("deltas")).forEach(row -> merged.merge(row.getNoteId(), row, this::mergeDelta));
+                }
+            } catch (Exception ex) {
+                log.error("Unreadable note stats delta message: {}", message, ex);
+            }
+        }
+        if (merged.isEmpty()) return;
+
+        List<NoteStatsDO> rows = new ArrayList<>(merged.values());
+        int applied = 0;
+        for (int from = 0; from < rows.size(); from += maxRowsPerStatement) {
+            applied += applyChunk(rows.subList(from, Math.min(rows.size(), from + maxRowsPerStatement)));
+        }
+
+        long nanos = System.nanoTime() - start;
+        flushRows.increment(applied);
+        flushFailedRows.increment(rows.size() - applied);
+        flushBatchTimer.record(nanos, TimeUnit.NANOSECONDS);
+        log.info("note_stats delta batch: {} messages, {} rows ({} failed) in {} ms, {} rows/s",
+                messages.size(), rows.size(), rows.size() - applied, nanos / 1_000_000,
+                nanos == 0 ? rows.size() : (long) (applied * 1e9 / nanos));
+    }
+
+    /**
+     * 一段行一条多行 upsert；失败则逐行重试，仍失败的行重新入队。返回成功落库的行数
+     */
+    private int applyChunk(List<NoteStatsDO> rows) {
+        try {
+            noteStatsMapper.upsertDeltas(rows);
+            rows.forEach(r -> deleteIfCold(r.getNoteId(), r.getLastActivityAt()));
+            return rows.size();
+        } catch (Exception ex) {
+            log.warn("Batch delta upsert failed for {} rows, fallback to row by row", rows.size(), ex);
+        }
+
+        int applied = 0;
+        List<NoteStatsDO> unjournaled = new ArrayList<>();
+        for (NoteStatsDO row : rows) {
+            try {
+                noteStatsMapper.upsertDeltas(List.of(row));
+                deleteIfCold(row.getNoteId(), row.getLastActivityAt());
+                applied++;
+            } catch (Exception ex) {
+                log.error("Delta upsert failed for noteId={}, restoring delta to journal", row.getNoteId(), ex);
+                if (!rejournal(row)) unjournaled.add(row);
+            }
+        }
+        deadLetter(unjournaled);
+        return applied;
+    }
+
+    /** 增量加回 Redis 增量日志，下一轮 flush 重发 */
+    private boolean rejournal(NoteStatsDO row) {
+        try {
+            noteStatsService.restoreDelta(row.getNoteId(), row.getViews(), row.getLikes(), row.getFavorites(), row.getComments());
+            return true;
+        } catch (Exception ex) {
+            log.error("Failed to restore delta for noteId={} to journal", row.getNoteId(), ex);
+            return false;
+        }
+    }
+
+    private void deadLetter(List<NoteStatsDO> rows) {
+        if (rows.isEmpty()) return;
+        List<Map<String, Object>> deltas = new ArrayList<>(rows.size());
+        for (NoteStatsDO row : rows) {
+            Map<String, Object> d = new HashMap<>();
+            d.put("note_id", row.getNoteId());
+            d.put("authorName", row.getAuthorName());
+            d.put("views", row.getViews());
+            d.put("likes", row.getLikes());
+            d.put("favorites", row.getFavorites());
+            d.put("comments", row.getComments());
+            d.put("last_activity_at", row.getLastActivityAt().toString());
+            deltas.add(d);
+        }
+        try {
+            rabbitTemplate.convertAndSend(DEAD_LETTER_QUEUE, Map.of("deltas", deltas));
+            log.error("Dead-lettered {} note stats deltas to {}", rows.size(), DEAD_LETTER_QUEUE);
+        } catch (Exception ex) {
+            log.error("Failed to dead-letter note stats deltas, lost: {}", deltas, ex);
+        }
+    }
+
+    /** 同一 noteId 的多条增量相加，保留最新的活跃时间与非空作者名 */
+    private NoteStatsDO mergeDelta(NoteStatsDO a, NoteStatsDO b) {
+        a.setViews(a.getViews() + b.getViews());
+        a.setLikes(a.getLikes() + b.getLikes());
+        a.setFavorites(a.getFavorites() + b.getFavorites());
+        a.setComments(a.getComments() + b.getComments());
+        if (b.getLastActivityAt().isAfter(a.getLastActivityAt())) {
+            a.setLastActivityAt(b.getLastActivityAt());
+        }
+        if (!b.getAuthorName().isEmpty()) {
+            a.setAuthorName(b.getAuthorName());
+        }
+        return a;
+    }
+
+    private List<NoteStatsDO> parseDeltas(Object deltas) {
+        List<NoteStatsDO> rows = new ArrayList<>();
+        if (!(deltas instanceof List<?> list)) return rows;
+
+        for (Object item : list) {
+            if (!(item instanceof Map<?, ?> d)) continue;
+            Long noteId = parseLongSafe(d.get("note_id"));
+            if (noteId < 1) {
+                log.warn("Invalid noteId={} in delta message, skip", noteId);
+                continue;
+            }
+
+            NoteStatsDO row = new NoteStatsDO();
+            row.setNoteId(noteId);
+            row.setAuthorName(d.get("authorName") == null ? "" : String.valueOf(d.get("authorName")));
+            row.setViews(parseLongSafe(d.get("views")));
+            row.setLikes(parseLongSafe(d.get("likes")));
+            row.setFavorites(parseLongSafe(d.get("favorites")));
+            row.setComments(parseLongSafe(d.get("comments")));
+            row.setLastActivityAt(parseDateTimeSafe(d.get("last_activity_at")));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * 旧版全量 totals 消息（note.redis.queue），保留以消费升级前已入队的消息
+     */
     @RabbitListener(queues = "note.redis.queue")
     public void process(Map<String, Object> data) {
         try {
@@ -130,19 +310,12 @@ public class NoteStatsConsumer {
 
     private void deleteIfCold(Long noteId, LocalDateTime incomingLast) {
         String key = REDIS_KEY_PREFIX + noteId;
-        Object redisLastObj = redisTemplate.opsForHash().get(key, "last_activity_at");
+        // 两种编码的活跃时间字段都读，由 NoteStatsCodec 解析
+        List<Object> last = redisTemplate.opsForHash().multiGet(key, List.of("t", "last_activity_at"));
+        Object redisLastObj = last.get(0) != null ? last.get(0) : last.get(1);
+        LocalDateTime redisLast = NoteStatsCodec.parseActivity(redisLastObj);
 
-        if (redisLastObj == null) {
-            redisTemplate.delete(key);
-            return;
-        }
-
-        try {
-            LocalDateTime redisLast = LocalDateTime.parse(redisLastObj.toString());
-            if (!redisLast.isAfter(incomingLast)) {
-                redisTemplate.delete(key);
-            }
-        } catch (Exception e) {
+        if (redisLast == null || !redisLast.isAfter(incomingLast)) {
             redisTemplate.delete(key);
         }
     }
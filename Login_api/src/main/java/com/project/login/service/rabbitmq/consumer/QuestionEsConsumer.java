@@ -1,53 +1,76 @@
 package com.project.login.service.rabbitmq.consumer;
 
-import com.project.login.model.entity.QuestionEntity;
 import com.project.login.model.event.QuestionEvent;
-import com.project.login.repository.QuestionEsRepository;
-import jakarta.annotation.Resource;
-import org.springframework.amqp.rabbit.annotation.RabbitHandler;
+import com.project.login.service.search.EsBulkIndexer;
+import com.project.login.service.search.EsMappingManager;
+import com.project.login.service.search.SearchResultCache;
+import com.project.login.service.search.SuggestService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.stereotype.Component;
 
-import java.util.Optional;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+@Slf4j
 @Component
-@RabbitListener(queues = "question.es.queue")
+@RequiredArgsConstructor
 public class QuestionEsConsumer {
 
-    @Resource
-    private QuestionEsRepository esRepository;
+    public static final String INDEX = "questions";
+    public static final String DEAD_LETTER_QUEUE = "question.es.dlq";
 
-    @RabbitHandler
-    public void process(QuestionEvent event) {
+    private final EsBulkIndexer esBulkIndexer;
+    private final SearchResultCache searchResultCache;
+    private final EsMappingManager esMappingManager;
+    private final Jackson2JsonMessageConverter messageConverter;
 
+    /**
+     * 批量监听，同 NoteEsConsumer：同一问题的多条事件合并，整批一次 _bulk
+     */
+    @RabbitListener(queues = "question.es.queue", containerFactory = "esBatchListenerFactory")
+    public void process(List<Message> messages) {
+        Map<String, EsBulkIndexer.Action> actions = new LinkedHashMap<>();
+        for (Message message : messages) {
+            try {
+                if (messageConverter.fromMessage(message) instanceof QuestionEvent event && event.getQuestionId() != null) {
+                    EsBulkIndexer.Action action = toAction(event);
+                    if (action != null) actions.merge(event.getQuestionId(), action, EsBulkIndexer.Action::then);
+                }
+            } catch (Exception ex) {
+                log.error("Unreadable question ES event: {}", message, ex);
+            }
+        }
+        if (actions.isEmpty()) return;
+        esMappingManager.ensure(INDEX, SuggestService.SUGGEST_FIELD, SuggestService.SUGGEST_MAPPING);
+        esBulkIndexer.apply(INDEX, DEAD_LETTER_QUEUE, actions.values());
+        searchResultCache.bump(INDEX);
+    }
+
+    private EsBulkIndexer.Action toAction(QuestionEvent event) {
         switch (event.getType()) {
             case CREATE:
-                esRepository.save(buildQuestionEntity(event));
-                break;
+                Map<String, Object> doc = new HashMap<>();
+                doc.put("questionId", event.getQuestionId());
+                if (event.getTitle() != null) doc.put("title", event.getTitle());
+                if (event.getContent() != null) doc.put("content", event.getContent());
+                if (event.getTags() != null) doc.put("tags", event.getTags());
+                Map<String, Object> suggest = SuggestService.suggestInput(event.getTitle(),
+                        event.getTags() == null ? null : List.of(event.getTags().split(",")));
+                if (suggest != null) doc.put(SuggestService.SUGGEST_FIELD, suggest);
+                return EsBulkIndexer.Action.upsert(event.getQuestionId(), doc);
 
             case DELETE:
-                esRepository.deleteById(event.getQuestionId());
-                break;
+                return EsBulkIndexer.Action.delete(event.getQuestionId());
 
             default:
-                System.out.println("Unknown event type: " + event.getType());
+                log.warn("Unknown question ES event type: {}", event.getType());
+                return null;
         }
     }
-
-    // 构建或更新 QuestionEntity
-    private QuestionEntity buildQuestionEntity(QuestionEvent event) {
-        Optional<QuestionEntity> opt = esRepository.findById(event.getQuestionId());
-        QuestionEntity entity = opt.orElse(new QuestionEntity());
-
-        // 设置ID
-        entity.setQuestionId(event.getQuestionId());
-
-        // 设置基本信息
-        if (event.getTitle() != null) entity.setTitle(event.getTitle());
-        if (event.getContent() != null) entity.setContent(event.getContent());
-        if (event.getTags() != null) entity.setTags(event.getTags());
-
-        return entity;
-    }
 }
-
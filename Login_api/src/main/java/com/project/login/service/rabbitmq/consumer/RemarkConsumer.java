@@ -4,14 +4,18 @@ import com.project.login.model.dataobject.RemarkCountDO;
 import com.project.login.model.dataobject.RemarkLikeByUsersDO;
 import com.project.login.repository.RemarkLikeByUsersRepository;
 import com.project.login.repository.RemarkLikeCountRepository;
+import com.project.login.service.remark.RemarkLikerStore;
+import com.project.login.service.remark.RemarkLikers;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -26,7 +30,10 @@ import java.util.Set;
  *   <li>deleteIfCold：成功落盘后，若 Redis 仍是同一份快照（last_activity_at 未前进），
  *       主动删除 Redis 中的 stats / userList key，强制下一次访问 read-through 从 DB
  *       重新加载新 version。这是把 Redis 当"热缓存"而非"权威源"的关键。</li>
- *   <li>失败仅记录日志，不写补偿表（与 NoteStats 的区别）。下一次定时 flush 会重发。</li>
+ *   <li>点赞数失败仅记录日志，不写补偿表（与 NoteStats 的区别）。下一次定时 flush 会重发全量计数。</li>
+ *   <li>点赞用户是增量消息，处理失败或重试耗尽时抛出异常，由 remarkLikeUsersListenerFactory 重试并转入死信队列；
+ *       RemarkService.reconcileLikeUsersToMQ 定期取出死信，按评论合并后作为增量重放。</li>
+ *   <li>点赞用户以 RoaringBitmap（RemarkLikers）二进制写入 remark_likes.likers，旧文档的 user_list 在下一次写回时被取代。</li>
  * </ul>
  */
 @Slf4j
@@ -37,9 +44,9 @@ public class RemarkConsumer {
     private final RemarkLikeCountRepository remarkLikeCountRepository;
     private final RemarkLikeByUsersRepository remarkLikeByUsersRepository;
     private final RedisTemplate<String, Object> redisTemplate;
+    private final RemarkLikerStore likerStore;
 
     private static final String STATS_KEY_PREFIX = "remark_stats:";
-    private static final String USER_LIKE_KEY_PREFIX = "remark_user_like:";
     private static final String F_LAST_ACTIVITY = "last_activity_at";
 
     /** 消息: { remarkId, likeCount, version, last_activity_at } */
@@ -86,8 +93,13 @@ public class RemarkConsumer {
         }
     }
 
-    /** 消息: { remarkId, users, version, last_activity_at } */
-    @RabbitListener(queues = "remarkLikeUsers.redis.queue")
+    /**
+     * 消息: { remarkId, added, removed, version, last_activity_at }（增量），
+     * { remarkId, likers }（全量对账快照，RemarkLikers 序列化），
+     * 兼容升级前发出的全量消息 { remarkId, users, version, last_activity_at }。
+     * 处理失败时抛出异常，消息重试后进入死信队列，不会被确认丢弃。
+     */
+    @RabbitListener(queues = "remarkLikeUsers.redis.queue", containerFactory = "remarkLikeUsersListenerFactory")
     public void handleLikeUsersMessage(Map<String, Object> msg) {
         String remarkId = (String) msg.get("remarkId");
         if (remarkId == null || remarkId.isEmpty()) {
@@ -95,7 +107,16 @@ public class RemarkConsumer {
             return;
         }
 
-        Set<Long> userSet = parseUserSet(msg.get("users"));
+        if (msg.containsKey("likers")) {
+            handleLikeUsersSnapshot(remarkId, parseBytes(msg.get("likers")));
+            return;
+        }
+        if (!msg.containsKey("users")) {
+            handleLikeUsersDelta(remarkId, msg);
+            return;
+        }
+
+        Roaring64NavigableMap userSet = RemarkLikers.of(parseUserSet(msg.get("users")));
         long version = parseLongSafe(msg.get("version"));
         LocalDateTime lastActivity = parseDateTimeSafe(msg.get("last_activity_at"));
 
@@ -118,14 +139,58 @@ public class RemarkConsumer {
                 return;
             } catch (OptimisticLockingFailureException e) {
                 if (attempt == maxRetry) {
-                    log.error("Users overwrite failed for remarkId={} after {} attempts (giving up; "
-                            + "next flush will retry)", remarkId, maxRetry);
-                } else {
-                    log.info("Users overwrite conflict for remarkId={}, retry {}/{}", remarkId, attempt, maxRetry);
+                    log.error("Users overwrite failed for remarkId={} after {} attempts, rejecting message",
+                            remarkId, maxRetry);
+                    throw e;
                 }
-            } catch (Exception e) {
-                log.error("Error in users overwrite for remarkId={}", remarkId, e);
+                log.info("Users overwrite conflict for remarkId={}, retry {}/{}", remarkId, attempt, maxRetry);
+            }
+        }
+    }
+
+    /**
+     * 增量：在 MongoDB 当前集合上应用 added / removed。增量与 version 无关，
+     * 乐观锁冲突时重新读取再应用，最多 3 次；仍失败或出现其他异常时抛出，消息重试 / 进入死信
+     */
+    private void handleLikeUsersDelta(String remarkId, Map<String, Object> msg) {
+        Set<Long> added = parseUserSet(msg.get("added"));
+        Set<Long> removed = parseUserSet(msg.get("removed"));
+        LocalDateTime lastActivity = parseDateTimeSafe(msg.get("last_activity_at"));
+
+        int maxRetry = 3;
+        for (int attempt = 1; attempt <= maxRetry; attempt++) {
+            try {
+                applyUsersDelta(remarkId, added, removed);
+                deleteUsersIfCold(remarkId, lastActivity);
                 return;
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt == maxRetry) {
+                    log.error("Users delta failed for remarkId={} after {} attempts, rejecting message",
+                            remarkId, maxRetry);
+                    throw e;
+                }
+                log.info("Users delta conflict for remarkId={}, retry {}/{}", remarkId, attempt, maxRetry);
+            }
+        }
+    }
+
+    /**
+     * 全量对账快照：整体覆盖 likers。快照取自 Redis 热副本，不做 deleteUsersIfCold
+     */
+    private void handleLikeUsersSnapshot(String remarkId, byte[] likers) {
+        Roaring64NavigableMap snapshot = RemarkLikers.deserialize(likers);
+        int maxRetry = 3;
+        for (int attempt = 1; attempt <= maxRetry; attempt++) {
+            try {
+                forceOverwriteUsers(remarkId, snapshot);
+                return;
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt == maxRetry) {
+                    log.error("Users snapshot failed for remarkId={} after {} attempts, rejecting message",
+                            remarkId, maxRetry);
+                    throw e;
+                }
+                log.info("Users snapshot conflict for remarkId={}, retry {}/{}", remarkId, attempt, maxRetry);
             }
         }
     }
@@ -163,7 +228,7 @@ public class RemarkConsumer {
 
     // ============ Users helpers ============
 
-    private boolean directUpdateUsers(String remarkId, Set<Long> userSet, long msgVersion) {
+    private boolean directUpdateUsers(String remarkId, Roaring64NavigableMap userSet, long msgVersion) {
         RemarkLikeByUsersDO existing = remarkLikeByUsersRepository.findById(remarkId).orElse(null);
         long dbVersion = (existing != null && existing.getVersion() != null) ? existing.getVersion() : 0L;
 
@@ -172,17 +237,28 @@ public class RemarkConsumer {
         }
 
         RemarkLikeByUsersDO usersDO = existing != null ? existing
-                : RemarkLikeByUsersDO.builder().remarkId(remarkId).userList(new HashSet<>()).build();
-        usersDO.setUserList(userSet);
+                : RemarkLikeByUsersDO.builder().remarkId(remarkId).build();
+        RemarkLikers.writeTo(userSet, usersDO);
         remarkLikeByUsersRepository.save(usersDO);
         return true;
     }
 
-    private void forceOverwriteUsers(String remarkId, Set<Long> userSet) {
+    private void forceOverwriteUsers(String remarkId, Roaring64NavigableMap userSet) {
         RemarkLikeByUsersDO existing = remarkLikeByUsersRepository.findById(remarkId).orElse(null);
         RemarkLikeByUsersDO usersDO = existing != null ? existing
-                : RemarkLikeByUsersDO.builder().remarkId(remarkId).userList(new HashSet<>()).build();
-        usersDO.setUserList(userSet);
+                : RemarkLikeByUsersDO.builder().remarkId(remarkId).build();
+        RemarkLikers.writeTo(userSet, usersDO);
+        remarkLikeByUsersRepository.save(usersDO);
+    }
+
+    private void applyUsersDelta(String remarkId, Set<Long> added, Set<Long> removed) {
+        RemarkLikeByUsersDO existing = remarkLikeByUsersRepository.findById(remarkId).orElse(null);
+        RemarkLikeByUsersDO usersDO = existing != null ? existing
+                : RemarkLikeByUsersDO.builder().remarkId(remarkId).build();
+        Roaring64NavigableMap likers = RemarkLikers.ofDocument(usersDO);
+        added.forEach(likers::addLong);
+        removed.forEach(likers::removeLong);
+        RemarkLikers.writeTo(likers, usersDO);
         remarkLikeByUsersRepository.save(usersDO);
     }
 
@@ -216,12 +292,12 @@ public class RemarkConsumer {
     }
 
     /**
-     * userList Set 没有自带 last_activity_at，复用 stats Hash 的时间戳：
+     * 点赞用户 key 没有自带 last_activity_at，复用 stats Hash 的时间戳：
      * 如果 stats Hash 已被 deleteStatsIfCold 删除（或者 stats 时间戳没领先），就一并清掉用户集合。
      */
     private void deleteUsersIfCold(String remarkId, LocalDateTime incomingLast) {
         String statsK = STATS_KEY_PREFIX + remarkId;
-        String userK = USER_LIKE_KEY_PREFIX + remarkId;
+        String userK = likerStore.key(remarkId);
         Object redisLastObj = redisTemplate.opsForHash().get(statsK, F_LAST_ACTIVITY);
 
         if (redisLastObj == null) {
@@ -254,6 +330,13 @@ public class RemarkConsumer {
         catch (Exception e) { return LocalDateTime.now(); }
     }
 
+    /** JSON 消息中的 byte[] 为 Base64 字符串 */
+    private byte[] parseBytes(Object obj) {
+        if (obj instanceof byte[] bytes) return bytes;
+        if (obj == null) return null;
+        return Base64.getDecoder().decode(obj.toString());
+    }
+
     private Set<Long> parseUserSet(Object obj) {
         Set<Long> result = new HashSet<>();
         if (obj instanceof Iterable) {
@@ -1,109 +1,150 @@
 package com.project.login.service.recommend;
 
-import com.project.login.model.dataobject.QuestionDO;
+import com.project.login.mapper.NoteMapper;
 import com.project.login.model.vo.NoteSearchVO;
-import com.project.login.model.dto.search.NoteSearchDTO;
+import com.project.login.model.vo.RecommendNotePageVO;
 import com.project.login.model.vo.qa.QuestionVO;
-import com.project.login.service.qa.QuestionService;
+import com.project.login.service.flink.userbahavior.UserBehaviorService;
 import com.project.login.service.search.SearchQAService;
+import com.project.login.service.search.NoteCardRenderer;
 import com.project.login.service.search.SearchService;
 import org.springframework.stereotype.Service;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
+/**
+ * 基于用户画像（user_fused_profile:{userId}，Flink 融合的关键词 → 权重）的推荐。
+ * 取权重最高的 topN 个关键词，一次 ES 查询完成多关键词召回（权重作为子句 boost），
+ * 结果天然去重，统计 / 详情对并集批量加载一次。
+ * 分页接口优先读取 Flink 作业（BehaviorSearchJob）预物化的候选 ZSET user_feed:{userId}，
+ * 读取时再过滤自己的笔记与最近看过的笔记（候选至多 FEED_SIZE 条，整份读出过滤后再分页，
+ * offset / total 都基于过滤后的列表）；没有候选的用户（冷启动）回退到实时计算。
+ */
 @Service
 public class UserProfileQueryService {
 
+    private static final int RECOMMEND_SIZE = 50;
+    private static final String FEED_KEY_PREFIX = "user_feed:";
+
+    public static final int DEFAULT_PAGE_LIMIT = 20;
+    public static final int MAX_PAGE_LIMIT = 50;
+
     private final StringRedisTemplate redisTemplate;
     private final ObjectMapper objectMapper;
     private final SearchService searchService;
     private final SearchQAService qaService;
+    private final NoteMapper noteMapper;
+    private final NoteCardRenderer noteCardRenderer;
 
     public UserProfileQueryService(StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
-                                   SearchService searchService, SearchQAService qaService) {
+                                   SearchService searchService, SearchQAService qaService,
+                                   NoteMapper noteMapper, NoteCardRenderer noteCardRenderer) {
         this.redisTemplate = redisTemplate;
         this.objectMapper = objectMapper;
         this.searchService = searchService;
         this.qaService = qaService;
+        this.noteMapper = noteMapper;
+        this.noteCardRenderer = noteCardRenderer;
     }
 
-    private List<String> getTopKeywords(Long userId, int topN) throws Exception {
+    /**
+     * 画像中权重最高的 topN 个关键词及其权重（按权重降序）
+     */
+    private Map<String, Double> getTopKeywords(Long userId, int topN) throws Exception {
         String json = redisTemplate.opsForValue().get("user_fused_profile:" + userId);
-        if (json == null) return Collections.emptyList();
+        if (json == null) return Collections.emptyMap();
 
-        Map<String, Double> fused = objectMapper.readValue(json, Map.class);
-        return fused.entrySet().stream()
-                .sorted((e1, e2) -> Double.compare(e2.getValue(), e1.getValue()))
+        Map<String, Number> fused = objectMapper.readValue(json, Map.class);
+        Map<String, Double> top = new LinkedHashMap<>();
+        fused.entrySet().stream()
+                .filter(e -> e.getKey() != null && !e.getKey().isBlank() && e.getValue() != null)
+                .sorted((e1, e2) -> Double.compare(e2.getValue().doubleValue(), e1.getValue().doubleValue()))
                 .limit(topN)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
+                .forEach(e -> top.put(e.getKey(), e.getValue().doubleValue()));
+        return top;
     }
 
     /**
-     * 根据用户画像关键词推荐笔记，并去重
+     * 根据用户画像关键词推荐笔记，排除自己的笔记与最近看过的笔记
      */
     public List<NoteSearchVO> recommendNotesByKeywords(Long userId, int topN) throws Exception {
-        List<String> keywords = getTopKeywords(userId, topN);
+        Map<String, Double> keywords = getTopKeywords(userId, topN);
         if (keywords.isEmpty()) return Collections.emptyList();
 
-        Map<Long, NoteSearchVO> uniqueNotes = new LinkedHashMap<>();
+        return searchService.recommend(keywords, excludedNoteIds(userId), RECOMMEND_SIZE);
+    }
 
-        for (String keyword : keywords) {
-            NoteSearchDTO dto = new NoteSearchDTO();
-            dto.setKeyword(keyword);
-            List<NoteSearchVO> results = searchService.searchNotes(dto);
+    /**
+     * 分页推荐笔记：有预物化候选时按 ZREVRANGE 分页，否则回退到实时推荐结果
+     */
+    public RecommendNotePageVO pageNotes(Long userId, int topN, Integer offset, Integer limit) throws Exception {
+        int from = offset == null ? 0 : Math.max(offset, 0);
+        int size = limit == null ? DEFAULT_PAGE_LIMIT : Math.min(Math.max(limit, 1), MAX_PAGE_LIMIT);
+
+        String feedKey = FEED_KEY_PREFIX + userId;
+        Long total = redisTemplate.opsForZSet().zCard(feedKey);
+        if (total == null || total == 0) {
+            List<NoteSearchVO> all = recommendNotesByKeywords(userId, topN);
+            List<NoteSearchVO> page = from >= all.size()
+                    ? Collections.emptyList()
+                    : all.subList(from, Math.min(all.size(), from + size));
+            return RecommendNotePageVO.builder()
+                    .source("realtime").offset(from).limit(size).total(all.size())
+                    .notes(new ArrayList<>(page))
+                    .build();
+        }
 
-            for (NoteSearchVO vo : results) {
-                // 根据 noteId 去重，保留第一次出现的
-                uniqueNotes.putIfAbsent(vo.getNoteId(), vo);
+        // 候选 ZSET 有上限（BehaviorSearchJob.FEED_SIZE），整份读出后过滤，页不会因过滤变短
+        Set<String> members = redisTemplate.opsForZSet().reverseRange(feedKey, 0, -1);
+        Set<Long> exclude = excludedNoteIds(userId);
+        List<Long> visible = new ArrayList<>();
+        if (members != null) {
+            for (String member : members) {
+                try {
+                    Long id = Long.valueOf(member);
+                    if (!exclude.contains(id)) visible.add(id);
+                } catch (NumberFormatException ignored) {
+                    // 非法成员直接忽略
+                }
             }
         }
 
-        // 综合排序：只考虑统计数据
-        List<NoteSearchVO> merged = new ArrayList<>(uniqueNotes.values());
-        merged.sort((a, b) -> {
-            double scoreA = a.getViewCount() + a.getLikeCount() + a.getFavoriteCount() + a.getCommentCount();
-            double scoreB = b.getViewCount() + b.getLikeCount() + b.getFavoriteCount() + b.getCommentCount();
-            return Double.compare(scoreB, scoreA); });
-
-        return merged;
+        List<Long> ids = from >= visible.size()
+                ? Collections.emptyList()
+                : visible.subList(from, Math.min(visible.size(), from + size));
+        return RecommendNotePageVO.builder()
+                .source("feed").offset(from).limit(size).total(visible.size())
+                .notes(noteCardRenderer.render(ids))
+                .build();
     }
 
     /**
-     * 根据用户画像关键词推荐问答（QA），并去重
+     * 需要从推荐中排除的笔记：自己的笔记 + 最近交互过的笔记
      */
-    public List<QuestionVO> recommendQuestionsByKeywords(Long userId, int topN) throws Exception {
-        // 获取用户画像中的关键词
-        List<String> keywords = getTopKeywords(userId, topN);
-        if (keywords.isEmpty()) return Collections.emptyList();
-
-        // 存储去重后的问题
-        Map<String, QuestionVO> uniqueQuestions = new LinkedHashMap<>();
-
-        // 遍历每个关键词进行搜索
-        for (String keyword : keywords) {
-            // 直接调用 SearchQAService 来执行关键词搜索
-            List<QuestionVO> results = qaService.searchQuestions(keyword);
-
-            // 对返回的问答进行去重
-            for (QuestionVO vo : results) {
-                uniqueQuestions.putIfAbsent(vo.getQuestionId(), vo);
+    private Set<Long> excludedNoteIds(Long userId) {
+        Set<Long> exclude = new HashSet<>(noteMapper.selectIdsByUserId(userId));
+        Set<String> seen = redisTemplate.opsForZSet().range(UserBehaviorService.SEEN_KEY_PREFIX + userId, 0, -1);
+        if (seen != null) {
+            for (String id : seen) {
+                try {
+                    exclude.add(Long.valueOf(id));
+                } catch (NumberFormatException ignored) {
+                    // 非法成员直接忽略
+                }
             }
         }
-
-        // 综合排序：只考虑统计数据（例如：回答数、点赞数等）
-        List<QuestionVO> merged = new ArrayList<>(uniqueQuestions.values());
-        merged.sort((a, b) -> {
-            double scoreA = a.getAnswers().size() + a.getLikeCount() + a.getFavoriteCount();
-            double scoreB = b.getAnswers().size() + b.getLikeCount() + b.getFavoriteCount();
-            return Double.compare(scoreB, scoreA);
-        });
-
-        return merged;
+        return exclude;
     }
 
+    /**
+     * 根据用户画像关键词推荐问答（QA），排除自己提的问题
+     */
+    public List<QuestionVO> recommendQuestionsByKeywords(Long userId, int topN) throws Exception {
+        Map<String, Double> keywords = getTopKeywords(userId, topN);
+        if (keywords.isEmpty()) return Collections.emptyList();
 
+        return qaService.recommend(keywords, userId, RECOMMEND_SIZE);
+    }
 }
@@ -0,0 +1,144 @@
+package com.project.login.service.remark;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * 点赞用户存为 Roaring64NavigableMap portable 序列化后的 Redis string（remark_likers:{id}，见 RemarkLikers）：
+ *  - 读：GET 后在本地判断成员
+ *  - 写：WATCH / GET / MULTI / SET / EXEC，同一评论并发写入冲突时重试
+ *  - 没有点赞的评论也写入空位图，避免每次读取都回源 MongoDB
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "remark.likers.store", havingValue = "bitmap")
+public class BitmapRemarkLikerStore implements RemarkLikerStore {
+
+    private static final String KEY_PREFIX = "remark_likers:";
+    private static final int MAX_RETRY = 5;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    @Override
+    public String key(String remarkId) {
+        return KEY_PREFIX + remarkId;
+    }
+
+    @Override
+    public boolean exists(String remarkId) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(key(remarkId)));
+    }
+
+    @Override
+    public void load(String remarkId, Roaring64NavigableMap likers, Duration ttl) {
+        byte[] k = rawKey(remarkId);
+        byte[] value = RemarkLikers.serialize(likers);
+        redisTemplate.execute((RedisCallback<Object>) connection ->
+                connection.stringCommands().set(k, value, Expiration.from(ttl), SetOption.upsert()));
+    }
+
+    @Override
+    public boolean contains(String remarkId, Long userId) {
+        byte[] k = rawKey(remarkId);
+        byte[] value = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().get(k));
+        return value != null && userId != null && RemarkLikers.deserialize(value).contains(userId);
+    }
+
+    @Override
+    public Roaring64NavigableMap snapshot(String remarkId) {
+        byte[] k = rawKey(remarkId);
+        byte[] value = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().get(k));
+        return value == null ? null : RemarkLikers.deserialize(value);
+    }
+
+    @Override
+    public void add(String remarkId, Long userId, Duration ttl) {
+        update(remarkId, ttl, likers -> {
+            if (likers.contains(userId)) return false;
+            likers.addLong(userId);
+            return true;
+        });
+    }
+
+    @Override
+    public void remove(String remarkId, Long userId, Duration ttl) {
+        update(remarkId, ttl, likers -> {
+            if (!likers.contains(userId)) return false;
+            likers.removeLong(userId);
+            return true;
+        });
+    }
+
+    /**
+     * 乐观读改写：change 返回 false（集合未变化）时只刷新 TTL
+     */
+    private void update(String remarkId, Duration ttl, Predicate<Roaring64NavigableMap> change) {
+        byte[] k = rawKey(remarkId);
+        Boolean done = redisTemplate.execute((RedisCallback<Boolean>) connection -> {
+            for (int attempt = 1; attempt <= MAX_RETRY; attempt++) {
+                connection.watch(k);
+                Roaring64NavigableMap likers = RemarkLikers.deserialize(connection.stringCommands().get(k));
+                if (!change.test(likers)) {
+                    connection.unwatch();
+                    connection.keyCommands().expire(k, ttl.toSeconds());
+                    return true;
+                }
+                connection.multi();
+                connection.stringCommands().set(k, RemarkLikers.serialize(likers), Expiration.from(ttl), SetOption.upsert());
+                List<Object> result = connection.exec();
+                if (result != null && !result.isEmpty()) return true;
+                log.debug("点赞位图写入冲突, key={}, retry {}/{}", key(remarkId), attempt, MAX_RETRY);
+            }
+            return false;
+        });
+        if (!Boolean.TRUE.equals(done)) {
+            throw new IllegalStateException("点赞位图写入冲突过多, remarkId=" + remarkId);
+        }
+    }
+
+    @Override
+    public void touch(String remarkId, Duration ttl) {
+        redisTemplate.expire(key(remarkId), ttl);
+    }
+
+    /** GET + EXPIRE */
+    @Override
+    public void queueContains(RedisConnection connection, String remarkId, Long userId, Duration ttl) {
+        byte[] k = rawKey(remarkId);
+        connection.stringCommands().get(k);
+        connection.keyCommands().expire(k, ttl.toSeconds());
+    }
+
+    @Override
+    public int containsReplies() {
+        return 2;
+    }
+
+    @Override
+    public Boolean parseContains(List<Object> replies, int offset, Long userId) {
+        if (!(replies.get(offset) instanceof byte[] value)) return null;
+        return userId != null && RemarkLikers.deserialize(value).contains(userId);
+    }
+
+    @Override
+    public void queueLoad(RedisConnection connection, String remarkId, Roaring64NavigableMap likers, Duration ttl) {
+        connection.stringCommands().set(rawKey(remarkId), RemarkLikers.serialize(likers), Expiration.from(ttl), SetOption.upsert());
+    }
+
+    private byte[] rawKey(String remarkId) {
+        return redisTemplate.getStringSerializer().serialize(key(remarkId));
+    }
+}
@@ -0,0 +1,52 @@
+package com.project.login.service.remark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 评论分页的不透明游标：排序方式 + 上一页最后一条的排序键与 _id（keyset 分页）。
+ * 排序键为空表示从头开始（子树"展开"用）。
+ */
+record RemarkCursor(char kind, String key, String id) {
+
+    /** 一级评论按时间倒序 */
+    static final char TIME = 't';
+    /** 一级评论按点赞数倒序 */
+    static final char LIKES = 'l';
+    /** 回复按时间正序 */
+    static final char REPLIES = 'r';
+
+    private static final char SEP = '\u0000';
+
+    static String start(char kind) {
+        return new RemarkCursor(kind, "", "").encode();
+    }
+
+    boolean isStart() {
+        return key.isEmpty() && id.isEmpty();
+    }
+
+    String encode() {
+        String raw = kind + String.valueOf(SEP) + key + SEP + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return 游标为空时返回 null
+     * @throws IllegalArgumentException 游标无法解析或与排序方式不符
+     */
+    static RemarkCursor decode(String cursor, char expectedKind) {
+        if (cursor == null || cursor.isBlank()) return null;
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的评论游标");
+        }
+        String[] parts = raw.split(String.valueOf(SEP), -1);
+        if (parts.length != 3 || parts[0].length() != 1 || parts[0].charAt(0) != expectedKind) {
+            throw new IllegalArgumentException("无效的评论游标");
+        }
+        return new RemarkCursor(expectedKind, parts[1], parts[2]);
+    }
+}
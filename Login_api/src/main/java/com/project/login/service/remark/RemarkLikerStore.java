@@ -0,0 +1,53 @@
+package com.project.login.service.remark;
+
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 评论点赞用户在 Redis 中的热副本（MongoDB remark_likes 为持久化副本，缺失时由调用方 read-through 后 load）。
+ * 实现由 remark.likers.store 选择：
+ *  - set（默认）：remark_user_like:{id}，Redis SET，每个用户一个成员
+ *  - bitmap：remark_likers:{id}，Roaring64NavigableMap portable 序列化后的 string（RemarkLikers），点赞多的评论内存小一个数量级
+ * 两种实现使用不同的 key，切换后旧 key 随 TTL 过期，不会读到另一种编码。
+ */
+public interface RemarkLikerStore {
+
+    String key(String remarkId);
+
+    /** Redis 中是否已有该评论的点赞用户 */
+    boolean exists(String remarkId);
+
+    /** 用 MongoDB 中的点赞用户回填 */
+    void load(String remarkId, Roaring64NavigableMap likers, Duration ttl);
+
+    /**
+     * 读取完整的点赞用户（全量对账用）
+     * @return null 表示 Redis 中没有该评论的点赞用户
+     */
+    Roaring64NavigableMap snapshot(String remarkId);
+
+    boolean contains(String remarkId, Long userId);
+
+    void add(String remarkId, Long userId, Duration ttl);
+
+    void remove(String remarkId, Long userId, Duration ttl);
+
+    void touch(String remarkId, Duration ttl);
+
+    /** 在批量 pipeline 中排入一条评论的成员查询（并刷新 TTL），占用 containsReplies() 条回复 */
+    void queueContains(RedisConnection connection, String remarkId, Long userId, Duration ttl);
+
+    int containsReplies();
+
+    /**
+     * 解析 queueContains 的回复（pipeline 按原始字节返回）
+     * @return null 表示 Redis 中还没有该评论的点赞用户，需要 read-through
+     */
+    Boolean parseContains(List<Object> replies, int offset, Long userId);
+
+    /** 在批量 pipeline 中排入 load */
+    void queueLoad(RedisConnection connection, String remarkId, Roaring64NavigableMap likers, Duration ttl);
+}
@@ -0,0 +1,71 @@
+package com.project.login.service.remark;
+
+import com.project.login.model.dataobject.RemarkLikeByUsersDO;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * 评论点赞用户集合的编码（Roaring64NavigableMap portable 序列化）：
+ *  - Redis string（remark_likers）与 MongoDB remark_likes.likers 共用同一格式
+ *  - 读取兼容旧文档的 user_list 数组，写回时只保留 likers
+ * Roaring64NavigableMap 非线程安全，按"反序列化 → 修改 → 序列化"短时使用。
+ */
+public final class RemarkLikers {
+
+    private RemarkLikers() {
+    }
+
+    public static Roaring64NavigableMap of(Collection<Long> userIds) {
+        Roaring64NavigableMap likers = new Roaring64NavigableMap();
+        if (userIds == null) return likers;
+        for (Long userId : userIds) {
+            if (userId != null) likers.addLong(userId);
+        }
+        return likers;
+    }
+
+    public static byte[] serialize(Roaring64NavigableMap likers) {
+        likers.runOptimize();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DataOutputStream data = new DataOutputStream(out)) {
+            likers.serializePortable(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /** null / 空字节视为空集合 */
+    public static Roaring64NavigableMap deserialize(byte[] bytes) {
+        Roaring64NavigableMap likers = new Roaring64NavigableMap();
+        if (bytes == null || bytes.length == 0) return likers;
+        try (DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            likers.deserializePortable(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return likers;
+    }
+
+    /** 读取文档：优先 likers 二进制，否则回退到旧的 user_list 数组 */
+    public static Roaring64NavigableMap ofDocument(RemarkLikeByUsersDO doc) {
+        if (doc == null) return new Roaring64NavigableMap();
+        if (doc.getLikers() != null) return deserialize(doc.getLikers());
+        Set<Long> legacy = doc.getUserList();
+        return of(legacy);
+    }
+
+    /** 写回文档：只保留二进制 likers，旧的 user_list 数组随这次保存移除 */
+    public static void writeTo(Roaring64NavigableMap likers, RemarkLikeByUsersDO doc) {
+        doc.setLikers(serialize(likers));
+        doc.setUserList(null);
+    }
+}
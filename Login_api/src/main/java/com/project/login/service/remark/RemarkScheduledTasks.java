@@ -24,4 +24,11 @@ public class RemarkScheduledTasks {
         log.info("Flushing remark like users to MQ");
         remarkService.flushLikeUsersToMQ();
     }
+
+    // 点赞用户死信对账：重放进入死信队列的增量消息
+    @Scheduled(cron = "${remark.likers.reconcile-cron:0 7 * * * *}")
+    public void reconcileRedisLikeUsersToMQ() {
+        log.info("Reconciling remark like users to MQ");
+        remarkService.reconcileLikeUsersToMQ();
+    }
 }
\ No newline at end of file
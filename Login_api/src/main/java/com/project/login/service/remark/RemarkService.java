@@ -1,6 +1,7 @@
 package com.project.login.service.remark;
 
 
+import com.project.login.config.RabbitConfig;
 import com.project.login.convert.RemarkConvert;
 import com.project.login.mapper.NoteMapper;
 import com.project.login.mapper.UserMapper;
@@ -8,20 +9,35 @@ import com.project.login.model.dataobject.*;
 import com.project.login.model.dto.remark.RemarkDeleteDTO;
 import com.project.login.model.dto.remark.RemarkInsertDTO;
 import com.project.login.model.dto.remark.RemarkSelectByNoteDTO;
+import com.project.login.model.vo.RemarkPageVO;
 import com.project.login.model.vo.RemarkVO;
 import com.project.login.model.vo.RemarkDetailVO;
 import com.project.login.repository.RemarkLikeCountRepository;
 import com.project.login.repository.RemarkLikeByUsersRepository;
 import com.project.login.repository.RemarkRepository;
+import com.project.login.service.cache.DelayedCacheInvalidator;
 import com.project.login.service.notestats.NoteStatsService;
 import com.project.login.service.notification.NotificationService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
@@ -41,25 +57,49 @@ public class RemarkService {
     private final NoteStatsService noteStatsService;
     private final RemarkLikeCountRepository remarkLikeCountRepository;
     private final RedisTemplate<String, Object> redisTemplate;
+    private final MongoTemplate mongoTemplate;
+    private final RemarkThreadCache threadCache;
+    private final DelayedCacheInvalidator cacheInvalidator;
+    private final RemarkLikerStore likerStore;
+
+    public static final String SORT_TIME = "time";
+    public static final String SORT_LIKES = "likes";
+    private static final String REMARK_COLLECTION = "remark";
+    private static final int MAX_REPLY_DEPTH = 5;
+    private static final int MAX_REPLY_LIMIT = 20;
+
+    @Value("${remark.page.default-limit:20}")
+    private int pageDefaultLimit;
+
+    @Value("${remark.page.max-limit:50}")
+    private int pageMaxLimit;
+
+    @Value("${remark.page.reply-depth:2}")
+    private int defaultReplyDepth;
+
+    @Value("${remark.page.reply-limit:3}")
+    private int defaultReplyLimit;
+
+    @Value("${remark.likers.reconcile-batch:1000}")
+    private int reconcileBatch;
 
 
     private static final String STATS_KEY_PREFIX = "remark_stats:";
-    private static final String USER_LIKE_KEY_PREFIX = "remark_user_like:";
+    /** 两次 flush 之间的点赞变化：Hash，field = userId，value = 1（点赞）/ 0（取消） */
+    private static final String LIKE_DELTA_KEY_PREFIX = "remark_like_delta:";
+    /** flush 时把 delta RENAME 到这里再读取，期间的新变化写入新的 delta */
+    private static final String LIKE_FLUSHING_KEY_PREFIX = "remark_like_flushing:";
     private static final String F_COUNT = "count";
     private static final String F_VERSION = "version";
     private static final String F_LAST_ACTIVITY = "last_activity_at";
     private static final Duration STATS_TTL = Duration.ofHours(2);
 
-    private final String remarkIdKey = "remark:";
-    private final String NoteIdKey = "note_id_of_remark_list:";
-    private final String replyToIdKey = "reply_to:";
-
     private final RabbitTemplate rabbitTemplate;
     private final String LikeCountQueue = "remarkLikeCount.redis.queue";
     private final String LikeUsersQueue = "remarkLikeUsers.redis.queue";
 
     private String statsKey(String remarkId)    { return STATS_KEY_PREFIX + remarkId; }
-    private String userLikeKey(String remarkId) { return USER_LIKE_KEY_PREFIX + remarkId; }
+    private String likeDeltaKey(String remarkId) { return LIKE_DELTA_KEY_PREFIX + remarkId; }
     
     private final NotificationService notificationService;
     private final com.project.login.controller.RemarkWebSocketController remarkWebSocketController;
@@ -67,7 +107,7 @@ public class RemarkService {
     /**
      * 写/读路径前的缓存回填（read-through），借鉴 NoteStatsService.initRedisIfNeeded。
      * - 若 Redis stats Hash 不存在或为空，从 MongoDB 加载 count + version
-     *   写入 Hash，同时回填 user_like Set。这样保证 like/cancel 不会从 0 重新计数
+     *   写入 Hash，同时回填点赞用户（RemarkLikerStore）。这样保证 like/cancel 不会从 0 重新计数
      *   而把 MongoDB 中已有的点赞数"腰斩"。
      * - 顺便刷新 TTL。
      */
@@ -89,16 +129,11 @@ public class RemarkService {
         }
         redisTemplate.expire(sKey, STATS_TTL);
 
-        String uKey = userLikeKey(remarkId);
-        if (!Boolean.TRUE.equals(redisTemplate.hasKey(uKey))) {
-            remarkLikeByUsersRepository.findById(remarkId).ifPresent(rec -> {
-                Set<Long> users = rec.getUserList();
-                if (users != null && !users.isEmpty()) {
-                    redisTemplate.opsForSet().add(uKey, users.toArray());
-                }
-            });
+        if (!likerStore.exists(remarkId)) {
+            Roaring64NavigableMap likers = RemarkLikers.ofDocument(remarkLikeByUsersRepository.findById(remarkId).orElse(null));
+            likerStore.load(remarkId, likers, STATS_TTL);
         }
-        redisTemplate.expire(uKey, STATS_TTL);
+        likerStore.touch(remarkId, STATS_TTL);
     }
 
     private long parseLongSafe(Object o) {
@@ -109,246 +144,423 @@ public class RemarkService {
     }
 
     private RemarkVO transferDO2VO(RemarkDO remarkDO, UserDO user) {
-        RemarkVO cur = remarkConvert.toVO(remarkDO);
-        Long loginUserId = user.getId();
-        String remarkId = remarkDO.get_id();
-
-        // ------ Redis 回填（stats Hash + user_like Set）------
-        // 与 likeRemark / cancelLikeRemark 共用同一个 read-through 入口：
-        // Redis 缺失时从 MongoDB 加载 count + version + userList，避免缓存过期把已有点赞清零。
-        initStatsIfNeeded(remarkId);
-
-        // ------ 是否已点赞 ------
-        boolean liked = Boolean.TRUE.equals(
-                redisTemplate.opsForSet().isMember(userLikeKey(remarkId), loginUserId));
-
-        // ------ 点赞数量（来自 stats Hash 的 count 字段）------
-        long likedCount = parseLongSafe(
-                redisTemplate.opsForHash().get(statsKey(remarkId), F_COUNT));
-
-        cur.setLikedOrNot(liked);
-        cur.setLikeCount(likedCount);
+        return transferDO2VO(List.of(remarkDO), user.getId()).get(0);
+    }
 
-        // ------ 设置用户头像 ------
-        if (remarkDO.getUserId() != null) {
+    /**
+     * 批量 DO → VO：点赞数与当前用户是否已点赞一次 pipeline 读取（缺失的批量 read-through），
+     * 评论者头像一次批量查询。返回顺序与入参一致。
+     */
+    private List<RemarkVO> transferDO2VO(List<RemarkDO> remarks, Long loginUserId) {
+        List<String> ids = remarks.stream().map(RemarkDO::get_id).toList();
+        Map<String, LikeState> likes = loadLikeStates(ids, loginUserId);
+
+        Set<Long> authorIds = remarks.stream()
+                .map(RemarkDO::getUserId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, String> avatars = new HashMap<>();
+        if (!authorIds.isEmpty()) {
             try {
-                UserDO commentAuthor = userMapper.selectById(remarkDO.getUserId());
-                if (commentAuthor != null && commentAuthor.getAvatarUrl() != null) {
-                    cur.setAvatarUrl(commentAuthor.getAvatarUrl());
-                } else {
-                    // 如果没有头像，设置为默认值或空字符串
-                    cur.setAvatarUrl(null);
+                for (UserDO u : userMapper.selectBriefByIds(authorIds)) {
+                    if (u.getAvatarUrl() != null) avatars.put(u.getId(), u.getAvatarUrl());
                 }
             } catch (Exception e) {
-                log.warn("获取评论用户头像失败，userId: {}", remarkDO.getUserId(), e);
-                cur.setAvatarUrl(null);
+                log.warn("批量获取评论用户头像失败", e);
             }
         }
 
-        return cur;
+        List<RemarkVO> result = new ArrayList<>(remarks.size());
+        for (RemarkDO remarkDO : remarks) {
+            RemarkVO cur = remarkConvert.toVO(remarkDO);
+            LikeState like = likes.getOrDefault(remarkDO.get_id(), LikeState.NONE);
+            cur.setLikedOrNot(like.liked());
+            cur.setLikeCount(like.count());
+            cur.setAvatarUrl(avatars.get(remarkDO.getUserId()));
+            result.add(cur);
+        }
+        return result;
+    }
+
+    private record LikeState(long count, boolean liked) {
+        static final LikeState NONE = new LikeState(0L, false);
     }
 
     /**
-     * 递归构建评论回复树（支持无限层级）
-     * @param parentId 父评论ID
-     * @param user 当前登录用户
-     * @return 子评论列表（树形结构）
+     * 与 initStatsIfNeeded 相同的 read-through 语义，但按批处理：
+     *  1) 一次 pipeline：每条评论 HGET count、点赞用户成员查询（RemarkLikerStore）、刷新两处 TTL
+     *  2) stats Hash / 点赞用户缺失的评论，各一次 MongoDB findAllById 加载
+     *  3) 加载结果一次 pipeline 回填，避免缓存过期把已有点赞清零
      */
-    private List<RemarkVO> buildReplyTree(String parentId, UserDO user) {
-        if (parentId == null) {
-            return new ArrayList<>();
+    private Map<String, LikeState> loadLikeStates(List<String> remarkIds, Long loginUserId) {
+        Map<String, LikeState> result = new HashMap<>();
+        if (remarkIds.isEmpty()) return result;
+
+        RedisSerializer<String> keys = redisTemplate.getStringSerializer();
+        byte[] countField = keys.serialize(F_COUNT);
+        long ttlSeconds = STATS_TTL.toSeconds();
+
+        // 回复保持原始字节：位图编码的点赞用户不能按字符串反序列化
+        int stride = 2 + likerStore.containsReplies();
+        List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String id : remarkIds) {
+                byte[] sKey = keys.serialize(statsKey(id));
+                connection.hashCommands().hGet(sKey, countField);
+                connection.keyCommands().expire(sKey, ttlSeconds);
+                likerStore.queueContains(connection, id, loginUserId, STATS_TTL);
+            }
+            return null;
+        }, RedisSerializer.byteArray());
+
+        List<String> countMisses = new ArrayList<>();
+        List<String> likeMisses = new ArrayList<>();
+        Map<String, Long> counts = new HashMap<>();
+        Map<String, Boolean> liked = new HashMap<>();
+        for (int i = 0; i < remarkIds.size(); i++) {
+            String id = remarkIds.get(i);
+            int offset = i * stride;
+            if (!(replies.get(offset) instanceof byte[] count)) countMisses.add(id);
+            else counts.put(id, parseLongSafe(keys.deserialize(count)));
+            Boolean hit = likerStore.parseContains(replies, offset + 2, loginUserId);
+            if (hit != null) liked.put(id, hit);
+            else likeMisses.add(id);
         }
 
-        // 查询所有直接子回复（isReply = true 且 parentId = 当前节点）
-        List<RemarkDO> children = remarkRepository.findRemarksByParentIdAndIsReplyTrue(parentId);
-
-        // 按时间排序
-        children.sort((r1, r2) -> {
-            String t1 = r1.getCreatedAt() != null ? r1.getCreatedAt() : "";
-            String t2 = r2.getCreatedAt() != null ? r2.getCreatedAt() : "";
-            return t1.compareTo(t2);
-        });
+        if (!countMisses.isEmpty() || !likeMisses.isEmpty()) {
+            Map<String, RemarkCountDO> countDOs = new HashMap<>();
+            remarkLikeCountRepository.findAllById(countMisses).forEach(c -> countDOs.put(c.getRemarkId(), c));
+            Map<String, Roaring64NavigableMap> users = new HashMap<>();
+            remarkLikeByUsersRepository.findAllById(likeMisses)
+                    .forEach(u -> users.put(u.getRemarkId(), RemarkLikers.ofDocument(u)));
+
+            String now = LocalDateTime.now().toString();
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String id : countMisses) {
+                    RemarkCountDO db = countDOs.get(id);
+                    long count = (db != null && db.getRemarkLikeCount() != null) ? db.getRemarkLikeCount() : 0L;
+                    long version = (db != null && db.getVersion() != null) ? db.getVersion() : 0L;
+                    counts.put(id, count);
+
+                    byte[] sKey = keys.serialize(statsKey(id));
+                    Map<byte[], byte[]> hash = new HashMap<>();
+                    hash.put(countField, keys.serialize(String.valueOf(count)));
+                    hash.put(keys.serialize(F_VERSION), keys.serialize(String.valueOf(version)));
+                    hash.put(keys.serialize(F_LAST_ACTIVITY), keys.serialize(now));
+                    connection.hashCommands().hMSet(sKey, hash);
+                    connection.keyCommands().expire(sKey, ttlSeconds);
+                }
+                for (String id : likeMisses) {
+                    Roaring64NavigableMap likers = users.getOrDefault(id, new Roaring64NavigableMap());
+                    liked.put(id, loginUserId != null && likers.contains(loginUserId));
+                    likerStore.queueLoad(connection, id, likers, STATS_TTL);
+                }
+                return null;
+            });
+        }
 
-        List<RemarkVO> childVOList = new ArrayList<>();
-        for (RemarkDO child : children) {
-            if (child == null || child.get_id() == null) continue;
+        for (String id : remarkIds) {
+            result.put(id, new LikeState(counts.getOrDefault(id, 0L), liked.getOrDefault(id, false)));
+        }
+        return result;
+    }
 
-            // 先查 Redis
-            RemarkDO childDO = null;
-            String redisKey = remarkIdKey + child.get_id();
-            if (redisTemplate.hasKey(redisKey)) {
-                childDO = (RemarkDO) redisTemplate.opsForValue().get(redisKey);
-                redisTemplate.expire(redisKey, Duration.ofMinutes(15));
+    /**
+     * 组装整篇笔记的评论树（支持无限层级）：评论本身取自笔记级快照（RemarkThreadCache，未命中时一次 MongoDB 加载），
+     * 点赞与头像批量叠加，再按快照顺序挂接（非递归）。
+     * @return 一级评论列表（MongoDB 返回顺序），replies 为各自按时间排序的子树
+     */
+    private List<RemarkVO> buildThread(Long noteId, Long loginUserId) {
+        List<RemarkDO> remarks = threadCache.get(noteId, () -> loadThread(noteId));
+        if (remarks.isEmpty()) return new ArrayList<>();
+
+        List<RemarkVO> vos = transferDO2VO(remarks, loginUserId);
+        Map<String, RemarkVO> byId = new HashMap<>();
+        List<RemarkVO> roots = new ArrayList<>();
+        for (RemarkVO vo : vos) {
+            vo.setReplies(new ArrayList<>());
+            if (!Boolean.TRUE.equals(vo.getIsReply())) {
+                roots.add(vo);
             } else {
-                // Redis 没有则从 MongoDB 获取
-                childDO = remarkRepository.findById(child.get_id()).orElse(null);
-                if (childDO != null) {
-                    redisTemplate.opsForValue().set(redisKey, childDO);
-                    redisTemplate.expire(redisKey, Duration.ofMinutes(15));
-                }
+                RemarkVO parent = byId.get(vo.getParentId());
+                if (parent != null) parent.getReplies().add(vo);
             }
+            byId.put(vo.get_id(), vo);
+        }
+        return roots;
+    }
 
-            if (childDO == null) continue;
-
-            // 当前节点转 VO
-            RemarkVO childVO = transferDO2VO(childDO, user);
-            // 递归构建子节点
-            List<RemarkVO> grandChildren = buildReplyTree(childDO.get_id(), user);
-            childVO.setReplies(grandChildren);
-
-            childVOList.add(childVO);
+    /**
+     * 一次 MongoDB 按 noteId 取全部评论，整理成快照顺序：一级评论在前（MongoDB 返回顺序），
+     * 其后逐层追加各评论按时间排序的直接回复，父评论总在子评论之前；父评论已不存在的回复不展示。
+     */
+    private List<RemarkDO> loadThread(Long noteId) {
+        List<RemarkDO> ordered = new ArrayList<>();
+        Map<String, List<RemarkDO>> children = new HashMap<>();
+        for (RemarkDO r : remarkRepository.findByNoteId(noteId)) {
+            if (r == null || r.get_id() == null) continue;
+            if (!Boolean.TRUE.equals(r.getIsReply())) ordered.add(r);
+            else if (r.getParentId() != null) children.computeIfAbsent(r.getParentId(), k -> new ArrayList<>()).add(r);
         }
 
-        return childVOList;
+        Comparator<RemarkDO> byTime = Comparator.comparing(r -> r.getCreatedAt() != null ? r.getCreatedAt() : "");
+        for (int i = 0; i < ordered.size(); i++) {
+            List<RemarkDO> replies = children.remove(ordered.get(i).get_id());
+            if (replies == null) continue;
+            replies.sort(byTime);
+            ordered.addAll(replies);
+        }
+        return ordered;
     }
 
     @Transactional
     public List<RemarkVO> SelectRemark(RemarkSelectByNoteDTO remarkSelectByNoteDTO, Long loginUserId) {
-        log.info(loginUserId.toString());
-// 获取当前用户信息
-        UserDO user = userMapper.selectById(loginUserId);
-        log.info(user.toString());
-        Long noteId = remarkSelectByNoteDTO.getNoteId();
-        String noteKey = NoteIdKey + noteId;
-        List<String> remarkFirstLayerList = new ArrayList<>();
-        List<RemarkVO> result = new ArrayList<>();
-
-// --- 一级评论列表处理 ---
-        log.info("initialize complete");
-        if (redisTemplate.hasKey(noteKey)) {
-            // 从Redis读取一级评论ID列表
-            List<Object> tmpList = redisTemplate.opsForList().range(noteKey, 0, -1);
-            log.info("found in redis"+tmpList.toString());
-            redisTemplate.expire(noteKey,Duration.ofMinutes(15));
-            if (tmpList != null) {
-                remarkFirstLayerList = tmpList.stream().map(Object::toString).toList();
-                log.info(remarkFirstLayerList.toString());
-            }
+        return buildThread(remarkSelectByNoteDTO.getNoteId(), loginUserId);
+    }
+
+    // --- 游标分页 ---
+
+    /**
+     * 一级评论游标分页（time：最新在前；likes：按已落库的点赞数倒序），
+     * 每条评论带至多 replyDepth 层、每层至多 replyLimit 条回复，截断处给出 repliesCursor。
+     */
+    public RemarkPageVO pageRemarks(Long noteId, Long loginUserId, String sort, String cursor,
+                                    Integer limit, Integer replyDepth, Integer replyLimit) {
+        int size = clamp(limit, pageDefaultLimit, 1, pageMaxLimit);
+        boolean byLikes = SORT_LIKES.equalsIgnoreCase(sort);
+
+        List<RemarkDO> page;
+        Map<String, Long> likeScores = new HashMap<>();
+        if (byLikes) {
+            page = findTopLevelByLikes(noteId, RemarkCursor.decode(cursor, RemarkCursor.LIKES), size + 1, likeScores);
         } else {
-            // Redis中没有则从MongoDB读取
-            log.info("finding firstLayer in mongodb");
-            List<RemarkDO> tmpRemarkDOList = remarkRepository.findRemarksByNoteIdAndIsReplyFalse(noteId);
-            log.info("get from mongodb,tmpRemarkDOList= "+tmpRemarkDOList.toString());
-            for (RemarkDO cur : tmpRemarkDOList) {
-                if (cur != null && cur.get_id() != null) {
-                    remarkFirstLayerList.add(cur.get_id());
-                }
-            }
-            // 将一级评论ID列表写入Redis
-            if (!remarkFirstLayerList.isEmpty()) {
-                remarkFirstLayerList.forEach(id -> redisTemplate.opsForList().rightPush(noteKey, id));
-                redisTemplate.expire(noteKey,Duration.ofMinutes(15));
-            }
-            log.info("found the firstLayer");
+            page = findTopLevelByTime(noteId, RemarkCursor.decode(cursor, RemarkCursor.TIME), size + 1);
         }
 
-// --- 遍历一级评论 ---
-        for (String cur : remarkFirstLayerList) {
-            RemarkDO curDO = null;
-            // 尝试从Redis获取一级评论对象
-            if (redisTemplate.hasKey(remarkIdKey + cur)) {
-                curDO = (RemarkDO) redisTemplate.opsForValue().get(remarkIdKey + cur);
-                redisTemplate.expire(remarkIdKey,Duration.ofMinutes(15));
-            }
-            else {
-                // Redis没有则从MongoDB获取
-                curDO = remarkRepository.findById(cur).orElse(null);
-                if (curDO != null) {
-                    redisTemplate.opsForValue().set(remarkIdKey + cur, curDO);
-                    redisTemplate.expire(remarkIdKey,Duration.ofMinutes(15));
-                }
-            }
+        boolean hasMore = page.size() > size;
+        if (hasMore) page = page.subList(0, size);
+        String nextCursor = null;
+        if (hasMore) {
+            RemarkDO last = page.get(page.size() - 1);
+            nextCursor = byLikes
+                    ? new RemarkCursor(RemarkCursor.LIKES, String.valueOf(likeScores.getOrDefault(last.get_id(), 0L)), last.get_id()).encode()
+                    : new RemarkCursor(RemarkCursor.TIME, nullToEmpty(last.getCreatedAt()), last.get_id()).encode();
+        }
+
+        return RemarkPageVO.builder()
+                .items(expandReplies(page, loginUserId, replyDepth, replyLimit))
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
 
-            // 如果一级评论对象为空，跳过
-            if (curDO == null) continue;
-            log.info(curDO.toString());
-            // 将 DO 转换为 VO
-            RemarkVO curVO = transferDO2VO(curDO, user);
-            // RemarkConvert 把 replies 标记为 ignore，需要在这里显式递归构建子树
-            curVO.setReplies(buildReplyTree(curDO.get_id(), user));
-            result.add(curVO);
-            log.info("show curVO"+curVO.toString());
+    /**
+     * 展开某条评论的直接回复（按时间正序游标分页），每条回复同样带截断的子树
+     */
+    public RemarkPageVO pageReplies(String parentId, Long loginUserId, String cursor,
+                                    Integer limit, Integer replyDepth, Integer replyLimit) {
+        int size = clamp(limit, pageDefaultLimit, 1, pageMaxLimit);
+        RemarkCursor after = RemarkCursor.decode(cursor, RemarkCursor.REPLIES);
+
+        Criteria criteria = Criteria.where("parentId").is(parentId);
+        if (after != null && !after.isStart()) {
+            criteria = criteria.orOperator(
+                    Criteria.where("createdAt").gt(after.key()),
+                    new Criteria().andOperator(Criteria.where("createdAt").is(after.key()), Criteria.where("_id").gt(after.id())));
         }
-        return result;
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "createdAt").and(Sort.by(Sort.Direction.ASC, "_id")))
+                .limit(size + 1);
+        List<RemarkDO> page = mongoTemplate.find(query, RemarkDO.class);
+
+        boolean hasMore = page.size() > size;
+        if (hasMore) page = page.subList(0, size);
+        String nextCursor = hasMore ? afterReply(page.get(page.size() - 1)) : null;
+
+        return RemarkPageVO.builder()
+                .items(expandReplies(page, loginUserId, replyDepth, replyLimit))
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
     }
 
-    @Transactional
-    public List<RemarkVO> selectRemarkByUserId(Long loginUserId) {
-        List<RemarkVO> remarkVOList = new ArrayList<>();
-        UserDO user=userMapper.selectById(loginUserId);
-// 从数据库获取该用户所有一级评论
-        List<RemarkDO> remarkDOList = remarkRepository.findByUserId(loginUserId);
-
-        for (RemarkDO curDO : remarkDOList) {
-            if (curDO == null || curDO.get_id() == null) continue;
-
-            // --- 一级评论对象处理 ---
-            String curKey = remarkIdKey + curDO.get_id();
-            RemarkDO cachedCurDO = null;
-            if (redisTemplate.hasKey(curKey)) {
-                cachedCurDO = (RemarkDO) redisTemplate.opsForValue().get(curKey);
-                redisTemplate.expire(curKey,Duration.ofMinutes(15));
-            }
-            if (cachedCurDO == null) {
-                // Redis没有则使用数据库对象，并写入Redis
-                cachedCurDO = curDO;
-                redisTemplate.opsForValue().set(curKey, curDO);
-                redisTemplate.expire(curKey,Duration.ofMinutes(15));
+    private List<RemarkDO> findTopLevelByTime(Long noteId, RemarkCursor after, int fetch) {
+        Criteria criteria = Criteria.where("noteId").is(noteId).and("isReply").is(false);
+        if (after != null && !after.isStart()) {
+            criteria = criteria.orOperator(
+                    Criteria.where("createdAt").lt(after.key()),
+                    new Criteria().andOperator(Criteria.where("createdAt").is(after.key()), Criteria.where("_id").lt(after.id())));
+        }
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "createdAt").and(Sort.by(Sort.Direction.DESC, "_id")))
+                .limit(fetch);
+        return mongoTemplate.find(query, RemarkDO.class);
+    }
+
+    /**
+     * 按 remark_count 中已落库的点赞数排序（Redis 中尚未 flush 的点赞不参与排序，展示值仍取 Redis）
+     */
+    private List<RemarkDO> findTopLevelByLikes(Long noteId, RemarkCursor after, int fetch, Map<String, Long> scores) {
+        List<AggregationOperation> ops = new ArrayList<>();
+        ops.add(Aggregation.match(Criteria.where("note_id").is(noteId).and("is_reply").is(false)));
+        ops.add(Aggregation.lookup("remark_count", "_id", "_id", "likeDocs"));
+        ops.add(Aggregation.addFields().addField("likeScore")
+                .withValue(ConditionalOperators.ifNull(ArrayOperators.ArrayElemAt.arrayOf("likeDocs.remark_like_count").elementAt(0)).then(0L))
+                .build());
+        if (after != null && !after.isStart()) {
+            long score;
+            try {
+                score = Long.parseLong(after.key());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("无效的评论游标");
             }
-            log.info(curDO.toString());
-            // 转换DO为VO
-            RemarkVO curVO = transferDO2VO(cachedCurDO, user);
-
-            // --- 二级评论对象处理 ---
-            List<String> remarkSecondLayerList = new ArrayList<>();
-            String replyKey = replyToIdKey + curDO.get_id();
-            if (redisTemplate.hasKey(replyKey)) {
-                List<Object> tmpReplyList = redisTemplate.opsForList().range(replyKey, 0, -1);
-                redisTemplate.expire(replyKey,Duration.ofMinutes(15));
-                if (tmpReplyList != null) {
-                    remarkSecondLayerList = tmpReplyList.stream().map(Object::toString).toList();
-                }
-            } else {
-                // Redis没有则从数据库加载二级评论，并写入Redis
-                List<RemarkDO> replyList = remarkRepository.findRemarksByParentIdAndIsReplyTrue(curDO.get_id());
-                for (RemarkDO reply : replyList) {
-                    if (reply != null && reply.get_id() != null) {
-                        redisTemplate.opsForValue().set(remarkIdKey + reply.get_id(), reply);
-                        redisTemplate.expire(remarkIdKey+reply.get_id(),Duration.ofMinutes(15));
-                        remarkSecondLayerList.add(reply.get_id());
-                    }
+            Object id = ObjectId.isValid(after.id()) ? new ObjectId(after.id()) : after.id();
+            ops.add(Aggregation.match(new Criteria().orOperator(
+                    Criteria.where("likeScore").lt(score),
+                    new Criteria().andOperator(Criteria.where("likeScore").is(score), Criteria.where("_id").gt(id)))));
+        }
+        ops.add(Aggregation.sort(Sort.by(Sort.Direction.DESC, "likeScore").and(Sort.by(Sort.Direction.ASC, "_id"))));
+        ops.add(Aggregation.limit(fetch));
+        ops.add(Aggregation.project().andExclude("likeDocs"));
+
+        List<RemarkDO> result = new ArrayList<>();
+        for (Document doc : mongoTemplate.aggregate(Aggregation.newAggregation(ops), REMARK_COLLECTION, Document.class)) {
+            RemarkDO remark = mongoTemplate.getConverter().read(RemarkDO.class, doc);
+            Object score = doc.get("likeScore");
+            scores.put(remark.get_id(), score instanceof Number n ? n.longValue() : 0L);
+            result.add(remark);
+        }
+        return result;
+    }
+
+    /**
+     * 按层批量展开回复：每层一次聚合取本层全部父节点各自按时间最早的 replyLimit + 1 条，
+     * 超出的父节点给出 repliesCursor；到达深度上限的节点用一次 distinct(parent_id) 判断哪些还有回复。
+     * 整页节点一起做 DO → VO（点赞一次 pipeline，头像一次批量查询）。
+     */
+    private List<RemarkVO> expandReplies(List<RemarkDO> roots, Long loginUserId, Integer replyDepth, Integer replyLimit) {
+        if (roots.isEmpty()) return new ArrayList<>();
+        int depth = clamp(replyDepth, defaultReplyDepth, 0, MAX_REPLY_DEPTH);
+        int perParent = clamp(replyLimit, defaultReplyLimit, 0, MAX_REPLY_LIMIT);
+
+        List<RemarkDO> all = new ArrayList<>(roots);
+        Map<String, List<RemarkDO>> children = new HashMap<>();
+        Map<String, String> continuation = new HashMap<>();
+
+        List<RemarkDO> frontier = roots;
+        for (int level = 0; level < depth && !frontier.isEmpty(); level++) {
+            List<RemarkDO> next = new ArrayList<>();
+            firstReplies(frontier, perParent + 1).forEach((parentId, replies) -> {
+                List<RemarkDO> shown = replies.size() > perParent ? replies.subList(0, perParent) : replies;
+                if (shown.size() < replies.size()) {
+                    continuation.put(parentId, shown.isEmpty()
+                            ? RemarkCursor.start(RemarkCursor.REPLIES)
+                            : afterReply(shown.get(shown.size() - 1)));
                 }
-            }
+                children.put(parentId, shown);
+                next.addAll(shown);
+            });
+            all.addAll(next);
+            frontier = next;
+        }
+        if (!frontier.isEmpty()) {
+            List<String> frontierIds = frontier.stream().map(RemarkDO::get_id).toList();
+            mongoTemplate.findDistinct(new Query(Criteria.where("parentId").in(frontierIds)), "parentId", RemarkDO.class, String.class)
+                    .forEach(parentId -> continuation.put(parentId, RemarkCursor.start(RemarkCursor.REPLIES)));
+        }
 
-            // --- 构建二级评论VO ---
+        Map<String, RemarkVO> vos = new HashMap<>();
+        List<RemarkVO> converted = transferDO2VO(all, loginUserId);
+        for (RemarkVO vo : converted) {
+            vos.put(vo.get_id(), vo);
+        }
+        for (RemarkVO vo : converted) {
             List<RemarkVO> replies = new ArrayList<>();
-            for (String replyId : remarkSecondLayerList) {
-                RemarkDO replyDO = null;
-                String replyRedisKey = remarkIdKey + replyId;
-                if (redisTemplate.hasKey(replyRedisKey)) {
-                    replyDO = (RemarkDO) redisTemplate.opsForValue().get(replyRedisKey);
-                    redisTemplate.expire(replyRedisKey,Duration.ofMinutes(15));
-                }
-                if (replyDO == null) {
-                    replyDO = remarkRepository.findById(replyId).orElse(null);
-                    if (replyDO != null) {
-                        redisTemplate.opsForValue().set(replyRedisKey, replyDO);
-                        redisTemplate.expire(replyRedisKey,Duration.ofMinutes(15));
-                    }
-                }
-                if (replyDO != null) {
-                    RemarkVO replyVO = transferDO2VO(replyDO, user);
-                    replies.add(replyVO);
-                }
+            for (RemarkDO child : children.getOrDefault(vo.get_id(), List.of())) {
+                replies.add(vos.get(child.get_id()));
             }
-            curVO.setReplies(replies);
+            vo.setReplies(replies);
+            vo.setRepliesCursor(continuation.get(vo.get_id()));
+        }
+
+        List<RemarkVO> result = new ArrayList<>(roots.size());
+        for (RemarkDO root : roots) {
+            result.add(vos.get(root.get_id()));
+        }
+        return result;
+    }
 
-            // 将一级评论VO加入结果列表
-            remarkVOList.add(curVO);
+    /**
+     * 取多个父评论各自最早的 n 条回复，整层一次聚合：
+     * $match parent_id $in → $sort (parent_id, created_at, _id)（由 (parent_id, created_at, _id) 索引直接给出顺序）
+     * → $group 每个父评论 $firstN 只保留 n 条（不再把整组回复 $push 进 $group 后截断）。$firstN 需要 MongoDB 5.2+
+     */
+    private Map<String, List<RemarkDO>> firstReplies(List<RemarkDO> parents, int n) {
+        Map<String, List<RemarkDO>> result = new HashMap<>();
+        if (parents.isEmpty() || n < 1) return result;
+
+        List<String> parentIds = parents.stream().map(RemarkDO::get_id).toList();
+        AggregationOperation firstN = context -> new Document("$group", new Document("_id", "$parent_id")
+                .append("replies", new Document("$firstN", new Document("input", "$$ROOT").append("n", n))));
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("parent_id").in(parentIds)),
+                Aggregation.sort(Sort.by(Sort.Direction.ASC, "parent_id", "created_at", "_id")),
+                firstN);
+
+        for (Document group : mongoTemplate.aggregate(aggregation, REMARK_COLLECTION, Document.class)) {
+            List<RemarkDO> replies = new ArrayList<>();
+            for (Document doc : group.getList("replies", Document.class, List.of())) {
+                replies.add(mongoTemplate.getConverter().read(RemarkDO.class, doc));
+            }
+            if (!replies.isEmpty()) result.put(String.valueOf(group.get("_id")), replies);
         }
+        return result;
+    }
 
-        return remarkVOList;
+    private static String afterReply(RemarkDO reply) {
+        return new RemarkCursor(RemarkCursor.REPLIES, nullToEmpty(reply.getCreatedAt()), reply.get_id()).encode();
+    }
 
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    private static int clamp(Integer value, int defaultValue, int min, int max) {
+        int v = value == null ? defaultValue : value;
+        return Math.min(Math.max(v, min), max);
+    }
+
+    @Transactional
+    public List<RemarkVO> selectRemarkByUserId(Long loginUserId) {
+        // 该用户的全部评论及其直接回复：各一次 MongoDB 查询，点赞与头像批量叠加
+        List<RemarkDO> remarks = remarkRepository.findByUserId(loginUserId).stream()
+                .filter(r -> r != null && r.get_id() != null)
+                .toList();
+        if (remarks.isEmpty()) return new ArrayList<>();
+
+        List<String> ids = remarks.stream().map(RemarkDO::get_id).toList();
+        Map<String, List<RemarkDO>> repliesByParent = new HashMap<>();
+        Query replyQuery = new Query(Criteria.where("parentId").in(ids).and("isReply").is(true));
+        for (RemarkDO reply : mongoTemplate.find(replyQuery, RemarkDO.class)) {
+            repliesByParent.computeIfAbsent(reply.getParentId(), k -> new ArrayList<>()).add(reply);
+        }
+
+        // 先是用户自己的评论，其后按同样顺序依次是各自的回复，转换后按位置切回去
+        List<RemarkDO> all = new ArrayList<>(remarks);
+        for (RemarkDO remark : remarks) {
+            all.addAll(repliesByParent.getOrDefault(remark.get_id(), List.of()));
+        }
+        List<RemarkVO> converted = transferDO2VO(all, loginUserId);
+
+        List<RemarkVO> result = new ArrayList<>(remarks.size());
+        int next = remarks.size();
+        for (int i = 0; i < remarks.size(); i++) {
+            int replyCount = repliesByParent.getOrDefault(remarks.get(i).get_id(), List.of()).size();
+            RemarkVO vo = converted.get(i);
+            vo.setReplies(new ArrayList<>(converted.subList(next, next + replyCount)));
+            next += replyCount;
+            result.add(vo);
+        }
+        return result;
     }
 
     @Transactional
@@ -365,26 +577,8 @@ public class RemarkService {
             // 2. 保存到数据库
             remarkRepository.save(remarkDO);
 
-            // 3. 删除相关缓存（第一次删除）
-            if (!remarkDO.getIsReply()) {
-                redisTemplate.delete(NoteIdKey + remarkDO.getNoteId());
-            } else {
-                redisTemplate.delete(replyToIdKey + remarkDO.getParentId());
-            }
-
-            // 4. 延时再删除一次（延时双删）
-            new Thread(() -> {
-                try {
-                    Thread.sleep(50); // 延时 50ms，可根据实际并发调整
-                    if (!remarkDO.getIsReply()) {
-                        redisTemplate.delete(NoteIdKey + remarkDO.getNoteId());
-                    } else {
-                        redisTemplate.delete(replyToIdKey + remarkDO.getParentId());
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-            }).start();
+            // 3. 推进该笔记评论树快照的代数（必须在写库之后），旧快照不再命中
+            threadCache.bump(remarkDO.getNoteId());
             noteStatsService.changeField(remarkDO.getNoteId(),"comments",1);
 
             // --- 创建通知 ---
@@ -430,67 +624,36 @@ public class RemarkService {
             if (Boolean.FALSE.equals(remarkDO.getIsReply())) {
                 String parentId = remarkDO.get_id();
 
-                // 从 Redis 获取子评论列表
-                String replyKey = replyToIdKey + parentId;
                 List<String> childIds = new ArrayList<>();
-                if (redisTemplate.hasKey(replyKey)) {
-                    List<Object> tmpList = redisTemplate.opsForList().range(replyKey, 0, -1);
-                    if (tmpList != null) {
-                        childIds = tmpList.stream().map(Object::toString).toList();
-                    }
-                }
-
-                // Redis 没有则从数据库加载
-                if (childIds.isEmpty()) {
-                    List<RemarkDO> childRemarks = remarkRepository.findRemarksByParentIdAndIsReplyTrue(parentId);
-                    for (RemarkDO child : childRemarks) {
-                        if (child != null && child.get_id() != null) {
-                            childIds.add(child.get_id());
-                        }
+                for (RemarkDO child : remarkRepository.findRemarksByParentIdAndIsReplyTrue(parentId)) {
+                    if (child != null && child.get_id() != null) {
+                        childIds.add(child.get_id());
                     }
                 }
 
                 // 删除子评论点赞和缓存
+                List<String> childKeys = new ArrayList<>();
                 for (String childId : childIds) {
                     remarkLikeByUsersRepository.deleteById(childId);
                     remarkLikeCountRepository.deleteById(childId);
-                    redisTemplate.delete(statsKey(childId));
-                    redisTemplate.delete(userLikeKey(childId));
-                    redisTemplate.delete(remarkIdKey + childId);
+                    childKeys.add(statsKey(childId));
+                    childKeys.add(likerStore.key(childId));
+                    childKeys.add(likeDeltaKey(childId));
                     noteStatsService.changeField(noteId,"comments",-1);
                 }
+                cacheInvalidator.doubleDelete(childKeys);
 
-                redisTemplate.delete(replyKey);
                 remarkRepository.deleteByParentId(parentId);
             }
 
             // 3. 删除该评论的点赞记录和数据库记录
             remarkLikeByUsersRepository.deleteById(remarkDO.get_id());
             remarkRepository.deleteById(remarkDO.get_id());
-            redisTemplate.delete(statsKey(remarkDO.get_id()));
-            redisTemplate.delete(userLikeKey(remarkDO.get_id()));
-            // 4. 删除 Redis 缓存（第一次删除）
-            redisTemplate.delete(remarkIdKey + remarkDO.get_id());
-            if (!remarkDO.getIsReply()) {
-                redisTemplate.delete(NoteIdKey + remarkDO.getNoteId());
-            } else {
-                redisTemplate.delete(replyToIdKey + remarkDO.getParentId());
-            }
-
-            // 5. 延时再删除一次缓存（延时双删）
-            new Thread(() -> {
-                try {
-                    Thread.sleep(50); // 延时 50ms
-                    redisTemplate.delete(remarkIdKey + remarkDO.get_id());
-                    if (!remarkDO.getIsReply()) {
-                        redisTemplate.delete(NoteIdKey + remarkDO.getNoteId());
-                    } else {
-                        redisTemplate.delete(replyToIdKey + remarkDO.getParentId());
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-            }).start();
+            // 延时双删点赞缓存，避免并发的点赞 read-through 把已删除评论的计数写回
+            cacheInvalidator.doubleDelete(List.of(statsKey(remarkDO.get_id()),
+                    likerStore.key(remarkDO.get_id()), likeDeltaKey(remarkDO.get_id())));
+            // 4. 推进评论树快照代数（写库之后）
+            threadCache.bump(noteId);
             noteStatsService.changeField(noteId,"comments",-1);
             return Boolean.TRUE;
         } catch (Exception e) {
@@ -509,23 +672,11 @@ public class RemarkService {
             return;
         }
 
-        // 从 Redis 获取直接子评论列表
-        String replyKey = replyToIdKey + parentId;
+        // 从数据库加载直接子评论
         List<String> directChildIds = new ArrayList<>();
-        if (redisTemplate.hasKey(replyKey)) {
-            List<Object> tmpList = redisTemplate.opsForList().range(replyKey, 0, -1);
-            if (tmpList != null) {
-                directChildIds = tmpList.stream().map(Object::toString).toList();
-            }
-        }
-
-        // Redis 没有则从数据库加载
-        if (directChildIds.isEmpty()) {
-            List<RemarkDO> childRemarks = remarkRepository.findRemarksByParentIdAndIsReplyTrue(parentId);
-            for (RemarkDO child : childRemarks) {
-                if (child != null && child.get_id() != null) {
-                    directChildIds.add(child.get_id());
-                }
+        for (RemarkDO child : remarkRepository.findRemarksByParentIdAndIsReplyTrue(parentId)) {
+            if (child != null && child.get_id() != null) {
+                directChildIds.add(child.get_id());
             }
         }
 
@@ -548,9 +699,7 @@ public class RemarkService {
         // 删除点赞记录和缓存
         remarkLikeByUsersRepository.deleteById(remarkId);
         remarkLikeCountRepository.deleteById(remarkId);
-        redisTemplate.delete(statsKey(remarkId));
-        redisTemplate.delete(userLikeKey(remarkId));
-        redisTemplate.delete(remarkIdKey + remarkId);
+        cacheInvalidator.doubleDelete(List.of(statsKey(remarkId), likerStore.key(remarkId), likeDeltaKey(remarkId)));
         
         // 删除数据库记录
         remarkRepository.deleteById(remarkId);
@@ -584,14 +733,8 @@ public class RemarkService {
                 deleteSingleRemark(childId, noteId);
             }
 
-            // 4. 删除子评论的Redis缓存键
+            // 4. 按 parentId 兜底删除子评论
             if (!allChildIds.isEmpty()) {
-                String replyKey = replyToIdKey + remarkId;
-                redisTemplate.delete(replyKey);
-                // 删除所有子评论的replyKey
-                for (String childId : allChildIds) {
-                    redisTemplate.delete(replyToIdKey + childId);
-                }
                 // 批量删除子评论
                 remarkRepository.deleteByParentId(remarkId);
                 // 递归删除所有子评论
@@ -603,29 +746,9 @@ public class RemarkService {
             // 5. 删除该评论本身
             deleteSingleRemark(remarkId, noteId);
             
-            // 6. 删除 Redis 缓存（第一次删除）
-            redisTemplate.delete(remarkIdKey + remarkId);
-            if (!remarkDO.getIsReply()) {
-                redisTemplate.delete(NoteIdKey + remarkDO.getNoteId());
-            } else {
-                redisTemplate.delete(replyToIdKey + remarkDO.getParentId());
-            }
+            // 6. 推进评论树快照代数（写库之后）
+            threadCache.bump(noteId);
 
-            // 7. 延时再删除一次缓存（延时双删）
-            new Thread(() -> {
-                try {
-                    Thread.sleep(50); // 延时 50ms
-                    redisTemplate.delete(remarkIdKey + remarkId);
-                    if (!remarkDO.getIsReply()) {
-                        redisTemplate.delete(NoteIdKey + remarkDO.getNoteId());
-                    } else {
-                        redisTemplate.delete(replyToIdKey + remarkDO.getParentId());
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-            }).start();
-            
             return Boolean.TRUE;
         } catch (Exception e) {
             System.err.println("Failed to delete remark (admin): " + e.getMessage());
@@ -641,14 +764,13 @@ public class RemarkService {
         // 1. 写路径 read-through：保证 Redis 与 MongoDB 已对齐，避免缓存缺失时把已有计数清零
         initStatsIfNeeded(remarkId);
 
-        String uKey = userLikeKey(remarkId);
         // 2. Redis 是点赞状态的事实快照（initStatsIfNeeded 已确保它与 MongoDB 一致）
-        if (Boolean.TRUE.equals(redisTemplate.opsForSet().isMember(uKey, userId))) {
+        if (likerStore.contains(remarkId, userId)) {
             return false;
         }
 
-        redisTemplate.opsForSet().add(uKey, userId);
-        redisTemplate.expire(uKey, STATS_TTL);
+        likerStore.add(remarkId, userId, STATS_TTL);
+        recordLikeDelta(remarkId, userId, true);
 
         // 3. 原子 HINCRBY count，并刷新 last_activity_at
         HashOperations<String, Object, Object> hops = redisTemplate.opsForHash();
@@ -671,13 +793,12 @@ public class RemarkService {
         // 1. 写路径 read-through：确保 Redis 反映了 MongoDB 中的真实点赞状态
         initStatsIfNeeded(remarkId);
 
-        String uKey = userLikeKey(remarkId);
-        if (!Boolean.TRUE.equals(redisTemplate.opsForSet().isMember(uKey, userId))) {
+        if (!likerStore.contains(remarkId, userId)) {
             return false;
         }
 
-        redisTemplate.opsForSet().remove(uKey, userId);
-        redisTemplate.expire(uKey, STATS_TTL);
+        likerStore.remove(remarkId, userId, STATS_TTL);
+        recordLikeDelta(remarkId, userId, false);
 
         // 2. HINCRBY count -1，下溢则复位 0
         HashOperations<String, Object, Object> hops = redisTemplate.opsForHash();
@@ -722,43 +843,193 @@ public class RemarkService {
         }
     }
 
+    /**
+     * 记录两次 flush 之间的点赞变化；同一用户反复点赞 / 取消只保留最后一次
+     */
+    private void recordLikeDelta(String remarkId, Long userId, boolean liked) {
+        redisTemplate.opsForHash().put(likeDeltaKey(remarkId), String.valueOf(userId), liked ? "1" : "0");
+    }
+
+    /**
+     * 把上次 flush 以来的点赞变化推送到 MQ：{ remarkId, added, removed, version, last_activity_at }。
+     * 只发送变化的用户，不再整集合重发；没有变化的评论不发消息。
+     * delta 先 RENAME 到 flushing key 再读取，期间的新点赞写入新的 delta；发送失败时把字段 HSETNX 放回
+     * （不覆盖期间更新的操作），下一轮重发。
+     */
     public void flushLikeUsersToMQ() {
-        Set<String> keys = redisTemplate.keys(USER_LIKE_KEY_PREFIX + "*");
-        if (keys == null || keys.isEmpty()) return;
+        HashOperations<String, Object, Object> hops = redisTemplate.opsForHash();
+        Set<String> keys = new HashSet<>();
+        Set<String> deltaKeys = redisTemplate.keys(LIKE_DELTA_KEY_PREFIX + "*");
+        if (deltaKeys != null) keys.addAll(deltaKeys);
+
+        // 上一轮发送途中退出留下的 flushing key：先并回 delta，本轮一起重发
+        Set<String> leftovers = redisTemplate.keys(LIKE_FLUSHING_KEY_PREFIX + "*");
+        if (leftovers != null) {
+            for (String flushing : leftovers) {
+                String key = likeDeltaKey(flushing.substring(LIKE_FLUSHING_KEY_PREFIX.length()));
+                try {
+                    restoreLikeDelta(flushing, key, hops.entries(flushing));
+                    keys.add(key);
+                } catch (Exception e) {
+                    log.error("flushLikeUsersToMQ restore leftover error for key={}", flushing, e);
+                }
+            }
+        }
 
         for (String key : keys) {
+            String remarkId = key.substring(LIKE_DELTA_KEY_PREFIX.length());
+            if (remarkId.isEmpty()) continue;
+            String flushing = LIKE_FLUSHING_KEY_PREFIX + remarkId;
+
+            Map<Object, Object> delta;
             try {
-                String remarkId = key.substring(USER_LIKE_KEY_PREFIX.length());
-                if (remarkId.isEmpty()) continue;
+                if (!Boolean.TRUE.equals(redisTemplate.renameIfAbsent(key, flushing))) continue;
+                delta = hops.entries(flushing);
+            } catch (Exception e) {
+                log.error("flushLikeUsersToMQ take delta error for key={}", key, e);
+                continue;
+            }
+            if (delta.isEmpty()) continue;
 
-                Set<Object> redisSet = redisTemplate.opsForSet().members(key);
-                Set<Long> userSet = new HashSet<>();
-                if (redisSet != null && !redisSet.isEmpty()) {
-                    userSet = redisSet.stream()
-                            .map(val -> {
-                                try { return Long.parseLong(val.toString()); }
-                                catch (NumberFormatException e) { return null; }
-                            })
-                            .filter(Objects::nonNull)
-                            .collect(Collectors.toSet());
-                }
+            try {
+                List<Long> added = new ArrayList<>();
+                List<Long> removed = new ArrayList<>();
+                delta.forEach((userId, op) -> {
+                    try {
+                        long id = Long.parseLong(userId.toString());
+                        if ("1".equals(op)) added.add(id);
+                        else removed.add(id);
+                    } catch (NumberFormatException ignored) {
+                        // skip non-numeric ids
+                    }
+                });
 
                 // version + last_activity_at 与 count 共用 stats Hash，作为单一事实源
-                Map<Object, Object> stats = redisTemplate.opsForHash().entries(statsKey(remarkId));
+                Map<Object, Object> stats = hops.entries(statsKey(remarkId));
                 long version = parseLongSafe(stats.get(F_VERSION));
                 Object lastAct = stats.getOrDefault(F_LAST_ACTIVITY, LocalDateTime.now().toString());
 
                 Map<String, Object> msg = new HashMap<>();
                 msg.put("remarkId", remarkId);
-                msg.put("users", userSet);
+                msg.put("added", added);
+                msg.put("removed", removed);
                 msg.put("version", version);
                 msg.put("last_activity_at", lastAct);
 
                 rabbitTemplate.convertAndSend(LikeUsersQueue, msg);
+                redisTemplate.delete(flushing);
             } catch (Exception e) {
                 log.error("flushLikeUsersToMQ error for key={}", key, e);
+                restoreLikeDelta(flushing, key, delta);
+            }
+        }
+    }
+
+    /**
+     * 死信对账：点赞用户增量重试耗尽后进入 remarkLikeUsers.redis.dlq，MongoDB 会一直缺这部分变化。
+     * 每轮从死信队列取出至多 reconcile-batch 条，按评论合并（同一用户以最后一次操作为准）后重放为普通增量消息，
+     * 由消费者在 MongoDB 当前集合上应用并照常 deleteUsersIfCold；即使 Redis 副本已在丢失后从 MongoDB 重新加载，也能补回。
+     *  - 评论仍有待发送 / 发送中的增量时放回死信队列，下一轮再重放，避免与在途增量交错
+     *  - 死信中的全量消息（对账快照 / 升级前格式）不重放旧集合：Redis 已加载时改发当前快照，否则丢弃并记录日志
+     * 只处理死信涉及的评论，不再定期为所有已缓存评论发送全量快照。
+     */
+    public void reconcileLikeUsersToMQ() {
+        Map<String, Map<Long, Boolean>> ops = new LinkedHashMap<>();
+        Map<String, Object> lastActivity = new HashMap<>();
+        Set<String> snapshots = new LinkedHashSet<>();
+
+        int received = 0;
+        while (received < reconcileBatch) {
+            Object body = rabbitTemplate.receiveAndConvert(RabbitConfig.REMARK_LIKE_USERS_DLQ);
+            if (body == null) break;
+            received++;
+            if (!(body instanceof Map<?, ?> msg) || !(msg.get("remarkId") instanceof String remarkId) || remarkId.isEmpty()) {
+                log.warn("reconcileLikeUsersToMQ: unrecognized dead letter dropped: {}", body);
+                continue;
+            }
+            if (msg.containsKey("likers") || msg.containsKey("users")) {
+                snapshots.add(remarkId);
+                continue;
+            }
+            Map<Long, Boolean> merged = ops.computeIfAbsent(remarkId, k -> new HashMap<>());
+            parseUserIds(msg.get("added")).forEach(userId -> merged.put(userId, true));
+            parseUserIds(msg.get("removed")).forEach(userId -> merged.put(userId, false));
+            if (msg.get(F_LAST_ACTIVITY) != null) lastActivity.put(remarkId, msg.get(F_LAST_ACTIVITY));
+        }
+        if (received == 0) return;
+
+        int replayed = 0, deferred = 0;
+        for (Map.Entry<String, Map<Long, Boolean>> e : ops.entrySet()) {
+            String remarkId = e.getKey();
+            List<Long> added = new ArrayList<>();
+            List<Long> removed = new ArrayList<>();
+            e.getValue().forEach((userId, liked) -> (liked ? added : removed).add(userId));
+            if (added.isEmpty() && removed.isEmpty()) continue;
+
+            Map<String, Object> msg = new HashMap<>();
+            msg.put("remarkId", remarkId);
+            msg.put("added", added);
+            msg.put("removed", removed);
+            msg.put(F_LAST_ACTIVITY, lastActivity.getOrDefault(remarkId, LocalDateTime.now().toString()));
+
+            boolean pending = likeDeltaPending(remarkId);
+            try {
+                rabbitTemplate.convertAndSend(pending ? RabbitConfig.REMARK_LIKE_USERS_DLQ : LikeUsersQueue, msg);
+                if (pending) deferred++; else replayed++;
+            } catch (Exception ex) {
+                log.error("reconcileLikeUsersToMQ lost dead-lettered like delta {}", msg, ex);
+            }
+        }
+
+        int refreshed = 0;
+        for (String remarkId : snapshots) {
+            if (ops.containsKey(remarkId)) continue;
+            try {
+                Roaring64NavigableMap likers = likeDeltaPending(remarkId) ? null : likerStore.snapshot(remarkId);
+                if (likers == null) {
+                    log.warn("reconcileLikeUsersToMQ: dropped dead-lettered full like set of remark {} (no idle Redis copy)", remarkId);
+                    continue;
+                }
+                Map<String, Object> msg = new HashMap<>();
+                msg.put("remarkId", remarkId);
+                msg.put("likers", RemarkLikers.serialize(likers));
+                rabbitTemplate.convertAndSend(LikeUsersQueue, msg);
+                refreshed++;
+            } catch (Exception ex) {
+                log.error("reconcileLikeUsersToMQ snapshot error for remark {}", remarkId, ex);
+            }
+        }
+        log.info("Reconciled {} dead letters: replayed {} remarks, deferred {}, refreshed {} snapshots",
+                received, replayed, deferred, refreshed);
+    }
+
+    /** 评论是否还有待发送 / 发送中的点赞增量 */
+    private boolean likeDeltaPending(String remarkId) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(likeDeltaKey(remarkId)))
+                || Boolean.TRUE.equals(redisTemplate.hasKey(LIKE_FLUSHING_KEY_PREFIX + remarkId));
+    }
+
+    private static List<Long> parseUserIds(Object obj) {
+        List<Long> result = new ArrayList<>();
+        if (!(obj instanceof Iterable<?> values)) return result;
+        for (Object o : values) {
+            if (o == null) continue;
+            try { result.add(Long.parseLong(o.toString())); }
+            catch (NumberFormatException ignored) {
+                // skip non-numeric ids
             }
         }
+        return result;
+    }
+
+    private void restoreLikeDelta(String flushing, String key, Map<Object, Object> delta) {
+        try {
+            HashOperations<String, Object, Object> hops = redisTemplate.opsForHash();
+            delta.forEach((userId, op) -> hops.putIfAbsent(key, userId, op));
+            redisTemplate.delete(flushing);
+        } catch (Exception e) {
+            log.error("restore like delta failed for key={}", key, e);
+        }
     }
 // --- 统计和列表查询 ---
 
@@ -817,7 +1088,10 @@ public class RemarkService {
         return voList;
     }
 
-    @Transactional //通过某一节点查询构建评论树
+    /**
+     * 通过某一节点查询其所属一级评论的子树：评论取自笔记级快照（与 SelectRemark 共用），在快照内沿 parentId 上溯到一级评论，
+     * 再按快照顺序（父评论总在子评论之前）收集子树，只对子树内的评论叠加点赞与头像。
+     */
     public RemarkVO getRemarkTreeByRemarkId(String remarkId, Long loginUserId) {
         if (remarkId == null || remarkId.isEmpty()) {
             throw new RuntimeException("评论ID不能为空");
@@ -826,59 +1100,36 @@ public class RemarkService {
         RemarkDO targetRemark = remarkRepository.findById(remarkId)
                 .orElseThrow(() -> new RuntimeException("评论不存在"));
 
-        RemarkDO firstLevelRemark = findFirstLevelRemark(targetRemark);
+        List<RemarkDO> thread = threadCache.get(targetRemark.getNoteId(), () -> loadThread(targetRemark.getNoteId()));
+        Map<String, RemarkDO> byId = new HashMap<>();
+        for (RemarkDO r : thread) byId.put(r.get_id(), r);
 
-        UserDO user = userMapper.selectById(loginUserId);
-        if (user == null) {
-            throw new RuntimeException("用户不存在");
+        // 快照内上溯；父评论已不存在（或快照中没有该评论）时以能到达的最高一层为根
+        RemarkDO root = byId.getOrDefault(targetRemark.get_id(), targetRemark);
+        for (int hops = 0; hops < byId.size() && Boolean.TRUE.equals(root.getIsReply()); hops++) {
+            RemarkDO parent = root.getParentId() == null ? null : byId.get(root.getParentId());
+            if (parent == null) break;
+            root = parent;
         }
 
-        List<RemarkDO> secondLevelRemarks = remarkRepository.findRemarksByParentIdAndIsReplyTrue(firstLevelRemark.get_id());
-
-        Comparator<RemarkDO> timeComparator = (r1, r2) -> {
-            String time1 = r1.getCreatedAt() != null ? r1.getCreatedAt() : "";
-            String time2 = r2.getCreatedAt() != null ? r2.getCreatedAt() : "";
-            return time1.compareTo(time2);
-        };
-        secondLevelRemarks.sort(timeComparator);
-
-        List<RemarkVO> secondLevelVOList = new ArrayList<>();
-        for (RemarkDO secondLevel : secondLevelRemarks) {
-            RemarkVO secondLevelVO = transferDO2VO(secondLevel, user);
-            
-            List<RemarkDO> thirdLevelRemarks = remarkRepository.findRemarksByParentIdAndIsReplyTrue(secondLevel.get_id());
-            thirdLevelRemarks.sort(timeComparator);
-            
-            List<RemarkVO> thirdLevelVOList = new ArrayList<>();
-            for (RemarkDO thirdLevel : thirdLevelRemarks) {
-                RemarkVO thirdLevelVO = transferDO2VO(thirdLevel, user);
-                thirdLevelVOList.add(thirdLevelVO);
+        List<RemarkDO> subtree = new ArrayList<>();
+        subtree.add(root);
+        Set<String> members = new HashSet<>(Set.of(root.get_id()));
+        for (RemarkDO r : thread) {
+            if (r.getParentId() != null && members.contains(r.getParentId()) && members.add(r.get_id())) {
+                subtree.add(r);
             }
-            
-            secondLevelVO.setReplies(thirdLevelVOList);
-            secondLevelVOList.add(secondLevelVO);
-        }
-
-        RemarkVO firstLevelVO = transferDO2VO(firstLevelRemark, user);
-        firstLevelVO.setReplies(secondLevelVOList);
-
-        return firstLevelVO;
-    }
-
-    private RemarkDO findFirstLevelRemark(RemarkDO remark) {
-
-        if (Boolean.FALSE.equals(remark.getIsReply()) || remark.getParentId() == null) {
-            return remark;
         }
 
-        Optional<RemarkDO> parent = remarkRepository.findById(remark.getParentId());
-        if (parent.isEmpty()) {
- 
-            log.warn("找不到父评论，parentId: {}", remark.getParentId());
-            return remark;
+        List<RemarkVO> vos = transferDO2VO(subtree, loginUserId);
+        Map<String, RemarkVO> voById = new HashMap<>();
+        for (RemarkVO vo : vos) {
+            vo.setReplies(new ArrayList<>());
+            RemarkVO parent = voById.get(vo.getParentId());
+            if (parent != null) parent.getReplies().add(vo);
+            voById.put(vo.get_id(), vo);
         }
-
-        return findFirstLevelRemark(parent.get());
+        return vos.get(0);
     }
 
 }
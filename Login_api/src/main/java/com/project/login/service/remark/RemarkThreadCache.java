@@ -0,0 +1,128 @@
+package com.project.login.service.remark;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.login.model.dataobject.RemarkDO;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 笔记级评论树快照缓存：
+ *  - key = remark_thread:{noteId}，value = "{代数}|{json}"；json 为评论不可变字段的紧凑数组，
+ *    按"一级评论在前、其后逐层按时间排好的回复"排列，读取时按 parentId 顺序挂接即可还原整棵树
+ *  - 每篇笔记一个代数计数器 remark_thread:gen:{noteId}，评论新增 / 删除在 MongoDB 写入之后 INCR；
+ *    读取时一次 MGET 同时取代数与快照，代数不一致即视为未命中
+ *  - 写入使用加载前读到的代数，加载期间发生的写入会让这次快照直接作废，因此不需要延时双删
+ * 点赞数、是否已点赞、头像等可变信息不进快照，由调用方在读取时批量叠加。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RemarkThreadCache {
+
+    private static final String KEY_PREFIX = "remark_thread:";
+    private static final String GEN_KEY_PREFIX = "remark_thread:gen:";
+    private static final TypeReference<List<Entry>> ENTRIES = new TypeReference<>() {};
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${remark.thread-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${remark.thread-cache.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    /** 快照中的一条评论（按数组序列化，不写字段名） */
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonPropertyOrder({"id", "userId", "username", "content", "createdAt",
+            "parentId", "isReply", "replyToRemarkId", "replyToUsername"})
+    record Entry(String id, Long userId, String username, String content, String createdAt,
+                 String parentId, Boolean isReply, String replyToRemarkId, String replyToUsername) {
+
+        static Entry from(RemarkDO r) {
+            return new Entry(r.get_id(), r.getUserId(), r.getUsername(), r.getContent(), r.getCreatedAt(),
+                    r.getParentId(), r.getIsReply(), r.getReplyToRemarkId(), r.getReplyToUsername());
+        }
+
+        RemarkDO toDO(Long noteId) {
+            return RemarkDO.builder()
+                    ._id(id).noteId(noteId).userId(userId).username(username).content(content)
+                    .createdAt(createdAt).parentId(parentId).isReply(isReply)
+                    .replyToRemarkId(replyToRemarkId).replyToUsername(replyToUsername)
+                    .build();
+        }
+    }
+
+    /**
+     * 读取笔记的评论快照；未命中时调用 loader 从 MongoDB 加载（须按快照顺序返回）并回填
+     */
+    public List<RemarkDO> get(Long noteId, Supplier<List<RemarkDO>> loader) {
+        if (!enabled) return loader.get();
+
+        String key = KEY_PREFIX + noteId;
+        long generation;
+        try {
+            List<String> values = redisTemplate.opsForValue().multiGet(List.of(GEN_KEY_PREFIX + noteId, key));
+            generation = values == null || values.get(0) == null ? 0 : Long.parseLong(values.get(0));
+            String cached = values == null ? null : values.get(1);
+
+            if (cached != null) {
+                int sep = cached.indexOf('|');
+                if (sep > 0 && Long.parseLong(cached.substring(0, sep)) == generation) {
+                    List<Entry> entries = objectMapper.readValue(cached.substring(sep + 1), ENTRIES);
+                    List<RemarkDO> remarks = new ArrayList<>(entries.size());
+                    for (Entry e : entries) {
+                        remarks.add(e.toDO(noteId));
+                    }
+                    record("hit");
+                    return remarks;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("读取评论树快照失败, noteId={}", noteId, e);
+            generation = -1;
+        }
+
+        record("miss");
+        List<RemarkDO> remarks = loader.get();
+        if (generation >= 0) put(key, generation, remarks);
+        return remarks;
+    }
+
+    private void put(String key, long generation, List<RemarkDO> remarks) {
+        try {
+            List<Entry> entries = remarks.stream().map(Entry::from).toList();
+            redisTemplate.opsForValue().set(key, generation + "|" + objectMapper.writeValueAsString(entries),
+                    ttlSeconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("写入评论树快照失败, key={}", key, e);
+        }
+    }
+
+    /** 笔记下的评论发生变化：推进代数，旧快照随 TTL 过期 */
+    public void bump(Long noteId) {
+        if (noteId == null) return;
+        try {
+            redisTemplate.opsForValue().increment(GEN_KEY_PREFIX + noteId);
+        } catch (Exception e) {
+            log.warn("推进评论树快照代数失败, noteId={}", noteId, e);
+        }
+    }
+
+    private void record(String result) {
+        meterRegistry.counter("remark.thread_cache.requests", "result", result).increment();
+    }
+}
@@ -0,0 +1,124 @@
+package com.project.login.service.remark;
+
+import lombok.RequiredArgsConstructor;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 点赞用户存为 Redis SET（remark_user_like:{id}），成员为 JSON 序列化的用户 id
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "remark.likers.store", havingValue = "set", matchIfMissing = true)
+public class SetRemarkLikerStore implements RemarkLikerStore {
+
+    private static final String KEY_PREFIX = "remark_user_like:";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    @Override
+    public String key(String remarkId) {
+        return KEY_PREFIX + remarkId;
+    }
+
+    @Override
+    public boolean exists(String remarkId) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(key(remarkId)));
+    }
+
+    @Override
+    public void load(String remarkId, Roaring64NavigableMap likers, Duration ttl) {
+        if (likers.isEmpty()) return;
+        redisTemplate.opsForSet().add(key(remarkId), Arrays.stream(likers.toArray()).boxed().toArray());
+    }
+
+    @Override
+    public Roaring64NavigableMap snapshot(String remarkId) {
+        Set<Object> members = redisTemplate.opsForSet().members(key(remarkId));
+        if (members == null || members.isEmpty()) return null;
+        Roaring64NavigableMap likers = new Roaring64NavigableMap();
+        for (Object member : members) {
+            try {
+                likers.addLong(Long.parseLong(member.toString()));
+            } catch (NumberFormatException ignored) {
+                // skip non-numeric ids
+            }
+        }
+        return likers;
+    }
+
+    @Override
+    public boolean contains(String remarkId, Long userId) {
+        return Boolean.TRUE.equals(redisTemplate.opsForSet().isMember(key(remarkId), userId));
+    }
+
+    @Override
+    public void add(String remarkId, Long userId, Duration ttl) {
+        redisTemplate.opsForSet().add(key(remarkId), userId);
+        touch(remarkId, ttl);
+    }
+
+    @Override
+    public void remove(String remarkId, Long userId, Duration ttl) {
+        redisTemplate.opsForSet().remove(key(remarkId), userId);
+        touch(remarkId, ttl);
+    }
+
+    @Override
+    public void touch(String remarkId, Duration ttl) {
+        redisTemplate.expire(key(remarkId), ttl);
+    }
+
+    /** EXISTS + SISMEMBER + EXPIRE */
+    @Override
+    public void queueContains(RedisConnection connection, String remarkId, Long userId, Duration ttl) {
+        byte[] k = rawKey(remarkId);
+        connection.keyCommands().exists(k);
+        connection.setCommands().sIsMember(k, values().serialize(userId));
+        connection.keyCommands().expire(k, ttl.toSeconds());
+    }
+
+    @Override
+    public int containsReplies() {
+        return 3;
+    }
+
+    @Override
+    public Boolean parseContains(List<Object> replies, int offset, Long userId) {
+        if (!isTrue(replies.get(offset))) return null;
+        return isTrue(replies.get(offset + 1));
+    }
+
+    @Override
+    public void queueLoad(RedisConnection connection, String remarkId, Roaring64NavigableMap likers, Duration ttl) {
+        if (likers.isEmpty()) return;
+        RedisSerializer<Object> values = values();
+        byte[] k = rawKey(remarkId);
+        connection.setCommands().sAdd(k, Arrays.stream(likers.toArray()).mapToObj(values::serialize).toArray(byte[][]::new));
+        connection.keyCommands().expire(k, ttl.toSeconds());
+    }
+
+    private byte[] rawKey(String remarkId) {
+        return redisTemplate.getStringSerializer().serialize(key(remarkId));
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedisSerializer<Object> values() {
+        return (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+    }
+
+    private static boolean isTrue(Object reply) {
+        if (reply instanceof Boolean b) return b;
+        if (reply instanceof Number n) return n.longValue() > 0;
+        return false;
+    }
+}
@@ -0,0 +1,204 @@
+package com.project.login.service.search;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ES 批量写入（NoteEsConsumer / QuestionEsConsumer 共用）：
+ *  - 一批文档操作合成一次 _bulk：upsert 为 partial update + doc_as_upsert，只覆盖给出的字段；
+ *    update 为不带 upsert 的 partial update，只补充已存在的文档；delete 删除整个文档
+ *  - 逐条检查返回结果：429 / 5xx 或整个请求异常时按指数退避重试失败的条目，至多 max-retries 次
+ *  - 不可重试的错误或重试耗尽的条目投递到调用方指定的死信队列，附带错误原因，可人工回放
+ *  - 删除 / update 不存在的文档（404）视为成功：文档已被删除，不再重建
+ *  - 重建索引期间（SearchReindexService 登记了影子索引），写别名的操作同时写入新索引，切换别名后不丢增量
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EsBulkIndexer {
+
+    private final ElasticsearchClient esClient;
+    private final RabbitTemplate rabbitTemplate;
+    private final MeterRegistry meterRegistry;
+    private final StringRedisTemplate redisTemplate;
+
+    /** 别名 → 正在重建的新索引（由 SearchReindexService 维护） */
+    public static final String SHADOW_KEY_PREFIX = "es_reindex:shadow:";
+
+    @Value("${es-indexing.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${es-indexing.retry-backoff-ms:200}")
+    private long retryBackoffMs;
+
+    /**
+     * 单个文档合并后的最终操作；doc 为 null 表示删除，upsert 为 false 时文档不存在不会被创建
+     */
+    public record Action(String id, Map<String, Object> doc, boolean upsert) {
+
+        public static Action upsert(String id, Map<String, Object> doc) {
+            return new Action(id, doc, true);
+        }
+
+        /** 只更新已存在的文档（正文等附属字段），文档已删除时不会生成只有部分字段的残缺文档 */
+        public static Action update(String id, Map<String, Object> doc) {
+            return new Action(id, doc, false);
+        }
+
+        public static Action delete(String id) {
+            return new Action(id, null, false);
+        }
+
+        public boolean isDelete() {
+            return doc == null;
+        }
+
+        /** 同一文档的后续操作：删除直接覆盖；更新在前一个操作上叠加字段（后者优先），任一为 upsert 即为 upsert */
+        public Action then(Action next) {
+            if (next.isDelete() || isDelete()) return next;
+            Map<String, Object> merged = new HashMap<>(doc);
+            merged.putAll(next.doc);
+            return new Action(id, merged, upsert || next.upsert);
+        }
+    }
+
+    /**
+     * 写入一批操作（重建期间同时写影子索引），返回主索引成功条数
+     */
+    public int apply(String index, String deadLetterQueue, Collection<Action> actions) {
+        if (actions.isEmpty()) return 0;
+
+        String shadow = shadowIndex(index);
+        if (shadow != null) applyTo(shadow, deadLetterQueue, actions);
+        return applyTo(index, deadLetterQueue, actions);
+    }
+
+    /** 当前需要同时写入的影子索引，没有重建任务时为 null */
+    public String shadowIndex(String alias) {
+        try {
+            return redisTemplate.opsForValue().get(SHADOW_KEY_PREFIX + alias);
+        } catch (Exception e) {
+            log.warn("Failed to read reindex shadow for {}", alias, e);
+            return null;
+        }
+    }
+
+    private int applyTo(String index, String deadLetterQueue, Collection<Action> actions) {
+
+        long start = System.nanoTime();
+        List<Action> pending = new ArrayList<>(actions);
+        int indexed = 0;
+        int deadLettered = 0;
+
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            List<Action> retry = new ArrayList<>();
+            Map<Action, String> dead = new LinkedHashMap<>();
+
+            try {
+                BulkResponse response = esClient.bulk(buildRequest(index, pending));
+                List<BulkResponseItem> items = response.items();
+                for (int i = 0; i < pending.size(); i++) {
+                    Action action = pending.get(i);
+                    BulkResponseItem item = items.get(i);
+                    if (item.error() == null) {
+                        indexed++;
+                    } else if (!action.upsert() && item.status() == 404) {
+                        log.debug("ES {} op for {}/{} skipped: document missing", opName(action), index, action.id());
+                        indexed++;
+                    } else if (isRetriable(item.status())) {
+                        retry.add(action);
+                    } else {
+                        dead.put(action, item.status() + " " + item.error().reason());
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("ES bulk request to {} failed ({} docs, attempt {})", index, pending.size(), attempt + 1, e);
+                retry = pending;
+            }
+
+            if (!retry.isEmpty() && attempt >= maxRetries) {
+                retry.forEach(a -> dead.put(a, "retries exhausted"));
+                retry = List.of();
+            }
+            deadLettered += deadLetter(index, deadLetterQueue, dead);
+
+            pending = retry;
+            if (!pending.isEmpty()) {
+                meterRegistry.counter("es.indexing.retries", "index", index).increment(pending.size());
+                sleep(retryBackoffMs << attempt);
+            }
+        }
+
+        long nanos = System.nanoTime() - start;
+        meterRegistry.counter("es.indexing.docs", "index", index).increment(indexed);
+        meterRegistry.timer("es.indexing.bulk", "index", index).record(nanos, TimeUnit.NANOSECONDS);
+        log.info("ES bulk {}: {} docs ({} dead-lettered) in {} ms, {} docs/s",
+                index, actions.size(), deadLettered, nanos / 1_000_000,
+                nanos == 0 ? indexed : (long) (indexed * 1e9 / nanos));
+        return indexed;
+    }
+
+    private BulkRequest buildRequest(String index, List<Action> actions) {
+        BulkRequest.Builder bulk = new BulkRequest.Builder();
+        for (Action action : actions) {
+            if (action.isDelete()) {
+                bulk.operations(op -> op.delete(d -> d.index(index).id(action.id())));
+            } else {
+                bulk.operations(op -> op.update(u -> u
+                        .index(index)
+                        .id(action.id())
+                        .retryOnConflict(3)
+                        .action(a -> a.doc(action.doc()).docAsUpsert(action.upsert()))));
+            }
+        }
+        return bulk.build();
+    }
+
+    private int deadLetter(String index, String queue, Map<Action, String> dead) {
+        dead.forEach((action, reason) -> {
+            log.error("ES {} op for {}/{} dead-lettered: {}", opName(action), index, action.id(), reason);
+            Map<String, Object> msg = new HashMap<>();
+            msg.put("index", index);
+            msg.put("id", action.id());
+            msg.put("op", opName(action));
+            msg.put("doc", action.doc());
+            msg.put("error", reason);
+            try {
+                rabbitTemplate.convertAndSend(queue, msg);
+            } catch (Exception e) {
+                log.error("Failed to dead-letter ES op for {}/{}", index, action.id(), e);
+            }
+        });
+        if (!dead.isEmpty()) meterRegistry.counter("es.indexing.dead_lettered", "index", index).increment(dead.size());
+        return dead.size();
+    }
+
+    private static String opName(Action action) {
+        if (action.isDelete()) return "delete";
+        return action.upsert() ? "upsert" : "update";
+    }
+
+    private static boolean isRetriable(int status) {
+        return status == 429 || status >= 500;
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
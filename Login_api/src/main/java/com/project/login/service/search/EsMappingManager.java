@@ -0,0 +1,56 @@
+package com.project.login.service.search;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.mapping.Property;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 为已存在的索引补充新字段映射（新建索引直接使用 resources/es/*-index.json）。
+ * 写入新字段前调用 ensure，必须在动态映射把字段推断成其它类型之前执行；
+ * 每个 index/field 成功一次后不再请求；失败（字段已被动态映射或 ES 不可用）时记录失败并指数退避，
+ * 退避期内的 ensure 直接跳过，不再每批都请求一次。字段冲突需重建索引修正。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EsMappingManager {
+
+    private static final long INITIAL_BACKOFF_MS = 60_000;
+    private static final long MAX_BACKOFF_MS = 3_600_000;
+
+    private final ElasticsearchClient esClient;
+
+    private final Set<String> ensured = ConcurrentHashMap.newKeySet();
+
+    /** 失败的 index/field → 连续失败次数与下次允许重试的时间 */
+    private final Map<String, Failure> failures = new ConcurrentHashMap<>();
+
+    public void ensure(String index, String field, Property property) {
+        String key = index + "/" + field;
+        if (ensured.contains(key)) return;
+
+        long now = System.currentTimeMillis();
+        Failure failure = failures.get(key);
+        if (failure != null && now < failure.retryAt()) return;
+
+        try {
+            esClient.indices().putMapping(m -> m.index(index).properties(field, property));
+            ensured.add(key);
+            failures.remove(key);
+        } catch (Exception e) {
+            int attempts = failure == null ? 1 : failure.attempts() + 1;
+            long backoff = Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << Math.min(attempts - 1, 16));
+            failures.put(key, new Failure(attempts, now + backoff));
+            log.warn("Put mapping {} on {} failed ({} attempts), retrying in {} ms, reindex may be required",
+                    field, index, attempts, backoff, e);
+        }
+    }
+
+    private record Failure(int attempts, long retryAt) {}
+}
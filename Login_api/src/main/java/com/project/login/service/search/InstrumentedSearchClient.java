@@ -0,0 +1,171 @@
+package com.project.login.service.search;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.JsonpUtils;
+import co.elastic.clients.util.ObjectBuilder;
+import com.project.login.model.vo.SlowQueryVO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * ES 查询的统一出口：按查询类型（调用点）记录指标，并抽样保存慢查询。
+ *  - search.es.latency{type,outcome}：客户端耗时直方图（p50 / p95 / p99）
+ *  - search.es.took{type}、search.es.hits{type}：ES 返回的 took 与命中数
+ *  - search.es.timeouts{type}、search.es.shard_failures{type}：超时与分片失败次数
+ * 耗时超过阈值（或请求失败）的查询按抽样率记录 DSL 与耗时，保存在固定容量的环形缓冲中，
+ * 由 /api/v1/admin/search/slow-queries 查看；DSL 只在记录慢查询时序列化。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InstrumentedSearchClient {
+
+    private static final int MAX_DSL_LENGTH = 8_000;
+
+    private final ElasticsearchClient esClient;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${search.slow-query.threshold-ms:300}")
+    private long slowThresholdMs;
+
+    @Value("${search.slow-query.sample-rate:1.0}")
+    private double sampleRate;
+
+    @Value("${search.slow-query.capacity:200}")
+    private int capacity;
+
+    private final ArrayDeque<SlowQueryVO> slowQueries = new ArrayDeque<>();
+
+    public <T> SearchResponse<T> search(String queryType,
+                                        Function<SearchRequest.Builder, ObjectBuilder<SearchRequest>> fn,
+                                        Class<T> documentClass) throws IOException {
+        return search(queryType, SearchRequest.of(fn), documentClass);
+    }
+
+    public <T> SearchResponse<T> search(String queryType, SearchRequest request, Class<T> documentClass) throws IOException {
+        long start = System.nanoTime();
+        SearchResponse<T> response;
+        try {
+            response = esClient.search(request, documentClass);
+        } catch (IOException | RuntimeException e) {
+            long elapsedMs = record(queryType, "error", start);
+            capture(queryType, request, elapsedMs, null, e, true);
+            throw e;
+        }
+
+        long elapsedMs = record(queryType, "success", start);
+        DistributionSummary.builder("search.es.took").baseUnit("milliseconds").tag("type", queryType)
+                .register(meterRegistry).record(response.took());
+        DistributionSummary.builder("search.es.hits").tag("type", queryType)
+                .register(meterRegistry).record(totalHits(response));
+        if (response.timedOut()) {
+            Counter.builder("search.es.timeouts").tag("type", queryType).register(meterRegistry).increment();
+        }
+        int failedShards = response.shards() != null ? response.shards().failed().intValue() : 0;
+        if (failedShards > 0) {
+            Counter.builder("search.es.shard_failures").tag("type", queryType).register(meterRegistry).increment(failedShards);
+        }
+
+        capture(queryType, request, elapsedMs, response, null, response.timedOut());
+        return response;
+    }
+
+    /**
+     * 打开 point-in-time 快照，返回 PIT id；翻页请求带上该 id 后看到的文档与排序字段不再随写入变化
+     */
+    public String openPointInTime(String index, String keepAlive) throws IOException {
+        return esClient.openPointInTime(o -> o.index(index).keepAlive(t -> t.time(keepAlive))).id();
+    }
+
+    /**
+     * 最近的慢查询，新的在前
+     */
+    public List<SlowQueryVO> recentSlowQueries(int limit) {
+        List<SlowQueryVO> result = new ArrayList<>(Math.max(0, Math.min(limit, capacity)));
+        synchronized (slowQueries) {
+            Iterator<SlowQueryVO> it = slowQueries.descendingIterator();
+            while (it.hasNext() && result.size() < limit) {
+                result.add(it.next());
+            }
+        }
+        return result;
+    }
+
+    public void clearSlowQueries() {
+        synchronized (slowQueries) {
+            slowQueries.clear();
+        }
+    }
+
+    private long record(String queryType, String outcome, long startNanos) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        Timer.builder("search.es.latency")
+                .tag("type", queryType)
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        return elapsedNanos / 1_000_000;
+    }
+
+    private void capture(String queryType, SearchRequest request, long elapsedMs,
+                         SearchResponse<?> response, Exception error, boolean force) {
+        if (!force && elapsedMs < slowThresholdMs) return;
+        if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) return;
+
+        SlowQueryVO entry = SlowQueryVO.builder()
+                .queryType(queryType)
+                .indices(String.join(",", request.index()))
+                .dsl(dsl(request))
+                .elapsedMs(elapsedMs)
+                .tookMs(response != null ? response.took() : null)
+                .totalHits(response != null ? totalHits(response) : null)
+                .timedOut(response != null && response.timedOut())
+                .failedShards(response != null && response.shards() != null ? response.shards().failed().intValue() : null)
+                .error(error != null ? error.getMessage() : null)
+                .at(LocalDateTime.now())
+                .build();
+
+        // capacity <= 0 视为关闭环形缓冲，只保留日志
+        if (capacity > 0) {
+            synchronized (slowQueries) {
+                while (slowQueries.size() >= capacity) slowQueries.pollFirst();
+                slowQueries.addLast(entry);
+            }
+        }
+        log.info("Slow ES query type={} elapsed={}ms took={}ms", queryType, elapsedMs, entry.getTookMs());
+    }
+
+    private String dsl(SearchRequest request) {
+        try {
+            String json = JsonpUtils.toJsonString(request, esClient._jsonpMapper());
+            return json.length() > MAX_DSL_LENGTH ? json.substring(0, MAX_DSL_LENGTH) + "...(truncated)" : json;
+        } catch (Exception e) {
+            return request.toString();
+        }
+    }
+
+    private static long totalHits(SearchResponse<?> response) {
+        if (response.hits().total() != null) return response.hits().total().value();
+        return response.hits().hits().size();
+    }
+}
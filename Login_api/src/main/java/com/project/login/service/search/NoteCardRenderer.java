@@ -0,0 +1,58 @@
+package com.project.login.service.search;
+
+import com.project.login.model.dataobject.NoteStatsDO;
+import com.project.login.model.entity.NoteEntity;
+import com.project.login.model.vo.NoteSearchVO;
+import com.project.login.repository.NoteRepository;
+import com.project.login.service.notestats.NoteStatsReader;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * 按给定顺序把笔记 id 组装成列表卡片（热榜、个人推荐候选共用）：
+ * 一次 ES mget 取标题摘要，一次批量读取统计；索引中已不存在的笔记直接跳过。
+ */
+@Component
+@RequiredArgsConstructor
+public class NoteCardRenderer {
+
+    private final NoteRepository noteRepository;
+    private final NoteStatsReader noteStatsReader;
+
+    public List<NoteSearchVO> render(Collection<Long> orderedIds) {
+        if (orderedIds.isEmpty()) return Collections.emptyList();
+
+        Map<Long, NoteSearchVO> voMap = new HashMap<>();
+        for (NoteEntity entity : noteRepository.findAllById(orderedIds)) {
+            NoteSearchVO vo = new NoteSearchVO();
+            vo.setNoteId(entity.getId());
+            vo.setTitle(entity.getTitle());
+            vo.setContentSummary(entity.getContentSummary());
+            voMap.put(entity.getId(), vo);
+        }
+
+        // 批量加载状态（近端缓存 → Redis pipeline → MySQL IN 查询）
+        Map<Long, NoteStatsDO> statsMap = noteStatsReader.loadStats(voMap.keySet());
+
+        voMap.forEach((id, vo) -> {
+            NoteStatsDO stats = statsMap.get(id);
+            if (stats != null) {
+                vo.setAuthorName(stats.getAuthorName());
+                vo.setViewCount(stats.getViews().intValue());
+                vo.setLikeCount(stats.getLikes().intValue());
+                vo.setFavoriteCount(stats.getFavorites().intValue());
+                vo.setCommentCount(stats.getComments().intValue());
+            }
+        });
+
+        // 保持调用方给定的顺序
+        List<NoteSearchVO> result = new ArrayList<>(voMap.size());
+        for (Long id : orderedIds) {
+            NoteSearchVO vo = voMap.get(id);
+            if (vo != null) result.add(vo);
+        }
+        return result;
+    }
+}
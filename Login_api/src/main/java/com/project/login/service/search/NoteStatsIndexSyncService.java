@@ -0,0 +1,151 @@
+package com.project.login.service.search;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import com.project.login.mapper.NoteStatsMapper;
+import com.project.login.model.dataobject.NoteStatsDO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把 note_stats 冗余到 ES notes 索引（部分更新），供搜索的 function_score 排序使用：
+ *  - 按 (updated_at, note_id) 键集分页扫描 MySQL 中变更过的行（落库周期见 NoteStatsService.flushToMQ）
+ *  - updated_at 只精确到秒，且事务可能在水位线越过之后才提交：每轮从水位线回退 overlap-seconds 重扫，
+ *    重复的部分更新是幂等的；水位线只前进不后退
+ *  - 每页一次 _bulk update，只写统计字段，不覆盖标题 / 摘要
+ *  - 水位线保存在 Redis，进程重启后从上次位置继续；首次运行即全量回填
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class NoteStatsIndexSyncService {
+
+    private static final String INDEX = "notes";
+    private static final String WATERMARK_KEY = "note_stats_es_sync:watermark";
+    private static final DateTimeFormatter ES_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
+
+    private final ElasticsearchClient esClient;
+    private final NoteStatsMapper noteStatsMapper;
+    private final StringRedisTemplate redisTemplate;
+    private final EsBulkIndexer esBulkIndexer;
+
+    @Value("${search.stats-sync.batch-size:500}")
+    private int batchSize;
+
+    @Value("${search.stats-sync.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    @Value("${search.stats-sync.overlap-seconds:30}")
+    private long overlapSeconds;
+
+    /**
+     * 同步自上次水位线以来变更的统计；单次最多 maxBatchesPerRun 页，剩余的留给下一轮
+     */
+    public void syncChangedStats() {
+        Watermark start = loadWatermark();
+        Watermark mark = start;
+        // 重扫窗口：同一秒内 note_id 更小的后续更新、以及越过水位线后才提交的事务都会落在这里
+        Watermark cursor = new Watermark(start.updatedAt.minusSeconds(overlapSeconds), 0L);
+        int synced = 0;
+
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            List<NoteStatsDO> rows = noteStatsMapper.getUpdatedAfter(cursor.updatedAt, cursor.noteId, batchSize);
+            if (rows == null || rows.isEmpty()) break;
+
+            try {
+                bulkUpdate(rows);
+            } catch (Exception e) {
+                // 水位线不前进，下一轮重试本页
+                log.error("Sync note stats to ES failed at cursor {}|{}", cursor.updatedAt, cursor.noteId, e);
+                break;
+            }
+
+            NoteStatsDO last = rows.get(rows.size() - 1);
+            cursor = new Watermark(last.getUpdatedAt(), last.getNoteId());
+            if (cursor.isAfter(mark)) {
+                mark = cursor;
+                saveWatermark(mark);
+            }
+            synced += rows.size();
+
+            if (rows.size() < batchSize) break;
+        }
+
+        if (synced >= maxBatchesPerRun * batchSize && !mark.isAfter(start)) {
+            log.warn("Note stats sync spent the whole run inside the {}s overlap window, consider a larger batch budget",
+                    overlapSeconds);
+        }
+        if (synced > 0) log.info("Synced {} note stats rows to ES, watermark {}|{}", synced, mark.updatedAt, mark.noteId);
+    }
+
+    private void bulkUpdate(List<NoteStatsDO> rows) throws Exception {
+        // 重建索引期间同时更新新索引
+        String shadow = esBulkIndexer.shadowIndex(INDEX);
+        if (shadow != null) bulkUpdate(shadow, rows);
+        bulkUpdate(INDEX, rows);
+    }
+
+    private void bulkUpdate(String index, List<NoteStatsDO> rows) throws Exception {
+        BulkRequest.Builder bulk = new BulkRequest.Builder();
+        for (NoteStatsDO row : rows) {
+            Map<String, Object> doc = new HashMap<>();
+            doc.put("authorName", row.getAuthorName());
+            doc.put("views", row.getViews());
+            doc.put("likes", row.getLikes());
+            doc.put("favorites", row.getFavorites());
+            doc.put("comments", row.getComments());
+            LocalDateTime activity = row.getLastActivityAt() != null ? row.getLastActivityAt() : row.getUpdatedAt();
+            if (activity != null) doc.put("updatedAt", activity.format(ES_DATE));
+
+            bulk.operations(op -> op.update(u -> u
+                    .index(index)
+                    .id(String.valueOf(row.getNoteId()))
+                    .action(a -> a.doc(doc))));
+        }
+
+        BulkResponse response = esClient.bulk(bulk.build());
+        if (!response.errors()) return;
+
+        // 笔记尚未进入索引（404）时跳过：NoteEsConsumer 建索引后下一次变更会再同步
+        for (BulkResponseItem item : response.items()) {
+            if (item.error() != null && item.status() != 404) {
+                throw new IllegalStateException("ES bulk update failed for note " + item.id() + ": " + item.error().reason());
+            }
+        }
+    }
+
+    private Watermark loadWatermark() {
+        String value = redisTemplate.opsForValue().get(WATERMARK_KEY);
+        if (value != null) {
+            try {
+                String[] parts = value.split("\\|");
+                return new Watermark(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+            } catch (Exception e) {
+                log.warn("Invalid note stats sync watermark {}, restarting from beginning", value);
+            }
+        }
+        return new Watermark(LocalDateTime.of(1970, 1, 1, 0, 0), 0L);
+    }
+
+    private void saveWatermark(Watermark mark) {
+        redisTemplate.opsForValue().set(WATERMARK_KEY, mark.updatedAt + "|" + mark.noteId);
+    }
+
+    private record Watermark(LocalDateTime updatedAt, long noteId) {
+        boolean isAfter(Watermark other) {
+            int c = updatedAt.compareTo(other.updatedAt);
+            return c > 0 || (c == 0 && noteId > other.noteId);
+        }
+    }
+}
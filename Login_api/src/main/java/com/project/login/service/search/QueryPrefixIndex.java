@@ -0,0 +1,69 @@
+package com.project.login.service.search;
+
+import java.util.*;
+
+/**
+ * 热门搜索词的不可变前缀树：每个节点预先保存经过该节点的 topK 个词（按次数降序），
+ * 查询只需沿前缀走 O(前缀长度) 步，不做子树遍历。由 SuggestService 定期整体重建后替换引用。
+ */
+public final class QueryPrefixIndex {
+
+    public static final QueryPrefixIndex EMPTY = new QueryPrefixIndex(new Node(), 0);
+
+    /** 一个候选词及其近期搜索次数 */
+    public record Term(String text, long count) {}
+
+    private final Node root;
+    private final int size;
+
+    private QueryPrefixIndex(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * @param counts   规范化关键词 → 次数
+     * @param maxTerms 最多收录的词数（取次数最多的）
+     * @param perNode  每个节点保存的候选数，即单次查询能返回的上限
+     */
+    public static QueryPrefixIndex build(Map<String, Long> counts, int maxTerms, int perNode) {
+        List<Term> terms = counts.entrySet().stream()
+                .filter(e -> e.getKey() != null && !e.getKey().isEmpty())
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(maxTerms)
+                .map(e -> new Term(e.getKey(), e.getValue()))
+                .toList();
+
+        // 按次数降序插入，节点候选未满时追加，天然得到每个前缀的 topK
+        Node root = new Node();
+        for (Term term : terms) {
+            Node node = root;
+            String text = term.text();
+            for (int i = 0; i < text.length(); i++) {
+                node = node.children.computeIfAbsent(text.charAt(i), c -> new Node());
+                if (node.top.size() < perNode) node.top.add(term);
+            }
+        }
+        return new QueryPrefixIndex(root, terms.size());
+    }
+
+    /** 以 prefix 开头的候选，按次数降序，至多 limit 个 */
+    public List<Term> lookup(String prefix, int limit) {
+        if (prefix == null || prefix.isEmpty()) return Collections.emptyList();
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        if (node == null) return Collections.emptyList();
+        return node.top.size() <= limit ? node.top : node.top.subList(0, limit);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>(4);
+        private final List<Term> top = new ArrayList<>(2);
+    }
+}
@@ -0,0 +1,47 @@
+package com.project.login.service.search;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 热门关键词预热：从 user_search_stream 末尾取最近 sample-size 条搜索记录（SearchQueryLog），
+ * 取次数最多的 top-k 个关键词，预热笔记与问答的第一页（已有当前代数缓存的跳过）。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SearchCachePrewarmer {
+
+    private final SearchQueryLog searchQueryLog;
+    private final SearchService searchService;
+    private final SearchQAService searchQAService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${search.cache.prewarm.sample-size:5000}")
+    private int sampleSize;
+
+    @Value("${search.cache.prewarm.top-k:50}")
+    private int topK;
+
+    public void prewarm() {
+        List<String> keywords = searchQueryLog.topKeywords(sampleSize, topK);
+        if (keywords.isEmpty()) return;
+
+        int warmed = 0;
+        for (String keyword : keywords) {
+            try {
+                if (searchService.prewarm(keyword)) warmed++;
+                if (searchQAService.prewarm(keyword)) warmed++;
+            } catch (Exception e) {
+                log.warn("Prewarm search cache failed for keyword {}", keyword, e);
+            }
+        }
+        meterRegistry.counter("search.cache.prewarmed").increment(warmed);
+        log.debug("Search cache prewarm: {} keywords, {} pages refreshed", keywords.size(), warmed);
+    }
+}
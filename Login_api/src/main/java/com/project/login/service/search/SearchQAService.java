@@ -1,19 +1,27 @@
 package com.project.login.service.search;
 
-import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.project.login.convert.QuestionConvert;
+import com.project.login.mapper.UserMapper;
 import com.project.login.model.dataobject.QuestionDO;
+import com.project.login.model.dataobject.QuestionSummary;
 import com.project.login.model.vo.qa.QuestionVO;
-import com.project.login.repository.QuestionRepository;
 import jakarta.annotation.Resource;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
@@ -24,24 +32,140 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class SearchQAService {
 
-    private final ElasticsearchClient esClient;
-    private final QuestionRepository questionRepository; // MongoDB
+    private final InstrumentedSearchClient searchClient;
+    private final MongoTemplate mongoTemplate;
+    private final UserMapper userMapper;
     private final RedisTemplate<String, Object> redisTemplate;
     private final QuestionConvert convert;
     private final ObjectMapper objectMapper;
+    private final SearchResultCache searchResultCache;
     @Resource
     private StringRedisTemplate redis;
 
-    private static final String REDIS_KEY_PREFIX = "question:detail:";
+    /** 列表用问题摘要缓存；QuestionService 修改 / 删除问题时一并删除 */
+    public static final String SUMMARY_KEY_PREFIX = "question:summary:";
+    private static final Duration SUMMARY_TTL = Duration.ofHours(2);
+    private static final String[] SUMMARY_FIELDS = {
+            "questionId", "authorId", "title", "content", "tags", "createdAt", "likes", "favorites",
+            "answers.createdAt", "answers.comments.createdAt", "answers.comments.replies.createdAt"
+    };
+    private static final String INDEX = "questions";
+    private static final TypeReference<List<QuestionHit>> HITS_TYPE = new TypeReference<>() {};
+
+    public List<QuestionVO> searchQuestions(String rawKeyword) {
+        String keyword = SearchResultCache.normalize(rawKeyword);
+
+        // 结果缓存只保存 ES 命中的 questionId + 分数，详情与点赞 / 收藏 / 回答数每次重新加载并排序
+        String cacheKey = searchResultCache.key(INDEX, keyword);
+        SearchResultCache.Lookup<List<QuestionHit>> cached = searchResultCache.get(INDEX, cacheKey, HITS_TYPE);
+        List<QuestionHit> hits = cached.value();
+        if (!cached.hit()) {
+            hits = queryHits(keyword);
+            searchResultCache.put(INDEX, cacheKey, cached.generation(), hits);
+        }
+        return rank(hits);
+    }
 
-    public List<QuestionVO> searchQuestions(String keyword) {
+    /**
+     * 按画像关键词推荐：一次 ES 查询（每个关键词一个 should 子句，boost 为归一化后的画像权重），
+     * 详情与统计对命中并集批量加载一次，排除 excludeAuthorId 自己提的问题。
+     */
+    public List<QuestionVO> recommend(Map<String, Double> weightedKeywords, Long excludeAuthorId, int size) {
+        if (weightedKeywords.isEmpty()) return Collections.emptyList();
+        double maxWeight = weightedKeywords.values().stream().mapToDouble(Double::doubleValue).max().orElse(1.0);
 
-        List<ScoredQuestion> scoredList = new ArrayList<>();
+        List<QuestionHit> hits = new ArrayList<>();
+        try {
+            var response = searchClient.search("questions.recommend", s -> s
+                            .index(INDEX)
+                            .size(size)
+                            .query(q -> q.bool(b -> {
+                                weightedKeywords.forEach((keyword, weight) -> b.should(sh -> sh.multiMatch(m -> m
+                                        .query(keyword)
+                                        .fields("title^3", "content", "tags^2")
+                                        .boost((float) (maxWeight > 0 ? Math.max(weight, 0) / maxWeight : 1.0)))));
+                                return b.minimumShouldMatch("1");
+                            })),
+                    Object.class
+            );
+            response.hits().hits().forEach(hit -> {
+                if (hit.source() == null) return;
+                String questionId = (String) ((Map<String, Object>) hit.source()).get("questionId");
+                hits.add(new QuestionHit(questionId, hit.score() != null ? hit.score() : 0));
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("ES 推荐失败", e);
+        }
 
-        // ES 搜索，只获取 questionId
+        return rank(hits).stream()
+                .filter(vo -> excludeAuthorId == null || !excludeAuthorId.equals(vo.getAuthorId()))
+                .collect(Collectors.toList());
+    }
+
+    // 加载摘要并按 ES 分数 + 点赞 / 收藏 / 回答数 + 时效综合排序
+    private List<QuestionVO> rank(List<QuestionHit> hits) {
+        if (hits.isEmpty()) return Collections.emptyList();
+
+        // 批量加载问题摘要（Redis MGET → MongoDB $in）
+        Map<String, QuestionSummary> summaries = loadQuestionSummaryBatch(
+                hits.stream().map(QuestionHit::questionId).filter(Objects::nonNull).distinct().toList());
+
+        // 批量查询提问者用户名
+        Set<Long> authorIds = summaries.values().stream()
+                .map(QuestionSummary::getAuthorId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, String> authorNames = new HashMap<>();
+        if (!authorIds.isEmpty()) {
+            try {
+                userMapper.selectBriefByIds(authorIds).forEach(u -> authorNames.put(u.getId(), u.getUsername()));
+            } catch (Exception e) {
+                log.warn("批量获取提问者用户名失败", e);
+            }
+        }
+
+        List<ScoredQuestion> scoredList = new ArrayList<>(hits.size());
+        for (QuestionHit hit : hits) {
+            QuestionSummary summary = summaries.get(hit.questionId());
+            if (summary == null) continue; // ES 中存在但 MongoDB 已删除
+            ScoredQuestion s = new ScoredQuestion(hit.questionId(), hit.score());
+            s.vo = convert.toQuestionVO(summary, authorNames.get(summary.getAuthorId()));
+            s.rankScore = s.score * 4 +
+                    summary.getLikeCount() * 2 +
+                    summary.getFavoriteCount() * 3 +
+                    summary.getAnswerCount() +
+                    recencyScore(summary.getLastActivityAt());
+            scoredList.add(s);
+        }
+
+        // 综合排序：ES score + 点赞/收藏/回答数 + 最新活跃时间
+        scoredList.sort((a, b) -> Double.compare(b.rankScore, a.rankScore));
+
+        return scoredList.stream()
+                .map(s -> s.vo)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 预热热门关键词；已有当前代数的缓存时跳过，返回是否实际查询了 ES
+     */
+    public boolean prewarm(String rawKeyword) {
+        String keyword = SearchResultCache.normalize(rawKeyword);
+        if (keyword.isEmpty()) return false;
+
+        String cacheKey = searchResultCache.key(INDEX, keyword);
+        SearchResultCache.Lookup<List<QuestionHit>> lookup = searchResultCache.peek(INDEX, cacheKey, HITS_TYPE);
+        if (lookup.hit()) return false;
+        searchResultCache.put(INDEX, cacheKey, lookup.generation(), queryHits(keyword));
+        return true;
+    }
+
+    // ES 搜索，只获取 questionId 与相关度分数
+    private List<QuestionHit> queryHits(String keyword) {
+        List<QuestionHit> hits = new ArrayList<>();
         try {
-            var response = esClient.search(s -> s
-                            .index("questions")
+            var response = searchClient.search("questions.search", s -> s
+                            .index(INDEX)
                             .size(30)
                             .query(q -> q
                                     .multiMatch(m -> m
@@ -60,112 +184,74 @@ public class SearchQAService {
                 String questionId = (String) src.get("questionId");
 
                 double score = hit.score() != null ? hit.score() : 0;
-                scoredList.add(new ScoredQuestion(questionId, score));
+                hits.add(new QuestionHit(questionId, score));
             });
 
         } catch (IOException e) {
             throw new RuntimeException("ES 搜索失败", e);
         }
-
-        if (scoredList.isEmpty()) return Collections.emptyList();
-
-        // 批量加载问答数据（Redis → MongoDB）
-        List<String> qids = scoredList.stream()
-                .map(s -> s.questionId)
-                .toList();
-
-        Map<String, QuestionDO> detailMap = loadQuestionDetailBatch(qids);
-
-        // 转换成 VO，并计算最新活跃时间
-        scoredList.forEach(s -> {
-            QuestionDO data = detailMap.get(s.questionId);
-            if (data != null) {
-                s.vo = convert.toQuestionVO(data);
-                s.updatedAt = getLatestActivity(data); // 赋值最新活跃时间
-            }
-        });
-
-        // 综合排序：ES score + 点赞/收藏/回答数
-        scoredList.sort((a, b) -> {
-            double sa = a.score * 4 +
-                    a.vo.getLikeCount() * 2 +
-                    a.vo.getFavoriteCount() * 3+
-                    a.vo.getAnswers().size() +
-                    recencyScore(a.updatedAt);;
-
-            double sb = b.score * 4 +
-                    b.vo.getLikeCount() * 2 +
-                    b.vo.getFavoriteCount() * 3 +
-                    b.vo.getAnswers().size() +
-                    recencyScore(b.updatedAt);;
-
-            return Double.compare(sb, sa);
-        });
-
-        // 返回 QuestionVO 列表
-        return scoredList.stream()
-                .map(s -> s.vo)
-                .collect(Collectors.toList());
+        return hits;
     }
 
-    // 批量加载 Redis → MongoDB
-    private Map<String, QuestionDO> loadQuestionDetailBatch(List<String> ids) {
-        Map<String, QuestionDO> result = new HashMap<>();
+    /**
+     * 批量加载问题摘要：一次 MGET；未命中的一次 MongoDB $in 查询（只投影摘要需要的字段，
+     * 回答树只取各层 createdAt），再用一次 pipeline 回写缓存
+     */
+    private Map<String, QuestionSummary> loadQuestionSummaryBatch(List<String> ids) {
+        Map<String, QuestionSummary> result = new HashMap<>();
+        if (ids.isEmpty()) return result;
 
-        for (String qid : ids) {
-            String key = REDIS_KEY_PREFIX + qid;
+        List<String> keys = ids.stream().map(id -> SUMMARY_KEY_PREFIX + id).toList();
+        List<String> cached = null;
+        try {
+            cached = redis.opsForValue().multiGet(keys);
+        } catch (Exception e) {
+            log.warn("批量读取问题摘要缓存失败，降级读取 MongoDB", e);
+        }
 
-            try {
-                // 1. 先从 Redis 获取
-                String json = redis.opsForValue().get(key);
-                if (json != null) {
-                    // Redis 命中，解析 JSON
-                    QuestionDO q = objectMapper.readValue(json, QuestionDO.class);
-                    result.put(qid, q);
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            String json = cached != null ? cached.get(i) : null;
+            if (json != null) {
+                try {
+                    result.put(ids.get(i), objectMapper.readValue(json, QuestionSummary.class));
                     continue;
+                } catch (Exception e) {
+                    log.warn("问题摘要缓存解析失败 qid={}", ids.get(i), e);
                 }
+            }
+            missing.add(ids.get(i));
+        }
+        if (missing.isEmpty()) return result;
 
-                // 2. Redis 未命中 → MongoDB 查询
-                QuestionDO db = questionRepository.findById(qid).orElse(null);
-                if (db != null) {
-                    // 写入 Redis
-                    String dbJson = objectMapper.writeValueAsString(db);
-                    redis.opsForValue().set(key, dbJson, Duration.ofHours(2));
-                    result.put(qid, db);
-                }
+        Query query = new Query(Criteria.where("questionId").in(missing));
+        query.fields().include(SUMMARY_FIELDS);
+        List<QuestionDO> docs = mongoTemplate.find(query, QuestionDO.class);
 
+        Map<byte[], byte[]> writes = new HashMap<>();
+        for (QuestionDO doc : docs) {
+            QuestionSummary summary = QuestionSummary.from(doc);
+            result.put(summary.getQuestionId(), summary);
+            try {
+                writes.put((SUMMARY_KEY_PREFIX + summary.getQuestionId()).getBytes(StandardCharsets.UTF_8),
+                        objectMapper.writeValueAsBytes(summary));
             } catch (Exception e) {
-                log.error("加载问题详情失败 qid={}", qid, e);
+                log.warn("问题摘要序列化失败 qid={}", summary.getQuestionId(), e);
             }
         }
 
-        return result;
-    }
-
-    // 提问、回答、评论、回复中最晚的时间
-    private LocalDateTime getLatestActivity(QuestionDO q) {
-        if (q == null) return null;
-
-        LocalDateTime latest = q.getCreatedAt();
-
-        for (var ans : q.getAnswers()) {
-            latest = max(latest, ans.getCreatedAt());
-
-            for (var c : ans.getComments()) {
-                latest = max(latest, c.getCreatedAt());
-
-                for (var r : c.getReplies()) {
-                    latest = max(latest, r.getCreatedAt());
-                }
+        if (!writes.isEmpty()) {
+            try {
+                redis.executePipelined((RedisCallback<Object>) connection -> {
+                    writes.forEach((key, value) -> connection.stringCommands()
+                            .set(key, value, Expiration.from(SUMMARY_TTL), RedisStringCommands.SetOption.upsert()));
+                    return null;
+                });
+            } catch (Exception e) {
+                log.warn("回写问题摘要缓存失败", e);
             }
         }
-        return latest;
-    }
-
-    private LocalDateTime max(LocalDateTime a, LocalDateTime b) {
-        if (a == null) return b;
-        if (b == null) return a;
-        return a.isAfter(b) ? a : b;
+        return result;
     }
 
     private double recencyScore(LocalDateTime time) {
@@ -176,11 +262,14 @@ public class SearchQAService {
         return 1 / (days + 1);
     }
 
+    /** 缓存中的一条 ES 命中 */
+    public record QuestionHit(String questionId, double score) {}
+
     private static class ScoredQuestion {
         String questionId;
         double score;
         QuestionVO vo;
-        LocalDateTime updatedAt;
+        double rankScore;
 
         ScoredQuestion(String qid, double score) {
             this.questionId = qid;
@@ -0,0 +1,46 @@
+package com.project.login.service.search;
+
+import com.project.login.service.flink.userbahavior.UserSearchService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * 近期搜索词统计（结果缓存预热、搜索建议共用）：
+ * XREVRANGE 读取 user_search_stream 末尾 sampleSize 条，按规范化关键词计数。只读，不影响 Flink 作业的消费。
+ */
+@Component
+@RequiredArgsConstructor
+public class SearchQueryLog {
+
+    private final StringRedisTemplate redisTemplate;
+
+    public Map<String, Long> recentKeywordCounts(int sampleSize) {
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().reverseRange(
+                UserSearchService.STREAM_KEY, Range.unbounded(), Limit.limit().count(sampleSize));
+        if (records == null || records.isEmpty()) return Collections.emptyMap();
+
+        Map<String, Long> counts = new HashMap<>();
+        for (MapRecord<String, Object, Object> record : records) {
+            Object keyword = record.getValue().get("keyword");
+            if (keyword == null) continue;
+            String normalized = SearchResultCache.normalize(keyword.toString());
+            if (!normalized.isEmpty()) counts.merge(normalized, 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    /** 出现次数最多的 topK 个关键词，按次数降序 */
+    public List<String> topKeywords(int sampleSize, int topK) {
+        return recentKeywordCounts(sampleSize).entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(topK)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+}
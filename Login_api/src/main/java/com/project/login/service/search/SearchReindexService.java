@@ -0,0 +1,331 @@
+package com.project.login.service.search;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import com.project.login.mapper.NoteMapper;
+import com.project.login.mapper.NoteStatsMapper;
+import com.project.login.model.dataobject.NoteDO;
+import com.project.login.model.dataobject.NoteStatsDO;
+import com.project.login.model.dataobject.QuestionDO;
+import com.project.login.model.event.NoteContentEvent;
+import com.project.login.model.vo.ReindexProgressVO;
+import com.project.login.service.minio.MinioService;
+import com.project.login.service.noting.ContentSummaryService;
+import com.project.login.service.noting.NoteEventPublisher;
+import com.project.login.service.rabbitmq.consumer.NoteEsConsumer;
+import com.project.login.service.rabbitmq.consumer.QuestionEsConsumer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 管理员触发的全量重建索引（notes 从 MySQL + MinIO，只含已发布且未被标记的笔记；questions 从 MongoDB）：
+ *  1) 按 resources/es/{alias}-index.json 建版本化新索引 {alias}_v{时间戳}（导入期间关闭 refresh、0 副本）
+ *  2) 登记影子索引，期间 NoteEsConsumer / QuestionEsConsumer / 统计同步的增量同时写入新索引
+ *  3) 键集分页流式读取源数据，摘要提取在有界线程池内并行，每页一次 _bulk
+ *  4) 恢复 refresh 后原子切换别名（旧的具体索引在同一请求中删除，旧的版本化索引保留以便回滚）
+ * 每个别名同时只允许一个任务；进度、速率、ETA 通过 progress 查询。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SearchReindexService {
+
+    public static final String NOTES = NoteEsConsumer.INDEX;
+    public static final String QUESTIONS = QuestionEsConsumer.INDEX;
+
+    private static final DateTimeFormatter VERSION_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final DateTimeFormatter ES_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
+
+    private final ElasticsearchClient esClient;
+    private final EsBulkIndexer esBulkIndexer;
+    private final NoteMapper noteMapper;
+    private final NoteStatsMapper noteStatsMapper;
+    private final MinioService minioService;
+    private final ContentSummaryService contentSummaryService;
+    private final NoteEventPublisher noteEventPublisher;
+    private final MongoTemplate mongoTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final SearchResultCache searchResultCache;
+
+    @Value("${reindex.batch-size:500}")
+    private int batchSize;
+
+    @Value("${reindex.parallelism:8}")
+    private int parallelism;
+
+    @Value("${reindex.replicas:0}")
+    private int replicas;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    private ExecutorService jobRunner;
+    private ExecutorService extractPool;
+
+    @PostConstruct
+    void init() {
+        jobRunner = Executors.newFixedThreadPool(2);
+        // 有界队列 + CallerRuns：摘要提取跟不上时由分页线程自己执行，限制内存中的待处理文件数
+        extractPool = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(parallelism * 4), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        jobRunner.shutdownNow();
+        extractPool.shutdownNow();
+    }
+
+    /**
+     * 启动重建；同一别名已有运行中的任务时直接返回其进度
+     */
+    public ReindexProgressVO start(String alias) {
+        if (!NOTES.equals(alias) && !QUESTIONS.equals(alias)) {
+            throw new IllegalArgumentException("不支持重建的索引: " + alias);
+        }
+
+        Job job = new Job(alias, alias + "_v" + LocalDateTime.now().format(VERSION_FORMAT));
+        Job existing = jobs.compute(alias, (k, current) ->
+                current != null && "RUNNING".equals(current.status) ? current : job);
+        if (existing != job) return existing.snapshot();
+
+        jobRunner.submit(() -> run(job));
+        return job.snapshot();
+    }
+
+    public ReindexProgressVO progress(String alias) {
+        Job job = jobs.get(alias);
+        return job == null ? null : job.snapshot();
+    }
+
+    private void run(Job job) {
+        try {
+            createIndex(job);
+            redisTemplate.opsForValue().set(EsBulkIndexer.SHADOW_KEY_PREFIX + job.alias, job.newIndex, 1, TimeUnit.DAYS);
+
+            if (NOTES.equals(job.alias)) {
+                reindexNotes(job);
+            } else {
+                reindexQuestions(job);
+            }
+
+            finishIndex(job);
+            swapAlias(job);
+            job.status = "SWAPPED";
+            log.info("Reindex {} -> {} finished: {} docs, {} failed", job.alias, job.newIndex, job.processed.get(), job.failed.get());
+        } catch (Exception e) {
+            job.status = "FAILED";
+            job.error = e.getMessage();
+            log.error("Reindex {} -> {} failed", job.alias, job.newIndex, e);
+            try {
+                esClient.indices().delete(d -> d.index(job.newIndex).ignoreUnavailable(true));
+            } catch (Exception ex) {
+                log.warn("Failed to drop unfinished index {}", job.newIndex, ex);
+            }
+        } finally {
+            redisTemplate.delete(EsBulkIndexer.SHADOW_KEY_PREFIX + job.alias);
+            job.finishedAt = LocalDateTime.now();
+        }
+    }
+
+    private void createIndex(Job job) throws Exception {
+        try (InputStream body = new ClassPathResource("es/" + job.alias + "-index.json").getInputStream()) {
+            esClient.indices().create(c -> c.index(job.newIndex).withJson(body));
+        }
+    }
+
+    // ================= notes =================
+
+    private void reindexNotes(Job job) throws Exception {
+        // 与 getAllNotes / getNoteCount 一致：索引中有文档即视为已发布，草稿与审核中的笔记不能进入新索引
+        Long total = noteMapper.countPublished();
+        job.total = total == null ? 0 : total;
+
+        long afterId = 0;
+        while (true) {
+            List<NoteDO> rows = noteMapper.selectPublishedAfterId(afterId, batchSize);
+            if (rows.isEmpty()) break;
+            afterId = rows.get(rows.size() - 1).getId();
+
+            Map<Long, NoteStatsDO> stats = new HashMap<>();
+            noteStatsMapper.getByIds(rows.stream().map(NoteDO::getId).toList())
+                    .forEach(s -> stats.put(s.getNoteId(), s));
+
+            List<CompletableFuture<EsBulkIndexer.Action>> futures = new ArrayList<>(rows.size());
+            for (NoteDO row : rows) {
+                futures.add(CompletableFuture.supplyAsync(() -> noteAction(row, stats.get(row.getId())), extractPool));
+            }
+            List<EsBulkIndexer.Action> actions = new ArrayList<>(rows.size());
+            for (CompletableFuture<EsBulkIndexer.Action> f : futures) {
+                actions.add(f.get());
+            }
+
+            index(job, NoteEsConsumer.DEAD_LETTER_QUEUE, actions);
+
+            // 正文分块较慢，交给 NoteContentIndexConsumer 异步重建（此时影子索引已登记，写入会落到新索引）
+            for (NoteDO row : rows) {
+                noteEventPublisher.sendNoteContentEvent(new NoteContentEvent(row.getId(), row.getFilename()));
+            }
+        }
+    }
+
+    private EsBulkIndexer.Action noteAction(NoteDO row, NoteStatsDO stats) {
+        Map<String, Object> doc = new HashMap<>();
+        doc.put("id", row.getId());
+        doc.put("title", row.getTitle());
+        Map<String, Object> suggest = SuggestService.suggestInput(row.getTitle(), null);
+        if (suggest != null) doc.put(SuggestService.SUGGEST_FIELD, suggest);
+        try {
+            byte[] bytes = minioService.download(row.getFilename());
+            doc.put("contentSummary", contentSummaryService.extractContentSummary(bytes, row.getFilename()));
+        } catch (Exception e) {
+            // 文件缺失或无法解析时只索引标题，不中断整个任务
+            log.warn("Reindex: failed to extract summary for note {} ({}): {}", row.getId(), row.getFilename(), e.getMessage());
+        }
+        if (stats != null) {
+            doc.put("authorName", stats.getAuthorName());
+            doc.put("views", stats.getViews());
+            doc.put("likes", stats.getLikes());
+            doc.put("favorites", stats.getFavorites());
+            doc.put("comments", stats.getComments());
+            if (stats.getLastActivityAt() != null) doc.put("updatedAt", stats.getLastActivityAt().format(ES_DATE));
+        }
+        return EsBulkIndexer.Action.upsert(String.valueOf(row.getId()), doc);
+    }
+
+    // ================= questions =================
+
+    private void reindexQuestions(Job job) {
+        job.total = mongoTemplate.count(new Query(), QuestionDO.class);
+
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "_id")).cursorBatchSize(batchSize);
+        query.fields().include("title", "content", "tags");
+
+        List<EsBulkIndexer.Action> actions = new ArrayList<>(batchSize);
+        try (Stream<QuestionDO> stream = mongoTemplate.stream(query, QuestionDO.class)) {
+            Iterator<QuestionDO> it = stream.iterator();
+            while (it.hasNext()) {
+                QuestionDO q = it.next();
+                Map<String, Object> doc = new HashMap<>();
+                doc.put("questionId", q.getQuestionId());
+                doc.put("title", q.getTitle());
+                doc.put("content", q.getContent());
+                doc.put("tags", String.join(",", q.getTags() == null ? List.of() : q.getTags()));
+                Map<String, Object> suggest = SuggestService.suggestInput(q.getTitle(), q.getTags());
+                if (suggest != null) doc.put(SuggestService.SUGGEST_FIELD, suggest);
+                actions.add(EsBulkIndexer.Action.upsert(q.getQuestionId(), doc));
+
+                if (actions.size() == batchSize) {
+                    index(job, QuestionEsConsumer.DEAD_LETTER_QUEUE, actions);
+                    actions = new ArrayList<>(batchSize);
+                }
+            }
+        }
+        index(job, QuestionEsConsumer.DEAD_LETTER_QUEUE, actions);
+    }
+
+    // ================= common =================
+
+    private void index(Job job, String deadLetterQueue, List<EsBulkIndexer.Action> actions) {
+        if (actions.isEmpty()) return;
+        int indexed = esBulkIndexer.apply(job.newIndex, deadLetterQueue, actions);
+        job.processed.addAndGet(actions.size());
+        job.failed.addAndGet(actions.size() - indexed);
+    }
+
+    /** 导入完成：恢复 refresh 与副本数并刷新，使新索引可查询 */
+    private void finishIndex(Job job) throws Exception {
+        esClient.indices().putSettings(p -> p
+                .index(job.newIndex)
+                .settings(s -> s
+                        .refreshInterval(t -> t.time("1s"))
+                        .numberOfReplicas(String.valueOf(replicas))));
+        esClient.indices().refresh(r -> r.index(job.newIndex));
+    }
+
+    /**
+     * 原子切换别名：别名已存在时从旧索引上移除；别名同名的具体索引（首次迁移）在同一请求中删除
+     */
+    private void swapAlias(Job job) throws Exception {
+        String alias = job.alias;
+        List<String> aliasedIndices = new ArrayList<>();
+        boolean concreteIndex = false;
+
+        if (esClient.indices().existsAlias(e -> e.name(alias)).value()) {
+            aliasedIndices.addAll(esClient.indices().getAlias(g -> g.name(alias)).result().keySet());
+        } else if (esClient.indices().exists(e -> e.index(alias)).value()) {
+            concreteIndex = true;
+        }
+
+        boolean removeConcrete = concreteIndex;
+        esClient.indices().updateAliases(u -> {
+            u.actions(a -> a.add(add -> add.index(job.newIndex).alias(alias)));
+            for (String old : aliasedIndices) {
+                u.actions(a -> a.remove(r -> r.index(old).alias(alias)));
+            }
+            if (removeConcrete) {
+                u.actions(a -> a.removeIndex(r -> r.index(alias)));
+            }
+            return u;
+        });
+        searchResultCache.bump(alias);
+        log.info("Alias {} now points to {} (previous: {})", alias, job.newIndex,
+                removeConcrete ? "concrete index removed" : aliasedIndices);
+    }
+
+    private static final class Job {
+        final String alias;
+        final String newIndex;
+        final LocalDateTime startedAt = LocalDateTime.now();
+        final long startNanos = System.nanoTime();
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        volatile long total;
+        volatile String status = "RUNNING";
+        volatile String error;
+        volatile LocalDateTime finishedAt;
+
+        Job(String alias, String newIndex) {
+            this.alias = alias;
+            this.newIndex = newIndex;
+        }
+
+        ReindexProgressVO snapshot() {
+            long done = processed.get();
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            double rate = seconds > 0 ? done / seconds : 0;
+            Long eta = null;
+            if ("RUNNING".equals(status) && rate > 0 && total >= done) {
+                eta = (long) Math.ceil((total - done) / rate);
+            }
+            return ReindexProgressVO.builder()
+                    .alias(alias)
+                    .newIndex(newIndex)
+                    .status(status)
+                    .total(total)
+                    .processed(done)
+                    .failed(failed.get())
+                    .docsPerSecond(Math.round(rate * 10) / 10.0)
+                    .etaSeconds(eta)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .error(error)
+                    .build();
+        }
+    }
+}
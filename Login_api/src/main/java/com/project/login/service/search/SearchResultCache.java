@@ -0,0 +1,148 @@
+package com.project.login.service.search;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 搜索结果缓存（笔记 / 问答共用）：
+ *  - key = search_cache:{index}:{md5(规范化关键词 | 条件 | 分页)}，value = "{代数}|{json}"，短 TTL
+ *  - 每个索引一个代数计数器 search_cache:gen:{index}，ES 写入（NoteEsConsumer / QuestionEsConsumer /
+ *    正文索引 / 重建切换别名）后 INCR；读取时一次 MGET 同时取代数与缓存，代数不一致即视为未命中
+ *  - 写入使用查询前读到的代数，查询期间发生的写入会让这次结果直接作废
+ * 缓存只保存排序后的 id / 分数与静态字段，统计数据由调用方在读取时重新填充。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SearchResultCache {
+
+    private static final String KEY_PREFIX = "search_cache:";
+    private static final String GEN_KEY_PREFIX = "search_cache:gen:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${search.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${search.cache.ttl-seconds:30}")
+    private long ttlSeconds;
+
+    private final Map<String, Counter> hits = new ConcurrentHashMap<>();
+    private final Map<String, Counter> misses = new ConcurrentHashMap<>();
+
+    /** 一次查找的结果；value 为 null 表示未命中，generation 用于随后的 put */
+    public record Lookup<T>(T value, long generation) {
+        public boolean hit() {
+            return value != null;
+        }
+    }
+
+    @PostConstruct
+    void initMetrics() {
+        for (String index : List.of("notes", "questions")) {
+            meterRegistry.gauge("search.cache.hit_ratio", Tags.of("index", index), this, c -> c.hitRatio(index));
+        }
+    }
+
+    /**
+     * 关键词规范化：全角转半角（NFKC）、小写、去首尾空白、连续空白合一。
+     * 调用方应同时用规范化后的关键词查询 ES，保证同一个 key 对应同一份结果。
+     */
+    public static String normalize(String keyword) {
+        if (keyword == null) return "";
+        return Normalizer.normalize(keyword, Normalizer.Form.NFKC)
+                .toLowerCase(Locale.ROOT)
+                .trim()
+                .replaceAll("\\s+", " ");
+    }
+
+    public String key(String index, Object... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (Object part : parts) {
+            sb.append(part == null ? "" : part).append('\u0001');
+        }
+        return KEY_PREFIX + index + ":" + DigestUtils.md5DigestAsHex(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public <T> Lookup<T> get(String index, String key, TypeReference<T> type) {
+        return lookup(index, key, type, true);
+    }
+
+    /** 同 get，但不计入命中率（预热用） */
+    public <T> Lookup<T> peek(String index, String key, TypeReference<T> type) {
+        return lookup(index, key, type, false);
+    }
+
+    private <T> Lookup<T> lookup(String index, String key, TypeReference<T> type, boolean record) {
+        if (!enabled) return new Lookup<>(null, -1);
+        try {
+            List<String> values = redisTemplate.opsForValue().multiGet(List.of(GEN_KEY_PREFIX + index, key));
+            long generation = values == null || values.get(0) == null ? 0 : Long.parseLong(values.get(0));
+            String cached = values == null ? null : values.get(1);
+
+            if (cached != null) {
+                int sep = cached.indexOf('|');
+                if (sep > 0 && Long.parseLong(cached.substring(0, sep)) == generation) {
+                    if (record) counter(hits, index, "hit").increment();
+                    return new Lookup<>(objectMapper.readValue(cached.substring(sep + 1), type), generation);
+                }
+            }
+            if (record) counter(misses, index, "miss").increment();
+            return new Lookup<>(null, generation);
+        } catch (Exception e) {
+            log.warn("Failed to read search cache {}", key, e);
+            if (record) counter(misses, index, "miss").increment();
+            return new Lookup<>(null, -1);
+        }
+    }
+
+    public void put(String index, String key, long generation, Object value) {
+        if (!enabled || generation < 0 || value == null) return;
+        try {
+            redisTemplate.opsForValue().set(key, generation + "|" + objectMapper.writeValueAsString(value),
+                    ttlSeconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("Failed to write search cache {}", key, e);
+        }
+    }
+
+    /** 索引内容变化：使该索引的全部缓存失效（旧代数的 key 随 TTL 过期） */
+    public void bump(String index) {
+        try {
+            redisTemplate.opsForValue().increment(GEN_KEY_PREFIX + index);
+        } catch (Exception e) {
+            log.warn("Failed to bump search cache generation for {}", index, e);
+        }
+    }
+
+    private Counter counter(Map<String, Counter> counters, String index, String result) {
+        return counters.computeIfAbsent(index, i ->
+                meterRegistry.counter("search.cache.requests", "index", i, "result", result));
+    }
+
+    private double hitRatio(String index) {
+        double hit = counter(hits, index, "hit").count();
+        double total = hit + counter(misses, index, "miss").count();
+        return total == 0 ? 0 : hit / total;
+    }
+}
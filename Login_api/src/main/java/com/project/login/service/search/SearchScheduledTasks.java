@@ -0,0 +1,33 @@
+package com.project.login.service.search;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class SearchScheduledTasks {
+
+    private final NoteStatsIndexSyncService noteStatsIndexSyncService;
+    private final SearchCachePrewarmer searchCachePrewarmer;
+    private final SuggestService suggestService;
+
+    // 每分钟把变更过的笔记统计部分更新到 ES（排序用，允许分钟级延迟）
+    @Scheduled(fixedDelayString = "${search.stats-sync.interval-ms:60000}")
+    public void syncNoteStatsToEs() {
+        noteStatsIndexSyncService.syncChangedStats();
+    }
+
+    // 按近期搜索记录预热热门关键词的第一页（间隔应略小于 search.cache.ttl-seconds）
+    @Scheduled(fixedDelayString = "${search.cache.prewarm.interval-ms:20000}")
+    public void prewarmSearchCache() {
+        searchCachePrewarmer.prewarm();
+    }
+
+    // 重建输入联想的热门搜索词前缀树（首次构建在 SuggestService 启动完成时）
+    @Scheduled(fixedDelayString = "${search.suggest.refresh-interval-ms:60000}",
+            initialDelayString = "${search.suggest.refresh-interval-ms:60000}")
+    public void refreshSuggestQueryIndex() {
+        suggestService.refreshQueryIndex();
+    }
+}
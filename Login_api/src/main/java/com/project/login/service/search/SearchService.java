@@ -1,205 +1,355 @@
 package com.project.login.service.search;
 
-import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.Time;
+import co.elastic.clients.elasticsearch._types.query_dsl.ChildScoreMode;
+import co.elastic.clients.elasticsearch._types.query_dsl.FieldValueFactorModifier;
+import co.elastic.clients.elasticsearch._types.query_dsl.FunctionBoostMode;
+import co.elastic.clients.elasticsearch._types.query_dsl.FunctionScore;
+import co.elastic.clients.elasticsearch._types.query_dsl.FunctionScoreMode;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.InnerHitsResult;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.project.login.convert.SearchConvert;
-import com.project.login.mapper.NoteStatsMapper;
 import com.project.login.model.dataobject.NoteStatsDO;
 import com.project.login.model.dto.search.NoteSearchDTO;
+import com.project.login.model.vo.NoteSearchPageVO;
 import com.project.login.model.vo.NoteSearchVO;
+import com.project.login.service.notestats.NoteStatsReader;
 import lombok.RequiredArgsConstructor;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.data.redis.core.HashOperations;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+/**
+ * 笔记搜索。综合排序全部在 ES 内完成（function_score）：
+ *  BM25 + Σ weight × log1p(统计字段) + recencyWeight × gauss(updatedAt)
+ * 统计字段由 NoteStatsIndexSyncService 定期冗余到 notes 索引，搜索时不再逐条查 Redis / MySQL。
+ * 分页使用 search_after（排序键：_score desc, id asc），游标为上一页最后一条的排序值。
+ * 有下一页时打开 point-in-time 快照并写入游标，后续翻页都在该快照上执行，
+ * 统计同步对 function_score 输入的改写不会让翻页漏掉或重复结果；快照过期（search.page.keep-alive 内未翻页）
+ * 后退化为无快照的 search_after，此时翻页结果是尽力而为的。
+ * 正文以 nested 字段 chunks 索引（NoteContentIndexConsumer），命中的正文块通过 inner_hits 高亮返回。
+ * 每页结果经 SearchResultCache 短时缓存，统计字段每次读取时重新填充。
+ */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class SearchService {
 
-    private final ElasticsearchClient esClient;
+    private static final String INDEX = "notes";
+    private static final int DEFAULT_SIZE = 30;
+    private static final int MAX_SIZE = 100;
+    private static final String CHUNKS = "chunks";
+    private static final int MAX_HIGHLIGHTS = 3;
+
+    private static final TypeReference<NoteSearchPageVO> PAGE_TYPE = new TypeReference<>() {};
+
+    private final InstrumentedSearchClient searchClient;
+    private final SearchResultCache searchResultCache;
+    private final NoteStatsReader noteStatsReader;
 
     @Qualifier("searchConvert")
     private final SearchConvert convert;
 
-    private final NoteStatsMapper noteStatsMapper;
+    @Value("${search.ranking.views-weight:1.0}")
+    private double viewsWeight;
 
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final StringRedisTemplate redis;
+    @Value("${search.ranking.likes-weight:1.5}")
+    private double likesWeight;
 
-    private static final String REDIS_KEY_PREFIX = "note_stats:";
+    @Value("${search.ranking.favorites-weight:2.0}")
+    private double favoritesWeight;
 
-    public List<NoteSearchVO> searchNotes(NoteSearchDTO dto) {
-        String keyword = dto.getKeyword();
-        List<ScoredNote> scoredNotes = new ArrayList<>();
+    @Value("${search.ranking.comments-weight:1.5}")
+    private double commentsWeight;
 
-        try {
-            var response = esClient.search(s -> s
-                            .index("notes")
-                            .size(30)
-                            .query(q -> q
-                                    .multiMatch(m -> m
-                                            .query(keyword)
-                                            .fields("title^2", "contentSummary")
-                                    )
-                            ),
-                    Object.class
-            );
+    @Value("${search.ranking.recency-weight:2.0}")
+    private double recencyWeight;
 
-            response.hits().hits().forEach(hit -> {
-                NoteSearchVO vo = convert.toSearchVO(hit.source());
-                double score = hit.score() != null ? hit.score() : 0.0;
+    @Value("${search.ranking.recency-scale:7d}")
+    private String recencyScale;
 
-                // 默认 contentSummary 为 title
-                if (vo.getContentSummary() == null) {
-                    vo.setContentSummary(vo.getTitle());
-                }
+    @Value("${search.page.keep-alive:2m}")
+    private String pitKeepAlive;
 
-                scoredNotes.add(new ScoredNote(vo, score));
-            });
+    public NoteSearchPageVO searchNotes(NoteSearchDTO dto) {
+        int size = dto.getSize() == null ? DEFAULT_SIZE : Math.min(Math.max(dto.getSize(), 1), MAX_SIZE);
+        String keyword = SearchResultCache.normalize(dto.getKeyword());
 
-        } catch (IOException e) {
-            throw new RuntimeException("搜索失败", e);
+        // === 1) 结果缓存（命中时只重新填充统计） ===
+        String cacheKey = searchResultCache.key(INDEX, keyword, size, dto.getCursor());
+        SearchResultCache.Lookup<NoteSearchPageVO> cached = searchResultCache.get(INDEX, cacheKey, PAGE_TYPE);
+        if (cached.hit()) {
+            fillStats(cached.value().getNotes());
+            return cached.value();
         }
 
-        if (scoredNotes.isEmpty()) return Collections.emptyList();
-
-        // ==========================
-        // 批量加载 Redis 统计数据
-        // ==========================
-        List<Long> noteIds = scoredNotes.stream()
-                .map(n -> n.vo.getNoteId())
-                .collect(Collectors.toList());
-
-        Map<Long, NoteStatsDO> statsMap = loadStatsFromRedisThenMySQL(noteIds);
-
-        // 将统计数据写入 VO
-        scoredNotes.forEach(sn -> {
-            NoteStatsDO stats = statsMap.get(sn.vo.getNoteId());
-            sn.vo.setAuthorName(stats.getAuthorName());
-            sn.vo.setViewCount(stats.getViews().intValue());
-            sn.vo.setLikeCount(stats.getLikes().intValue());
-            sn.vo.setFavoriteCount(stats.getFavorites().intValue());
-            sn.vo.setCommentCount(stats.getComments().intValue());
-            sn.updatedAt = stats.getUpdatedAt();
-            sn.vo.setUpdatedAt(stats.getUpdatedAt());
-        });
-
-
-        // ==========================
-        // 综合排序
-        // ==========================
-        scoredNotes.sort((a, b) -> {
-            double scoreA = a.score
-                    + a.vo.getViewCount() + a.vo.getLikeCount()
-                    + a.vo.getFavoriteCount() + a.vo.getCommentCount()
-                    + recencyScore(a.updatedAt);
-            double scoreB = b.score
-                    + b.vo.getViewCount() + b.vo.getLikeCount()
-                    + b.vo.getFavoriteCount() + b.vo.getCommentCount()
-                    + recencyScore(b.updatedAt);
-            return Double.compare(scoreB, scoreA);
-        });
-
-        return scoredNotes.stream().map(sn -> sn.vo).collect(Collectors.toList());
+        // === 2) ES ===
+        NoteSearchPageVO page = query(keyword, size, decodeCursor(dto.getCursor()), true);
+        searchResultCache.put(INDEX, cacheKey, cached.generation(), page);
+        fillStats(page.getNotes());
+        return page;
     }
 
     /**
-     * 批量从 Redis 加载统计数据，如果 Redis 没有则从 MySQL 取并写入 Redis
+     * 预热热门关键词的第一页；已有当前代数的缓存时跳过，返回是否实际查询了 ES。
+     * 预热不打开快照（每轮数十个关键词），预热页的翻页为尽力而为
      */
-    private Map<Long, NoteStatsDO> loadStatsFromRedisThenMySQL(List<Long> ids) {
-        Map<Long, NoteStatsDO> result = new HashMap<>();
-        HashOperations<String, Object, Object> ops = redis.opsForHash();
-
-        for (Long id : ids) {
-            String key = REDIS_KEY_PREFIX + id;
-            Map<Object, Object> map = ops.entries(key);
-
-            if (map == null || map.isEmpty()) {
-                // Redis 未命中 → 查询 MySQL
-                NoteStatsDO db = noteStatsMapper.getById(id);
-                if (db == null) {
-                    db = defaultStats(id);
-                }
-                writeStatsToRedis(key, ops, db);
-                map = ops.entries(key);
+    public boolean prewarm(String rawKeyword) {
+        String keyword = SearchResultCache.normalize(rawKeyword);
+        if (keyword.isEmpty()) return false;
+
+        String cacheKey = searchResultCache.key(INDEX, keyword, DEFAULT_SIZE, null);
+        SearchResultCache.Lookup<NoteSearchPageVO> lookup = searchResultCache.peek(INDEX, cacheKey, PAGE_TYPE);
+        if (lookup.hit()) return false;
+        searchResultCache.put(INDEX, cacheKey, lookup.generation(), query(keyword, DEFAULT_SIZE, Cursor.FIRST, false));
+        return true;
+    }
+
+    private NoteSearchPageVO query(String keyword, int size, Cursor cursor, boolean snapshot) {
+        String pitId = cursor.pitId();
+        SearchResponse<Object> response;
+        try {
+            try {
+                response = execute(keyword, size, cursor.searchAfter(), pitId);
+            } catch (ElasticsearchException e) {
+                // 快照已过期：退化为无快照的 search_after
+                if (pitId == null || e.status() != 404) throw e;
+                log.info("Search PIT expired, continuing without snapshot: {}", e.getMessage());
+                pitId = null;
+                response = execute(keyword, size, cursor.searchAfter(), null);
             }
+        } catch (IOException e) {
+            throw new RuntimeException("搜索失败", e);
+        }
+        List<Hit<Object>> hits = response.hits().hits();
+
+        List<NoteSearchVO> notes = new ArrayList<>(hits.size());
+        for (Hit<Object> hit : hits) {
+            NoteSearchVO vo = convert.toSearchVO(hit.source());
+            if (vo == null) continue;
 
-            result.put(id, mapToStats(id, map));
+            // 默认 contentSummary 为 title
+            if (vo.getContentSummary() == null) {
+                vo.setContentSummary(vo.getTitle());
+            }
+            vo.setHighlights(highlights(hit));
+            notes.add(vo);
         }
 
-        return result;
+        String nextCursor = null;
+        if (hits.size() >= size) {
+            String nextPit = response.pitId() != null ? response.pitId() : snapshot ? openPit() : null;
+            nextCursor = encodeCursor(hits.get(hits.size() - 1).sort(), nextPit);
+        }
+        return NoteSearchPageVO.builder().notes(notes).nextCursor(nextCursor).build();
     }
 
-    private void writeStatsToRedis(String key, HashOperations<String, Object, Object> ops, NoteStatsDO db) {
-        ops.put(key, "authorName", db.getAuthorName());
-        ops.put(key, "views", String.valueOf(db.getViews()));
-        ops.put(key, "likes", String.valueOf(db.getLikes()));
-        ops.put(key, "favorites", String.valueOf(db.getFavorites()));
-        ops.put(key, "comments", String.valueOf(db.getComments()));
-        ops.put(key, "last_activity_at", db.getLastActivityAt() == null ? "" : db.getLastActivityAt().toString());
-        ops.put(key, "version", String.valueOf(db.getVersion()));
-        redisTemplate.expire(key, 7, TimeUnit.DAYS);
+    /**
+     * 带 PIT 时不指定索引，ES 自动追加 _shard_doc 作为第三个排序键（随排序值进入游标）。
+     * id 唯一，_shard_doc 从不参与比较：无快照的排序值进入快照时补 Long.MAX_VALUE，快照过期时去掉
+     */
+    private SearchResponse<Object> execute(String keyword, int size, List<FieldValue> cursorValues, String pitId)
+            throws IOException {
+        List<FieldValue> searchAfter = new ArrayList<>(cursorValues);
+        if (pitId != null && searchAfter.size() == 2) searchAfter.add(FieldValue.of(Long.MAX_VALUE));
+        if (pitId == null && searchAfter.size() > 2) searchAfter.subList(2, searchAfter.size()).clear();
+        return searchClient.search("notes.search", s -> {
+                    if (pitId != null) s.pit(p -> p.id(pitId).keepAlive(t -> t.time(pitKeepAlive)));
+                    else s.index(INDEX);
+                    s.size(size)
+                            .query(rankedQuery(keywordQuery(keyword)))
+                            .source(src -> src.filter(f -> f.excludes(CHUNKS)))
+                            .sort(so -> so.score(sc -> sc.order(SortOrder.Desc)))
+                            .sort(so -> so.field(f -> f.field("id").order(SortOrder.Asc)));
+                    if (!searchAfter.isEmpty()) s.searchAfter(searchAfter);
+                    return s;
+                },
+                Object.class
+        );
     }
 
+    /**
+     * 第一页（或快照过期后）有下一页时才打开快照；打开失败时游标不带快照，翻页仍可继续。
+     * 第一页本身在快照之前执行，两者相隔一次请求的时间。快照不主动关闭，keep-alive 到期由 ES 回收
+     */
+    private String openPit() {
+        try {
+            return searchClient.openPointInTime(INDEX, pitKeepAlive);
+        } catch (IOException | ElasticsearchException e) {
+            log.warn("Failed to open PIT on {}, paging without snapshot", INDEX, e);
+            return null;
+        }
+    }
 
     /**
-     * Redis Hash → DO
+     * 按画像关键词推荐：一次查询完成多关键词召回与排序。
+     * 每个关键词一个 should 子句，boost 为画像权重（归一化到 (0, 1]），同一笔记只出现一次；
+     * excludeIds（已看过 / 自己的笔记）在 ES 内排除。统计字段对结果并集批量填充一次。
      */
-    private NoteStatsDO mapToStats(Long id, Map<Object, Object> map) {
-        NoteStatsDO stats = new NoteStatsDO();
-        stats.setNoteId(id);
-        stats.setAuthorName(map.get("authorName").toString());
-        stats.setViews(Long.parseLong(map.getOrDefault("views", "0").toString()));
-        stats.setLikes(Long.parseLong(map.getOrDefault("likes", "0").toString()));
-        stats.setFavorites(Long.parseLong(map.getOrDefault("favorites", "0").toString()));
-        stats.setComments(Long.parseLong(map.getOrDefault("comments", "0").toString()));
-
-        String updatedStr = map.getOrDefault("updatedAt", "").toString();
-        stats.setUpdatedAt(updatedStr.isEmpty() ? null : LocalDateTime.parse(updatedStr));
-
-        stats.setVersion(Long.parseLong(map.getOrDefault("version", "0").toString()));
-        return stats;
+    public List<NoteSearchVO> recommend(Map<String, Double> weightedKeywords, Collection<Long> excludeIds, int size) {
+        if (weightedKeywords.isEmpty()) return Collections.emptyList();
+        double maxWeight = weightedKeywords.values().stream().mapToDouble(Double::doubleValue).max().orElse(1.0);
+        List<String> excluded = excludeIds.stream().map(String::valueOf).toList();
+
+        Query recall = Query.of(q -> q.bool(b -> {
+            weightedKeywords.forEach((keyword, weight) -> b.should(sh -> sh.multiMatch(m -> m
+                    .query(keyword)
+                    .fields("title^2", "contentSummary")
+                    .boost((float) (maxWeight > 0 ? Math.max(weight, 0) / maxWeight : 1.0)))));
+            if (!excluded.isEmpty()) b.mustNot(mn -> mn.ids(i -> i.values(excluded)));
+            return b.minimumShouldMatch("1");
+        }));
+
+        List<NoteSearchVO> notes;
+        try {
+            var response = searchClient.search("notes.recommend", s -> s
+                            .index(INDEX)
+                            .size(Math.min(Math.max(size, 1), MAX_SIZE))
+                            .query(rankedQuery(recall))
+                            .source(src -> src.filter(f -> f.excludes(CHUNKS))),
+                    Object.class
+            );
+            notes = new ArrayList<>(response.hits().hits().size());
+            for (Hit<Object> hit : response.hits().hits()) {
+                NoteSearchVO vo = convert.toSearchVO(hit.source());
+                if (vo == null) continue;
+                if (vo.getContentSummary() == null) vo.setContentSummary(vo.getTitle());
+                notes.add(vo);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("推荐失败", e);
+        }
+
+        fillStats(notes);
+        return notes;
     }
 
-    private NoteStatsDO defaultStats(Long noteId) {
-        NoteStatsDO stats = new NoteStatsDO();
-        stats.setNoteId(noteId);
-        stats.setAuthorName("未知作者");
-        stats.setViews(0L);
-        stats.setLikes(0L);
-        stats.setFavorites(0L);
-        stats.setComments(0L);
-        stats.setVersion(0L);
-        stats.setUpdatedAt(null);
-        return stats;
+    // 关键词召回：标题 / 摘要 multi_match，或正文块命中（inner_hits 高亮）
+    private Query keywordQuery(String keyword) {
+        return Query.of(q -> q.bool(b -> b
+                .should(sh -> sh.multiMatch(m -> m
+                        .query(keyword)
+                        .fields("title^2", "contentSummary")
+                ))
+                .should(sh -> sh.nested(n -> n
+                        .path(CHUNKS)
+                        .scoreMode(ChildScoreMode.Max)
+                        .query(nq -> nq.match(m -> m.field(CHUNKS + ".text").query(keyword)))
+                        .innerHits(ih -> ih
+                                .size(MAX_HIGHLIGHTS)
+                                .source(src -> src.fetch(false))
+                                .highlight(h -> h.fields(CHUNKS + ".text", hf -> hf
+                                        .fragmentSize(150)
+                                        .numberOfFragments(1))))
+                        .ignoreUnmapped(true)
+                ))
+                .minimumShouldMatch("1")
+        ));
     }
 
-    // 最近更新时间评分
-    private double recencyScore(LocalDateTime updatedAt) {
-        if (updatedAt == null) return 0;
-        long millis = java.time.Duration.between(updatedAt, LocalDateTime.now()).toMillis();
-        double days = millis / 86400000.0;
-        return 1.0 / (days + 1.0);
+    /**
+     * BM25 与热度、时效在 ES 内相加；时效的 origin 取整到小时，翻页期间排序值保持稳定
+     */
+    private Query rankedQuery(Query recall) {
+        return Query.of(q -> q.functionScore(fs -> fs
+                .query(recall)
+                .functions(popularity("views", viewsWeight))
+                .functions(popularity("likes", likesWeight))
+                .functions(popularity("favorites", favoritesWeight))
+                .functions(popularity("comments", commentsWeight))
+                .functions(f -> f
+                        .filter(fq -> fq.exists(e -> e.field("updatedAt")))
+                        .gauss(g -> g.date(d -> d
+                                .field("updatedAt")
+                                .placement(p -> p
+                                        .origin("now/h")
+                                        .scale(Time.of(t -> t.time(recencyScale)))
+                                        .decay(0.5))))
+                        .weight(recencyWeight))
+                .scoreMode(FunctionScoreMode.Sum)
+                .boostMode(FunctionBoostMode.Sum)
+        ));
     }
 
-    private static class ScoredNote {
-        NoteSearchVO vo;
-        double score;
-        LocalDateTime updatedAt;
+    /**
+     * 统计字段以 NoteStatsReader 为准（近端缓存 → Redis pipeline → MySQL），
+     * 比索引中每分钟同步的冗余值更新，缓存命中时也不会返回过期计数
+     */
+    private void fillStats(List<NoteSearchVO> notes) {
+        if (notes == null || notes.isEmpty()) return;
+        Map<Long, NoteStatsDO> statsMap = noteStatsReader.loadStats(
+                notes.stream().map(NoteSearchVO::getNoteId).filter(Objects::nonNull).toList());
+        for (NoteSearchVO vo : notes) {
+            NoteStatsDO stats = statsMap.get(vo.getNoteId());
+            if (stats == null) continue;
+            vo.setAuthorName(stats.getAuthorName());
+            vo.setViewCount(stats.getViews().intValue());
+            vo.setLikeCount(stats.getLikes().intValue());
+            vo.setFavoriteCount(stats.getFavorites().intValue());
+            vo.setCommentCount(stats.getComments().intValue());
+        }
+    }
 
-        ScoredNote(NoteSearchVO vo, double score) {
-            this.vo = vo;
-            this.score = score;
-            this.updatedAt = vo.getUpdatedAt();
+    // 正文命中片段（按块得分排序，至多 MAX_HIGHLIGHTS 条）
+    private List<String> highlights(Hit<Object> hit) {
+        InnerHitsResult inner = hit.innerHits().get(CHUNKS);
+        if (inner == null || inner.hits() == null) return Collections.emptyList();
+
+        List<String> result = new ArrayList<>();
+        for (var chunkHit : inner.hits().hits()) {
+            List<String> fragments = chunkHit.highlight().get(CHUNKS + ".text");
+            if (fragments != null) result.addAll(fragments);
         }
+        return result;
+    }
+
+    // log1p 压缩原始计数，避免浏览量主导排序；字段缺失按 0
+    private FunctionScore popularity(String field, double weight) {
+        return FunctionScore.of(f -> f
+                .fieldValueFactor(v -> v
+                        .field(field)
+                        .modifier(FieldValueFactorModifier.Log1p)
+                        .missing(0.0))
+                .weight(weight));
+    }
+
+    private record Cursor(List<FieldValue> searchAfter, String pitId) {
+        static final Cursor FIRST = new Cursor(Collections.emptyList(), null);
     }
 
+    // 游标格式：score,id[,shardDoc][;pitId]
+    private String encodeCursor(List<FieldValue> sortValues, String pitId) {
+        if (sortValues == null || sortValues.size() < 2) return null;
+        String values = sortValues.stream().map(v -> String.valueOf(v._get())).collect(Collectors.joining(","));
+        return pitId == null ? values : values + ";" + pitId;
+    }
+
+    private Cursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) return Cursor.FIRST;
+        int sep = cursor.indexOf(';');
+        String pitId = sep < 0 ? null : cursor.substring(sep + 1);
+        String[] parts = (sep < 0 ? cursor : cursor.substring(0, sep)).split(",");
+        if (parts.length < 2 || parts.length > 3 || (pitId != null && pitId.isBlank())) {
+            throw new IllegalArgumentException("无效的分页游标: " + cursor);
+        }
+        try {
+            List<FieldValue> values = new ArrayList<>(parts.length);
+            values.add(FieldValue.of(Double.parseDouble(parts[0])));
+            for (int i = 1; i < parts.length; i++) values.add(FieldValue.of(Long.parseLong(parts[i])));
+            return new Cursor(values, pitId);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无效的分页游标: " + cursor, e);
+        }
+    }
 }
@@ -0,0 +1,176 @@
+package com.project.login.service.search;
+
+import co.elastic.clients.elasticsearch._types.mapping.Property;
+import co.elastic.clients.elasticsearch.core.search.CompletionSuggestOption;
+import co.elastic.clients.elasticsearch.core.search.Suggestion;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.project.login.model.vo.SuggestionVO;
+import com.project.login.service.rabbitmq.consumer.NoteEsConsumer;
+import com.project.login.service.rabbitmq.consumer.QuestionEsConsumer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * 搜索框输入联想（/api/v1/search/suggest），两路候选合并：
+ *  1) 热门搜索词：user_search_stream 近期记录构建的内存前缀树（QueryPrefixIndex），定期整体重建
+ *  2) 标题补全：notes / questions 索引的 completion 字段 suggest（笔记标题、问题标题与标签），一次请求查两个索引
+ * 热门搜索词在前（至多一半），其余由标题补全填充；结果按前缀短时缓存在进程内。
+ * ES 不可用或字段尚未映射时只返回热门搜索词，不影响输入。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SuggestService {
+
+    public static final String SUGGEST_FIELD = "suggest";
+    public static final Property SUGGEST_MAPPING = Property.of(p -> p.completion(c -> c.analyzer("standard")));
+
+    public static final int DEFAULT_SIZE = 8;
+    public static final int MAX_SIZE = 20;
+    private static final int MAX_PREFIX_LENGTH = 50;
+    private static final String SUGGESTER = "title-suggest";
+
+    private final InstrumentedSearchClient searchClient;
+    private final SearchQueryLog searchQueryLog;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${search.suggest.sample-size:20000}")
+    private int sampleSize;
+
+    @Value("${search.suggest.max-terms:10000}")
+    private int maxTerms;
+
+    @Value("${search.suggest.cache-ttl-ms:5000}")
+    private long cacheTtlMs;
+
+    private volatile QueryPrefixIndex queryIndex = QueryPrefixIndex.EMPTY;
+    private Cache<String, List<SuggestionVO>> cache;
+    private Timer latency;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(Duration.ofMillis(cacheTtlMs))
+                .build();
+        latency = Timer.builder("search.suggest.latency")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        meterRegistry.gauge("search.suggest.query_terms", this, s -> s.queryIndex.size());
+    }
+
+    public List<SuggestionVO> suggest(String rawPrefix, Integer size) {
+        String prefix = SearchResultCache.normalize(rawPrefix);
+        if (prefix.isEmpty()) return Collections.emptyList();
+        if (prefix.length() > MAX_PREFIX_LENGTH) prefix = prefix.substring(0, MAX_PREFIX_LENGTH);
+        int limit = size == null ? DEFAULT_SIZE : Math.min(Math.max(size, 1), MAX_SIZE);
+
+        String p = prefix;
+        return latency.record(() -> cache.get(p + "\u0001" + limit, k -> compute(p, limit)));
+    }
+
+    private List<SuggestionVO> compute(String prefix, int limit) {
+        List<QueryPrefixIndex.Term> queries = queryIndex.lookup(prefix, limit);
+        List<SuggestionVO> titles = completeTitles(prefix, limit);
+
+        Map<String, SuggestionVO> merged = new LinkedHashMap<>();
+        int querySlots = Math.max(1, limit / 2);
+        for (QueryPrefixIndex.Term term : queries) {
+            if (merged.size() >= querySlots) break;
+            merged.putIfAbsent(term.text(), SuggestionVO.builder().text(term.text()).type("query").build());
+        }
+        for (SuggestionVO title : titles) {
+            if (merged.size() >= limit) break;
+            merged.putIfAbsent(SearchResultCache.normalize(title.getText()), title);
+        }
+        for (QueryPrefixIndex.Term term : queries) {
+            if (merged.size() >= limit) break;
+            merged.putIfAbsent(term.text(), SuggestionVO.builder().text(term.text()).type("query").build());
+        }
+        return List.copyOf(merged.values());
+    }
+
+    private List<SuggestionVO> completeTitles(String prefix, int limit) {
+        try {
+            var response = searchClient.search("suggest.completion", s -> s
+                            .index(NoteEsConsumer.INDEX, QuestionEsConsumer.INDEX)
+                            .ignoreUnavailable(true)
+                            .source(src -> src.fetch(false))
+                            .suggest(sg -> sg.suggesters(SUGGESTER, fs -> fs
+                                    .prefix(prefix)
+                                    .completion(c -> c
+                                            .field(SUGGEST_FIELD)
+                                            .size(limit)
+                                            .skipDuplicates(true)))),
+                    Void.class
+            );
+
+            List<SuggestionVO> result = new ArrayList<>();
+            for (Suggestion<Void> suggestion : response.suggest().getOrDefault(SUGGESTER, List.of())) {
+                if (!suggestion.isCompletion()) continue;
+                for (CompletionSuggestOption<Void> option : suggestion.completion().options()) {
+                    // 别名背后是版本化索引（notes_v...），按前缀区分来源
+                    boolean note = option.index() != null && option.index().startsWith(NoteEsConsumer.INDEX);
+                    result.add(SuggestionVO.builder()
+                            .text(option.text())
+                            .type(note ? "note" : "question")
+                            .id(option.id())
+                            .build());
+                }
+            }
+            return result;
+        } catch (Exception e) {
+            log.debug("Title completion failed for prefix {}: {}", prefix, e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * 启动完成后先构建一次前缀树，之后由 SearchScheduledTasks 定期重建
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildQueryIndexOnStartup() {
+        refreshQueryIndex();
+    }
+
+    /**
+     * 从近期搜索记录重建热门搜索词前缀树（整体替换，读路径无锁）
+     */
+    public void refreshQueryIndex() {
+        try {
+            QueryPrefixIndex rebuilt = QueryPrefixIndex.build(searchQueryLog.recentKeywordCounts(sampleSize), maxTerms, MAX_SIZE);
+            queryIndex = rebuilt;
+            log.debug("Suggest query index rebuilt with {} terms", rebuilt.size());
+        } catch (Exception e) {
+            log.warn("Failed to rebuild suggest query index", e);
+        }
+    }
+
+    /**
+     * completion 字段的写入值；标题与标签各为一个候选，都为空时返回 null
+     */
+    public static Map<String, Object> suggestInput(String title, Collection<String> tags) {
+        LinkedHashSet<String> inputs = new LinkedHashSet<>();
+        if (title != null && !title.isBlank()) inputs.add(title.trim());
+        if (tags != null) {
+            for (String tag : tags) {
+                if (tag != null && !tag.isBlank()) inputs.add(tag.trim());
+            }
+        }
+        if (inputs.isEmpty()) return null;
+        Map<String, Object> value = new HashMap<>();
+        value.put("input", new ArrayList<>(inputs));
+        return value;
+    }
+}
@@ -0,0 +1,2 @@
+-- 统计同步到 ES 时按 (updated_at, note_id) 键集分页扫描变更行
+CREATE INDEX idx_note_stats_updated_at ON note_stats (updated_at, note_id);
@@ -0,0 +1,101 @@
+package com.project.login.service.cache;
+
+import com.project.login.mapper.UserMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 延时双删集成测试（真实 Redis）：
+ *  - 第一次删除之后被并发读回填的旧值，会在 delay 之后被第二次删除清掉
+ *  - 同一 key 在窗口内重复提交只入队一次
+ *  - 一轮突发写入打印耗时、合并数与滞后，且线程数不随写入量增长
+ */
+@SpringBootTest
+class DelayedCacheInvalidatorIT {
+
+    private static final int BURST = 5_000;
+
+    @Autowired private DelayedCacheInvalidator invalidator;
+    @Autowired private StringRedisTemplate redisTemplate;
+    @Autowired private MeterRegistry meterRegistry;
+
+    @MockitoBean private UserMapper userMapper;
+    @MockitoBean private RabbitTemplate rabbitTemplate;
+
+    private final List<String> keys = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        redisTemplate.delete(keys);
+    }
+
+    private String newKey() {
+        String key = "invalidator-it:" + UUID.randomUUID();
+        keys.add(key);
+        return key;
+    }
+
+    @Test
+    void doubleDelete_removesValueRefilledAfterFirstDelete() throws Exception {
+        String key = newKey();
+        redisTemplate.opsForValue().set(key, "old");
+
+        invalidator.doubleDelete(List.of(key));
+        assertThat(redisTemplate.hasKey(key)).isFalse();
+
+        redisTemplate.opsForValue().set(key, "stale"); // 模拟写库前读到旧值的并发回填
+        waitUntilGone(key, 2_000);
+        assertThat(redisTemplate.hasKey(key)).isFalse();
+    }
+
+    @Test
+    void burst_coalescesDuplicatesOnSingleThread() throws Exception {
+        double coalescedBefore = meterRegistry.counter("cache.invalidation.coalesced").count();
+        int threadsBefore = Thread.activeCount();
+        List<String> hot = List.of(newKey(), newKey(), newKey());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BURST; i++) {
+            invalidator.doubleDelete(List.of(hot.get(i % hot.size())));
+        }
+        double submitMs = (System.nanoTime() - start) / 1e6;
+        int threadsDuring = Thread.activeCount();
+
+        for (String key : hot) {
+            redisTemplate.opsForValue().set(key, "stale");
+        }
+        for (String key : hot) {
+            waitUntilGone(key, 2_000);
+        }
+
+        double coalesced = meterRegistry.counter("cache.invalidation.coalesced").count() - coalescedBefore;
+        var lag = meterRegistry.timer("cache.invalidation.lag");
+        System.out.printf("Delayed invalidation: %d submits in %.1f ms, coalesced=%.0f, lag max=%.1f ms, threads %d -> %d%n",
+                BURST, submitMs, coalesced, lag.max(TimeUnit.MILLISECONDS),
+                threadsBefore, threadsDuring);
+
+        assertThat(coalesced).isGreaterThan(0);
+        assertThat(threadsDuring - threadsBefore).isLessThanOrEqualTo(1);
+        hot.forEach(key -> assertThat(redisTemplate.hasKey(key)).isFalse());
+    }
+
+    private void waitUntilGone(String key, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (Boolean.TRUE.equals(redisTemplate.hasKey(key)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
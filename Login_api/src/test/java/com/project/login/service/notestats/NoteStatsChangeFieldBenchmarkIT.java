@@ -0,0 +1,174 @@
+package com.project.login.service.notestats;
+
+import com.project.login.mapper.NoteStatsMapper;
+import com.project.login.model.dataobject.NoteStatsDO;
+import com.project.login.model.vo.NoteStatsVO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * changeField 新旧路径对比的集成基准：
+ *  - 旧路径：hasKey + size + HINCRBY + (clamp HSET) + HSET last_activity_at + HGETALL，最多 6 次往返
+ *  - 新路径：NoteStatsService.changeField，一次 EVALSHA
+ *  - 使用真实 Redis；NoteStatsMapper、RabbitTemplate 用 @MockitoBean 拦截，避免依赖 MySQL / RabbitMQ
+ *  - 结果以 ops/s 打印到标准输出，断言只校验两条路径计数一致、冷 key 只回源一次、DB 回写不覆盖已有 Hash
+ */
+@SpringBootTest
+class NoteStatsChangeFieldBenchmarkIT {
+
+    private static final String REDIS_KEY_PREFIX = "note_stats:";
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 20_000;
+
+    @Autowired private NoteStatsService noteStatsService;
+    @Autowired private NoteStatsReader noteStatsReader;
+    @Autowired private RedisTemplate<String, Object> redisTemplate;
+
+    @MockitoBean private NoteStatsMapper noteStatsMapper;
+    @MockitoBean private RabbitTemplate rabbitTemplate;
+
+    private Long legacyNoteId;
+    private Long scriptedNoteId;
+
+    @BeforeEach
+    void setUp() {
+        legacyNoteId = 6_000_000_000L + ThreadLocalRandom.current().nextLong(1_000_000L);
+        scriptedNoteId = legacyNoteId + 1_000_000L;
+        when(noteStatsMapper.getById(anyLong())).thenAnswer(inv -> dbRow(inv.getArgument(0)));
+        cleanState();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cleanState();
+    }
+
+    private void cleanState() {
+        redisTemplate.delete(REDIS_KEY_PREFIX + legacyNoteId);
+        redisTemplate.delete(REDIS_KEY_PREFIX + scriptedNoteId);
+        redisTemplate.delete("note_stats_delta:" + scriptedNoteId);
+        redisTemplate.opsForSet().remove("note_stats_dirty", String.valueOf(scriptedNoteId));
+    }
+
+    private NoteStatsDO dbRow(Long noteId) {
+        return NoteStatsDO.builder()
+                .noteId(noteId)
+                .authorName("bench-author")
+                .views(10L)
+                .likes(0L)
+                .favorites(0L)
+                .comments(0L)
+                .lastActivityAt(LocalDateTime.now())
+                .version(3L)
+                .build();
+    }
+
+    @Test
+    void coldKey_loadsFromDbOnceThenStaysInRedis() {
+        NoteStatsVO first = noteStatsService.changeField(scriptedNoteId, "views", 1);
+        NoteStatsVO second = noteStatsService.changeField(scriptedNoteId, "views", 1);
+
+        assertThat(first.getViews()).isEqualTo(11L);
+        assertThat(second.getViews()).isEqualTo(12L);
+        assertThat(second.getAuthorName()).isEqualTo("bench-author");
+        assertThat(redisTemplate.opsForHash().get(REDIS_KEY_PREFIX + scriptedNoteId, "version")).isEqualTo("3");
+        verify(noteStatsMapper, times(1)).getById(scriptedNoteId);
+    }
+
+    @Test
+    void negativeDelta_isClampedAtZero() {
+        NoteStatsVO vo = noteStatsService.changeField(scriptedNoteId, "likes", -5);
+
+        assertThat(vo.getLikes()).isZero();
+        assertThat(redisTemplate.opsForHash().get(REDIS_KEY_PREFIX + scriptedNoteId, "likes")).isEqualTo("0");
+        assertThat(redisTemplate.getExpire(REDIS_KEY_PREFIX + scriptedNoteId)).isPositive();
+    }
+
+    @Test
+    void dbWriteBack_keepsHashIncrementedInBetween() {
+        // 读路径在 changeField 初始化并累加之前读到了 DB 行（views = 10），之后才回写
+        NoteStatsDO staleRow = dbRow(scriptedNoteId);
+        noteStatsService.changeField(scriptedNoteId, "views", 1);
+
+        assertThat(noteStatsReader.writeBackIfAbsent(List.of(staleRow))).isEmpty();
+        assertThat(redisTemplate.opsForHash().get(REDIS_KEY_PREFIX + scriptedNoteId, "views")).isEqualTo("11");
+    }
+
+    @Test
+    void scriptedPath_matchesLegacyCountsAndReportsThroughput() {
+        for (int i = 0; i < WARMUP; i++) {
+            legacyChangeField(legacyNoteId, "views", 1);
+            noteStatsService.changeField(scriptedNoteId, "views", 1);
+        }
+
+        long legacyStart = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            legacyChangeField(legacyNoteId, "views", 1);
+        }
+        long legacyNanos = System.nanoTime() - legacyStart;
+
+        long scriptedStart = System.nanoTime();
+        NoteStatsVO last = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            last = noteStatsService.changeField(scriptedNoteId, "views", 1);
+        }
+        long scriptedNanos = System.nanoTime() - scriptedStart;
+
+        System.out.printf("changeField legacy   : %,.0f ops/s (%.1f us/op)%n",
+                ITERATIONS * 1e9 / legacyNanos, legacyNanos / 1e3 / ITERATIONS);
+        System.out.printf("changeField scripted : %,.0f ops/s (%.1f us/op)%n",
+                ITERATIONS * 1e9 / scriptedNanos, scriptedNanos / 1e3 / ITERATIONS);
+
+        long expected = 10L + WARMUP + ITERATIONS;
+        assertThat(last).isNotNull();
+        assertThat(last.getViews()).isEqualTo(expected);
+        assertThat(redisTemplate.opsForHash().get(REDIS_KEY_PREFIX + legacyNoteId, "views"))
+                .isEqualTo(String.valueOf(expected));
+    }
+
+    /**
+     * 引入脚本前的 changeField 实现（逐条命令），仅作为基准对照
+     */
+    private Map<Object, Object> legacyChangeField(Long noteId, String field, long delta) {
+        String key = REDIS_KEY_PREFIX + noteId;
+        HashOperations<String, Object, Object> ops = redisTemplate.opsForHash();
+
+        if (!Boolean.TRUE.equals(redisTemplate.hasKey(key)) || ops.size(key) == 0) {
+            NoteStatsDO db = noteStatsMapper.getById(noteId);
+            ops.put(key, "authorName", db.getAuthorName());
+            ops.put(key, "views", String.valueOf(db.getViews()));
+            ops.put(key, "likes", String.valueOf(db.getLikes()));
+            ops.put(key, "favorites", String.valueOf(db.getFavorites()));
+            ops.put(key, "comments", String.valueOf(db.getComments()));
+            ops.put(key, "last_activity_at", db.getLastActivityAt().toString());
+            ops.put(key, "version", String.valueOf(db.getVersion()));
+            redisTemplate.expire(key, 7, TimeUnit.DAYS);
+        }
+
+        Long newValue = ops.increment(key, field, delta);
+        if (newValue != null && newValue < 0) {
+            ops.put(key, field, "0");
+        }
+        ops.put(key, "last_activity_at", LocalDateTime.now().toString());
+        return ops.entries(key);
+    }
+}
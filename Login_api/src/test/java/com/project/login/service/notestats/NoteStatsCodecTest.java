@@ -0,0 +1,64 @@
+package com.project.login.service.notestats;
+
+import com.project.login.model.dataobject.NoteStatsDO;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * NoteStatsCodec 单元测试：两种编码互相可读，保证在线迁移期间新旧 key 共存不出错。
+ */
+class NoteStatsCodecTest {
+
+    private static final LocalDateTime AT = LocalDateTime.of(2025, 3, 1, 12, 30, 45);
+
+    private NoteStatsDO sample() {
+        return NoteStatsDO.builder()
+                .noteId(42L)
+                .authorName("alice")
+                .views(1234L)
+                .likes(56L)
+                .favorites(7L)
+                .comments(8L)
+                .lastActivityAt(AT)
+                .version(9L)
+                .build();
+    }
+
+    @Test
+    void compactEncoding_usesShortFieldsAndEpochSeconds() {
+        Map<String, String> hash = new NoteStatsCodec("compact").encode(sample());
+
+        assertThat(hash).containsOnlyKeys("a", "v", "l", "f", "c", "t", "r");
+        assertThat(hash.get("v")).isEqualTo("1234");
+        assertThat(hash.get("t")).matches("\\d+");
+    }
+
+    @Test
+    void decode_readsBothEncodingsIdentically() {
+        NoteStatsDO fromLegacy = NoteStatsCodec.decode(42L, new NoteStatsCodec("legacy").encode(sample()));
+        NoteStatsDO fromCompact = NoteStatsCodec.decode(42L, new NoteStatsCodec("compact").encode(sample()));
+
+        assertThat(fromCompact).usingRecursiveComparison().isEqualTo(fromLegacy);
+        assertThat(fromCompact.getViews()).isEqualTo(1234L);
+        assertThat(fromCompact.getAuthorName()).isEqualTo("alice");
+        assertThat(fromCompact.getLastActivityAt()).isEqualTo(AT);
+    }
+
+    @Test
+    void field_mapsLogicalNameToCurrentEncoding() {
+        assertThat(new NoteStatsCodec("legacy").field("likes")).isEqualTo("likes");
+        assertThat(new NoteStatsCodec("compact").field("likes")).isEqualTo("l");
+    }
+
+    @Test
+    void parseActivity_toleratesMissingOrInvalidValues() {
+        assertThat(NoteStatsCodec.parseActivity(null)).isNull();
+        assertThat(NoteStatsCodec.parseActivity("")).isNull();
+        assertThat(NoteStatsCodec.parseActivity("not-a-time")).isNull();
+        assertThat(NoteStatsCodec.parseActivity(AT.toString())).isEqualTo(AT);
+    }
+}
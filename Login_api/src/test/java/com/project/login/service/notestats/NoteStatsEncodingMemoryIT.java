@@ -0,0 +1,82 @@
+package com.project.login.service.notestats;
+
+import com.project.login.model.dataobject.NoteStatsDO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * note_stats 两种编码的每 key 内存对比（真实 Redis，MEMORY USAGE）。
+ *  - 写入 KEYS_PER_FORMAT 个随机统计，分别按 legacy / compact 编码
+ *  - 打印平均 bytes/key，断言 compact 不大于 legacy
+ *  - 使用随机 noteId 段，结束后定向删除
+ */
+@SpringBootTest
+class NoteStatsEncodingMemoryIT {
+
+    private static final int KEYS_PER_FORMAT = 2_000;
+
+    @Autowired private StringRedisTemplate redis;
+
+    @MockitoBean private RabbitTemplate rabbitTemplate;
+
+    private final List<String> createdKeys = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        redis.delete(createdKeys);
+    }
+
+    @Test
+    void compactEncoding_usesLessMemoryPerKey() {
+        long base = 5_000_000_000L + ThreadLocalRandom.current().nextLong(1_000_000L) * 10;
+
+        double legacy = averageMemory(new NoteStatsCodec("legacy"), base);
+        double compact = averageMemory(new NoteStatsCodec("compact"), base + KEYS_PER_FORMAT);
+
+        System.out.printf("note_stats legacy  : %.1f bytes/key%n", legacy);
+        System.out.printf("note_stats compact : %.1f bytes/key (%.1f%%)%n", compact, compact * 100 / legacy);
+        assertThat(compact).isLessThanOrEqualTo(legacy);
+    }
+
+    private double averageMemory(NoteStatsCodec codec, long firstNoteId) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        long total = 0;
+        for (int i = 0; i < KEYS_PER_FORMAT; i++) {
+            NoteStatsDO stats = NoteStatsDO.builder()
+                    .noteId(firstNoteId + i)
+                    .authorName("author" + rnd.nextInt(10_000))
+                    .views((long) rnd.nextInt(100_000))
+                    .likes((long) rnd.nextInt(5_000))
+                    .favorites((long) rnd.nextInt(1_000))
+                    .comments((long) rnd.nextInt(500))
+                    .lastActivityAt(LocalDateTime.now().minusSeconds(rnd.nextInt(86_400)))
+                    .version((long) rnd.nextInt(100))
+                    .build();
+            String key = "note_stats:" + stats.getNoteId();
+            createdKeys.add(key);
+            redis.opsForHash().putAll(key, codec.encode(stats));
+            total += memoryUsage(key);
+        }
+        return (double) total / KEYS_PER_FORMAT;
+    }
+
+    private long memoryUsage(String key) {
+        Object usage = redis.execute((RedisCallback<Object>) connection ->
+                connection.execute("MEMORY", "USAGE".getBytes(StandardCharsets.UTF_8), key.getBytes(StandardCharsets.UTF_8)));
+        return usage instanceof Number n ? n.longValue() : 0L;
+    }
+}
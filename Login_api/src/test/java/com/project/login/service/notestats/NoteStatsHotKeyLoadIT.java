@@ -0,0 +1,136 @@
+package com.project.login.service.notestats;
+
+import com.project.login.mapper.NoteStatsMapper;
+import com.project.login.model.dataobject.NoteStatsDO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+/**
+ * 单篇爆款笔记的压测：THREADS 个线程并发 changeField(views, +1)。
+ *  - 先在严格路径（单 key）上跑一轮，再把同一篇笔记晋升为分片模式跑一轮，打印两者 ops/s
+ *  - 合并后断言 views 总数精确等于写入次数，验证分片读写 / 合并不丢不重
+ *  - 单机 Redis 上两者差距有限；在 Redis Cluster 中分片 key 分散到不同节点才是主要收益
+ *  - 删除笔记时分片 key 与注册表项一并清理
+ */
+@SpringBootTest
+@TestPropertySource(properties = {
+        "note-stats.sharding.enabled=true",
+        "note-stats.sharding.shards=8",
+        "note-stats.sharding.promote-writes-per-second=1000000000"
+})
+class NoteStatsHotKeyLoadIT {
+
+    private static final int THREADS = 32;
+    private static final int WRITES_PER_THREAD = 2_000;
+
+    @Autowired private NoteStatsService noteStatsService;
+    @Autowired private NoteStatsShardManager shardManager;
+    @Autowired private StringRedisTemplate redis;
+
+    @MockitoBean private NoteStatsMapper noteStatsMapper;
+    @MockitoBean private RabbitTemplate rabbitTemplate;
+
+    private Long noteId;
+
+    @BeforeEach
+    void setUp() {
+        noteId = 4_000_000_000L + ThreadLocalRandom.current().nextLong(1_000_000L);
+        when(noteStatsMapper.getById(anyLong())).thenAnswer(inv -> NoteStatsDO.builder()
+                .noteId(inv.getArgument(0))
+                .authorName("load-author")
+                .views(0L).likes(0L).favorites(0L).comments(0L)
+                .lastActivityAt(LocalDateTime.now())
+                .version(0L)
+                .build());
+        cleanState();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cleanState();
+    }
+
+    private void cleanState() {
+        redis.delete("note_stats:" + noteId);
+        redis.delete("note_stats_delta:" + noteId);
+        redis.opsForSet().remove("note_stats_dirty", String.valueOf(noteId));
+        redis.opsForZSet().remove("note_stats_sharded", String.valueOf(noteId));
+        for (int n = 0; n < 8; n++) redis.delete("note_stats_shard:" + noteId + ":" + n);
+    }
+
+    @Test
+    void shardedCounters_keepExactTotalUnderConcurrentLoad() throws Exception {
+        double strict = hammer();
+
+        redis.opsForZSet().add("note_stats_sharded", String.valueOf(noteId), System.currentTimeMillis() + 600_000);
+        shardManager.refreshRegistry();
+        assertThat(shardManager.isSharded(noteId)).isTrue();
+
+        double sharded = hammer();
+        noteStatsService.mergeShards();
+
+        System.out.printf("hot note strict  : %,.0f ops/s%n", strict);
+        System.out.printf("hot note sharded : %,.0f ops/s%n", sharded);
+
+        long expected = 2L * THREADS * WRITES_PER_THREAD;
+        assertThat(redis.opsForHash().get("note_stats:" + noteId, "views")).isEqualTo(String.valueOf(expected));
+    }
+
+    @Test
+    void evict_removesShardKeysAndRegistryEntry() {
+        redis.opsForZSet().add("note_stats_sharded", String.valueOf(noteId), System.currentTimeMillis() + 600_000);
+        shardManager.refreshRegistry();
+        for (int i = 0; i < 50; i++) noteStatsService.changeField(noteId, "views", 1);
+        assertThat(redis.keys("note_stats_shard:" + noteId + ":*")).isNotEmpty();
+
+        noteStatsService.evict(noteId);
+
+        assertThat(redis.keys("note_stats_shard:" + noteId + ":*")).isEmpty();
+        assertThat(redis.opsForZSet().score("note_stats_sharded", String.valueOf(noteId))).isNull();
+        assertThat(shardManager.isSharded(noteId)).isFalse();
+    }
+
+    private double hammer() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < WRITES_PER_THREAD; i++) {
+                        noteStatsService.changeField(noteId, "views", 1);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        assertThat(done.await(5, TimeUnit.MINUTES)).isTrue();
+        long nanos = System.nanoTime() - begin;
+        pool.shutdown();
+        return THREADS * WRITES_PER_THREAD * 1e9 / nanos;
+    }
+}
@@ -0,0 +1,88 @@
+package com.project.login.service.rabbitmq.consumer;
+
+import com.project.login.mapper.NoteStatsCompensationMapper;
+import com.project.login.mapper.NoteStatsMapper;
+import com.project.login.service.notestats.NoteStatsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * NoteStatsConsumer 增量落库失败路径的单元测试：
+ *   - upsertDeltas 失败的行加回 Redis 增量日志（同一 noteId 的增量合并后整体加回），不写补偿表
+ *   - Redis 也不可用时投递到 note.stats.delta.dlq
+ */
+class NoteStatsConsumerTest {
+
+    private final NoteStatsMapper noteStatsMapper = mock(NoteStatsMapper.class);
+    private final NoteStatsCompensationMapper compensationMapper = mock(NoteStatsCompensationMapper.class);
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+    private final NoteStatsService noteStatsService = mock(NoteStatsService.class);
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final Jackson2JsonMessageConverter converter = new Jackson2JsonMessageConverter();
+
+    private NoteStatsConsumer consumer;
+
+    @BeforeEach
+    void setUp() {
+        consumer = new NoteStatsConsumer(noteStatsMapper, compensationMapper, redisTemplate, converter,
+                new SimpleMeterRegistry(), noteStatsService, rabbitTemplate);
+        consumer.initMetrics();
+        when(noteStatsMapper.upsertDeltas(any())).thenThrow(new DataAccessResourceFailureException("mysql down"));
+    }
+
+    private Message deltaMessage(long noteId, long views, long likes) {
+        Map<String, Object> delta = Map.of(
+                "note_id", noteId,
+                "authorName", "author",
+                "views", views,
+                "likes", likes,
+                "favorites", 0L,
+                "comments", -1L,
+                "last_activity_at", LocalDateTime.now().toString());
+        // 与 NoteStatsService.flushToMQ 相同，外层为 HashMap（消息头的类型信息需可反序列化）
+        Map<String, Object> msg = new HashMap<>();
+        msg.put("deltas", List.of(delta));
+        return converter.toMessage(msg, new MessageProperties());
+    }
+
+    @Test
+    void failedUpsert_restoresMergedDeltaToJournal() {
+        consumer.processDeltas(List.of(deltaMessage(42L, 5L, 1L), deltaMessage(42L, 2L, 0L)));
+
+        verify(noteStatsService).restoreDelta(42L, 7L, 1L, 0L, -2L);
+        verify(compensationMapper, never()).insert(any());
+        verify(rabbitTemplate, never()).convertAndSend(anyString(), any(Object.class));
+        verify(redisTemplate, never()).delete(anyString());
+    }
+
+    @Test
+    void failedUpsertAndJournal_deadLettersDelta() {
+        doThrow(new RedisConnectionFailureException("redis down"))
+                .when(noteStatsService).restoreDelta(anyLong(), anyLong(), anyLong(), anyLong(), anyLong());
+
+        consumer.processDeltas(List.of(deltaMessage(42L, 5L, 1L)));
+
+        verify(rabbitTemplate).convertAndSend(eq(NoteStatsConsumer.DEAD_LETTER_QUEUE), any(Object.class));
+        verify(compensationMapper, never()).insert(any());
+    }
+}
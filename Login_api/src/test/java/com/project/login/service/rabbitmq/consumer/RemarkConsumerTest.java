@@ -4,6 +4,8 @@ import com.project.login.model.dataobject.RemarkCountDO;
 import com.project.login.model.dataobject.RemarkLikeByUsersDO;
 import com.project.login.repository.RemarkLikeByUsersRepository;
 import com.project.login.repository.RemarkLikeCountRepository;
+import com.project.login.service.remark.RemarkLikers;
+import com.project.login.service.remark.SetRemarkLikerStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.dao.OptimisticLockingFailureException;
@@ -11,11 +13,14 @@ import org.springframework.data.redis.core.HashOperations;
 import org.springframework.data.redis.core.RedisTemplate;
 
 import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -25,6 +30,9 @@ import static org.mockito.Mockito.*;
  *   - Layer 1（version 一致时直接覆盖）
  *   - Layer 2（version 冲突时 delta / overwrite + 乐观锁重试）
  *   - deleteIfCold（成功落盘后清理 Redis，触发下一次 read-through）
+ *   - 点赞用户增量（added / removed）应用到 likers 位图，旧 user_list 文档迁移
+ *   - 点赞用户消息重试耗尽时抛出（由容器重试 / 转入死信），不被确认丢弃
+ *   - 全量对账快照覆盖 likers，不清理 Redis
  *   - 空 remarkId 防御
  *   - 不写补偿表（参考 NoteStats 但去除该机制）
  */
@@ -48,7 +56,7 @@ class RemarkConsumerTest {
         countRepo = mock(RemarkLikeCountRepository.class);
         usersRepo = mock(RemarkLikeByUsersRepository.class);
         when(redisTemplate.opsForHash()).thenReturn(hops);
-        remarkConsumer = new RemarkConsumer(countRepo, usersRepo, redisTemplate);
+        remarkConsumer = new RemarkConsumer(countRepo, usersRepo, redisTemplate, new SetRemarkLikerStore(redisTemplate));
     }
 
     // ============ message factories ============
@@ -71,6 +79,20 @@ class RemarkConsumerTest {
         return m;
     }
 
+    private Map<String, Object> deltaMsg(List<Long> added, List<Long> removed) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("remarkId", ID);
+        m.put("added", added);
+        m.put("removed", removed);
+        m.put("version", 0L);
+        m.put("last_activity_at", LocalDateTime.now().toString());
+        return m;
+    }
+
+    private static boolean likes(RemarkLikeByUsersDO u, long userId) {
+        return RemarkLikers.ofDocument(u).contains(userId);
+    }
+
     private RemarkCountDO countDoc(long likeCount, long version) {
         return RemarkCountDO.builder().remarkId(ID).remarkLikeCount(likeCount).version(version).build();
     }
@@ -149,7 +171,7 @@ class RemarkConsumerTest {
 
         remarkConsumer.handleLikeUsersMessage(usersMsg(Set.of(1001L, 1002L), 2L));
 
-        verify(usersRepo).save(argThat(u -> u.getUserList().contains(1002L)));
+        verify(usersRepo).save(argThat(u -> likes(u, 1002L) && u.getUserList() == null));
     }
 
     @Test
@@ -159,8 +181,7 @@ class RemarkConsumerTest {
 
         remarkConsumer.handleLikeUsersMessage(usersMsg(Set.of(1002L, 1003L), 2L));
 
-        verify(usersRepo, atLeastOnce()).save(argThat(u ->
-                u.getUserList().contains(1002L) && u.getUserList().contains(1003L)));
+        verify(usersRepo, atLeastOnce()).save(argThat(u -> likes(u, 1002L) && likes(u, 1003L)));
     }
 
     @Test
@@ -170,9 +191,68 @@ class RemarkConsumerTest {
         when(usersRepo.save(any(RemarkLikeByUsersDO.class)))
                 .thenThrow(new OptimisticLockingFailureException("conflict"));
 
-        remarkConsumer.handleLikeUsersMessage(usersMsg(Set.of(1001L), 2L));
+        assertThatThrownBy(() -> remarkConsumer.handleLikeUsersMessage(usersMsg(Set.of(1001L), 2L)))
+                .isInstanceOf(OptimisticLockingFailureException.class);
 
         verify(usersRepo, atLeast(2)).save(any(RemarkLikeByUsersDO.class));
+        verify(redisTemplate, never()).delete(USER_KEY);
+    }
+
+    // ============ users delta ============
+
+    @Test
+    void usersDelta_migratesLegacyListAndAppliesAddedRemoved() {
+        when(usersRepo.findById(ID)).thenReturn(Optional.of(
+                RemarkLikeByUsersDO.builder().remarkId(ID).userList(Set.of(1001L, 1002L)).version(7L).build()));
+
+        remarkConsumer.handleLikeUsersMessage(deltaMsg(List.of(1003L), List.of(1001L)));
+
+        verify(usersRepo).save(argThat(u -> u.getUserList() == null
+                && !likes(u, 1001L) && likes(u, 1002L) && likes(u, 1003L)));
+        verify(redisTemplate).delete(USER_KEY);
+    }
+
+    @Test
+    void usersDelta_retriesOnOptimisticLockFailure() {
+        when(usersRepo.findById(ID)).thenReturn(Optional.empty());
+        when(usersRepo.save(any(RemarkLikeByUsersDO.class)))
+                .thenThrow(new OptimisticLockingFailureException("conflict"))
+                .thenAnswer(inv -> inv.getArgument(0));
+
+        remarkConsumer.handleLikeUsersMessage(deltaMsg(List.of(1001L), List.of()));
+
+        verify(usersRepo, times(2)).save(any(RemarkLikeByUsersDO.class));
+        verify(redisTemplate).delete(USER_KEY);
+    }
+
+    @Test
+    void usersDelta_throwsWhenRetriesExhausted() {
+        when(usersRepo.findById(ID)).thenReturn(Optional.empty());
+        when(usersRepo.save(any(RemarkLikeByUsersDO.class)))
+                .thenThrow(new OptimisticLockingFailureException("conflict"));
+
+        assertThatThrownBy(() -> remarkConsumer.handleLikeUsersMessage(deltaMsg(List.of(1001L), List.of())))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+
+        verify(usersRepo, times(3)).save(any(RemarkLikeByUsersDO.class));
+        verify(redisTemplate, never()).delete(USER_KEY);
+    }
+
+    // ============ users snapshot ============
+
+    @Test
+    void usersSnapshot_overwritesLikersAndKeepsRedis() {
+        when(usersRepo.findById(ID)).thenReturn(Optional.of(
+                RemarkLikeByUsersDO.builder().remarkId(ID).userList(Set.of(1001L)).version(3L).build()));
+        Map<String, Object> m = new HashMap<>();
+        m.put("remarkId", ID);
+        m.put("likers", Base64.getEncoder().encodeToString(RemarkLikers.serialize(RemarkLikers.of(Set.of(1002L, 1003L)))));
+
+        remarkConsumer.handleLikeUsersMessage(m);
+
+        verify(usersRepo).save(argThat(u -> u.getUserList() == null
+                && !likes(u, 1001L) && likes(u, 1002L) && likes(u, 1003L)));
+        verify(redisTemplate, never()).delete(USER_KEY);
     }
 
     // ============ defensive ============
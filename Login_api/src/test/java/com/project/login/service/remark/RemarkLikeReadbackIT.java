@@ -83,6 +83,7 @@ class RemarkLikeReadbackIT {
         redisTemplate.delete("remark:" + remarkId);
         redisTemplate.delete("remark_stats:" + remarkId);
         redisTemplate.delete("remark_user_like:" + remarkId);
+        redisTemplate.delete("remark_like_delta:" + remarkId);
         redisTemplate.delete("note_id_of_remark_list:" + noteId);
     }
 
@@ -0,0 +1,142 @@
+package com.project.login.service.remark;
+
+import com.project.login.mapper.UserMapper;
+import com.project.login.model.dataobject.RemarkLikeByUsersDO;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 点赞用户存储的内存与 flush 流量基准（真实 Redis）：
+ *  - 1k / 100k / 1M 个点赞用户，id 在 1 ~ 1000 万之间随机
+ *  - Redis：SET（remark_user_like）与 RoaringBitmap string（remark_likers）的 MEMORY USAGE
+ *  - MongoDB：user_list 数组与 likers 二进制（RemarkLikers）的 BSON 文档大小（不落库，只编码）
+ *  - flush：旧的全量 users 消息与一个 flush 周期内增量消息（100 个新点赞 + 10 个取消）的 JSON 字节数
+ */
+@SpringBootTest
+class RemarkLikerStoreBenchmarkIT {
+
+    private static final int[] LIKER_COUNTS = {1_000, 100_000, 1_000_000};
+    private static final int USER_ID_RANGE = 10_000_000;
+    private static final int FLUSH_ADDED = 100;
+    private static final int FLUSH_REMOVED = 10;
+    private static final Duration TTL = Duration.ofMinutes(10);
+    private static final int BSON_MAX_DOCUMENT = 16 * 1024 * 1024;
+
+    @Autowired private RedisTemplate<String, Object> redisTemplate;
+    @Autowired private MongoTemplate mongoTemplate;
+
+    @MockitoBean private UserMapper userMapper;
+    @MockitoBean private RabbitTemplate rabbitTemplate;
+
+    private final List<String> keys = new ArrayList<>();
+    private final Jackson2JsonMessageConverter converter = new Jackson2JsonMessageConverter();
+
+    @AfterEach
+    void tearDown() {
+        redisTemplate.delete(keys);
+    }
+
+    @Test
+    void memoryAndFlushBytes_byLikerCount() {
+        SetRemarkLikerStore setStore = new SetRemarkLikerStore(redisTemplate);
+        BitmapRemarkLikerStore bitmapStore = new BitmapRemarkLikerStore(redisTemplate);
+        Random random = new Random(42);
+
+        System.out.printf("%-9s | %-23s | %-23s | %-31s%n",
+                "likers", "Redis SET / bitmap", "Mongo list / binary", "flush full / delta");
+        for (int n : LIKER_COUNTS) {
+            Roaring64NavigableMap likers = new Roaring64NavigableMap();
+            while (likers.getLongCardinality() < n) likers.addLong(1 + random.nextInt(USER_ID_RANGE));
+            long[] ids = likers.toArray();
+
+            String remarkId = "liker-bench-" + UUID.randomUUID();
+            keys.add(setStore.key(remarkId));
+            keys.add(bitmapStore.key(remarkId));
+            setStore.load(remarkId, likers, TTL);
+            bitmapStore.load(remarkId, likers, TTL);
+
+            long setMemory = memoryUsage(setStore.key(remarkId));
+            long bitmapMemory = memoryUsage(bitmapStore.key(remarkId));
+            assertThat(bitmapStore.contains(remarkId, ids[n / 2])).isTrue();
+            assertThat(setStore.contains(remarkId, ids[n / 2])).isTrue();
+
+            Set<Long> userSet = new HashSet<>();
+            for (long id : ids) userSet.add(id);
+            int legacyBson = bsonSize(RemarkLikeByUsersDO.builder().remarkId(remarkId).userList(userSet).build());
+            RemarkLikeByUsersDO binaryDoc = RemarkLikeByUsersDO.builder().remarkId(remarkId).build();
+            RemarkLikers.writeTo(likers, binaryDoc);
+            int binaryBson = bsonSize(binaryDoc);
+
+            int fullFlush = messageBytes(Map.of("remarkId", remarkId, "users", userSet,
+                    "version", 0L, "last_activity_at", LocalDateTime.now().toString()));
+            List<Long> added = new ArrayList<>();
+            while (added.size() < FLUSH_ADDED) added.add((long) USER_ID_RANGE + 1 + random.nextInt(USER_ID_RANGE));
+            List<Long> removed = new ArrayList<>();
+            for (int i = 0; i < FLUSH_REMOVED; i++) removed.add(ids[i * (n / FLUSH_REMOVED)]);
+            int deltaFlush = messageBytes(Map.of("remarkId", remarkId, "added", added, "removed", removed,
+                    "version", 0L, "last_activity_at", LocalDateTime.now().toString()));
+
+            System.out.printf("%-9d | %10s / %-10s | %10s%s / %-9s | %10s / %-9s (x%d)%n",
+                    n, human(setMemory), human(bitmapMemory),
+                    human(legacyBson), legacyBson > BSON_MAX_DOCUMENT ? "!" : " ", human(binaryBson),
+                    human(fullFlush), human(deltaFlush), fullFlush / Math.max(1, deltaFlush));
+
+            // 删除即释放，避免 1M 的 SET 留到 tearDown
+            redisTemplate.delete(List.of(setStore.key(remarkId), bitmapStore.key(remarkId)));
+
+            assertThat(binaryBson).isLessThan(BSON_MAX_DOCUMENT);
+            assertThat(deltaFlush).isLessThan(fullFlush);
+            if (n >= 100_000) {
+                assertThat(bitmapMemory).isLessThan(setMemory);
+                assertThat(binaryBson).isLessThan(legacyBson);
+            }
+        }
+        System.out.println("(! = 超过 MongoDB 16MB 文档上限，旧格式无法保存)");
+    }
+
+    private long memoryUsage(String key) {
+        Object usage = redisTemplate.execute((RedisCallback<Object>) connection -> connection.execute("MEMORY",
+                bytes("USAGE"), bytes(key), bytes("SAMPLES"), bytes("0")));
+        return usage instanceof Number n ? n.longValue() : -1L;
+    }
+
+    private int bsonSize(RemarkLikeByUsersDO doc) {
+        Document bson = new Document();
+        mongoTemplate.getConverter().write(doc, bson);
+        return new RawBsonDocument(bson, new DocumentCodec()).getByteBuffer().remaining();
+    }
+
+    private int messageBytes(Map<String, Object> msg) {
+        return converter.toMessage(msg, new MessageProperties()).getBody().length;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String human(long bytes) {
+        if (bytes < 1024) return bytes + "B";
+        if (bytes < 1024 * 1024) return String.format("%.1fKB", bytes / 1024.0);
+        return String.format("%.1fMB", bytes / 1024.0 / 1024.0);
+    }
+}
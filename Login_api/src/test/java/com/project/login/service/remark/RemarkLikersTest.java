@@ -0,0 +1,50 @@
+package com.project.login.service.remark;
+
+import com.project.login.model.dataobject.RemarkLikeByUsersDO;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * RemarkLikers 单元测试：
+ *  - 序列化往返（含大 id）
+ *  - 空字节视为空集合
+ *  - 旧 user_list 文档读取与写回
+ */
+class RemarkLikersTest {
+
+    @Test
+    void serialize_roundTrip() {
+        Roaring64NavigableMap likers = new Roaring64NavigableMap();
+        for (long userId = 0; userId < 10_000; userId++) likers.addLong(userId);
+        likers.addLong(5_000_000_000L);
+
+        Roaring64NavigableMap copy = RemarkLikers.deserialize(RemarkLikers.serialize(likers));
+        assertThat(copy.toArray()).containsExactly(likers.toArray());
+        assertThat(copy.contains(5_000_000_000L)).isTrue();
+        assertThat(copy.contains(10_000L)).isFalse();
+    }
+
+    @Test
+    void deserialize_emptyBytesIsEmpty() {
+        assertThat(RemarkLikers.deserialize(null).isEmpty()).isTrue();
+        assertThat(RemarkLikers.deserialize(new byte[0]).isEmpty()).isTrue();
+        assertThat(RemarkLikers.deserialize(RemarkLikers.serialize(new Roaring64NavigableMap())).isEmpty()).isTrue();
+    }
+
+    @Test
+    void legacyDocument_readAndWriteBack() {
+        RemarkLikeByUsersDO doc = RemarkLikeByUsersDO.builder().remarkId("r1").userList(Set.of(1001L, 1002L)).build();
+
+        Roaring64NavigableMap likers = RemarkLikers.ofDocument(doc);
+        assertThat(likers.toArray()).containsExactly(1001L, 1002L);
+
+        likers.addLong(1003L);
+        RemarkLikers.writeTo(likers, doc);
+        assertThat(doc.getUserList()).isNull();
+        assertThat(RemarkLikers.ofDocument(doc).toArray()).containsExactly(1001L, 1002L, 1003L);
+    }
+}
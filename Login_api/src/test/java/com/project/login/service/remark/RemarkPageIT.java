@@ -0,0 +1,127 @@
+package com.project.login.service.remark;
+
+import com.project.login.mapper.UserMapper;
+import com.project.login.model.dataobject.RemarkDO;
+import com.project.login.model.vo.RemarkPageVO;
+import com.project.login.model.vo.RemarkVO;
+import com.project.login.repository.RemarkRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 评论游标分页集成测试（真实 MongoDB + Redis，UserMapper / RabbitTemplate 用 @MockitoBean 拦截）：
+ *  - 一级评论按时间倒序逐页翻完，不重不漏
+ *  - 回复按 replyDepth / replyLimit 截断，repliesCursor 能把剩余回复展开完整
+ */
+@SpringBootTest
+class RemarkPageIT {
+
+    private static final Long LOGIN_USER_ID = 9301L;
+    private static final int TOP_LEVEL = 7;
+    private static final int REPLIES_OF_FIRST = 5;
+
+    @Autowired private RemarkService remarkService;
+    @Autowired private RemarkRepository remarkRepository;
+    @Autowired private RedisTemplate<String, Object> redisTemplate;
+
+    @MockitoBean private UserMapper userMapper;
+    @MockitoBean private RabbitTemplate rabbitTemplate;
+
+    private Long noteId;
+    private final List<String> createdIds = new ArrayList<>();
+    private String firstTopLevelId;
+    private String nestedReplyId;
+
+    @BeforeEach
+    void setUp() {
+        noteId = 9_500_000_000L + ThreadLocalRandom.current().nextLong(1_000_000L);
+        for (int i = 0; i < TOP_LEVEL; i++) {
+            String id = save(null, String.format("2025-01-01T00:00:%02d", i));
+            if (i == TOP_LEVEL - 1) firstTopLevelId = id; // 最新的一条排在第一页第一位
+        }
+        for (int i = 0; i < REPLIES_OF_FIRST; i++) {
+            String id = save(firstTopLevelId, String.format("2025-01-02T00:00:%02d", i));
+            if (i == 0) nestedReplyId = id;
+        }
+        save(nestedReplyId, "2025-01-03T00:00:00"); // 第三层
+    }
+
+    @AfterEach
+    void tearDown() {
+        remarkRepository.deleteAllById(createdIds);
+        List<String> keys = new ArrayList<>();
+        for (String id : createdIds) {
+            keys.add("remark_stats:" + id);
+            keys.add("remark_user_like:" + id);
+        }
+        redisTemplate.delete(keys);
+    }
+
+    private String save(String parentId, String createdAt) {
+        String id = "page-it-" + UUID.randomUUID();
+        remarkRepository.save(RemarkDO.builder()
+                ._id(id)
+                .noteId(noteId)
+                .userId(9302L)
+                .username("author")
+                .content(id)
+                .createdAt(createdAt)
+                .parentId(parentId)
+                .isReply(parentId != null)
+                .replyToRemarkId(parentId)
+                .build());
+        createdIds.add(id);
+        return id;
+    }
+
+    @Test
+    void pageRemarks_byTime_walksAllTopLevelWithoutDuplicates() {
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            RemarkPageVO page = remarkService.pageRemarks(noteId, LOGIN_USER_ID, RemarkService.SORT_TIME, cursor, 3, 0, 0);
+            page.getItems().forEach(vo -> seen.add(vo.get_id()));
+            cursor = page.getNextCursor();
+            assertThat(page.isHasMore()).isEqualTo(cursor != null);
+            pages++;
+        } while (cursor != null);
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(seen).hasSize(TOP_LEVEL).doesNotHaveDuplicates();
+        assertThat(seen.get(0)).isEqualTo(firstTopLevelId);
+    }
+
+    @Test
+    void pageRemarks_truncatesRepliesAndCursorExpandsTheRest() {
+        RemarkPageVO page = remarkService.pageRemarks(noteId, LOGIN_USER_ID, RemarkService.SORT_TIME, null, 1, 1, 2);
+        RemarkVO first = page.getItems().get(0);
+
+        assertThat(first.get_id()).isEqualTo(firstTopLevelId);
+        assertThat(first.getReplies()).hasSize(2);
+        assertThat(first.getRepliesCursor()).isNotNull();
+        // 深度上限处的回复只给出展开游标
+        RemarkVO nested = first.getReplies().get(0);
+        assertThat(nested.get_id()).isEqualTo(nestedReplyId);
+        assertThat(nested.getReplies()).isEmpty();
+        assertThat(nested.getRepliesCursor()).isNotNull();
+
+        RemarkPageVO rest = remarkService.pageReplies(firstTopLevelId, LOGIN_USER_ID, first.getRepliesCursor(), 10, 0, 0);
+        assertThat(rest.getItems()).hasSize(REPLIES_OF_FIRST - 2);
+        assertThat(rest.isHasMore()).isFalse();
+
+        RemarkPageVO deeper = remarkService.pageReplies(nestedReplyId, LOGIN_USER_ID, nested.getRepliesCursor(), 10, 1, 3);
+        assertThat(deeper.getItems()).hasSize(1);
+    }
+}
@@ -12,8 +12,8 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -23,7 +23,7 @@ import static org.mockito.Mockito.verify;
 /**
  * RemarkService 集成测试（按 notestat 模式重写）：
  *   - 真实 Redis + 真实 MongoDB；RabbitTemplate 用 @MockitoBean 拦截
- *   - Redis 新 schema：remark_stats:{id} (Hash) + remark_user_like:{id} (Set)
+ *   - Redis 新 schema：remark_stats:{id} (Hash) + remark_user_like:{id} (Set) + remark_like_delta:{id} (Hash)
  *   - @BeforeEach / @AfterEach 同时清理 Redis 与 MongoDB，避免状态污染
  *   - 校验：
  *       * read-through 在写路径生效（DB 已有计数时不被腰斩）
@@ -66,6 +66,8 @@ class RemarkServiceIT {
     private void clean() {
         redisTemplate.delete(statsKey);
         redisTemplate.delete(userLikeKey);
+        redisTemplate.delete("remark_like_delta:" + id);
+        redisTemplate.delete("remark_like_flushing:" + id);
         countRepo.deleteById(id);
         usersRepo.deleteById(id);
     }
@@ -192,9 +194,10 @@ class RemarkServiceIT {
     // ============ flushLikeUsersToMQ ============
 
     @Test
-    void flushLikeUsersToMQ_sendsUsersVersionAndLastActivity() {
+    void flushLikeUsersToMQ_sendsDeltaVersionAndLastActivity() {
         remarkService.likeRemark(id, UA);
         remarkService.likeRemark(id, UB);
+        remarkService.cancelLikeRemark(id, UB);
 
         remarkService.flushLikeUsersToMQ();
 
@@ -202,11 +205,19 @@ class RemarkServiceIT {
         assertThat(msg)
                 .containsEntry("remarkId", id)
                 .containsEntry("version", 0L)
-                .containsKey("last_activity_at");
+                .containsKey("last_activity_at")
+                .doesNotContainKey("users");
 
         @SuppressWarnings("unchecked")
-        Set<Long> users = (Set<Long>) msg.get("users");
-        assertThat(users).containsExactlyInAnyOrder(UA, UB);
+        List<Long> added = (List<Long>) msg.get("added");
+        @SuppressWarnings("unchecked")
+        List<Long> removed = (List<Long>) msg.get("removed");
+        assertThat(added).containsExactly(UA);
+        assertThat(removed).containsExactly(UB);
+
+        // delta 已被取走：没有新变化时不再发送
+        assertThat(redisTemplate.hasKey("remark_like_delta:" + id)).isFalse();
+        assertThat(redisTemplate.hasKey("remark_like_flushing:" + id)).isFalse();
     }
 
     // ---- helpers ----
@@ -17,12 +17,15 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpException;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.data.redis.core.HashOperations;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.SetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -32,6 +35,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -43,6 +47,7 @@ import static org.mockito.Mockito.when;
  *  - 验证 initStatsIfNeeded read-through（write path 也会回填，避免计数腰斩）
  *  - version 不再由 like/cancel 维护，仅在 read-through 时从 DB 加载
  *  - 校验 last_activity_at 在每次写操作中被更新
+ *  - 点赞变化记入 delta Hash，flush 只发送 added / removed
  */
 @ExtendWith(MockitoExtension.class)
 class RemarkServiceUnitTest {
@@ -50,6 +55,8 @@ class RemarkServiceUnitTest {
     private static final String ID = "remark-001";
     private static final String STATS_KEY = "remark_stats:" + ID;
     private static final String USER_LIKE_KEY = "remark_user_like:" + ID;
+    private static final String DELTA_KEY = "remark_like_delta:" + ID;
+    private static final String FLUSHING_KEY = "remark_like_flushing:" + ID;
     private static final String LIKE_COUNT_QUEUE = "remarkLikeCount.redis.queue";
     private static final String LIKE_USERS_QUEUE = "remarkLikeUsers.redis.queue";
     private static final String F_COUNT = "count";
@@ -81,6 +88,8 @@ class RemarkServiceUnitTest {
     void setUp() {
         lenient().when(redisTemplate.opsForSet()).thenReturn(setOps);
         lenient().when(redisTemplate.opsForHash()).thenReturn(hashOps);
+        // 点赞用户用 SET 实现（默认配置），与上面的 setOps mock 对接
+        ReflectionTestUtils.setField(remarkService, "likerStore", new SetRemarkLikerStore(redisTemplate));
         // 默认 Repository 无数据；个别用例会覆盖
         lenient().when(remarkLikeCountRepository.findById(anyString())).thenReturn(Optional.empty());
         lenient().when(remarkLikeByUsersRepository.findById(anyString())).thenReturn(Optional.empty());
@@ -108,6 +117,7 @@ class RemarkServiceUnitTest {
         // 业务逻辑：set 添加用户 + HINCRBY count +1
         verify(setOps).add(USER_LIKE_KEY, UA);
         verify(hashOps).increment(STATS_KEY, F_COUNT, 1L);
+        verify(hashOps).put(DELTA_KEY, String.valueOf(UA), "1");
         // TTL 在 initStatsIfNeeded 与 likeRemark 中都会刷新（保活），共 2 次
         verify(redisTemplate, org.mockito.Mockito.atLeastOnce()).expire(USER_LIKE_KEY, TTL);
         verify(redisTemplate, org.mockito.Mockito.atLeastOnce()).expire(STATS_KEY, TTL);
@@ -142,6 +152,7 @@ class RemarkServiceUnitTest {
         assertThat(remarkService.likeRemark(ID, UA)).isFalse();
 
         verify(setOps, never()).add(any(), any());
+        verify(hashOps, never()).put(eq(DELTA_KEY), any(), any());
         verify(hashOps, never()).increment(eq(STATS_KEY), eq(F_COUNT), anyLong());
     }
 
@@ -172,6 +183,7 @@ class RemarkServiceUnitTest {
         assertThat(remarkService.cancelLikeRemark(ID, UA)).isTrue();
 
         verify(setOps).remove(USER_LIKE_KEY, UA);
+        verify(hashOps).put(DELTA_KEY, String.valueOf(UA), "0");
         verify(hashOps).increment(STATS_KEY, F_COUNT, -1L);
         verify(hashOps).put(eq(STATS_KEY), eq(F_LAST_ACTIVITY), anyString());
         verify(hashOps, never()).increment(eq(STATS_KEY), eq(F_VERSION), anyLong());
@@ -240,9 +252,14 @@ class RemarkServiceUnitTest {
     // ============ flushLikeUsersToMQ ============
 
     @Test
-    void flushLikeUsersToMQ_sendsUsersVersionAndLastActivity() {
-        when(redisTemplate.keys("remark_user_like:*")).thenReturn(Set.of(USER_LIKE_KEY));
-        when(setOps.members(USER_LIKE_KEY)).thenReturn(Set.of(UA, UB));
+    void flushLikeUsersToMQ_sendsOnlyDeltaThenDropsIt() {
+        when(redisTemplate.keys("remark_like_delta:*")).thenReturn(Set.of(DELTA_KEY));
+        when(redisTemplate.keys("remark_like_flushing:*")).thenReturn(Set.of());
+        when(redisTemplate.renameIfAbsent(DELTA_KEY, FLUSHING_KEY)).thenReturn(true);
+        when(hashOps.entries(FLUSHING_KEY)).thenReturn(Map.of(
+                String.valueOf(UA), "1",
+                String.valueOf(UB), "0"
+        ));
         when(hashOps.entries(STATS_KEY)).thenReturn(Map.of(
                 F_VERSION, "4",
                 F_LAST_ACTIVITY, "2025-02-02T11:00:00"
@@ -258,10 +275,36 @@ class RemarkServiceUnitTest {
         assertThat(msg)
                 .containsEntry("remarkId", ID)
                 .containsEntry("version", 4L)
-                .containsEntry("last_activity_at", "2025-02-02T11:00:00");
+                .containsEntry("last_activity_at", "2025-02-02T11:00:00")
+                .containsEntry("added", List.of(UA))
+                .containsEntry("removed", List.of(UB))
+                .doesNotContainKey("users");
+        verify(redisTemplate).delete(FLUSHING_KEY);
+    }
 
-        @SuppressWarnings("unchecked")
-        Set<Long> users = (Set<Long>) msg.get("users");
-        assertThat(users).containsExactlyInAnyOrder(UA, UB);
+    @Test
+    void flushLikeUsersToMQ_sendFailure_restoresDeltaWithoutOverwritingNewerOps() {
+        when(redisTemplate.keys("remark_like_delta:*")).thenReturn(Set.of(DELTA_KEY));
+        when(redisTemplate.keys("remark_like_flushing:*")).thenReturn(Set.of());
+        when(redisTemplate.renameIfAbsent(DELTA_KEY, FLUSHING_KEY)).thenReturn(true);
+        when(hashOps.entries(FLUSHING_KEY)).thenReturn(Map.of(String.valueOf(UA), "1"));
+        when(hashOps.entries(STATS_KEY)).thenReturn(Map.of());
+        doThrow(new AmqpException("broker down"))
+                .when(rabbitTemplate).convertAndSend(eq(LIKE_USERS_QUEUE), any(Object.class));
+
+        remarkService.flushLikeUsersToMQ();
+
+        verify(hashOps).putIfAbsent(DELTA_KEY, String.valueOf(UA), "1");
+        verify(redisTemplate).delete(FLUSHING_KEY);
+    }
+
+    @Test
+    void flushLikeUsersToMQ_noDelta_noMessageSent() {
+        when(redisTemplate.keys("remark_like_delta:*")).thenReturn(Set.of());
+        when(redisTemplate.keys("remark_like_flushing:*")).thenReturn(Set.of());
+
+        remarkService.flushLikeUsersToMQ();
+
+        verify(rabbitTemplate, never()).convertAndSend(anyString(), any(Object.class));
     }
 }
@@ -0,0 +1,92 @@
+package com.project.login.service.remark;
+
+import com.project.login.mapper.UserMapper;
+import com.project.login.model.dataobject.RemarkDO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 笔记级评论树快照集成测试（真实 Redis）：
+ *  - 命中时不再调用 loader，不可变字段原样还原
+ *  - bump 之后旧快照不再命中
+ *  - 加载期间发生 bump 时，这次写入的快照作废
+ */
+@SpringBootTest
+class RemarkThreadCacheIT {
+
+    @Autowired private RemarkThreadCache threadCache;
+    @Autowired private StringRedisTemplate redisTemplate;
+
+    @MockitoBean private UserMapper userMapper;
+    @MockitoBean private RabbitTemplate rabbitTemplate;
+
+    private Long noteId;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        noteId = 9_700_000_000L + ThreadLocalRandom.current().nextLong(1_000_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        redisTemplate.delete(List.of("remark_thread:" + noteId, "remark_thread:gen:" + noteId));
+    }
+
+    private List<RemarkDO> load(String content) {
+        loads.incrementAndGet();
+        return List.of(
+                RemarkDO.builder()._id("root").noteId(noteId).userId(1L).username("a")
+                        .content(content).createdAt("2025-01-01T00:00:00").isReply(false).build(),
+                RemarkDO.builder()._id("reply").noteId(noteId).userId(2L).username("b")
+                        .content("re").createdAt("2025-01-01T00:00:01").isReply(true)
+                        .parentId("root").replyToRemarkId("root").replyToUsername("a").build());
+    }
+
+    @Test
+    void get_hitSkipsLoaderAndRestoresFields() {
+        threadCache.get(noteId, () -> load("v1"));
+        List<RemarkDO> cached = threadCache.get(noteId, () -> load("v2"));
+
+        assertThat(loads).hasValue(1);
+        assertThat(cached).extracting(RemarkDO::get_id).containsExactly("root", "reply");
+        assertThat(cached.get(0).getContent()).isEqualTo("v1");
+        assertThat(cached.get(1).getNoteId()).isEqualTo(noteId);
+        assertThat(cached.get(1).getIsReply()).isTrue();
+        assertThat(cached.get(1).getParentId()).isEqualTo("root");
+        assertThat(cached.get(1).getReplyToUsername()).isEqualTo("a");
+    }
+
+    @Test
+    void bump_invalidatesSnapshot() {
+        threadCache.get(noteId, () -> load("v1"));
+        threadCache.bump(noteId);
+
+        assertThat(threadCache.get(noteId, () -> load("v2")).get(0).getContent()).isEqualTo("v2");
+        assertThat(threadCache.get(noteId, () -> load("v3")).get(0).getContent()).isEqualTo("v2");
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void bumpDuringLoad_discardsThatSnapshot() {
+        threadCache.get(noteId, () -> {
+            threadCache.bump(noteId); // 模拟加载期间有新评论写入
+            return load("stale");
+        });
+
+        assertThat(threadCache.get(noteId, () -> load("fresh")).get(0).getContent()).isEqualTo("fresh");
+        assertThat(loads).hasValue(2);
+    }
+}
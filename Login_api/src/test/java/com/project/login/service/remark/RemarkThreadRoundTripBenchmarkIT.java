@@ -0,0 +1,194 @@
+package com.project.login.service.remark;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.project.login.mapper.UserMapper;
+import com.project.login.model.dataobject.RemarkDO;
+import com.project.login.model.dto.remark.RemarkSelectByNoteDTO;
+import com.project.login.model.vo.RemarkVO;
+import com.project.login.repository.RemarkLikeByUsersRepository;
+import com.project.login.repository.RemarkLikeCountRepository;
+import com.project.login.repository.RemarkRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mockingDetails;
+
+/**
+ * 评论树加载的往返次数回归基准：
+ *  - 按不同楼层规模构造整篇笔记的评论（约 1/10 为一级评论，其余随机挂在已有评论下，层级不限）
+ *  - MongoDB 往返用 CommandListener 计数（大结果集的 getMore 分批取回单独统计，不计入断言），
+ *    Redis 往返按取连接次数计数（pipeline 只取一次），
+ *    MySQL 往返为 @MockitoBean UserMapper 的调用次数；只统计测试线程，排除定时任务干扰
+ *  - 冷（评论树快照与点赞缓存未建立）/ 热两种状态各测一次，打印往返次数与耗时
+ *  - 断言往返次数不随楼层规模增长
+ */
+@SpringBootTest
+class RemarkThreadRoundTripBenchmarkIT {
+
+    private static final int[] THREAD_SIZES = {10, 100, 300, 1_000};
+    private static final Long LOGIN_USER_ID = 9101L;
+    private static final int MAX_WARM_ROUND_TRIPS = 4;
+
+    private static final AtomicInteger MONGO_COMMANDS = new AtomicInteger();
+    private static final AtomicInteger MONGO_GET_MORES = new AtomicInteger();
+    private static volatile Thread measuredThread;
+
+    @TestConfiguration
+    static class MongoCommandCounter {
+        @Bean
+        MongoClientSettingsBuilderCustomizer countingCommandListener() {
+            return builder -> builder.addCommandListener(new CommandListener() {
+                @Override
+                public void commandStarted(CommandStartedEvent event) {
+                    if (Thread.currentThread() != measuredThread) return;
+                    if ("getMore".equals(event.getCommandName())) MONGO_GET_MORES.incrementAndGet();
+                    else MONGO_COMMANDS.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    @Autowired private RemarkService remarkService;
+    @Autowired private RemarkRepository remarkRepository;
+    @Autowired private RemarkLikeCountRepository countRepo;
+    @Autowired private RemarkLikeByUsersRepository usersRepo;
+    @Autowired private RedisTemplate<String, Object> redisTemplate;
+
+    @MockitoSpyBean private RedisConnectionFactory connectionFactory;
+    @MockitoBean private UserMapper userMapper;
+    @MockitoBean private RabbitTemplate rabbitTemplate;
+
+    private final AtomicInteger redisConnections = new AtomicInteger();
+    private final List<String> createdIds = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        measuredThread = null;
+        cleanState();
+    }
+
+    private void cleanState() {
+        remarkRepository.deleteAllById(createdIds);
+        countRepo.deleteAllById(createdIds);
+        usersRepo.deleteAllById(createdIds);
+        List<String> keys = new ArrayList<>();
+        for (String id : createdIds) {
+            keys.add("remark_stats:" + id);
+            keys.add("remark_user_like:" + id);
+        }
+        if (!keys.isEmpty()) redisTemplate.delete(keys);
+        createdIds.clear();
+    }
+
+    @Test
+    void selectRemark_roundTripsDoNotGrowWithThreadSize() {
+        doAnswer(inv -> {
+            if (Thread.currentThread() == measuredThread) redisConnections.incrementAndGet();
+            return inv.callRealMethod();
+        }).when(connectionFactory).getConnection();
+
+        Map<Integer, RoundTrips> cold = new LinkedHashMap<>();
+        Map<Integer, RoundTrips> warm = new LinkedHashMap<>();
+        for (int size : THREAD_SIZES) {
+            Long noteId = 9_000_000_000L + ThreadLocalRandom.current().nextLong(1_000_000L);
+            seedThread(noteId, size);
+
+            cold.put(size, measure(noteId, size));
+            warm.put(size, measure(noteId, size));
+            cleanState();
+        }
+
+        cold.forEach((size, r) -> System.out.printf("Remark thread cold size=%5d : %s%n", size, r));
+        warm.forEach((size, r) -> System.out.printf("Remark thread warm size=%5d : %s%n", size, r));
+
+        RoundTrips smallestCold = cold.get(THREAD_SIZES[0]);
+        RoundTrips smallestWarm = warm.get(THREAD_SIZES[0]);
+        for (int size : THREAD_SIZES) {
+            assertThat(cold.get(size).total()).as("cold round trips, size=%d", size).isEqualTo(smallestCold.total());
+            assertThat(warm.get(size).total()).as("warm round trips, size=%d", size).isEqualTo(smallestWarm.total());
+        }
+        assertThat(smallestWarm.total()).isLessThanOrEqualTo(MAX_WARM_ROUND_TRIPS);
+    }
+
+    private RoundTrips measure(Long noteId, int expectedSize) {
+        MONGO_COMMANDS.set(0);
+        MONGO_GET_MORES.set(0);
+        redisConnections.set(0);
+        clearInvocations(userMapper);
+        measuredThread = Thread.currentThread();
+
+        long start = System.nanoTime();
+        List<RemarkVO> roots = remarkService.SelectRemark(RemarkSelectByNoteDTO.builder().noteId(noteId).build(), LOGIN_USER_ID);
+        long elapsed = System.nanoTime() - start;
+        measuredThread = null;
+
+        assertThat(countNodes(roots)).isEqualTo(expectedSize);
+        return new RoundTrips(MONGO_COMMANDS.get(), MONGO_GET_MORES.get(), redisConnections.get(),
+                mockingDetails(userMapper).getInvocations().size(), elapsed / 1e6);
+    }
+
+    private void seedThread(Long noteId, int size) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int roots = Math.max(1, size / 10);
+        List<RemarkDO> remarks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String id = "rt-bench-" + UUID.randomUUID();
+            boolean isReply = i >= roots;
+            String parentId = isReply ? remarks.get(random.nextInt(i)).get_id() : null;
+            remarks.add(RemarkDO.builder()
+                    ._id(id)
+                    .noteId(noteId)
+                    .userId(9200L + random.nextInt(50))
+                    .username("bench")
+                    .content("remark-" + i)
+                    .createdAt(String.format("%010d", i))
+                    .parentId(parentId)
+                    .isReply(isReply)
+                    .replyToRemarkId(parentId)
+                    .build());
+            createdIds.add(id);
+        }
+        remarkRepository.saveAll(remarks);
+    }
+
+    private static int countNodes(List<RemarkVO> nodes) {
+        int count = 0;
+        Deque<RemarkVO> stack = new ArrayDeque<>(nodes);
+        while (!stack.isEmpty()) {
+            RemarkVO vo = stack.pop();
+            count++;
+            if (vo.getReplies() != null) vo.getReplies().forEach(stack::push);
+        }
+        return count;
+    }
+
+    private record RoundTrips(int mongo, int mongoGetMores, int redis, int mysql, double millis) {
+        int total() {
+            return mongo + redis + mysql;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("mongo=%d (+%d getMore) redis=%d mysql=%d total=%d (%.2f ms)",
+                    mongo, mongoGetMores, redis, mysql, total(), millis);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.project.login.service.search;
+
+import com.project.login.mapper.NoteMapper;
+import com.project.login.model.dataobject.NoteDO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 重建索引的源数据扫描（真实 MySQL，测试事务结束后回滚）：
+ *  - 已发布笔记（note_stats 有记录）进入扫描结果
+ *  - 草稿（没有 note_stats）与审核中（未处理的 FLAGGED）笔记不被扫描，因而不会写入新索引，也不会发正文事件
+ */
+@SpringBootTest
+@Transactional
+class SearchReindexScanIT {
+
+    @Autowired private NoteMapper noteMapper;
+    @Autowired private JdbcTemplate jdbc;
+
+    @MockitoBean private RabbitTemplate rabbitTemplate;
+
+    private long publishedId;
+    private long draftId;
+    private long flaggedId;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = String.valueOf(ThreadLocalRandom.current().nextLong(1_000_000_000L));
+        jdbc.update("INSERT INTO users (username, password_hash, studentNumber, email) VALUES (?, 'x', ?, ?)",
+                "reindex-" + suffix, "reindex-" + suffix, "reindex-" + suffix + "@test.local");
+        long userId = lastId();
+        jdbc.update("INSERT INTO tags (name) VALUES (?)", "reindex-" + suffix);
+        long tagId = lastId();
+        jdbc.update("INSERT INTO note_spaces (name, user_id, tag_id) VALUES ('space', ?, ?)", userId, tagId);
+        long spaceId = lastId();
+        jdbc.update("INSERT INTO notebooks (name, space_id, tag_id) VALUES ('notebook', ?, ?)", spaceId, tagId);
+        long notebookId = lastId();
+
+        publishedId = insertNote("published", notebookId);
+        jdbc.update("INSERT INTO note_stats (note_id, author_name) VALUES (?, 'author')", publishedId);
+
+        draftId = insertNote("draft", notebookId);
+
+        flaggedId = insertNote("flagged", notebookId);
+        jdbc.update("INSERT INTO note_stats (note_id, author_name) VALUES (?, 'author')", flaggedId);
+        jdbc.update("INSERT INTO note_moderation (note_id, status, is_handled) VALUES (?, 'FLAGGED', FALSE)", flaggedId);
+    }
+
+    @Test
+    void scan_skipsUnpublishedAndFlaggedNotes() {
+        List<Long> scanned = noteMapper.selectPublishedAfterId(publishedId - 1, 100).stream()
+                .map(NoteDO::getId)
+                .toList();
+
+        assertThat(scanned).contains(publishedId).doesNotContain(draftId, flaggedId);
+    }
+
+    private long insertNote(String title, long notebookId) {
+        jdbc.update("INSERT INTO notes (title, filename, notebook_id) VALUES (?, ?, ?)", title, title + ".md", notebookId);
+        return lastId();
+    }
+
+    private long lastId() {
+        return jdbc.queryForObject("SELECT LAST_INSERT_ID()", Long.class);
+    }
+}
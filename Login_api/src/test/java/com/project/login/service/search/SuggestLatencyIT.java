@@ -0,0 +1,110 @@
+package com.project.login.service.search;
+
+import com.project.login.model.vo.SuggestionVO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.when;
+
+/**
+ * 输入联想的负载生成器：
+ *  - 热门搜索词用 10000 个合成词（@MockitoBean SearchQueryLog），标题补全走真实 ES 的 notes / questions
+ *  - 8 个线程按 Zipf 近似分布抽取 1~4 字符前缀并发调用 SuggestService.suggest
+ *  - 打印吞吐与 p50 / p99，断言 p99 < 20ms
+ */
+@SpringBootTest
+class SuggestLatencyIT {
+
+    private static final int TERMS = 10_000;
+    private static final int THREADS = 8;
+    private static final int REQUESTS_PER_THREAD = 5_000;
+    private static final int WARMUP = 1_000;
+    private static final long P99_TARGET_MS = 20;
+
+    @Autowired private SuggestService suggestService;
+
+    @MockitoBean private SearchQueryLog searchQueryLog;
+
+    private final List<String> terms = new ArrayList<>(TERMS);
+
+    @BeforeEach
+    void setUp() {
+        Map<String, Long> counts = new HashMap<>();
+        Random random = new Random(42);
+        String[] heads = {"cs", "math", "高等数学", "线性代数", "数据结构", "操作系统", "计算机网络", "概率论"};
+        for (int i = 0; i < TERMS; i++) {
+            String term = heads[i % heads.length] + " " + Integer.toString(random.nextInt(100_000), 36);
+            terms.add(term);
+            counts.put(term, (long) (TERMS / (i + 1)) + 1);
+        }
+        when(searchQueryLog.recentKeywordCounts(anyInt())).thenReturn(counts);
+        suggestService.refreshQueryIndex();
+    }
+
+    @Test
+    void suggest_returnsPopularQueriesFirst() {
+        List<SuggestionVO> result = suggestService.suggest("CS", 8);
+
+        assertThat(result).isNotEmpty();
+        assertThat(result.get(0).getType()).isEqualTo("query");
+        assertThat(result.get(0).getText()).isEqualTo(terms.get(0)); // 次数最多的 cs 词
+        assertThat(result).allMatch(s -> !"query".equals(s.getType()) || s.getText().startsWith("cs"));
+    }
+
+    @Test
+    void suggest_p99UnderTarget() throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            suggestService.suggest(randomPrefix(ThreadLocalRandom.current()), 8);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<long[]>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long[] nanos = new long[REQUESTS_PER_THREAD];
+                for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                    String prefix = randomPrefix(random);
+                    long begin = System.nanoTime();
+                    suggestService.suggest(prefix, 8);
+                    nanos[i] = System.nanoTime() - begin;
+                }
+                return nanos;
+            }));
+        }
+
+        long[] all = new long[THREADS * REQUESTS_PER_THREAD];
+        int offset = 0;
+        for (Future<long[]> f : futures) {
+            long[] nanos = f.get();
+            System.arraycopy(nanos, 0, all, offset, nanos.length);
+            offset += nanos.length;
+        }
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+
+        Arrays.sort(all);
+        double p50 = all[(int) (all.length * 0.50)] / 1e6;
+        double p99 = all[(int) (all.length * 0.99)] / 1e6;
+        System.out.printf("Suggest throughput: %,.0f ops/s (%d threads)%n", all.length * 1e9 / elapsed, THREADS);
+        System.out.printf("Suggest latency   : p50 %.2f ms, p99 %.2f ms, max %.2f ms%n", p50, p99, all[all.length - 1] / 1e6);
+
+        assertThat(p99).isLessThan(P99_TARGET_MS);
+    }
+
+    // 近似 Zipf：多数请求集中在少量热门词的短前缀上
+    private String randomPrefix(ThreadLocalRandom random) {
+        int rank = (int) Math.min(TERMS - 1, Math.floor(Math.pow(TERMS, random.nextDouble())) - 1);
+        String term = terms.get(rank);
+        return term.substring(0, Math.min(term.length(), 1 + random.nextInt(4)));
+    }
+}